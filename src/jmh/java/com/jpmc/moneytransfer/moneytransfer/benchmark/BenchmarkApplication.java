@@ -0,0 +1,73 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import com.jpmc.moneytransfer.moneytransfer.MoneyTransferApplication;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *  Boots the application against the in-memory H2 profile for benchmarks.
+ *  Web tier is off and application logging is turned down so we measure the transfer path, not the console.
+ * */
+public final class BenchmarkApplication {
+
+    public static final BigDecimal SEED_BALANCE = new BigDecimal("1000000000000.0000");
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     *  properties are key=value overrides. They're passed as command line args, default properties would lose
+     *  against the values in application-h2.properties.
+     * */
+    public static ConfigurableApplicationContext start(String... properties) {
+        return start(WebApplicationType.NONE, properties);
+    }
+
+    /**
+     *  Same with the embedded Tomcat on a random port, for benchmarks that go through HTTP.
+     * */
+    public static ConfigurableApplicationContext startWeb(String... properties) {
+        return start(WebApplicationType.SERVLET, properties);
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webType, String... properties) {
+        String[] args = Arrays.stream(properties)
+                .map(property -> "--" + property)
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(MoneyTransferApplication.class)
+                .profiles("h2")
+                .web(webType)
+                .properties("logging.level.com.jpmc=WARN", "logging.level.org.hibernate=WARN", "server.port=0")
+                .run(args);
+    }
+
+    /**
+     *  Seeds accounts with a balance large enough that a benchmark never runs out of funds.
+     * */
+    public static long[] seedAccounts(ConfigurableApplicationContext context, String currencyCode, int count) {
+        CurrencyRepository currencyRepository = context.getBean(CurrencyRepository.class);
+        AccountRepository accountRepository = context.getBean(AccountRepository.class);
+
+        Currency currency = currencyRepository.findById(currencyCode)
+                .orElseThrow(() -> new IllegalStateException(currencyCode + " missing"));
+
+        List<Account> accounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            accounts.add(new Account("Bench" + i, currency, SEED_BALANCE));
+        }
+
+        return accountRepository.saveAll(accounts).stream()
+                .mapToLong(Account::getId)
+                .toArray();
+    }
+}
@@ -0,0 +1,56 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ *  Runs the JMH benchmarks once per thread count (1, 4, 16 and 64 by default).
+ *  Every benchmark reports throughput and sampled latency percentiles, results are written to target/jmh.
+ *  Usage: ./mvnw -Pbenchmark -DskipTests test-compile exec:exec -Dbenchmark.args="-threads 1,4 TransferStage"
+ *  Anything after the thread list is passed to JMH as-is (include regex, -p params, -prof gc, ...).
+ * */
+public final class BenchmarkRunner {
+
+    private static final int[] DEFAULT_THREADS = {1, 4, 16, 64};
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        int[] threads = DEFAULT_THREADS;
+        String[] jmhArgs = args;
+
+        if (args.length >= 2 && "-threads".equals(args[0])) {
+            threads = Arrays.stream(args[1].split(","))
+                    .mapToInt(t -> Integer.parseInt(t.trim()))
+                    .toArray();
+            jmhArgs = Arrays.copyOfRange(args, 2, args.length);
+        }
+
+        CommandLineOptions commandLine = new CommandLineOptions(jmhArgs);
+        File resultDir = new File("target/jmh");
+        resultDir.mkdirs();
+
+        for (int threadCount : threads) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(threadCount)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(resultDir, "results-" + threadCount + "t.json").getPath());
+
+            if (commandLine.getIncludes().isEmpty()) {
+                options.include("com.jpmc.moneytransfer.moneytransfer.*");
+            }
+
+            new Runner(options.build()).run();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.AccountContentionProfiler;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  Cost of the account contention profiler. recordWait is one recording on its own, over a million accounts where
+ *  a few are much hotter than the rest (the profiler keeps evicting), transferMoney the same end to end transfer as
+ *  TransferMoneyBenchmark with the profiler on and off. Compare recordWait with the transferMoney latency.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ContentionProfilerBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("1.2500");
+    private static final int ACCOUNTS = 16;
+    private static final int PROFILED_ACCOUNTS = 1_000_000;
+
+    @Param({"true", "false"})
+    public boolean profilerEnabled;
+
+    private ConfigurableApplicationContext context;
+    private TransferService transferService;
+    private AccountContentionProfiler profiler;
+    private long[] accountIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("transfer.contention.enabled=" + profilerEnabled);
+        transferService = context.getBean(TransferService.class);
+        profiler = context.getBean(AccountContentionProfiler.class);
+        accountIds = BenchmarkApplication.seedAccounts(context, "USD", ACCOUNTS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void recordWait() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // half the waits on 10 accounts, the rest spread over all of them
+        long accountId = random.nextBoolean() ? random.nextInt(10) : random.nextInt(PROFILED_ACCOUNTS);
+        long start = System.nanoTime();
+        profiler.record(accountId, System.nanoTime() - start + random.nextInt(1_000_000));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Long transferMoney() throws TransferException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accountIds.length);
+        int to = random.nextInt(accountIds.length - 1);
+        if (to >= from) {
+            to++;
+        }
+
+        return transferService.transferMoney(
+                new TransferRequestDTO(accountIds[from], accountIds[to], AMOUNT, "USD"));
+    }
+}
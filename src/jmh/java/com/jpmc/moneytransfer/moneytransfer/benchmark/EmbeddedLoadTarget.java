@@ -0,0 +1,99 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.ReconciliationReport;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.LedgerReconciliationService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferRuntimeException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  Boots the application in this JVM against dbUrl (an H2 file or an H2 server, the schema is recreated) and calls
+ *  TransferService.transferMoney directly, no HTTP in between.
+ * */
+final class EmbeddedLoadTarget implements LoadTarget {
+
+    private static final int SEED_CHUNK = 1000;
+
+    private final String dbUrl;
+    private final ConfigurableApplicationContext context;
+    private final TransferService transferService;
+
+    EmbeddedLoadTarget(String dbUrl, String executionMode) {
+        this.dbUrl = dbUrl;
+        this.context = BenchmarkApplication.start(
+                "spring.datasource.url=" + dbUrl,
+                "spring.jpa.hibernate.ddl-auto=create",
+                "transfer.execution-mode=" + executionMode,
+                "transfer.engine.journal-dir=target/loadgen/journal-" + System.nanoTime(),
+                // failures are counted by reason, not logged with a stack trace each
+                "logging.level.com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService=OFF");
+        this.transferService = context.getBean(TransferService.class);
+    }
+
+    @Override
+    public String describe() {
+        return "embedded " + transferService.getExecutionMode() + " on " + dbUrl;
+    }
+
+    @Override
+    public long[] createAccounts(List<String> currencies, BigDecimal balance) {
+        CurrencyRepository currencyRepository = context.getBean(CurrencyRepository.class);
+        AccountRepository accountRepository = context.getBean(AccountRepository.class);
+        Map<String, Currency> byCode = new HashMap<>();
+        long[] ids = new long[currencies.size()];
+        for (int from = 0; from < currencies.size(); from += SEED_CHUNK) {
+            List<Account> chunk = new ArrayList<>(SEED_CHUNK);
+            for (int i = from; i < Math.min(from + SEED_CHUNK, currencies.size()); i++) {
+                Currency currency = byCode.computeIfAbsent(currencies.get(i), code -> currencyRepository.findById(code)
+                        .orElseThrow(() -> new IllegalArgumentException("Unknown currency " + code)));
+                chunk.add(new Account("Load" + i, currency, balance));
+            }
+            List<Account> saved = accountRepository.saveAll(chunk);
+            for (int i = 0; i < saved.size(); i++) {
+                ids[from + i] = saved.get(i).getId();
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public String transfer(long from, long to, BigDecimal amount, String currency) {
+        try {
+            transferService.transferMoney(new TransferRequestDTO(from, to, amount, currency));
+            return null;
+        } catch (TransferException e) {
+            return e.getReason().name();
+        } catch (TransferRuntimeException e) {
+            return e.getReason().name();
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName();
+        }
+    }
+
+    @Override
+    public Conservation checkConservation() {
+        ReconciliationReport report = context.getBean(LedgerReconciliationService.class).reconcile();
+        return new Conservation(report.isConserved(), String.format(
+                "up to transfer %d: %d mismatched transfers, %d accounts checked, %d discrepant %s, corridors %s",
+                report.lastTransferId(), report.transferMismatches(), report.accountsChecked(),
+                report.accountDiscrepancies(), report.discrepantAccounts(),
+                report.isConserved() ? report.corridors().size() : report.corridors()));
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
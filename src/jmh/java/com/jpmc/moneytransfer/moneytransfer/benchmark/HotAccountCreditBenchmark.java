@@ -0,0 +1,59 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import com.jpmc.moneytransfer.moneytransfer.account.service.HotAccountService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  Contention benchmark for hot accounts: every thread credits the same merchant account from its own sender.
+ *  slots = 0 is the plain account (every credit serializes on the account row), otherwise the merchant is hot.
+ *  Compare throughput across slot counts at 16 and 64 threads.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HotAccountCreditBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("1.2500");
+
+    @Param({"0", "1", "4", "16", "64"})
+    public int slots;
+
+    private ConfigurableApplicationContext context;
+    private TransferService transferService;
+    private long[] senderIds;
+    private long merchantId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        transferService = context.getBean(TransferService.class);
+        senderIds = BenchmarkApplication.seedAccounts(context, "USD", 256);
+        merchantId = BenchmarkApplication.seedAccounts(context, "USD", 1)[0];
+
+        if (slots > 0) {
+            context.getBean(HotAccountService.class).enableHotMode(merchantId, slots);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long creditHotAccount() throws TransferException {
+        long senderId = senderIds[ThreadLocalRandom.current().nextInt(senderIds.length)];
+        return transferService.transferMoney(new TransferRequestDTO(senderId, merchantId, AMOUNT, "USD"));
+    }
+}
@@ -0,0 +1,105 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ *  Drives an application that is already running, through POST /test/account, /test/transfer and
+ *  /test/reconciliation/run. Lanes, the limiter and the servlet container are part of what gets measured.
+ * */
+final class HttpLoadTarget implements LoadTarget {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final String baseUrl;
+    private final HttpClient client;
+
+    HttpLoadTarget(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    @Override
+    public String describe() {
+        return "http " + baseUrl;
+    }
+
+    @Override
+    public long[] createAccounts(List<String> currencies, BigDecimal balance) throws IOException, InterruptedException {
+        long[] ids = new long[currencies.size()];
+        for (int i = 0; i < ids.length; i++) {
+            String body = "{\"name\":\"Load" + i + "\",\"currencyCode\":\"" + currencies.get(i)
+                    + "\",\"initialBalance\":" + balance.toPlainString() + "}";
+            HttpResponse<String> response = post("/test/account", body);
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Creating account " + i + " failed: " + response.statusCode()
+                        + " " + response.body());
+            }
+            ids[i] = JSON.readTree(response.body()).get("id").asLong();
+        }
+        return ids;
+    }
+
+    @Override
+    public String transfer(long from, long to, BigDecimal amount, String currency) {
+        String body = "{\"senderAccountId\":" + from + ",\"receiverAccountId\":" + to
+                + ",\"amount\":" + amount.toPlainString() + ",\"currency\":\"" + currency + "\"}";
+        try {
+            HttpResponse<String> response = post("/test/transfer", body);
+            if (response.statusCode() == 200) {
+                return null;
+            }
+            JsonNode reason = JSON.readTree(response.body()).get("reason");
+            return reason == null ? "HTTP_" + response.statusCode() : reason.asText();
+        } catch (IOException e) {
+            return e.getClass().getSimpleName();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "INTERRUPTED";
+        }
+    }
+
+    @Override
+    public Conservation checkConservation() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/test/reconciliation/run", "");
+        if (response.statusCode() != 200) {
+            return new Conservation(false, "reconciliation failed: " + response.statusCode() + " " + response.body());
+        }
+        JsonNode report = JSON.readTree(response.body());
+        boolean conserved = report.path("transferMismatches").asLong() == 0
+                && report.path("accountDiscrepancies").asLong() == 0;
+        for (JsonNode corridor : report.path("corridors")) {
+            conserved &= corridor.path("debitConserved").asBoolean(true) && corridor.path("creditConserved").asBoolean(true);
+        }
+        return new Conservation(conserved, String.format(
+                "up to transfer %d: %d mismatched transfers, %d accounts checked, %d discrepant %s, corridors %s",
+                report.path("lastTransferId").asLong(), report.path("transferMismatches").asLong(),
+                report.path("accountsChecked").asLong(), report.path("accountDiscrepancies").asLong(),
+                report.path("discrepantAccounts"), conserved ? report.path("corridors").size() : report.path("corridors")));
+    }
+
+    private HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(120))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Override
+    public void close() {
+    }
+}
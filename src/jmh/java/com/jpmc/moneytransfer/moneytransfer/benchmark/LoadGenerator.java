@@ -0,0 +1,302 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *  Load generator: seeds accounts, runs transfers between Zipf distributed accounts from a number of threads
+ *  against TransferService in this JVM (H2 file or server) or an application over HTTP, then prints throughput,
+ *  HdrHistogram latency percentiles, failures by reason, and checks that money was conserved.
+ *  <p>
+ *  Usage: ./mvnw -Pbenchmark -DskipTests test-compile exec:exec
+ *  -Dbenchmark.main=com.jpmc.moneytransfer.moneytransfer.benchmark.LoadGenerator -Dbenchmark.args="--accounts=10000 --zipf=1.1"
+ *  <p>
+ *  Options (--name=value):
+ *  <ul>
+ *  <li>target: embedded (default) or http</li>
+ *  <li>db-url: embedded database, default an H2 file under target/loadgen. An H2 server works too,
+ *  e.g. jdbc:h2:tcp://localhost:9092/./loadgen;MODE=MySQL. The schema is recreated.</li>
+ *  <li>execution-mode: transfer.execution-mode of the embedded application, default PESSIMISTIC</li>
+ *  <li>base-url: http target, default http://localhost:8080</li>
+ *  <li>accounts (1000), balance (1000000), currencies: share of accounts per currency (USD:0.8,JPY:0.1,AUD:0.1)</li>
+ *  <li>zipf: skew of the sender and receiver choice, 0 is uniform (0.99)</li>
+ *  <li>failure-ratio: share of transfers built to fail, unknown receiver, self transfer or more than the
+ *  balance (0.02)</li>
+ *  <li>threads (16), transfers (100000), warmup: transfers not measured (2000), rate: transfers per second,
+ *  0 runs closed loop (0), seed (42)</li>
+ *  </ul>
+ *  With a rate latency is measured from when a transfer was due, not when it was sent, so a stall shows up in
+ *  every transfer that waited for it (no coordinated omission). The latency distribution is also written to
+ *  target/loadgen/latency.hgrm. Exits with 1 if money wasn't conserved or a transfer built to fail completed.
+ * */
+public final class LoadGenerator {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final long UNKNOWN_ACCOUNT = 999_999_999_999L;
+
+    private enum Kind {
+        NORMAL, UNKNOWN_RECEIVER, SELF_TRANSFER, OVERDRAFT
+    }
+
+    private final Map<String, String> options;
+    private final int threads;
+    private final long transfers;
+    private final long warmup;
+    private final double rate;
+    private final double failureRatio;
+    private final BigDecimal balance;
+    private final long seed;
+
+    private LoadTarget target;
+    private long[] accountIds;
+    private String[] accountCurrencies;
+    private ZipfianGenerator zipf;
+
+    private final AtomicLong issued = new AtomicLong();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private final LongAdder injected = new LongAdder();
+    private final LongAdder injectedCompleted = new LongAdder();
+
+    private LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.threads = Integer.parseInt(option("threads", "16"));
+        this.transfers = Long.parseLong(option("transfers", "100000"));
+        this.warmup = Long.parseLong(option("warmup", "2000"));
+        this.rate = Double.parseDouble(option("rate", "0"));
+        this.failureRatio = Double.parseDouble(option("failure-ratio", "0.02"));
+        this.balance = new BigDecimal(option("balance", "1000000"));
+        this.seed = Long.parseLong(option("seed", "42"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options are --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        boolean ok = new LoadGenerator(options).run();
+        System.exit(ok ? 0 : 1);
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private boolean run() throws Exception {
+        target = "http".equals(option("target", "embedded"))
+                ? new HttpLoadTarget(option("base-url", "http://localhost:8080"))
+                : new EmbeddedLoadTarget(option("db-url", "jdbc:h2:file:./target/loadgen/db;MODE=MySQL"),
+                option("execution-mode", "PESSIMISTIC"));
+        try {
+            seed();
+            PrintStream out = System.out;
+            out.printf("Load: %s, %d accounts %s, zipf %s (top 1%% of accounts get %.0f%% of the picks), %d threads, " +
+                            "%d transfers, failure ratio %s, rate %s%n", target.describe(), accountIds.length,
+                    option("currencies", "USD:0.8,JPY:0.1,AUD:0.1"), option("zipf", "0.99"),
+                    100 * zipf.shareOfTop(Math.max(1, accountIds.length / 100)), threads, transfers, failureRatio,
+                    rate > 0 ? rate + "/s" : "closed loop");
+
+            if (warmup > 0) {
+                drive(warmup, seed - 1);
+                out.printf("Warmup: %d transfers%n", warmup);
+                resetCounters();
+            }
+            long start = System.nanoTime();
+            Histogram latency = drive(transfers, seed);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            report(out, latency, seconds);
+            return checkConservation(out) && injectedCompleted.sum() == 0;
+        } finally {
+            target.close();
+        }
+    }
+
+    /**
+     *  Accounts get a currency by the configured shares, shuffled so the Zipf ranks land on random ids.
+     * */
+    private void seed() throws Exception {
+        int accounts = Integer.parseInt(option("accounts", "1000"));
+        Map<String, Double> shares = new LinkedHashMap<>();
+        double total = 0;
+        for (String share : option("currencies", "USD:0.8,JPY:0.1,AUD:0.1").split(",")) {
+            String[] parts = share.split(":");
+            double weight = parts.length > 1 ? Double.parseDouble(parts[1]) : 1;
+            shares.put(parts[0].trim().toUpperCase(), weight);
+            total += weight;
+        }
+        List<String> currencies = new ArrayList<>(accounts);
+        double cumulative = 0;
+        for (Map.Entry<String, Double> share : shares.entrySet()) {
+            cumulative += share.getValue();
+            long upTo = Math.round(accounts * cumulative / total);
+            while (currencies.size() < upTo) {
+                currencies.add(share.getKey());
+            }
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = currencies.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            currencies.set(j, currencies.set(i, currencies.get(j)));
+        }
+
+        long seedStart = System.nanoTime();
+        accountCurrencies = currencies.toArray(String[]::new);
+        accountIds = target.createAccounts(currencies, balance);
+        zipf = new ZipfianGenerator(accounts, Double.parseDouble(option("zipf", "0.99")));
+        System.out.printf("Seeded %d accounts in %d ms%n", accounts, (System.nanoTime() - seedStart) / 1_000_000);
+    }
+
+    /**
+     *  Runs count transfers on the worker threads and returns their merged latency histogram (microseconds).
+     * */
+    private Histogram drive(long count, long runSeed) throws InterruptedException {
+        issued.set(0);
+        long start = System.nanoTime();
+        double nanosPerTransfer = rate > 0 ? 1e9 / rate : 0;
+        SplittableRandom seeds = new SplittableRandom(runSeed);
+        List<Histogram> histograms = new ArrayList<>(threads);
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Histogram histogram = new Histogram(MAX_LATENCY_MICROS, 3);
+            SplittableRandom random = seeds.split();
+            histograms.add(histogram);
+            Thread worker = new Thread(() -> work(count, start, nanosPerTransfer, random, histogram), "load-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        Thread progress = new Thread(() -> progress(start), "load-progress");
+        progress.setDaemon(true);
+        progress.start();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        progress.interrupt();
+
+        Histogram merged = new Histogram(MAX_LATENCY_MICROS, 3);
+        histograms.forEach(merged::add);
+        return merged;
+    }
+
+    private void work(long count, long start, double nanosPerTransfer, SplittableRandom random, Histogram histogram) {
+        for (long i = issued.getAndIncrement(); i < count; i = issued.getAndIncrement()) {
+            long due = System.nanoTime();
+            if (nanosPerTransfer > 0) {
+                due = start + (long) (i * nanosPerTransfer);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            int from = zipf.next(random);
+            int to = zipf.next(random);
+            while (to == from && accountIds.length > 1) {
+                to = zipf.next(random);
+            }
+            Kind kind = random.nextDouble() < failureRatio ? Kind.values()[1 + random.nextInt(3)] : Kind.NORMAL;
+            long sender = accountIds[from];
+            long receiver = switch (kind) {
+                case UNKNOWN_RECEIVER -> UNKNOWN_ACCOUNT;
+                case SELF_TRANSFER -> sender;
+                default -> accountIds[to];
+            };
+            BigDecimal amount = kind == Kind.OVERDRAFT
+                    ? balance.multiply(BigDecimal.valueOf(1000))
+                    : BigDecimal.valueOf(100 + random.nextInt(4901)).movePointLeft(2);
+
+            String failure = target.transfer(sender, receiver, amount, accountCurrencies[from]);
+            histogram.recordValue(Math.min(MAX_LATENCY_MICROS, (System.nanoTime() - due) / 1000));
+
+            if (kind != Kind.NORMAL) {
+                injected.increment();
+                if (failure == null) {
+                    injectedCompleted.increment();
+                }
+            }
+            if (failure == null) {
+                completed.increment();
+            } else {
+                failed.increment();
+                failures.computeIfAbsent((kind == Kind.NORMAL ? "" : "injected ") + failure, f -> new LongAdder())
+                        .increment();
+            }
+        }
+    }
+
+    private void progress(long start) {
+        long last = 0;
+        try {
+            while (true) {
+                Thread.sleep(5000);
+                long done = completed.sum() + failed.sum();
+                System.out.printf("  %6.0f s: %d transfers, %d/s%n", (System.nanoTime() - start) / 1e9, done, (done - last) / 5);
+                last = done;
+            }
+        } catch (InterruptedException e) {
+            // run is over
+        }
+    }
+
+    private void resetCounters() {
+        completed.reset();
+        failed.reset();
+        failures.clear();
+        injected.reset();
+        injectedCompleted.reset();
+    }
+
+    private void report(PrintStream out, Histogram latency, double seconds) throws Exception {
+        long done = completed.sum() + failed.sum();
+        out.printf("Transfers: %d in %.1f s = %.0f/s, %d completed, %d failed%n",
+                done, seconds, done / seconds, completed.sum(), failed.sum());
+        out.printf("Failures: %s (%d built to fail, %d of them completed)%n",
+                new TreeMap<>(failures), injected.sum(), injectedCompleted.sum());
+        out.printf("Latency ms: p50 %s, p90 %s, p99 %s, p99.9 %s, p99.99 %s, max %s, mean %s%n",
+                millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(90)),
+                millis(latency.getValueAtPercentile(99)), millis(latency.getValueAtPercentile(99.9)),
+                millis(latency.getValueAtPercentile(99.99)), millis(latency.getMaxValue()),
+                millis(Math.round(latency.getMean())));
+
+        File file = new File("target/loadgen/latency.hgrm");
+        file.getParentFile().mkdirs();
+        try (PrintStream hgrm = new PrintStream(file)) {
+            latency.outputPercentileDistribution(hgrm, 1000.0);
+        }
+    }
+
+    /**
+     *  Asks the application to reconcile. IN_MEMORY projects into the tables in the background, give it a few tries.
+     * */
+    private boolean checkConservation(PrintStream out) throws Exception {
+        LoadTarget.Conservation conservation = target.checkConservation();
+        for (int attempt = 1; !conservation.conserved() && attempt < 5; attempt++) {
+            Thread.sleep(2000);
+            conservation = target.checkConservation();
+        }
+        out.printf("Conservation: %s, %s%n", conservation.conserved() ? "OK" : "VIOLATED", conservation.summary());
+        return conservation.conserved();
+    }
+
+    private static String millis(long micros) {
+        return BigDecimal.valueOf(micros).movePointLeft(3).setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+}
@@ -0,0 +1,37 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ *  What the load generator drives: the application in process (EmbeddedLoadTarget) or a running one over
+ *  HTTP (HttpLoadTarget). Implementations are called from many threads at once.
+ * */
+interface LoadTarget extends AutoCloseable {
+
+    /**
+     *  Outcome of the conservation check after the run.
+     * */
+    record Conservation(boolean conserved, String summary) {
+    }
+
+    String describe();
+
+    /**
+     *  Creates one account per entry of currencies, each with balance, and returns their ids in the same order.
+     * */
+    long[] createAccounts(List<String> currencies, BigDecimal balance) throws Exception;
+
+    /**
+     *  Runs one transfer, returns null when it completed and the failure reason when it didn't.
+     * */
+    String transfer(long from, long to, BigDecimal amount, String currency);
+
+    /**
+     *  Money is conserved over all transfers so far: corridor totals and every account balance against its history.
+     * */
+    Conservation checkConservation() throws Exception;
+
+    @Override
+    void close();
+}
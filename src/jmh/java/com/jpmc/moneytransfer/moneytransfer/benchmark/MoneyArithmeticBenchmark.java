@@ -0,0 +1,91 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import com.jpmc.moneytransfer.moneytransfer.CommonHelper;
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.jpmc.moneytransfer.moneytransfer.CommonHelper.MAX_DB_VALUE;
+
+/**
+ *  The arithmetic of one cross currency transfer (fee, debit, funds check, FX credit, credit limit check, new balances)
+ *  done the old BigDecimal way and with Money. No Spring, no database, just the numbers.
+ *  Run with -prof gc and compare gc.alloc.rate.norm (bytes per transfer) next to the throughput.
+ * */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyArithmeticBenchmark {
+
+    private static final int AMOUNTS = 1024;
+
+    private static final CommonHelper HELPER = new CommonHelper();
+    private static final BigDecimal FEE_RATE = new BigDecimal("0.010000");
+    private static final BigDecimal FX_RATE = new BigDecimal("1.534200");
+    private static final long FEE_RATE_UNITS = Money.rateUnits(FEE_RATE);
+    private static final long FX_RATE_UNITS = Money.rateUnits(FX_RATE);
+
+    private final BigDecimal[] decimalAmounts = new BigDecimal[AMOUNTS];
+    private final Money[] moneyAmounts = new Money[AMOUNTS];
+    private BigDecimal decimalSender;
+    private BigDecimal decimalReceiver;
+    private Money moneySender;
+    private Money moneyReceiver;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < AMOUNTS; i++) {
+            // 0.0001 .. 9999.9999, same values for both sides
+            Money amount = Money.ofUnits(1 + random.nextLong(99_999_999L));
+            moneyAmounts[i] = amount;
+            decimalAmounts[i] = amount.toBigDecimal();
+        }
+        decimalSender = HELPER.round(BenchmarkApplication.SEED_BALANCE);
+        decimalReceiver = HELPER.round(BenchmarkApplication.SEED_BALANCE);
+        moneySender = Money.of(BenchmarkApplication.SEED_BALANCE);
+        moneyReceiver = Money.of(BenchmarkApplication.SEED_BALANCE);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalTransfer() {
+        BigDecimal amount = decimalAmounts[next++ & (AMOUNTS - 1)];
+        BigDecimal fee = HELPER.multiply(amount, FEE_RATE);
+        BigDecimal debit = amount.add(fee);
+        if (decimalSender.compareTo(debit) < 0) {
+            throw new IllegalStateException("insufficient funds");
+        }
+        BigDecimal credit = HELPER.multiply(FX_RATE, amount);
+        if (decimalReceiver.add(credit).compareTo(MAX_DB_VALUE) > 0) {
+            throw new IllegalStateException("credit limit");
+        }
+        // money goes back and forth so the balances stay put across iterations
+        decimalSender = decimalSender.subtract(debit).add(debit);
+        decimalReceiver = decimalReceiver.add(credit).subtract(credit);
+        return decimalReceiver;
+    }
+
+    @Benchmark
+    public Money moneyTransfer() {
+        Money amount = moneyAmounts[next++ & (AMOUNTS - 1)];
+        Money fee = amount.multiplyRate(FEE_RATE_UNITS);
+        Money debit = amount.plus(fee);
+        if (moneySender.isLessThan(debit)) {
+            throw new IllegalStateException("insufficient funds");
+        }
+        Money credit = amount.multiplyRate(FX_RATE_UNITS);
+        if (moneyReceiver.getUnits() > Money.MAX.getUnits() - credit.getUnits()) {
+            throw new IllegalStateException("credit limit");
+        }
+        moneySender = moneySender.minus(debit).plus(debit);
+        moneyReceiver = moneyReceiver.plus(credit).minus(credit);
+        return moneyReceiver;
+    }
+}
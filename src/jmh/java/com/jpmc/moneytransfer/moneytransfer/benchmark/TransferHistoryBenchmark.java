@@ -0,0 +1,99 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferHistoryPage;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferHistoryService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  One page of an account's transfer history at page 1 and deep into the history, keyset pagination through
+ *  TransferHistoryService against the same page read with LIMIT/OFFSET. The keyset page should cost the same at
+ *  any depth, the OFFSET page grows with it. Rows are inserted with plain JDBC, there's no need to run transfers.
+ *  The depth is what matters, not the table size: historyRows has to cover PAGE_SIZE * page, other accounts' rows
+ *  live in other parts of the index.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class TransferHistoryBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+    private static final long FIRST_ID = 1_000_000_000L;
+
+    @Param({"1000000"})
+    public int historyRows;
+
+    @Param({"1", "10000"})
+    public int page;
+
+    private ConfigurableApplicationContext context;
+    private TransferHistoryService historyService;
+    private JdbcTemplate jdbcTemplate;
+    private long accountId;
+    private String cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("transfer.async.enabled=false");
+        historyService = context.getBean(TransferHistoryService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        long[] accounts = BenchmarkApplication.seedAccounts(context, "USD", 2);
+        accountId = accounts[0];
+        seedHistory(accounts[0], accounts[1]);
+
+        // walk to the requested page once, that cursor is what a client paging down would send
+        for (int i = 1; i < page; i++) {
+            cursor = historyService.getHistory(accountId, cursor, PAGE_SIZE).nextCursor();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public TransferHistoryPage keysetPage() {
+        return historyService.getHistory(accountId, cursor, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> offsetPage() {
+        return jdbcTemplate.queryForList(
+                "SELECT transfer_id, transfer_time, from_account_id_raw, to_account_id_raw, amount, currency, state " +
+                        "FROM transfer WHERE from_account_id_raw = ? OR to_account_id_raw = ? " +
+                        "ORDER BY transfer_time DESC, transfer_id DESC LIMIT ? OFFSET ?",
+                accountId, accountId, PAGE_SIZE, (long) (page - 1) * PAGE_SIZE);
+    }
+
+    private void seedHistory(long account, long counterparty) {
+        // the pool doesn't auto-commit
+        TransactionTemplate transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
+        List<Object[]> rows = new ArrayList<>(10_000);
+        for (int i = 0; i < historyRows; i++) {
+            boolean sent = (i & 1) == 0;
+            rows.add(new Object[]{FIRST_ID + i, sent ? account : counterparty, sent ? counterparty : account,
+                    "1.0000", "USD", "COMPLETED", Timestamp.valueOf(start.plusSeconds(i))});
+            if (rows.size() == 10_000 || i == historyRows - 1) {
+                transaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                        "INSERT INTO transfer (transfer_id, from_account_id_raw, to_account_id_raw, " +
+                        "amount, currency, state, transfer_time) VALUES (?, ?, ?, ?, ?, ?, ?)", rows));
+                rows.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferLaneDispatcher;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  transferMoney through the TransferLaneDispatcher with lanes on and off.
+ *  With few accounts and many threads the lanes keep same-account transfers off the connection pool.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransferLaneBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("1.2500");
+
+    @Param({"16", "256"})
+    public int accountCount;
+
+    @Param({"false", "true"})
+    public boolean lanes;
+
+    private ConfigurableApplicationContext context;
+    private TransferLaneDispatcher dispatcher;
+    private long[] accountIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("transfer.lanes.enabled=" + lanes);
+        dispatcher = context.getBean(TransferLaneDispatcher.class);
+        accountIds = BenchmarkApplication.seedAccounts(context, "USD", accountCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long transferMoney() throws TransferException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accountIds.length);
+        int to = random.nextInt(accountIds.length - 1);
+        if (to >= from) {
+            to++;
+        }
+
+        return dispatcher.transferMoney(
+                new TransferRequestDTO(accountIds[from], accountIds[to], AMOUNT, "USD"));
+    }
+}
@@ -0,0 +1,64 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  End to end benchmark of TransferService.transferMoney on H2.
+ *  Each call picks a random sender/receiver pair, so the account count controls how much lock contention we see.
+ *  executionMode compares the SELECT ... FOR UPDATE path with the ATOMIC_UPDATE, OPTIMISTIC and IN_MEMORY paths
+ *  (IN_MEMORY journals to a fresh directory under target/jmh per trial).
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransferMoneyBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("1.2500");
+
+    @Param({"16", "256"})
+    public int accountCount;
+
+    @Param({"PESSIMISTIC", "ATOMIC_UPDATE", "OPTIMISTIC", "IN_MEMORY"})
+    public String executionMode;
+
+    private ConfigurableApplicationContext context;
+    private TransferService transferService;
+    private long[] accountIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("transfer.execution-mode=" + executionMode,
+                "transfer.engine.journal-dir=target/jmh/journal-" + System.nanoTime());
+        transferService = context.getBean(TransferService.class);
+        accountIds = BenchmarkApplication.seedAccounts(context, "USD", accountCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long transferMoney() throws TransferException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accountIds.length);
+        int to = random.nextInt(accountIds.length - 1);
+        if (to >= from) {
+            to++;
+        }
+
+        return transferService.transferMoney(
+                new TransferRequestDTO(accountIds[from], accountIds[to], AMOUNT, "USD"));
+    }
+}
@@ -0,0 +1,127 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  A burst of concurrent clients against POST /test/transfer, Tomcat on platform threads vs virtual threads.
+ *  Each invocation fires all requests at once and waits for the last answer. The limiter keeps the database at the
+ *  pool size in both modes, the difference is how many requests the web tier can hold while they wait for it.
+ *  Run it with -threads 1, every JMH thread fires its own burst. virtualThreads=true needs a Java 21 build and runtime:
+ *  ./mvnw -Pbenchmark,java21 -DskipTests test-compile exec:exec -Dbenchmark.args="-threads 1 VirtualThreadLoad"
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VirtualThreadLoadBenchmark {
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    @Param({"10000"})
+    public int clients;
+
+    @Param({"256"})
+    public int accountCount;
+
+    private ConfigurableApplicationContext context;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private URI transferUri;
+    private long[] accountIds;
+
+    /**
+     *  Answers per invocation, reported next to the time so a run that got 503s doesn't look fast.
+     * */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long completed;
+        public long rejected;
+        public long failed;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (virtualThreads && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("virtualThreads=true needs Java 21, running on " + Runtime.version());
+        }
+        context = BenchmarkApplication.startWeb(
+                "spring.threads.virtual.enabled=" + virtualThreads,
+                "server.tomcat.max-connections=" + (clients + 100),
+                "server.tomcat.accept-count=" + clients,
+                "transfer.async.enabled=false");
+        accountIds = BenchmarkApplication.seedAccounts(context, "USD", accountCount);
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        transferUri = URI.create("http://localhost:" + port + "/test/transfer");
+        clientExecutor = Executors.newFixedThreadPool(4);
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        clientExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public void burst(Outcomes outcomes) {
+        AtomicLong completed = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[clients];
+        for (int i = 0; i < clients; i++) {
+            requests[i] = client.sendAsync(transferRequest(), HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        if (error == null && response.statusCode() == 200) {
+                            completed.incrementAndGet();
+                        } else if (error == null && response.statusCode() == 503) {
+                            rejected.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                        return null;
+                    });
+        }
+        CompletableFuture.allOf(requests).join();
+        outcomes.completed += completed.get();
+        outcomes.rejected += rejected.get();
+        outcomes.failed += failed.get();
+    }
+
+    private HttpRequest transferRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accountIds.length);
+        int to = random.nextInt(accountIds.length - 1);
+        if (to >= from) {
+            to++;
+        }
+        String body = "{\"senderAccountId\":" + accountIds[from] + ",\"receiverAccountId\":" + accountIds[to]
+                + ",\"amount\":1.2500,\"currency\":\"USD\"}";
+        return HttpRequest.newBuilder(transferUri)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(120))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
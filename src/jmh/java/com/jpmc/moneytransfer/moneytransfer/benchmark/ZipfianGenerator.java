@@ -0,0 +1,41 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ *  Draws ranks 0..n-1 with P(rank k) proportional to 1 / (k + 1)^exponent, by binary search over the precomputed
+ *  CDF (8 bytes per rank, a million accounts is 8 MB). Exponent 0 is uniform, around 1 a few accounts get most
+ *  of the traffic. Thread safe, the caller brings its own random.
+ * */
+final class ZipfianGenerator {
+
+    private final double[] cdf;
+
+    ZipfianGenerator(int n, double exponent) {
+        if (n < 1 || exponent < 0) {
+            throw new IllegalArgumentException("Zipf needs n >= 1 and exponent >= 0, got " + n + ", " + exponent);
+        }
+        cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+    }
+
+    int next(SplittableRandom random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+
+    /**
+     *  Share of all draws that go to the top ranks, for the summary line.
+     * */
+    double shareOfTop(int ranks) {
+        return cdf[Math.min(ranks, cdf.length) - 1];
+    }
+}
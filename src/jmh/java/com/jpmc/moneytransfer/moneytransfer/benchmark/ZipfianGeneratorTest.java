@@ -0,0 +1,72 @@
+package com.jpmc.moneytransfer.moneytransfer.benchmark;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+/**
+ *  ZipfianGenerator: rank frequencies of 1,000,000 seeded draws against 1 / (k + 1)^exponent / H(n, exponent),
+ *  within 6 standard deviations of the binomial count. Compiled and run with the benchmark profile only:
+ *  ./mvnw -Pbenchmark test -Dtest=ZipfianGeneratorTest
+ * */
+class ZipfianGeneratorTest {
+
+    private static final int DRAWS = 1_000_000;
+
+    @Test
+    void rankOneGetsItsZipfShare() {
+        for (double exponent : new double[]{0.5, 0.99, 1.2, 2.0}) {
+            int n = 10_000;
+            long[] counts = draw(new ZipfianGenerator(n, exponent), n, 7);
+            for (int rank = 0; rank < 3; rank++) {
+                assertShare(expected(n, exponent, rank), counts[rank], "exponent " + exponent + " rank " + (rank + 1));
+            }
+            Assertions.assertEquals(expected(n, exponent, 0), new ZipfianGenerator(n, exponent).shareOfTop(1), 1e-12);
+        }
+    }
+
+    @Test
+    void exponentZeroIsUniform() {
+        int n = 50;
+        long[] counts = draw(new ZipfianGenerator(n, 0), n, 11);
+        for (int rank = 0; rank < n; rank++) {
+            assertShare(1.0 / n, counts[rank], "rank " + (rank + 1));
+        }
+        Assertions.assertEquals(0.5, new ZipfianGenerator(n, 0).shareOfTop(25), 1e-12);
+    }
+
+    @Test
+    void ranksStayInRange() {
+        long[] counts = draw(new ZipfianGenerator(1, 0.99), 1, 3);
+        Assertions.assertEquals(DRAWS, counts[0]);
+        // asking for more top ranks than there are is all of them
+        Assertions.assertEquals(1.0, new ZipfianGenerator(10, 1.1).shareOfTop(100), 1e-12);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ZipfianGenerator(0, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ZipfianGenerator(10, -0.5));
+    }
+
+    private static long[] draw(ZipfianGenerator zipf, int n, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] counts = new long[n];
+        for (int i = 0; i < DRAWS; i++) {
+            counts[zipf.next(random)]++;
+        }
+        return counts;
+    }
+
+    private static double expected(int n, double exponent, int rank) {
+        double harmonic = 0;
+        for (int k = 1; k <= n; k++) {
+            harmonic += Math.pow(k, -exponent);
+        }
+        return Math.pow(rank + 1, -exponent) / harmonic;
+    }
+
+    private static void assertShare(double p, long count, String what) {
+        double tolerance = 6 * Math.sqrt(p * (1 - p) / DRAWS);
+        double share = (double) count / DRAWS;
+        Assertions.assertEquals(p, share, tolerance, what);
+    }
+}
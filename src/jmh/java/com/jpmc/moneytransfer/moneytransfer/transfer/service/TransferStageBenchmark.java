@@ -0,0 +1,168 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.benchmark.BenchmarkApplication;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.Transfer;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  Benchmarks the individual stages of TransferService.performTransfer in isolation.
+ *  Stages that touch the DB run in a transaction that is rolled back so the tables don't grow;
+ *  emptyTransaction is the baseline to subtract from them.
+ *  Lives in the service package so it can call the protected stage methods directly.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransferStageBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("1.2500");
+    private static final Money AMOUNT_MONEY = Money.of(AMOUNT);
+
+    @Param({"256"})
+    public int accountCount;
+
+    private ConfigurableApplicationContext context;
+    private TransferService transferService;
+    private TransactionTemplate transactionTemplate;
+    private long[] accountIds;
+    private Currency usd;
+    private Currency aud;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        transferService = AopTestUtils.getUltimateTargetObject(context.getBean(TransferService.class));
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        accountIds = BenchmarkApplication.seedAccounts(context, "USD", accountCount);
+
+        CurrencyRepository currencyRepository = context.getBean(CurrencyRepository.class);
+        usd = currencyRepository.findById("USD").orElseThrow();
+        aud = currencyRepository.findById("AUD").orElseThrow();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     *  Per thread, detached objects for the stages that only do in-memory work.
+     * */
+    @State(Scope.Thread)
+    public static class InMemoryTransfer {
+        Transfer sameCurrency;
+        Transfer crossCurrency;
+        Account sender;
+        Account receiver;
+        Account fxReceiver;
+
+        @Setup(Level.Trial)
+        public void setUp(TransferStageBenchmark benchmark) {
+            sender = new Account("StageSender", benchmark.usd, BenchmarkApplication.SEED_BALANCE);
+            receiver = new Account("StageReceiver", benchmark.usd, BenchmarkApplication.SEED_BALANCE);
+            fxReceiver = new Account("StageFxReceiver", benchmark.aud, BenchmarkApplication.SEED_BALANCE);
+
+            sameCurrency = newTransfer(benchmark.usd, benchmark.usd);
+            sameCurrency.setFromAccount(sender);
+            sameCurrency.setToAccount(receiver);
+            sameCurrency.setDebitAmount(AMOUNT_MONEY);
+            sameCurrency.setCreditAmount(AMOUNT_MONEY);
+
+            // computeAmounts prices the fee off the attached accounts, so the FX transfer needs them too
+            crossCurrency = newTransfer(benchmark.usd, benchmark.aud);
+            crossCurrency.setFromAccount(sender);
+            crossCurrency.setToAccount(fxReceiver);
+        }
+
+        private static Transfer newTransfer(Currency from, Currency to) {
+            Transfer transfer = new Transfer(1L, 2L, AMOUNT_MONEY, TransferState.PROCESSING);
+            transfer.setCurrency(from);
+            transfer.setCurrencyFrom(from);
+            transfer.setCurrencyTo(to);
+            transfer.setFeeApplied(Money.ZERO);
+            return transfer;
+        }
+    }
+
+    @Benchmark
+    public Object emptyTransaction() {
+        return transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            return null;
+        });
+    }
+
+    @Benchmark
+    public Transfer createAndSaveTransfer() {
+        TransferRequestDTO dto = new TransferRequestDTO(accountIds[0], accountIds[1], AMOUNT, "USD");
+        return transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            try {
+                return transferService.createAndSaveTransfer(dto);
+            } catch (TransferException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Benchmark
+    public Transfer attachLockedAccountsOrdered() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accountIds.length);
+        int to = (from + 1 + random.nextInt(accountIds.length - 1)) % accountIds.length;
+        Transfer transfer = new Transfer(accountIds[from], accountIds[to], AMOUNT_MONEY, TransferState.PROCESSING);
+
+        return transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            try {
+                transferService.attachLockedAccountsOrdered(transfer);
+                return transfer;
+            } catch (TransferException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Benchmark
+    public Money processTransferFee(InMemoryTransfer state) {
+        transferService.processTransferFee(state.sameCurrency);
+        return state.sameCurrency.getFeeApplied();
+    }
+
+    @Benchmark
+    public Money computeAmountsSameCurrency(InMemoryTransfer state) throws TransferException {
+        transferService.computeAmounts(state.sameCurrency);
+        return state.sameCurrency.getCreditAmount();
+    }
+
+    @Benchmark
+    public Money computeAmountsWithFx(InMemoryTransfer state) throws TransferException {
+        transferService.computeAmounts(state.crossCurrency);
+        return state.crossCurrency.getCreditAmount();
+    }
+
+    @Benchmark
+    public Money preformDebitAndCredit(InMemoryTransfer state) {
+        transferService.preformDebitAndCredit(state.sameCurrency);
+        return state.receiver.getBalance();
+    }
+}
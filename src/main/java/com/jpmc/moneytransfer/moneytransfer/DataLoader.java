@@ -77,13 +77,7 @@ public class DataLoader implements CommandLineRunner {
 
         transferPolicyRepository.save(policy);
 
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt(); // Restore interrupted state
-        }
-
-        //refresh cache
+        //publish the new fee schedule right away instead of waiting for the background reload
         feeService.refreshCache();
 
         log.info("TRANSFER_FEE policy created with value = {}", policy.getValue());
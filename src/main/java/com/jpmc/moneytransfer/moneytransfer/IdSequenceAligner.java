@@ -0,0 +1,102 @@
+package com.jpmc.moneytransfer.moneytransfer;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.List;
+
+/**
+ *  Migration path from IDENTITY to pooled sequence ids.
+ *  Rows written with identity ids are still in the tables, so on startup (before anything is inserted)
+ *  each id sequence is moved past the highest existing id. H2 has real sequences, on MySQL Hibernate
+ *  emulates them with a one row table (next_val). The sequences are only ever moved forward.
+ *  */
+@Component
+@DependsOn("entityManagerFactory")
+public class IdSequenceAligner {
+
+    private static final Logger log = LoggerFactory.getLogger(IdSequenceAligner.class);
+
+    // must match the @SequenceGenerator allocationSize of the entities
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    private static final List<IdSequence> SEQUENCES = List.of(
+            new IdSequence("account", "account_id", "account_seq"),
+            new IdSequence("transfer", "transfer_id", "transfer_seq"));
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${transfer.id-alignment.enabled:true}")
+    private boolean enabled;
+
+    @PostConstruct
+    public void alignSequences() {
+        if (!enabled) {
+            return;
+        }
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        boolean tableEmulated = isMySql();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (IdSequence sequence : SEQUENCES) {
+                align(jdbcTemplate, sequence, tableEmulated);
+            }
+        });
+    }
+
+    private void align(JdbcTemplate jdbcTemplate, IdSequence sequence, boolean tableEmulated) {
+        Long maxId = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(" + sequence.idColumn() + "), 0) FROM " + sequence.table(), Long.class);
+        if (maxId == null || maxId == 0) {
+            return;
+        }
+
+        // pooled optimizer hands out (value - allocationSize, value], so the next value must clear the max id by a full block
+        long required = maxId + ID_ALLOCATION_SIZE;
+        int updated;
+        if (tableEmulated) {
+            updated = jdbcTemplate.update(
+                    "UPDATE " + sequence.sequenceName() + " SET next_val = ? WHERE next_val < ?", required, required);
+        } else {
+            Long next = jdbcTemplate.queryForObject(
+                    "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = UPPER(?)",
+                    Long.class, sequence.sequenceName());
+            updated = 0;
+            if (next != null && next < required) {
+                jdbcTemplate.execute("ALTER SEQUENCE " + sequence.sequenceName() + " RESTART WITH " + required);
+                updated = 1;
+            }
+        }
+
+        if (updated > 0) {
+            log.info("Moved {} past existing id {} (next value {})", sequence.sequenceName(), maxId, required);
+        }
+    }
+
+    private boolean isMySql() {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return product.toLowerCase().contains("mysql");
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not determine database type for id sequence alignment", e);
+        }
+    }
+
+    private record IdSequence(String table, String idColumn, String sequenceName) {
+    }
+}
@@ -0,0 +1,145 @@
+package com.jpmc.moneytransfer.moneytransfer;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static com.jpmc.moneytransfer.moneytransfer.CommonHelper.MAX_DB_VALUE;
+import static com.jpmc.moneytransfer.moneytransfer.CommonHelper.MONEY_SCALE;
+import static com.jpmc.moneytransfer.moneytransfer.CommonHelper.ROUNDING_MODE;
+
+/**
+ *  Fixed point amount: a long count of 1/10^MONEY_SCALE units, so adding, comparing and pricing an amount is plain
+ *  long arithmetic instead of a chain of BigDecimal objects. Persisted through MoneyConverter into the same
+ *  DECIMAL(…, 4) columns as before, BigDecimal stays at the edges (DTOs, JSON, JDBC).
+ *  Overflow throws ArithmeticException instead of wrapping.
+ * */
+public final class Money implements Comparable<Money> {
+
+    // 10^MONEY_SCALE
+    private static final long UNIT = 10_000L;
+
+    // fee and FX rates are carried as longs at this scale (the scale of the policy_value and fx_rate columns)
+    public static final int RATE_SCALE = 6;
+    private static final long RATE_UNIT = 1_000_000L;
+
+    public static final Money ZERO = new Money(0);
+
+    // Long.MAX_VALUE units (922,337,203,685,477.5807), lower than MAX_DB_VALUE so this is the effective balance limit
+    public static final Money MAX = new Money(Long.MAX_VALUE);
+
+    private final long units;
+
+    private Money(long units) {
+        this.units = units;
+    }
+
+    public static Money ofUnits(long units) {
+        return units == 0 ? ZERO : new Money(units);
+    }
+
+    /**
+     *  Rounds to MONEY_SCALE like CommonHelper.round, fails if the amount is outside MAX_DB_VALUE or the long range.
+     * */
+    public static Money of(BigDecimal amount) {
+        BigDecimal scaled = amount.setScale(MONEY_SCALE, ROUNDING_MODE);
+        if (scaled.abs().compareTo(MAX_DB_VALUE) > 0) {
+            throw new ArithmeticException("Amount exceeds database precision limit: " + amount);
+        }
+        try {
+            return ofUnits(scaled.unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Amount exceeds money range (max " + MAX + "): " + amount);
+        }
+    }
+
+    /**
+     *  Rate as a long at RATE_SCALE (HALF_UP), for the lookup tables of the fee and FX snapshots.
+     * */
+    public static long rateUnits(BigDecimal rate) {
+        return rate.setScale(RATE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(units, MONEY_SCALE);
+    }
+
+    public Money plus(Money other) {
+        return ofUnits(Math.addExact(units, other.units));
+    }
+
+    public Money minus(Money other) {
+        return ofUnits(Math.subtractExact(units, other.units));
+    }
+
+    public Money negate() {
+        return ofUnits(Math.negateExact(units));
+    }
+
+    public Money times(long factor) {
+        return ofUnits(Math.multiplyExact(units, factor));
+    }
+
+    /**
+     *  Splits into parts, rounding down. The remainder is this.minus(share.times(parts)).
+     * */
+    public Money divideDown(int parts) {
+        return ofUnits(units / parts);
+    }
+
+    /**
+     *  this * rate (rate in RATE_SCALE units) rounded HALF_UP to MONEY_SCALE, same result as CommonHelper.multiply.
+     *  Stays in long arithmetic unless the 128 bit product doesn't fit a long.
+     * */
+    public Money multiplyRate(long rateUnits) {
+        long high = Math.multiplyHigh(units, rateUnits);
+        long product = units * rateUnits;
+        if (high != (product >> 63)) {
+            return of(toBigDecimal().multiply(BigDecimal.valueOf(rateUnits, RATE_SCALE)));
+        }
+        long quotient = product / RATE_UNIT;
+        long remainder = product % RATE_UNIT;
+        if (Math.abs(remainder) * 2 >= RATE_UNIT) {
+            quotient += Long.signum(product);
+        }
+        return ofUnits(quotient);
+    }
+
+    public int signum() {
+        return Long.signum(units);
+    }
+
+    public boolean isLessThan(Money other) {
+        return units < other.units;
+    }
+
+    public Money min(Money other) {
+        return units <= other.units ? this : other;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(units, other.units);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof Money money && money.units == units;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(units);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
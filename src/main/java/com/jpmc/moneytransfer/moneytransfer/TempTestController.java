@@ -4,17 +4,50 @@ import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
 import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
 import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
 import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.service.CurrencyService;
+import com.jpmc.moneytransfer.moneytransfer.account.service.HotAccountService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.engine.LedgerEngine;
+import com.jpmc.moneytransfer.moneytransfer.transfer.journal.TransferEventJournal;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.ReconciliationReport;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.Transfer;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferBatchItemResult;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferHistoryPage;
 import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferStatus;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.AsyncTransferService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.FxRateFeed;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferConcurrencyLimiter;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.DoubleEntryLedgerService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.LedgerCompactor;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.LedgerReconciliationService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferExportService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferHistoryService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferIdempotencyCache;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferLaneDispatcher;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferOutboxPublisher;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferRuntimeException;
 import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -37,6 +70,51 @@ public class TempTestController {
     @Autowired
     private TransferService transferService;
 
+    @Autowired
+    private HotAccountService hotAccountService;
+
+    @Autowired
+    private CurrencyService currencyService;
+
+    @Autowired
+    private TransferLaneDispatcher transferLaneDispatcher;
+
+    @Autowired
+    private AsyncTransferService asyncTransferService;
+
+    @Autowired
+    private TransferConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private TransferIdempotencyCache idempotencyCache;
+
+    @Autowired
+    private TransferHistoryService transferHistoryService;
+
+    @Autowired
+    private TransferExportService transferExportService;
+
+    @Autowired
+    private DoubleEntryLedgerService doubleEntryLedgerService;
+
+    @Autowired
+    private LedgerCompactor ledgerCompactor;
+
+    @Autowired
+    private LedgerReconciliationService reconciliationService;
+
+    @Autowired(required = false)
+    private LedgerEngine ledgerEngine;
+
+    @Autowired
+    private TransferEventJournal transferEventJournal;
+
+    @Autowired
+    private TransferOutboxPublisher transferOutboxPublisher;
+
+    @Autowired(required = false)
+    private FxRateFeed fxRateFeed;
+
     /**
      *  Create a currency and return the newly created currency object
      */
@@ -46,8 +124,7 @@ public class TempTestController {
         String name = request.get("name");
         log.info("Creating currency with code={} name={}", code, name);
 
-        Currency currency = new Currency(code, name);
-        Currency saved = currencyRepository.save(currency);
+        Currency saved = currencyService.createCurrency(code, name);
 
         log.info("Currency created: {}", saved.getCode());
         return ResponseEntity.ok(saved);
@@ -80,6 +157,15 @@ public class TempTestController {
         return ResponseEntity.ok(saved);
     }
 
+    /**
+     *  Turns an account into a hot account whose balance is spread over the given number of slots
+     */
+    @PostMapping("/account/{id}/hot")
+    public ResponseEntity<Account> enableHotMode(@PathVariable Long id, @RequestParam int slots) {
+        log.info("Enabling hot mode for account {} with {} slots", id, slots);
+        return ResponseEntity.ok(hotAccountService.enableHotMode(id, slots));
+    }
+
     public static class CreateAccountRequest {
         public String name;
         public String currencyCode;
@@ -87,21 +173,271 @@ public class TempTestController {
     }
 
 
+    /**
+     *  Transfers of the account, newest first. Pass nextCursor of a page as cursor to get the next one.
+     */
+    @GetMapping("/account/{id}/transfers")
+    public ResponseEntity<?> transferHistory(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            TransferHistoryPage page = transferHistoryService.getHistory(id, cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (TransferRuntimeException e) {
+            return failed(statusOf(e), e.getReason().name(), e.getMessage());
+        }
+    }
+
+    /**
+     *  Statement of the account: all transfers from the first to the last day (inclusive, both optional), newest first,
+     *  as csv or ndjson. Streamed with chunked encoding while the rows are read, any number of rows in constant memory.
+     */
+    @GetMapping("/account/{id}/statement")
+    public ResponseEntity<StreamingResponseBody> exportStatement(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        TransferExportService.Format exportFormat;
+        try {
+            exportFormat = TransferExportService.Format.of(format);
+            transferExportService.checkPeriod(from, to);
+        } catch (TransferRuntimeException e) {
+            // the body is the stream, so no failed() map here
+            throw new ResponseStatusException(statusOf(e), e.getMessage(), e);
+        }
+        log.info("Statement export of account {} from {} to {} as {}", id, from, to, exportFormat);
+        StreamingResponseBody body = out -> transferExportService.export(id, from, to, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"statement-" + id + "." + exportFormat.getExtension() + "\"")
+                .body(body);
+    }
+
+    /**
+     *  Balance of the account, derived from its last snapshot and the ledger entries after it. With at (ISO date time)
+     *  the balance it had back then, DOUBLE_ENTRY mode keeps that history.
+     */
+    @GetMapping("/account/{id}/balance")
+    public ResponseEntity<Map<String, Object>> balance(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return ResponseEntity.of(doubleEntryLedgerService.findBalance(id, at)
+                .map(balance -> Map.of(
+                        "accountId", id,
+                        "balance", balance.toBigDecimal(),
+                        "at", at == null ? LocalDateTime.now() : at)));
+    }
+
+    /**
+     *  Runs the transfer on the request thread, 200 once it completed, 400/409/500 with the reason when it failed,
+     *  503 when it waited too long for a database slot. Retries carrying the same Idempotency-Key header (or
+     *  idempotencyKey in the body) get the answer of the first request instead of a second transfer.
+     */
     @PostMapping("/transfer")
     public ResponseEntity<Map<String, Object>> transfer(
-            @Valid @RequestBody TransferRequestDTO dto) {
+            @Valid @RequestBody TransferRequestDTO dto,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+
+        log.debug("Transfer request: {}", dto);
+        try {
+            applyIdempotencyKey(dto, idempotencyKey);
+            Long id = transferLaneDispatcher.transferMoney(dto);
+            return ResponseEntity.ok(Map.of("transferId", id, "status", TransferState.COMPLETED));
+        } catch (TransferException e) {
+            return failed(HttpStatus.BAD_REQUEST, e.getReason().name(), e.getMessage());
+        } catch (TransferRuntimeException e) {
+            return failed(statusOf(e), e.getReason().name(), e.getMessage());
+        }
+    }
 
-        log.info("Transfer request: {}", dto);
-        Long id = -1L;
+    /**
+     *  Queues the transfer and answers 202 with its id right away, poll GET /transfer/{id} for the outcome
+     */
+    @PostMapping("/transfer/async")
+    public ResponseEntity<Map<String, Object>> submitTransfer(
+            @Valid @RequestBody TransferRequestDTO dto,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (!asyncTransferService.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
         try {
-            id = transferService.transferMoney(dto);
-        } catch (Exception e) {
-            ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            applyIdempotencyKey(dto, idempotencyKey);
+            Long id = asyncTransferService.submit(dto);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/test/transfer/" + id))
+                    .body(Map.of("transferId", id, "status", TransferState.PROCESSING));
+        } catch (TransferException e) {
+            return failed(HttpStatus.BAD_REQUEST, e.getReason().name(), e.getMessage());
+        } catch (TransferRuntimeException e) {
+            return failed(statusOf(e), e.getReason().name(), e.getMessage());
         }
+    }
+
+    private static void applyIdempotencyKey(TransferRequestDTO dto, String headerKey) {
+        if (headerKey == null) {
+            return;
+        }
+        if (headerKey.isEmpty() || headerKey.length() > Transfer.IDEMPOTENCY_KEY_LENGTH) {
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.INVALID_ARGUMENT,
+                    "Idempotency key must have 1 to " + Transfer.IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        if (dto.getIdempotencyKey() != null && !dto.getIdempotencyKey().equals(headerKey)) {
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.INVALID_ARGUMENT,
+                    "Idempotency-Key header and idempotencyKey differ");
+        }
+        dto.setIdempotencyKey(headerKey);
+    }
+
+    private static HttpStatus statusOf(TransferRuntimeException e) {
+        return switch (e.getReason()) {
+            case INVALID_ARGUMENT -> HttpStatus.BAD_REQUEST;
+            case CONCURRENT_UPDATE -> HttpStatus.CONFLICT;
+            case OVERLOADED -> HttpStatus.SERVICE_UNAVAILABLE;
+            default -> HttpStatus.INTERNAL_SERVER_ERROR;
+        };
+    }
 
-        return ResponseEntity.ok(
-                Map.of("transferId", id,
-                        "status", "ACCEPTED"));
+    /**
+     *  State of a transfer, with the failure reason once it FAILED
+     */
+    @GetMapping("/transfer/{id}")
+    public ResponseEntity<TransferStatus> transferStatus(@PathVariable Long id) {
+        return ResponseEntity.of(transferService.getTransferStatus(id));
+    }
+
+    /**
+     *  Submitted, executed and requeued counts of async transfers
+     */
+    @GetMapping("/transfer/async/stats")
+    public ResponseEntity<Map<String, Object>> asyncStats() {
+        return ResponseEntity.ok(asyncTransferService.getStats());
+    }
+
+    private static ResponseEntity<Map<String, Object>> failed(HttpStatus status, String reason, String message) {
+        return ResponseEntity.status(status).body(Map.of(
+                "status", TransferState.FAILED,
+                "reason", reason,
+                "error", String.valueOf(message)));
+    }
+
+    /**
+     *  Batch transfer, items are validated one by one so a bad item only fails itself
+     */
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<List<TransferBatchItemResult>> transferBatch(@RequestBody List<TransferRequestDTO> dtos) {
+        log.info("Batch transfer request with {} items", dtos.size());
+        return ResponseEntity.ok(transferService.transferMoneyBatch(dtos));
+    }
+
+    /**
+     *  Retry and abort counts of OPTIMISTIC transfers, to see when a workload should switch execution mode
+     */
+    @GetMapping("/transfer/optimistic-stats")
+    public ResponseEntity<Map<String, Object>> optimisticStats() {
+        return ResponseEntity.ok(Map.of(
+                "executionMode", transferService.getExecutionMode(),
+                "stats", transferService.getOptimisticStats()));
+    }
+
+    /**
+     *  Queue depth and wait times of the transfer lanes
+     */
+    @GetMapping("/lanes/stats")
+    public ResponseEntity<List<Map<String, Object>>> laneStats() {
+        return ResponseEntity.ok(transferLaneDispatcher.getLaneStats());
+    }
+
+    /**
+     *  Size of the idempotency key cache and how many requests ran, were replayed or waited for the first one
+     */
+    @GetMapping("/transfer/idempotency-stats")
+    public ResponseEntity<Map<String, Object>> idempotencyStats() {
+        return ResponseEntity.ok(idempotencyCache.getStats());
+    }
+
+    /**
+     *  Permits, waiters and wait times of the limiter in front of the database
+     */
+    @GetMapping("/transfer/limiter-stats")
+    public ResponseEntity<Map<String, Object>> limiterStats() {
+        return ResponseEntity.ok(concurrencyLimiter.getStats());
+    }
+
+    /**
+     *  Last sequence, queue depth and current segment of the transfer event journal
+     */
+    @GetMapping("/transfer/journal-stats")
+    public ResponseEntity<Map<String, Object>> journalStats() {
+        return ResponseEntity.ok(transferEventJournal.getStats());
+    }
+
+    /**
+     *  Undelivered outbox rows, delivered messages and failed deliveries of the outbox publisher
+     */
+    @GetMapping("/transfer/outbox-stats")
+    public ResponseEntity<Map<String, Object>> outboxStats() {
+        return ResponseEntity.ok(transferOutboxPublisher.getStats());
+    }
+
+    /**
+     *  In-flight transfers and projection backlog of the IN_MEMORY ledger engine
+     */
+    @GetMapping("/engine/stats")
+    public ResponseEntity<Map<String, Object>> engineStats() {
+        if (ledgerEngine == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ledgerEngine.getStats());
+    }
+
+    /**
+     *  Rolls every ledger entry up into snapshots, run it before switching away from DOUBLE_ENTRY mode
+     */
+    @PostMapping("/ledger/compact")
+    public ResponseEntity<Map<String, Object>> compactLedger() {
+        return ResponseEntity.ok(Map.of("snapshots", ledgerCompactor.compactAll()));
+    }
+
+    /**
+     *  Compaction runs, snapshots written and entries rolled up
+     */
+    @GetMapping("/ledger/stats")
+    public ResponseEntity<Map<String, Object>> ledgerStats() {
+        return ResponseEntity.ok(ledgerCompactor.getStats());
+    }
+
+    /**
+     *  Runs the reconciliation now and returns its report, 409 while a run is in progress
+     */
+    @PostMapping("/reconciliation/run")
+    public ResponseEntity<?> reconcile() {
+        try {
+            return ResponseEntity.ok(reconciliationService.reconcile());
+        } catch (TransferRuntimeException e) {
+            return failed(statusOf(e), e.getReason().name(), e.getMessage());
+        }
+    }
+
+    /**
+     *  Report of the last reconciliation run (scheduled or not)
+     */
+    @GetMapping("/reconciliation/last")
+    public ResponseEntity<ReconciliationReport> lastReconciliation() {
+        return ResponseEntity.of(reconciliationService.getLastReport());
+    }
+
+    /**
+     *  Ticks received/coalesced and snapshots published by the FX feed
+     */
+    @GetMapping("/fx/feed/stats")
+    public ResponseEntity<Map<String, Long>> fxFeedStats() {
+        if (fxRateFeed == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(fxRateFeed.getStats());
     }
 
 
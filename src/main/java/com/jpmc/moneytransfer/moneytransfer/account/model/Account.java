@@ -1,12 +1,14 @@
 package com.jpmc.moneytransfer.moneytransfer.account.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.jpmc.moneytransfer.moneytransfer.BaseEntity;
+import com.jpmc.moneytransfer.moneytransfer.Money;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
-
-import static com.jpmc.moneytransfer.moneytransfer.CommonHelper.MONEY_SCALE;
-import static com.jpmc.moneytransfer.moneytransfer.CommonHelper.ROUNDING_MODE;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  *  Account Entity
@@ -16,7 +18,8 @@ import static com.jpmc.moneytransfer.moneytransfer.CommonHelper.ROUNDING_MODE;
 public class Account extends BaseEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_seq")
+    @SequenceGenerator(name = "account_seq", sequenceName = "account_seq", allocationSize = 50)
     @Column(name = "account_id")
     private Long id;
 
@@ -29,13 +32,49 @@ public class Account extends BaseEntity {
 
     // used a scale of 4 to avoid rounding errors as much as possible
     @Column(nullable = false, precision = 20, scale = 4)
-    private BigDecimal balance;
+    private Money balance;
+
+    // balance the account was opened with, reconciliation checks balance = opening + credits - debits
+    @ColumnDefault("0")
+    @Column(name = "opening_balance", nullable = false, updatable = false, precision = 20, scale = 4)
+    private Money openingBalance = Money.ZERO;
+
+    // the sender's tier picks the fee schedule
+    @Enumerated(EnumType.STRING)
+    @ColumnDefault("'STANDARD'")
+    @Column(name = "tier", nullable = false, length = 20)
+    private AccountTier tier = AccountTier.STANDARD;
+
+    // 0 for a normal account, otherwise the balance lives in this many AccountBalanceSlot rows
+    @ColumnDefault("0")
+    @Column(name = "balance_slots", nullable = false)
+    private int balanceSlots;
 
+    @JsonIgnore
+    @OneToMany(mappedBy = "account")
+    @OrderBy("slotNo")
+    private List<AccountBalanceSlot> slots = new ArrayList<>();
+
+    // DOUBLE_ENTRY mode: balance is the snapshot as of this ledger_entry id, the entries after it are added on read
+    @ColumnDefault("0")
+    @Column(name = "ledger_position", nullable = false)
+    private long ledgerPosition;
+
+    // bumped on every balance change, OPTIMISTIC transfers fail their commit when it moved underneath them
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
+    // slot locked for the credit in the current transaction (hot accounts only)
+    @Transient
+    private AccountBalanceSlot creditSlot;
 
     public Account(String name, Currency currency, BigDecimal balance) {
         this.name = name;
         this.currency = currency;
-        this.balance = balance;
+        this.balance = Money.of(balance);
+        this.openingBalance = this.balance;
     }
 
     public Account() {
@@ -46,6 +85,18 @@ public class Account extends BaseEntity {
         return id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public AccountTier getTier() {
+        return tier;
+    }
+
+    public void setTier(AccountTier tier) {
+        this.tier = tier;
+    }
+
     public String getName() {
         return name;
     }
@@ -62,33 +113,161 @@ public class Account extends BaseEntity {
         this.currency = currency;
     }
 
-    public BigDecimal getBalance() {
-        return balance;
+    /**
+     *  Balance of the account, for hot accounts this is the sum of the slots.
+     * */
+    public Money getBalance() {
+        if (!isHot()) {
+            return balance;
+        }
+
+        Money total = Money.ZERO;
+        for (AccountBalanceSlot slot : slots) {
+            total = total.plus(slot.getBalance());
+        }
+        return total;
+    }
+
+    public void setBalance(Money balance) {
+        this.balance = balance;
+    }
+
+    public Money getOpeningBalance() {
+        return openingBalance;
     }
 
-    public void setBalance(BigDecimal balance) {
+
+    public long getLedgerPosition() {
+        return ledgerPosition;
+    }
+
+    /**
+     *  Moves the snapshot forward to the balance after all entries up to lastEntryId (LedgerCompactor only).
+     * */
+    public void applyLedgerSnapshot(Money balance, long lastEntryId) {
         this.balance = balance;
+        this.ledgerPosition = lastEntryId;
     }
 
+    public boolean isHot() {
+        return balanceSlots > 0;
+    }
 
-    public void debit(BigDecimal amount) {
+    public int getBalanceSlots() {
+        return balanceSlots;
+    }
+
+    /**
+     *  Moves the balance into the given slots, the balance column stays at zero while the account is hot.
+     * */
+    public void convertToHot(List<AccountBalanceSlot> newSlots) {
+        if (isHot()) {
+            throw new IllegalStateException("Account " + id + " is already hot");
+        }
+        this.slots = new ArrayList<>(newSlots);
+        this.balanceSlots = newSlots.size();
+        this.balance = Money.ZERO;
+    }
+
+    @JsonIgnore
+    public List<AccountBalanceSlot> getSlots() {
+        return slots;
+    }
+
+    @JsonIgnore
+    public AccountBalanceSlot getCreditSlot() {
+        return creditSlot;
+    }
+
+    /**
+     *  Assigns the (already locked) slot the next credit of this hot account goes to.
+     * */
+    public void assignCreditSlot(AccountBalanceSlot creditSlot) {
+        this.creditSlot = creditSlot;
+    }
+
+    /**
+     *  Balance a credit lands on: the assigned slot for hot accounts, otherwise the account balance.
+     * */
+    @JsonIgnore
+    public Money getCreditTargetBalance() {
+        return isHot() ? requireCreditSlot().getBalance() : balance;
+    }
+
+    public void debit(Money amount) {
 
         if (amount == null || amount.signum() <= 0) {
             throw new IllegalArgumentException("Debit amount must be positive");
         }
 
-        if (balance.compareTo(amount) < 0) {
+        if (isHot()) {
+            debitSlots(amount);
+            return;
+        }
+
+        if (balance.isLessThan(amount)) {
             throw new IllegalStateException("Insufficient funds for debit: required " + amount + ", available " + balance);
         }
 
-        this.balance = balance.subtract(amount).setScale(MONEY_SCALE, ROUNDING_MODE);
+        this.balance = balance.minus(amount);
     }
 
-    public void credit(BigDecimal amount) {
+    public void credit(Money amount) {
         if (amount == null || amount.signum() <= 0) {
             throw new IllegalArgumentException("Credit amount must be positive");
         }
 
-        this.balance = balance.add(amount).setScale(MONEY_SCALE, ROUNDING_MODE);
+        if (isHot()) {
+            requireCreditSlot().credit(amount);
+            return;
+        }
+
+        this.balance = balance.plus(amount);
+    }
+
+    /**
+     *  Draws the amount from the slots in order, expects all slots to be locked.
+     *  If a slot runs dry the remaining balance is spread evenly again so later credits and debits keep finding funds.
+     * */
+    private void debitSlots(Money amount) {
+        Money available = getBalance();
+        if (available.isLessThan(amount)) {
+            throw new IllegalStateException("Insufficient funds for debit: required " + amount + ", available " + available);
+        }
+
+        Money remaining = amount;
+        boolean slotRanDry = false;
+        for (AccountBalanceSlot slot : slots) {
+            if (remaining.signum() > 0) {
+                Money take = slot.getBalance().min(remaining);
+                if (take.signum() > 0) {
+                    slot.debit(take);
+                    remaining = remaining.minus(take);
+                }
+            }
+            slotRanDry |= slot.getBalance().signum() == 0;
+        }
+
+        if (slotRanDry) {
+            rebalanceSlots();
+        }
+    }
+
+    private void rebalanceSlots() {
+        Money total = getBalance();
+        Money share = total.divideDown(slots.size());
+        Money remainder = total.minus(share.times(slots.size()));
+
+        for (AccountBalanceSlot slot : slots) {
+            slot.setBalance(share);
+        }
+        slots.get(0).setBalance(share.plus(remainder));
+    }
+
+    private AccountBalanceSlot requireCreditSlot() {
+        if (creditSlot == null) {
+            throw new IllegalStateException("No credit slot locked for hot account " + id);
+        }
+        return creditSlot;
     }
 }
\ No newline at end of file
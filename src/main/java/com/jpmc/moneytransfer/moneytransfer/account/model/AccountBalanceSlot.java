@@ -0,0 +1,70 @@
+package com.jpmc.moneytransfer.moneytransfer.account.model;
+
+import com.jpmc.moneytransfer.moneytransfer.BaseEntity;
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import jakarta.persistence.*;
+
+/**
+ *  One sub-balance (slot) of a hot account. The account balance is the sum of its slots,
+ *  so concurrent credits can each lock a different slot row instead of the account row.
+ * */
+@Entity
+@Table(name = "account_balance_slot",
+        uniqueConstraints = @UniqueConstraint(name = "uk_account_slot", columnNames = {"account_id", "slot_no"}))
+public class AccountBalanceSlot extends BaseEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "slot_id")
+    private Long id;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id", nullable = false)
+    private Account account;
+
+    @Column(name = "slot_no", nullable = false)
+    private int slotNo;
+
+    @Column(nullable = false, precision = 20, scale = 4)
+    private Money balance;
+
+    protected AccountBalanceSlot() {
+    }
+
+    public AccountBalanceSlot(Account account, int slotNo, Money balance) {
+        this.account = account;
+        this.slotNo = slotNo;
+        this.balance = balance;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Account getAccount() {
+        return account;
+    }
+
+    public int getSlotNo() {
+        return slotNo;
+    }
+
+    public Money getBalance() {
+        return balance;
+    }
+
+    public void setBalance(Money balance) {
+        this.balance = balance;
+    }
+
+    public void debit(Money amount) {
+        if (balance.isLessThan(amount)) {
+            throw new IllegalStateException("Insufficient funds in slot " + slotNo + ": required " + amount + ", available " + balance);
+        }
+        this.balance = balance.minus(amount);
+    }
+
+    public void credit(Money amount) {
+        this.balance = balance.plus(amount);
+    }
+}
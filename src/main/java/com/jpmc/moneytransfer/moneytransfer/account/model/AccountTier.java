@@ -0,0 +1,10 @@
+package com.jpmc.moneytransfer.moneytransfer.account.model;
+
+/**
+ *  Pricing tier of an account, fee policies can be limited to one tier (see FeeSchedule)
+ * */
+public enum AccountTier {
+    STANDARD,
+    PREMIUM,
+    CORPORATE
+}
@@ -1,18 +1,23 @@
 package com.jpmc.moneytransfer.moneytransfer.account.model;
 
 import com.jpmc.moneytransfer.moneytransfer.BaseEntity;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.Objects;
 
 /**
- *  Currency Entity
+ *  Currency Entity, reference data so it lives in the second level cache (evicted by CurrencyService on changes)
  * */
 @Entity
 @Table(name = "currency")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "currency")
 public class Currency extends BaseEntity {
 
     @Id
@@ -52,7 +57,8 @@ public class Currency extends BaseEntity {
         if (this == o) return true;
         if (!(o instanceof Currency)) return false;
         Currency other = (Currency) o;
-        return Objects.equals(this.code, other.code);
+        // getter, other can be a lazy proxy whose fields are never set
+        return Objects.equals(this.code, other.getCode());
     }
 
     @Override
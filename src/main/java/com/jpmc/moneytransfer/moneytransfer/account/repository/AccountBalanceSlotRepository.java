@@ -0,0 +1,30 @@
+package com.jpmc.moneytransfer.moneytransfer.account.repository;
+
+import com.jpmc.moneytransfer.moneytransfer.account.model.AccountBalanceSlot;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AccountBalanceSlotRepository extends JpaRepository<AccountBalanceSlot, Long> {
+
+    /**
+     *  Locks every slot of an account in slot order (used for debits).
+     * */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AccountBalanceSlot s WHERE s.account.id = :accountId ORDER BY s.slotNo")
+    List<AccountBalanceSlot> findAllForUpdate(@Param("accountId") Long accountId);
+
+    /**
+     *  Locks a single slot of an account (used for credits).
+     * */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AccountBalanceSlot s WHERE s.account.id = :accountId AND s.slotNo = :slotNo")
+    Optional<AccountBalanceSlot> findForUpdate(@Param("accountId") Long accountId, @Param("slotNo") int slotNo);
+}
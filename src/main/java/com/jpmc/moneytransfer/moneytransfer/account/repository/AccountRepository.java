@@ -4,9 +4,14 @@ import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AccountRepository  extends JpaRepository<Account, Long>{
@@ -17,4 +22,56 @@ public interface AccountRepository  extends JpaRepository<Account, Long>{
 
     @Query("SELECT a FROM Account a WHERE a.id = :id")
     Optional<Account> findUnlockedById(@Param("id") Long id);
+
+    /**
+     *  SELECT ... FOR SHARE, for DOUBLE_ENTRY credits: any number of them can append to the same receiver at once,
+     *  a FOR UPDATE (a debit or the LedgerCompactor) waits until they committed.
+     * */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT a FROM Account a WHERE a.id = :id")
+    Optional<Account> findByIdForShare(@Param("id") Long id);
+
+    /**
+     *  Locks all given accounts with a single ordered SELECT ... FOR UPDATE (ascending id to stay deadlock free).
+     * */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.id IN :ids ORDER BY a.id")
+    List<Account> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     *  Reads the account without a row lock, its version is verified at commit even if it wasn't changed.
+     * */
+    @Lock(LockModeType.OPTIMISTIC)
+    @Query("SELECT a FROM Account a WHERE a.id = :id")
+    Optional<Account> findVersionCheckedById(@Param("id") Long id);
+
+    /**
+     *  Single statement debit, only applies when the balance covers the amount. Returns the affected row count.
+     *  Native so the amounts bind as plain decimals, in JPQL they'd be typed after the Money converted balance.
+     * */
+    @Modifying
+    @Query(value = "UPDATE account SET balance = balance - :amount, version = version + 1, updated_at = :now " +
+            "WHERE account_id = :id AND balance_slots = 0 AND balance >= :amount", nativeQuery = true)
+    int debitIfSufficient(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
+    /**
+     *  Single statement credit, only applies while the new balance stays within max. Returns the affected row count.
+     * */
+    @Modifying
+    @Query(value = "UPDATE account SET balance = balance + :amount, version = version + 1, updated_at = :now " +
+            "WHERE account_id = :id AND balance_slots = 0 AND balance + :amount <= :max", nativeQuery = true)
+    int creditIfWithinLimit(@Param("id") Long id, @Param("amount") BigDecimal amount,
+                            @Param("max") BigDecimal max, @Param("now") LocalDateTime now);
+
+    /**
+     *  The row's slot count, read past the persistence context.
+     * */
+    @Query(value = "SELECT balance_slots FROM account WHERE account_id = :id", nativeQuery = true)
+    Optional<Integer> findBalanceSlots(@Param("id") Long id);
+
+    @Query("SELECT a FROM Account a JOIN FETCH a.currency")
+    List<Account> findAllWithCurrency();
+
+    @Query("SELECT a.id FROM Account a WHERE a.balanceSlots > 0")
+    List<Long> findHotAccountIds();
 }
@@ -1,13 +1,19 @@
 package com.jpmc.moneytransfer.moneytransfer.account.repository;
 
 import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+
 @Repository
 public interface CurrencyRepository extends JpaRepository<Currency, String> {
 
+    // query cache, the currency itself then comes from the second level cache
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     Optional<Currency> findByCode(String code);
 }
@@ -0,0 +1,51 @@
+package com.jpmc.moneytransfer.moneytransfer.account.service;
+
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ *  Writes to currency reference data go through here so the second level and query caches are invalidated.
+ * */
+@Service
+public class CurrencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(CurrencyService.class);
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Transactional
+    public Currency createCurrency(String code, String name) {
+        Currency saved = currencyRepository.save(new Currency(code, name));
+
+        // after commit, evicting earlier would let a concurrent reader cache the old state again
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictCurrencyCache();
+            }
+        });
+        return saved;
+    }
+
+    /**
+     *  Drops cached currencies and cached currency lookups (e.g. a cached "not found" for a new code).
+     * */
+    public void evictCurrencyCache() {
+        entityManagerFactory.getCache().evict(Currency.class);
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictDefaultQueryRegion();
+        log.info("Currency cache evicted");
+    }
+}
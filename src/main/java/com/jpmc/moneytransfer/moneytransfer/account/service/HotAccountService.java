@@ -0,0 +1,157 @@
+package com.jpmc.moneytransfer.moneytransfer.account.service;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.AccountBalanceSlot;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountBalanceSlotRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferExecutionMode;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ *  Opt-in "hot account" mode: the balance of an account is split over N slot rows.
+ *  Credits lock one random slot instead of the account row, debits lock all slots.
+ *  Slot locks are always taken after the account row locks and in account id order to keep the deadlock free ordering.
+ */
+@Service
+public class HotAccountService {
+
+    public static final int MAX_SLOTS = 256;
+
+    private static final Logger log = LoggerFactory.getLogger(HotAccountService.class);
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private AccountBalanceSlotRepository slotRepository;
+
+    // DOUBLE_ENTRY credits only take a shared lock on the receiver, slots would have nothing left to spread
+    @Value("${transfer.execution-mode:PESSIMISTIC}")
+    private TransferExecutionMode executionMode;
+
+    // ids of committed hot accounts, accounts are never turned back so this only grows
+    private final Set<Long> hotAccountIds = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        hotAccountIds.addAll(accountRepository.findHotAccountIds());
+        log.info("Loaded {} hot accounts", hotAccountIds.size());
+    }
+
+    /**
+     *  True when the account is known to be hot, in which case credits don't need the account row lock.
+     * */
+    public boolean isHot(Long accountId) {
+        return hotAccountIds.contains(accountId);
+    }
+
+    /**
+     *  Records an account whose row says it's hot, made hot by another node after this one loaded its set.
+     * */
+    public void markHot(Long accountId) {
+        hotAccountIds.add(accountId);
+    }
+
+    /**
+     *  Splits the balance of an account evenly across the given number of slots.
+     * */
+    @Transactional
+    public Account enableHotMode(Long accountId, int slotCount) {
+        if (slotCount < 1 || slotCount > MAX_SLOTS) {
+            throw new IllegalArgumentException("Slot count must be between 1 and " + MAX_SLOTS);
+        }
+        if (executionMode == TransferExecutionMode.DOUBLE_ENTRY) {
+            throw new IllegalStateException("Hot accounts aren't supported in DOUBLE_ENTRY mode");
+        }
+
+        Account account = accountRepository.findById(accountId)
+                .orElseThrow(() -> new IllegalArgumentException("Account not found: " + accountId));
+
+        Money balance = account.getBalance();
+        Money share = balance.divideDown(slotCount);
+        Money remainder = balance.minus(share.times(slotCount));
+
+        List<AccountBalanceSlot> slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new AccountBalanceSlot(account, i, i == 0 ? share.plus(remainder) : share));
+        }
+
+        account.convertToHot(slots);
+        slotRepository.saveAll(slots);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                hotAccountIds.add(accountId);
+            }
+        });
+
+        log.info("Account {} is now hot with {} slots", accountId, slotCount);
+        return account;
+    }
+
+    /**
+     *  Locks the slots a transfer needs: every slot of a hot sender, one random slot of a hot receiver.
+     *  Must run inside the transfer transaction, after the account rows are locked.
+     * */
+    public void lockSlotsOrdered(Account sender, Account receiver) {
+        if (sender.getId() < receiver.getId()) {
+            lockDebitSlots(sender);
+            lockCreditSlot(receiver);
+        } else {
+            lockCreditSlot(receiver);
+            lockDebitSlots(sender);
+        }
+    }
+
+    /**
+     *  Batch variant: locks every slot of every hot account, the accounts must be in ascending id order.
+     *  Any locked slot can then take a credit, see {@link #assignLockedCreditSlot(Account)}.
+     * */
+    public void lockAllSlotsOrdered(List<Account> accountsOrdered) {
+        for (Account account : accountsOrdered) {
+            lockDebitSlots(account);
+        }
+    }
+
+    /**
+     *  Picks a random slot of a hot account whose slots are all locked already.
+     * */
+    public void assignLockedCreditSlot(Account account) {
+        if (account.isHot()) {
+            List<AccountBalanceSlot> slots = account.getSlots();
+            account.assignCreditSlot(slots.get(ThreadLocalRandom.current().nextInt(slots.size())));
+        }
+    }
+
+    private void lockDebitSlots(Account account) {
+        if (account.isHot()) {
+            slotRepository.findAllForUpdate(account.getId());
+        }
+    }
+
+    private void lockCreditSlot(Account account) {
+        if (!account.isHot()) {
+            return;
+        }
+        int slotNo = ThreadLocalRandom.current().nextInt(account.getBalanceSlots());
+        AccountBalanceSlot slot = slotRepository.findForUpdate(account.getId(), slotNo)
+                .orElseThrow(() -> new IllegalStateException("Missing slot " + slotNo + " for hot account " + account.getId()));
+        account.assignCreditSlot(slot);
+    }
+}
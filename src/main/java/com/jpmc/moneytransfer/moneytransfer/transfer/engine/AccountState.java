@@ -0,0 +1,24 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.engine;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.AccountTier;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+
+/**
+ *  In-memory account of the ledger engine. The balance is only read and written by the partition thread
+ *  that owns the account, the currency and tier are fixed while the engine runs.
+ * */
+final class AccountState {
+
+    final long id;
+    final Currency currency;
+    final AccountTier tier;
+    Money balance;
+
+    AccountState(long id, Currency currency, AccountTier tier, Money balance) {
+        this.id = id;
+        this.currency = currency;
+        this.tier = tier;
+        this.balance = balance;
+    }
+}
@@ -0,0 +1,583 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.engine;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.journal.TransferEventJournal;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.LedgerProjectionCheckpoint;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.LedgerProjectionCheckpointRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.FXConversionService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.FeeService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.FxQuote;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferOutboxService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferRules;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferRuntimeException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ *  IN_MEMORY execution mode: account balances live in memory, partitioned by account id over single writer
+ *  threads (LMAX style, no locks on the balances). A transfer is priced on the caller's thread, sequenced
+ *  through the sender partition's ring, journaled and fsynced before the caller gets its answer, and written
+ *  to the account/transfer tables later by the LedgerProjector.
+ *  On startup balances are loaded from the tables and the journal after the projection checkpoints is replayed
+ *  on top of them; transfers a crash left between their debit and credit are finished. Journal segments are
+ *  deleted once projected, so a start only reads what isn't projected yet and the transfers still open.
+ *  While the engine runs it is the only writer of balances, hot accounts are not supported.
+ * */
+@Component
+@ConditionalOnProperty(name = "transfer.execution-mode", havingValue = "IN_MEMORY")
+public class LedgerEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerEngine.class);
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private LedgerProjectionCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private FeeService feeService;
+
+    @Autowired
+    private FXConversionService fxConversionService;
+
+    @Autowired
+    private TransferRules transferRules;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransferEventJournal transferEventJournal;
+
+    @Autowired
+    private TransferOutboxService transferOutboxService;
+
+    @Value("${transfer.engine.partitions:4}")
+    private int partitionCount;
+
+    // capacity of each ring, also the limit of transfers in flight over the whole engine
+    @Value("${transfer.engine.ring-size:1024}")
+    private int ringSize;
+
+    // steps per group commit (one fsync)
+    @Value("${transfer.engine.max-batch:256}")
+    private int maxBatch;
+
+    @Value("${transfer.engine.journal-dir:./data/ledger-journal}")
+    private String journalDir;
+
+    // journal files roll to a new segment at this size, projected segments are deleted
+    @Value("${transfer.engine.journal-segment-bytes:67108864}")
+    private long journalSegmentBytes;
+
+    @Value("${transfer.engine.fsync:true}")
+    private boolean fsync;
+
+    @Value("${transfer.engine.projection-batch-size:1000}")
+    private int projectionBatchSize;
+
+    // how long a caller waits for the outcome of its transfer
+    @Value("${transfer.engine.transfer-timeout-ms:30000}")
+    private long transferTimeoutMs;
+
+    private final Map<Long, AccountState> accounts = new ConcurrentHashMap<>();
+    private final Map<String, Currency> currencies = new ConcurrentHashMap<>();
+    private final AtomicLong nextTransferId = new AtomicLong();
+    private LedgerPartition[] partitions;
+    private LedgerProjector projector;
+    private Semaphore inFlight;
+    private TransactionTemplate readTransactionTemplate;
+    private volatile boolean accepting;
+    private long replayedAtStart;
+    private int resumedAtStart;
+    private boolean stopped;
+
+    @PostConstruct
+    public void start() throws IOException {
+        inFlight = new Semaphore(ringSize);
+        readTransactionTemplate = new TransactionTemplate(transactionManager);
+        readTransactionTemplate.setReadOnly(true);
+        Path dir = Paths.get(journalDir);
+        Files.createDirectories(dir);
+        checkJournalFiles(dir);
+        LedgerJournal[] journals = new LedgerJournal[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            journals[i] = new LedgerJournal(dir, i, journalSegmentBytes, fsync);
+        }
+
+        TransactionTemplate projectionTemplate = new TransactionTemplate(transactionManager);
+        projectionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        projector = new LedgerProjector(jdbcTemplate, projectionTemplate, transferEventJournal,
+                transferOutboxService, journals, projectionBatchSize);
+
+        readTransactionTemplate.executeWithoutResult(status -> {
+            for (Account account : accountRepository.findAllWithCurrency()) {
+                accounts.put(account.getId(), toState(account));
+            }
+        });
+
+        Map<Integer, Long> checkpoints = loadCheckpoints();
+        Recovery recovery = new Recovery();
+        partitions = new LedgerPartition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new LedgerPartition(i, this, journals[i], transferRules, ringSize, maxBatch);
+            recovery.replay(i, journals[i], checkpoints.getOrDefault(i, 0L));
+        }
+        recovery.findOpenTransfers();
+
+        Long maxStoredId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(transfer_id), 0) FROM transfer", Long.class);
+        nextTransferId.set(Math.max(maxStoredId == null ? 0 : maxStoredId, recovery.maxTransferId) + 1);
+
+        projector.start();
+        for (LedgerPartition partition : partitions) {
+            partition.start();
+        }
+        accepting = true;
+        replayedAtStart = recovery.replayedEvents;
+        resumedAtStart = recovery.resumeOpenTransfers();
+
+        log.info("Ledger engine started: {} partitions, {} accounts, {} journal events replayed, {} transfers resumed",
+                partitionCount, accounts.size(), replayedAtStart, resumedAtStart);
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException, IOException {
+        if (stopped || partitions == null) {
+            return;
+        }
+        stopped = true;
+        accepting = false;
+        if (!inFlight.tryAcquire(ringSize, 30, TimeUnit.SECONDS)) {
+            log.warn("Ledger engine stopping with transfers still in flight, they are resumed on the next start");
+        }
+        for (LedgerPartition partition : partitions) {
+            partition.stop();
+        }
+        projector.stop();
+        for (LedgerPartition partition : partitions) {
+            partition.journal().close();
+        }
+        log.info("Ledger engine stopped, {} events projected", projector.projectedEvents());
+    }
+
+    /**
+     *  Blocking transfer with the same contract as TransferService.transferMoney.
+     * */
+    public Long transfer(TransferRequestDTO dto) throws TransferException {
+        LedgerOutcome outcome = await(submit(dto));
+        if (!outcome.isCompleted()) {
+            throw outcome.failure();
+        }
+        return outcome.transferId();
+    }
+
+    /**
+     *  Waits at most transfer-timeout-ms for a submitted transfer. A transfer that timed out may still complete.
+     * */
+    public LedgerOutcome await(CompletableFuture<LedgerOutcome> outcome) {
+        try {
+            // on a copy, the partition still completes the original and gives back its in-flight permit
+            return outcome.copy().orTimeout(transferTimeoutMs, TimeUnit.MILLISECONDS).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TransferRuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof TimeoutException) {
+                throw new TransferRuntimeException(TransferRuntimeException.Reason.UNKNOWN_ERROR,
+                        "No outcome from the ledger engine within " + transferTimeoutMs + " ms", e.getCause());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     *  Prices and validates the transfer on the calling thread and hands it to the sender's partition.
+     *  Blocks only when the engine already has ring-size transfers in flight.
+     * */
+    public CompletableFuture<LedgerOutcome> submit(TransferRequestDTO dto) {
+        if (!accepting) {
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.UNKNOWN_ERROR, "Ledger engine is not running");
+        }
+
+        Currency currency = currency(dto.getCurrency());
+        if (currency == null) {
+            return CompletableFuture.completedFuture(new LedgerOutcome(null, new TransferException(
+                    TransferException.Reason.INVALID_CURRENCY,
+                    "Unsupported currency code: " + dto.getCurrency())));
+        }
+
+        TransferOrder order = new TransferOrder(nextTransferId.getAndIncrement(),
+                dto.getSenderAccountId(), dto.getReceiverAccountId(), Money.of(dto.getAmount()), null,
+                null, null, null, null, currency.getCode(), null, null, System.currentTimeMillis(), null, null);
+        try {
+            transferRules.checkSelfTransfer(dto.getSenderAccountId(), dto.getReceiverAccountId());
+            AccountState sender = accountOrThrow(dto.getSenderAccountId(), "Sender");
+            AccountState receiver = accountOrThrow(dto.getReceiverAccountId(), "Receiver");
+            Money fee = calculateFee(order.amount(), sender, receiver);
+            order = new TransferOrder(order.transferId(), sender.id, receiver.id, order.amount(), fee,
+                    null, null, null, null, order.currency(), sender.currency.getCode(), receiver.currency.getCode(),
+                    order.transferTime(), null, null);
+
+            transferRules.checkSenderCurrency(sender.currency, currency);
+            order = price(order, sender.currency, receiver.currency);
+            return dispatch(LedgerStep.Kind.TRANSFER, order, new CompletableFuture<>());
+        } catch (TransferException e) {
+            return dispatch(LedgerStep.Kind.REJECT, order.rejected(e.getReason().name(), e.getMessage()),
+                    new CompletableFuture<>());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "accepting", accepting,
+                "partitions", partitionCount,
+                "accounts", accounts.size(),
+                "inFlight", ringSize - inFlight.availablePermits(),
+                "projectionBacklog", projector.pendingEvents(),
+                "projectedEvents", projector.projectedEvents(),
+                "replayedAtStart", replayedAtStart,
+                "resumedAtStart", resumedAtStart,
+                "journalSegments", Arrays.stream(partitions).mapToInt(partition -> partition.journal().segmentCount()).sum());
+    }
+
+    /**
+     *  Waits until nothing is in flight and everything journaled is in the tables. Returns false on timeout.
+     * */
+    public boolean awaitProjection(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (inFlight.availablePermits() < ringSize || projector.pendingEvents() > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    // ---- used by the partitions
+
+    LedgerPartition partitionOf(long accountId) {
+        return partitions[Math.floorMod(Long.hashCode(accountId), partitions.length)];
+    }
+
+    AccountState account(long accountId) {
+        return accounts.get(accountId);
+    }
+
+    void project(int partition, long segment, List<LedgerEvent> events, long endOffset) {
+        projector.publish(new LedgerProjector.Batch(partition, segment, events, endOffset, false));
+    }
+
+    /**
+     *  Completes a transfer with its final order, rejected if the order carries a failure reason.
+     * */
+    void finish(LedgerStep step, TransferOrder order) {
+        TransferException failure = order.failureReason() == null ? null
+                : new TransferException(TransferException.Reason.valueOf(order.failureReason()), order.failureMessage());
+        if (step.done().complete(new LedgerOutcome(order.transferId(), failure))) {
+            inFlight.release();
+        }
+    }
+
+    /**
+     *  The permit of a transfer goes back once, whichever of its steps completes it first.
+     * */
+    void fail(LedgerStep step, RuntimeException e) {
+        if (step.done().completeExceptionally(e)) {
+            inFlight.release();
+        }
+    }
+
+    /**
+     *  A partition failed: no new transfers until a restart has replayed the journals.
+     * */
+    void halt() {
+        accepting = false;
+    }
+
+    // ---- internals
+
+    private CompletableFuture<LedgerOutcome> dispatch(LedgerStep.Kind kind, TransferOrder order, CompletableFuture<LedgerOutcome> done) {
+        LedgerPartition partition = partitionOf(order.fromAccountId());
+        if (partition.isFailed()) {
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.UNKNOWN_ERROR,
+                    "Ledger partition " + partition.index() + " is down");
+        }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.UNKNOWN_ERROR,
+                    "Interrupted while waiting for the ledger engine", e);
+        }
+        partition.publish(new LedgerStep(kind, order, done));
+        return done;
+    }
+
+    private TransferOrder price(TransferOrder order, Currency from, Currency to) throws TransferException {
+        Money debit = order.amount().plus(order.feeApplied());
+        BigDecimal fxRate = null;
+        Long fxRateVersion = null;
+        Money credit = order.amount();
+        if (!from.equals(to)) {
+            FxQuote quote = fxConversionService.quote(from, to);
+            fxRate = quote.rate();
+            fxRateVersion = quote.version();
+            credit = order.amount().multiplyRate(quote.rateUnits());
+        }
+        return new TransferOrder(order.transferId(), order.fromAccountId(), order.toAccountId(), order.amount(),
+                order.feeApplied(), fxRate, fxRateVersion, debit, credit, order.currency(), order.currencyFrom(), order.currencyTo(),
+                order.transferTime(), null, null);
+    }
+
+    private Money calculateFee(Money amount, AccountState sender, AccountState receiver) {
+        try {
+            Money fee = feeService.calculateFee(amount, sender.currency.getCode(), receiver.currency.getCode(),
+                    sender.tier);
+            if (fee == null || fee.signum() < 0) {
+                throw new IllegalArgumentException("Fee must be non-null and non-negative");
+            }
+            return fee;
+        } catch (Exception e) {
+            throw new TransferRuntimeException(
+                    TransferRuntimeException.Reason.FEE_CALCULATION_FAILED,
+                    "Failed to calculate transfer fee", e);
+        }
+    }
+
+    private Currency currency(String code) {
+        Currency currency = currencies.get(code);
+        if (currency == null) {
+            currency = currencyRepository.findByCode(code).orElse(null);
+            if (currency != null) {
+                currencies.putIfAbsent(code, currency);
+            }
+        }
+        return currency;
+    }
+
+    /**
+     *  Accounts created after startup are loaded on first use. The engine never touched them, so the table
+     *  balance is current.
+     * */
+    private AccountState accountOrThrow(Long accountId, String role) throws TransferException {
+        AccountState state = accounts.get(accountId);
+        if (state != null) {
+            return state;
+        }
+
+        AccountState loaded = readTransactionTemplate.execute(status ->
+                accountRepository.findUnlockedById(accountId).map(this::toState).orElse(null));
+        if (loaded == null) {
+            throw new TransferException(
+                    TransferException.Reason.ACCOUNT_NOT_FOUND,
+                    role + " account not found: " + accountId);
+        }
+        AccountState existing = accounts.putIfAbsent(accountId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private AccountState toState(Account account) {
+        if (account.isHot()) {
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.INVALID_ACCOUNT_STATE,
+                    "Hot account " + account.getId() + " is not supported by the IN_MEMORY engine");
+        }
+        Currency currency = Hibernate.unproxy(account.getCurrency(), Currency.class);
+        return new AccountState(account.getId(), currency, account.getTier(), account.getBalance());
+    }
+
+    private Map<Integer, Long> loadCheckpoints() {
+        Map<Integer, Long> offsets = new HashMap<>();
+        for (LedgerProjectionCheckpoint checkpoint : checkpointRepository.findAll()) {
+            offsets.put(checkpoint.getPartitionNo(), checkpoint.getJournalOffset());
+        }
+        List<LedgerProjectionCheckpoint> missing = new ArrayList<>();
+        for (int i = 0; i < partitionCount; i++) {
+            if (!offsets.containsKey(i)) {
+                missing.add(new LedgerProjectionCheckpoint(i, 0L));
+            }
+        }
+        if (!missing.isEmpty()) {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> checkpointRepository.saveAll(missing));
+        }
+        return offsets;
+    }
+
+    /**
+     *  Account ownership can move when the partition count changes, but a journal must never be left unread.
+     * */
+    private void checkJournalFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.mapToInt(file -> LedgerJournal.partitionOf(file.getFileName().toString()))
+                    .filter(index -> index >= partitionCount)
+                    .findAny()
+                    .ifPresent(index -> {
+                        throw new IllegalStateException("Journal " + index + " found in " + dir
+                                + " but only " + partitionCount + " partitions are configured");
+                    });
+        }
+    }
+
+    /**
+     *  Replays the journals: events after a partition's checkpoint are applied to the loaded balances and queued
+     *  for projection, and the kept segments are scanned for transfers that stopped between two partitions. The
+     *  final event of a transfer may be in a segment that is deleted already, its transfer row is then in the table.
+     * */
+    private final class Recovery {
+
+        private record Journaled(TransferOrder order, int partition, long segment) {
+        }
+
+        private final Map<Long, Journaled> awaitingCredit = new HashMap<>();
+        private final Map<Long, Journaled> awaitingRefund = new HashMap<>();
+        private final Set<Long> credited = new HashSet<>();
+        private final Set<Long> refunded = new HashSet<>();
+        private final List<Journaled> openCredits = new ArrayList<>();
+        private final List<Journaled> openRefunds = new ArrayList<>();
+        private long maxTransferId;
+        private long replayedEvents;
+
+        void replay(int partition, LedgerJournal journal, long checkpoint) throws IOException {
+            List<LedgerEvent> unprojected = new ArrayList<>();
+            long end = journal.replay((event, segment, endOffset) -> {
+                TransferOrder order = event.order();
+                maxTransferId = Math.max(maxTransferId, order.transferId());
+                switch (event.type()) {
+                    case DEBIT -> awaitingCredit.put(order.transferId(), new Journaled(order, partition, segment));
+                    case CREDIT -> credited.add(order.transferId());
+                    case CREDIT_REJECTED -> {
+                        credited.add(order.transferId());
+                        awaitingRefund.put(order.transferId(), new Journaled(order, partition, segment));
+                    }
+                    case REFUND -> refunded.add(order.transferId());
+                    default -> {
+                    }
+                }
+                if (endOffset > checkpoint) {
+                    apply(event);
+                    unprojected.add(event);
+                }
+            });
+            replayedEvents += unprojected.size();
+            if (!unprojected.isEmpty()) {
+                projector.publish(new LedgerProjector.Batch(partition, journal.segment(), unprojected, end, true));
+            }
+        }
+
+        /**
+         *  After all journals are replayed: transfers debited (or credit rejected) without their next step in the
+         *  journals or a row in the table. Their segments are kept until the resumed steps are projected.
+         * */
+        void findOpenTransfers() {
+            awaitingCredit.values().removeIf(journaled -> credited.contains(journaled.order().transferId()));
+            awaitingRefund.values().removeIf(journaled -> refunded.contains(journaled.order().transferId()));
+            Set<Long> inTable = transfersInTable(awaitingCredit.keySet(), awaitingRefund.keySet());
+            for (Journaled journaled : awaitingCredit.values()) {
+                if (!inTable.contains(journaled.order().transferId())) {
+                    openCredits.add(journaled);
+                }
+            }
+            for (Journaled journaled : awaitingRefund.values()) {
+                if (!inTable.contains(journaled.order().transferId())) {
+                    openRefunds.add(journaled);
+                }
+            }
+            for (Journaled journaled : openCredits) {
+                projector.keepOpen(journaled.order().transferId(), journaled.partition(), journaled.segment());
+            }
+            for (Journaled journaled : openRefunds) {
+                projector.keepOpen(journaled.order().transferId(), journaled.partition(), journaled.segment());
+            }
+        }
+
+        private Set<Long> transfersInTable(Set<Long> awaitingCredit, Set<Long> awaitingRefund) {
+            List<Long> ids = new ArrayList<>(awaitingCredit);
+            ids.addAll(awaitingRefund);
+            Set<Long> found = new HashSet<>();
+            for (int from = 0; from < ids.size(); from += 1000) {
+                List<Long> chunk = ids.subList(from, Math.min(from + 1000, ids.size()));
+                String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+                found.addAll(jdbcTemplate.queryForList(
+                        "SELECT transfer_id FROM transfer WHERE transfer_id IN (" + placeholders + ")",
+                        Long.class, chunk.toArray()));
+            }
+            return found;
+        }
+
+        private void apply(LedgerEvent event) {
+            TransferOrder order = event.order();
+            switch (event.type()) {
+                case DEBIT -> adjust(order.fromAccountId(), order.debitAmount().negate());
+                case CREDIT -> adjust(order.toAccountId(), order.creditAmount());
+                case REFUND -> adjust(order.fromAccountId(), order.debitAmount());
+                default -> {
+                }
+            }
+        }
+
+        private void adjust(long accountId, Money delta) {
+            AccountState state = accounts.get(accountId);
+            if (state == null) {
+                throw new IllegalStateException("Journal references account " + accountId + " which is not in the account table");
+            }
+            state.balance = state.balance.plus(delta);
+        }
+
+        /**
+         *  Nobody waits for these anymore, the steps just have to run so money isn't left in flight.
+         * */
+        int resumeOpenTransfers() {
+            for (Journaled journaled : openCredits) {
+                resume(LedgerStep.Kind.CREDIT, journaled.order(), journaled.order().toAccountId());
+            }
+            for (Journaled journaled : openRefunds) {
+                resume(LedgerStep.Kind.REFUND, journaled.order(), journaled.order().fromAccountId());
+            }
+            return openCredits.size() + openRefunds.size();
+        }
+
+        private void resume(LedgerStep.Kind kind, TransferOrder order, long accountId) {
+            inFlight.acquireUninterruptibly();
+            partitionOf(accountId).publish(new LedgerStep(kind, order, new CompletableFuture<>()));
+        }
+    }
+}
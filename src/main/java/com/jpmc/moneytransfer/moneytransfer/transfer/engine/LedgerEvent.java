@@ -0,0 +1,49 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.engine;
+
+import java.io.*;
+
+/**
+ *  One journaled effect of a partition. Every event carries the whole transfer so projection and recovery only
+ *  ever need the journal.
+ * */
+record LedgerEvent(Type type, TransferOrder order) {
+
+    enum Type {
+        // sender debited (sender partition)
+        DEBIT,
+        // receiver credited, transfer COMPLETED (receiver partition)
+        CREDIT,
+        // rejected before any balance moved, transfer FAILED (sender partition)
+        REJECTED,
+        // receiver can't take the credit, a REFUND goes back to the sender (receiver partition)
+        CREDIT_REJECTED,
+        // debit given back to the sender, transfer FAILED (sender partition)
+        REFUND
+    }
+
+    /**
+     *  Transfer rows are written once the transfer reached its final state.
+     * */
+    boolean isFinal() {
+        return type == Type.CREDIT || type == Type.REJECTED || type == Type.REFUND;
+    }
+
+    byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type.ordinal());
+            order.writeTo(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static LedgerEvent decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Type type = Type.values()[in.readUnsignedByte()];
+        return new LedgerEvent(type, TransferOrder.readFrom(in));
+    }
+}
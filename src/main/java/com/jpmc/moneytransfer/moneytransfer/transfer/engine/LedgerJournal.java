@@ -0,0 +1,235 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ *  Append only journal of one engine partition, written only by that partition's thread.
+ *  Records are [length][crc32][payload]. A torn or corrupt record at the tail (crash in the middle of a write)
+ *  ends the journal and is cut off when the journal is opened.
+ *  Offsets run on over segment files named after the offset they start at. A new segment is started once the
+ *  current one has segment-bytes, always between two appends, so the records of one group commit share a segment.
+ *  Closed segments are deleted by the projector once they are projected and no open transfer needs them.
+ * */
+final class LedgerJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerJournal.class);
+
+    private static final int HEADER_BYTES = 8;
+    private static final Pattern FILE_NAME = Pattern.compile("journal-(\\d+)(?:-(\\d{20}))?\\.log");
+
+    interface Replay {
+        // segment is the offset the event's segment starts at, endOffset the journal offset right after its record
+        void accept(LedgerEvent event, long segment, long endOffset);
+    }
+
+    private final Path dir;
+    private final int partition;
+    private final boolean fsync;
+    private final long segmentBytes;
+    // start offset -> file, the last one is appended to
+    private final ConcurrentSkipListMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    private FileChannel channel;
+    private long segmentStart;
+    private long position;
+
+    LedgerJournal(Path dir, int partition, long segmentBytes, boolean fsync) throws IOException {
+        this.dir = dir;
+        this.partition = partition;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+
+        Path single = dir.resolve("journal-" + partition + ".log");
+        if (Files.exists(single)) {
+            // journal from before segments, it starts at offset 0
+            Files.move(single, segmentPath(0));
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(file -> {
+                Matcher name = FILE_NAME.matcher(file.getFileName().toString());
+                if (name.matches() && name.group(2) != null && Integer.parseInt(name.group(1)) == partition) {
+                    segments.put(Long.parseLong(name.group(2)), file);
+                }
+            });
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, segmentPath(0));
+        }
+        segmentStart = segments.lastKey();
+        channel = FileChannel.open(segments.lastEntry().getValue(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     *  Partition a journal file in dir belongs to, -1 for any other file.
+     * */
+    static int partitionOf(String fileName) {
+        Matcher name = FILE_NAME.matcher(fileName);
+        return name.matches() ? Integer.parseInt(name.group(1)) : -1;
+    }
+
+    /**
+     *  Reads every valid record of every segment, then positions the journal for appending after the last one.
+     *  Only the last segment may end in a torn record, anything else unreadable fails the replay.
+     * */
+    long replay(Replay replay) throws IOException {
+        long expectedStart = segments.firstKey();
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            long start = segment.getKey();
+            if (start != expectedStart) {
+                throw new IOException("Journal segment " + segment.getValue() + " should start at offset " + expectedStart);
+            }
+            if (start == segmentStart) {
+                long valid = read(channel, start, replay);
+                if (valid < channel.size()) {
+                    log.warn("Journal {} has {} unreadable bytes at offset {}, truncating",
+                            segment.getValue(), channel.size() - valid, start + valid);
+                    channel.truncate(valid);
+                }
+                position = start + valid;
+            } else {
+                try (FileChannel in = FileChannel.open(segment.getValue(), StandardOpenOption.READ)) {
+                    long valid = read(in, start, replay);
+                    if (valid < in.size()) {
+                        throw new IOException("Journal segment " + segment.getValue() + " is corrupt at offset " + (start + valid));
+                    }
+                    expectedStart = start + valid;
+                }
+            }
+        }
+        return position;
+    }
+
+    private long read(FileChannel in, long start, Replay replay) throws IOException {
+        long size = in.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        while (offset + HEADER_BYTES <= size) {
+            header.clear();
+            in.read(header, offset);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || offset + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            in.read(payload, offset + HEADER_BYTES);
+            crc.reset();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            offset += HEADER_BYTES + length;
+            replay.accept(LedgerEvent.decode(payload.array()), start, start + offset);
+        }
+        return offset;
+    }
+
+    /**
+     *  Writes the records, durable only after force(). Returns the offset after the last record.
+     * */
+    long append(List<LedgerEvent> events) throws IOException {
+        if (position - segmentStart >= segmentBytes) {
+            roll();
+        }
+        CRC32 crc = new CRC32();
+        int total = 0;
+        byte[][] payloads = new byte[events.size()][];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = events.get(i).encode();
+            total += HEADER_BYTES + payloads[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (byte[] payload : payloads) {
+            crc.reset();
+            crc.update(payload);
+            buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position - segmentStart);
+        }
+        return position;
+    }
+
+    /**
+     *  Start offset of the segment the last append went to.
+     * */
+    long segment() {
+        return segmentStart;
+    }
+
+    void force() throws IOException {
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     *  End offset of the oldest segment, Long.MAX_VALUE while it is the one appended to.
+     * */
+    long firstSegmentEnd() {
+        Long next = segments.higherKey(segments.firstKey());
+        return next == null ? Long.MAX_VALUE : next;
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     *  Deletes the segments that end at or before offset, oldest first. Never the one appended to.
+     * */
+    int deleteSegmentsBefore(long offset) throws IOException {
+        int deleted = 0;
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            Long next = segments.higherKey(segment.getKey());
+            if (next == null || next > offset) {
+                break;
+            }
+            Files.deleteIfExists(segment.getValue());
+            segments.remove(segment.getKey());
+            deleted++;
+        }
+        return deleted;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void roll() throws IOException {
+        // nothing is appended to the current segment anymore, readers find its end at the start of the next
+        Path next = segmentPath(position);
+        FileChannel nextChannel = FileChannel.open(next,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.close();
+        channel = nextChannel;
+        segmentStart = position;
+        segments.put(position, next);
+        log.debug("Ledger journal of partition {} rolled to {}", partition, next.getFileName());
+    }
+
+    private Path segmentPath(long start) {
+        return dir.resolve(String.format("journal-%d-%020d.log", partition, start));
+    }
+}
@@ -0,0 +1,14 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.engine;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+
+/**
+ *  Result of a transfer submitted to the ledger engine, only handed out once it is durable in the journal.
+ *  transferId is null when the request was rejected before it got a transfer record (unknown currency).
+ * */
+public record LedgerOutcome(Long transferId, TransferException failure) {
+
+    public boolean isCompleted() {
+        return failure == null;
+    }
+}
@@ -0,0 +1,200 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.engine;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferRules;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  Single writer for the balances of its accounts. Steps are taken from the ring in batches, applied in memory,
+ *  journaled and forced to disk with one fsync for the whole batch (group commit). Only then are callers
+ *  completed and follow up steps handed to other partitions, so nothing is acknowledged or acted on before
+ *  it is durable. Any failure stops the engine: the partition fails whatever it holds and whatever still reaches
+ *  it, so no caller waits forever.
+ * */
+final class LedgerPartition implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerPartition.class);
+
+    private final int index;
+    private final LedgerEngine engine;
+    private final LedgerJournal journal;
+    private final TransferRules rules;
+    private final ArrayBlockingQueue<LedgerStep> ring;
+    private final int maxBatch;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean failed;
+
+    LedgerPartition(int index, LedgerEngine engine, LedgerJournal journal, TransferRules rules, int ringSize, int maxBatch) {
+        this.index = index;
+        this.engine = engine;
+        this.journal = journal;
+        this.rules = rules;
+        this.ring = new ArrayBlockingQueue<>(ringSize);
+        this.maxBatch = maxBatch;
+        this.thread = new Thread(this, "ledger-partition-" + index);
+    }
+
+    int index() {
+        return index;
+    }
+
+    LedgerJournal journal() {
+        return journal;
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     *  Never blocks for long, the engine's in-flight limit keeps the number of queued steps below the ring size.
+     * */
+    void publish(LedgerStep step) {
+        try {
+            ring.put(step);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.UNKNOWN_ERROR,
+                    "Interrupted while publishing to ledger partition " + index, e);
+        }
+    }
+
+    void stop() throws InterruptedException {
+        running = false;
+        thread.join();
+    }
+
+    @Override
+    public void run() {
+        List<LedgerStep> batch = new ArrayList<>(maxBatch);
+        List<LedgerEvent> events = new ArrayList<>(maxBatch * 2);
+        List<Runnable> afterForce = new ArrayList<>(maxBatch);
+
+        while (running || !ring.isEmpty()) {
+            try {
+                LedgerStep first = ring.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                ring.drainTo(batch, maxBatch - 1);
+
+                for (LedgerStep step : batch) {
+                    process(step, events, afterForce);
+                }
+                long endOffset = journal.append(events);
+                journal.force();
+                engine.project(index, journal.segment(), List.copyOf(events), endOffset);
+                afterForce.forEach(Runnable::run);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable e) {
+                // the in-memory state may now be ahead of the journal, stop here and let a restart replay what's durable
+                log.error("Ledger partition {} failed, stopping the engine", index, e);
+                failed = true;
+                engine.halt();
+                failRemaining(batch, e);
+                return;
+            }
+            batch.clear();
+            events.clear();
+            afterForce.clear();
+        }
+    }
+
+    /**
+     *  Fails the batch the partition stopped in and every step still in the ring or published to it until the engine
+     *  stops. Steps journaled before the failure are finished by the recovery on the next start.
+     * */
+    private void failRemaining(List<LedgerStep> batch, Throwable cause) {
+        TransferRuntimeException failure = new TransferRuntimeException(TransferRuntimeException.Reason.UNKNOWN_ERROR,
+                "Ledger partition " + index + " failed, the outcome of the transfer is settled on the next start", cause);
+        batch.forEach(step -> engine.fail(step, failure));
+        while (running || !ring.isEmpty()) {
+            try {
+                LedgerStep step = ring.poll(50, TimeUnit.MILLISECONDS);
+                if (step != null) {
+                    engine.fail(step, failure);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void process(LedgerStep step, List<LedgerEvent> events, List<Runnable> afterForce) {
+        TransferOrder order = step.order();
+        switch (step.kind()) {
+            case REJECT -> {
+                events.add(new LedgerEvent(LedgerEvent.Type.REJECTED, order));
+                afterForce.add(() -> engine.finish(step, order));
+            }
+            case TRANSFER -> transfer(step, events, afterForce);
+            case CREDIT -> credit(step, events, afterForce);
+            case REFUND -> {
+                AccountState sender = engine.account(order.fromAccountId());
+                sender.balance = sender.balance.plus(order.debitAmount());
+                events.add(new LedgerEvent(LedgerEvent.Type.REFUND, order));
+                afterForce.add(() -> engine.finish(step, order));
+            }
+        }
+    }
+
+    private void transfer(LedgerStep step, List<LedgerEvent> events, List<Runnable> afterForce) {
+        TransferOrder order = step.order();
+        AccountState sender = engine.account(order.fromAccountId());
+        LedgerPartition receiverPartition = engine.partitionOf(order.toAccountId());
+        try {
+            rules.checkSufficientFunds(sender.balance, order.debitAmount());
+
+            if (receiverPartition == this) {
+                AccountState receiver = engine.account(order.toAccountId());
+                rules.checkCreditLimit(receiver.balance, order.creditAmount());
+                sender.balance = sender.balance.minus(order.debitAmount());
+                receiver.balance = receiver.balance.plus(order.creditAmount());
+                events.add(new LedgerEvent(LedgerEvent.Type.DEBIT, order));
+                events.add(new LedgerEvent(LedgerEvent.Type.CREDIT, order));
+                afterForce.add(() -> engine.finish(step, order));
+            } else {
+                sender.balance = sender.balance.minus(order.debitAmount());
+                events.add(new LedgerEvent(LedgerEvent.Type.DEBIT, order));
+                afterForce.add(() -> receiverPartition.publish(
+                        new LedgerStep(LedgerStep.Kind.CREDIT, order, step.done())));
+            }
+        } catch (TransferException e) {
+            TransferOrder rejected = order.rejected(e.getReason().name(), e.getMessage());
+            events.add(new LedgerEvent(LedgerEvent.Type.REJECTED, rejected));
+            afterForce.add(() -> engine.finish(step, rejected));
+        }
+    }
+
+    private void credit(LedgerStep step, List<LedgerEvent> events, List<Runnable> afterForce) {
+        TransferOrder order = step.order();
+        AccountState receiver = engine.account(order.toAccountId());
+        try {
+            rules.checkCreditLimit(receiver.balance, order.creditAmount());
+            receiver.balance = receiver.balance.plus(order.creditAmount());
+            events.add(new LedgerEvent(LedgerEvent.Type.CREDIT, order));
+            afterForce.add(() -> engine.finish(step, order));
+        } catch (TransferException e) {
+            TransferOrder rejected = order.rejected(e.getReason().name(), e.getMessage());
+            events.add(new LedgerEvent(LedgerEvent.Type.CREDIT_REJECTED, rejected));
+            afterForce.add(() -> engine.partitionOf(order.fromAccountId()).publish(
+                    new LedgerStep(LedgerStep.Kind.REFUND, rejected, step.done())));
+        }
+    }
+}
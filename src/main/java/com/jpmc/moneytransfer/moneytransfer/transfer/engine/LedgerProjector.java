@@ -0,0 +1,282 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.engine;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.transfer.journal.TransferEvent;
+import com.jpmc.moneytransfer.moneytransfer.transfer.journal.TransferEventJournal;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.Transfer;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferOutboxService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  Applies journaled events to the account and transfer tables in the background. Balance deltas are summed per
+ *  account, transfer rows are inserted once a transfer is final, and the partition checkpoints move in the same
+ *  transaction, so a crash at any point is repaired by replaying the journal after the checkpoints.
+ *  Final transfers are added to the transfer outbox in that transaction and go to the transfer event journal once it
+ *  committed.
+ *  After each projection the journal segments that are projected are deleted, except from the oldest one holding the
+ *  DEBIT (or CREDIT_REJECTED) of a transfer that isn't final yet, recovery still needs those.
+ * */
+final class LedgerProjector implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerProjector.class);
+
+    private static final String UPDATE_BALANCE =
+            "UPDATE account SET balance = balance + ?, version = version + 1, updated_at = ? WHERE account_id = ?";
+
+    private static final String INSERT_TRANSFER =
+            "INSERT INTO transfer (transfer_id, from_account_id, to_account_id, from_account_id_raw, to_account_id_raw, " +
+            "amount, fee_applied, fx_rate, fx_rate_version, debit_amount, credit_amount, currency, currency_from, currency_to, " +
+            "transfer_time, state, failure_reason, failure_message) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_CHECKPOINT =
+            "UPDATE ledger_projection_checkpoint SET journal_offset = ?, updated_at = ? WHERE partition_no = ?";
+
+    // segment is the journal segment holding the events, recovered batches span segments and don't track open transfers
+    record Batch(int partition, long segment, List<LedgerEvent> events, long endOffset, boolean recovered) {
+    }
+
+    private record SegmentRef(int partition, long segment) {
+    }
+
+    private final LinkedBlockingQueue<Batch> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong pendingEvents = new AtomicLong();
+    private final AtomicLong projectedEvents = new AtomicLong();
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransferEventJournal transferEventJournal;
+    private final TransferOutboxService transferOutboxService;
+    private final LedgerJournal[] journals;
+    // transfers with a projected DEBIT/CREDIT_REJECTED and no projected final event yet, projector thread only
+    private final Map<Long, List<SegmentRef>> openTransfers = new HashMap<>();
+    private final int maxEvents;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    LedgerProjector(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                    TransferEventJournal transferEventJournal, TransferOutboxService transferOutboxService,
+                    LedgerJournal[] journals, int maxEvents) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.transferEventJournal = transferEventJournal;
+        this.transferOutboxService = transferOutboxService;
+        this.journals = journals;
+        this.maxEvents = maxEvents;
+        this.thread = new Thread(this, "ledger-projector");
+    }
+
+    /**
+     *  A transfer recovery found open, its segment is kept until the resumed step is projected. Before start() only.
+     * */
+    void keepOpen(long transferId, int partition, long segment) {
+        openTransfers.computeIfAbsent(transferId, id -> new ArrayList<>()).add(new SegmentRef(partition, segment));
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void publish(Batch batch) {
+        pendingEvents.addAndGet(batch.events().size());
+        queue.add(batch);
+    }
+
+    long pendingEvents() {
+        return pendingEvents.get();
+    }
+
+    long projectedEvents() {
+        return projectedEvents.get();
+    }
+
+    /**
+     *  Projects what is still queued, then stops. Anything that can't be written is replayed on the next start.
+     * */
+    void stop() throws InterruptedException {
+        running = false;
+        thread.join();
+    }
+
+    @Override
+    public void run() {
+        List<Batch> batches = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Batch first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batches.add(first);
+                int events = first.events().size();
+                while (events < maxEvents && queue.peek() != null) {
+                    Batch next = queue.poll();
+                    batches.add(next);
+                    events += next.events().size();
+                }
+
+                projectWithRetry(batches, events);
+                batches.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void projectWithRetry(List<Batch> batches, int events) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                project(batches);
+                pendingEvents.addAndGet(-events);
+                projectedEvents.addAndGet(events);
+                return;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    log.error("Ledger projection failed during shutdown, {} events are replayed on the next start", events, e);
+                    return;
+                }
+                log.error("Ledger projection of {} events failed (attempt {}), retrying", events, attempt, e);
+                Thread.sleep(Math.min(1000L * attempt, 10_000L));
+            }
+        }
+    }
+
+    private void project(List<Batch> batches) {
+        // sorted so concurrent projections and other writers always lock accounts in the same order
+        SortedMap<Long, Money> deltas = new TreeMap<>();
+        List<Object[]> transfers = new ArrayList<>();
+        List<TransferEvent> finalEvents = new ArrayList<>();
+        Map<Integer, Long> checkpoints = new HashMap<>();
+
+        for (Batch batch : batches) {
+            for (LedgerEvent event : batch.events()) {
+                TransferOrder order = event.order();
+                switch (event.type()) {
+                    case DEBIT -> deltas.merge(order.fromAccountId(), order.debitAmount().negate(), Money::plus);
+                    case CREDIT -> deltas.merge(order.toAccountId(), order.creditAmount(), Money::plus);
+                    case REFUND -> deltas.merge(order.fromAccountId(), order.debitAmount(), Money::plus);
+                    default -> {
+                    }
+                }
+                if (event.isFinal()) {
+                    transfers.add(transferRow(event));
+                    if (transferEventJournal.isEnabled() || transferOutboxService.isEnabled()) {
+                        finalEvents.add(transferEvent(event));
+                    }
+                }
+            }
+            checkpoints.merge(batch.partition(), batch.endOffset(), Math::max);
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> balanceRows = new ArrayList<>(deltas.size());
+        deltas.forEach((accountId, delta) -> {
+            if (delta.signum() != 0) {
+                balanceRows.add(new Object[]{delta.toBigDecimal(), now, accountId});
+            }
+        });
+        List<Object[]> checkpointRows = new ArrayList<>(checkpoints.size());
+        checkpoints.forEach((partition, offset) -> checkpointRows.add(new Object[]{offset, now, partition}));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!balanceRows.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_BALANCE, balanceRows);
+            }
+            if (!transfers.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_TRANSFER, transfers);
+            }
+            jdbcTemplate.batchUpdate(UPDATE_CHECKPOINT, checkpointRows);
+            transferOutboxService.appendEvents(finalEvents);
+        });
+        finalEvents.forEach(transferEventJournal::record);
+        trackOpenTransfers(batches);
+        deleteProjectedSegments(checkpoints);
+    }
+
+    private void trackOpenTransfers(List<Batch> batches) {
+        for (Batch batch : batches) {
+            if (batch.recovered()) {
+                continue;
+            }
+            for (LedgerEvent event : batch.events()) {
+                long transferId = event.order().transferId();
+                switch (event.type()) {
+                    case DEBIT, CREDIT_REJECTED -> openTransfers.computeIfAbsent(transferId, id -> new ArrayList<>())
+                            .add(new SegmentRef(batch.partition(), batch.segment()));
+                    case CREDIT, REFUND -> openTransfers.remove(transferId);
+                    default -> {
+                    }
+                }
+            }
+        }
+    }
+
+    private void deleteProjectedSegments(Map<Integer, Long> checkpoints) {
+        checkpoints.forEach((partition, checkpoint) -> {
+            LedgerJournal journal = journals[partition];
+            if (journal.firstSegmentEnd() > checkpoint) {
+                return;
+            }
+            long keepFrom = checkpoint;
+            for (List<SegmentRef> segments : openTransfers.values()) {
+                for (SegmentRef segment : segments) {
+                    if (segment.partition() == partition) {
+                        keepFrom = Math.min(keepFrom, segment.segment());
+                    }
+                }
+            }
+            try {
+                int deleted = journal.deleteSegmentsBefore(keepFrom);
+                if (deleted > 0) {
+                    log.debug("Deleted {} projected journal segments of partition {}", deleted, partition);
+                }
+            } catch (IOException e) {
+                // tried again after the next projection of the partition
+                log.warn("Deleting projected journal segments of partition {} failed", partition, e);
+            }
+        });
+    }
+
+    private Object[] transferRow(LedgerEvent event) {
+        TransferOrder order = event.order();
+        Long fromAccount = order.accountsAttached() ? order.fromAccountId() : null;
+        Long toAccount = order.accountsAttached() ? order.toAccountId() : null;
+        TransferState state = stateOf(event);
+        return new Object[]{
+                order.transferId(), fromAccount, toAccount, order.fromAccountId(), order.toAccountId(),
+                decimal(order.amount()), decimal(order.feeApplied()), order.fxRate(), order.fxRateVersion(),
+                decimal(order.debitAmount()), decimal(order.creditAmount()),
+                order.currency(), order.currencyFrom(), order.currencyTo(),
+                new Timestamp(order.transferTime()), state.name(),
+                order.failureReason(), Transfer.truncateFailureMessage(order.failureMessage())};
+    }
+
+    private static TransferEvent transferEvent(LedgerEvent event) {
+        TransferOrder order = event.order();
+        return new TransferEvent(0, System.currentTimeMillis(), order.transferId(), order.fromAccountId(),
+                order.toAccountId(), stateOf(event), order.amount(), order.feeApplied(), order.fxRate(),
+                order.fxRateVersion(), order.debitAmount(), order.creditAmount(),
+                order.currency(), order.currencyFrom(), order.currencyTo(),
+                order.failureReason(), Transfer.truncateFailureMessage(order.failureMessage()));
+    }
+
+    private static TransferState stateOf(LedgerEvent event) {
+        return event.type() == LedgerEvent.Type.CREDIT ? TransferState.COMPLETED : TransferState.FAILED;
+    }
+
+    private static BigDecimal decimal(Money money) {
+        return money == null ? null : money.toBigDecimal();
+    }
+}
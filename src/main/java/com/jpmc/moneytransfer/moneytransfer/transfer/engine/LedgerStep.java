@@ -0,0 +1,19 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.engine;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ *  Unit of work in a partition's ring. A transfer between partitions is a TRANSFER on the sender's partition
+ *  followed by a CREDIT on the receiver's (and a REFUND back if the credit is rejected).
+ * */
+record LedgerStep(Kind kind, TransferOrder order, CompletableFuture<LedgerOutcome> done) {
+
+    enum Kind {
+        // check and debit the sender, credit too when the receiver lives on the same partition
+        TRANSFER,
+        CREDIT,
+        REFUND,
+        // rejected while it was priced, only journaled for the FAILED transfer record
+        REJECT
+    }
+}
@@ -0,0 +1,98 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.engine;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ *  A transfer as the ledger engine sees it: priced up front (fee, FX) so the partitions only apply balance rules.
+ *  currencyFrom/currencyTo are null when the accounts were never attached (self transfer, unknown account).
+ * */
+record TransferOrder(long transferId,
+                     long fromAccountId,
+                     long toAccountId,
+                     Money amount,
+                     Money feeApplied,
+                     BigDecimal fxRate,
+                     Long fxRateVersion,
+                     Money debitAmount,
+                     Money creditAmount,
+                     String currency,
+                     String currencyFrom,
+                     String currencyTo,
+                     long transferTime,
+                     String failureReason,
+                     String failureMessage) {
+
+    boolean accountsAttached() {
+        return currencyFrom != null;
+    }
+
+    TransferOrder rejected(String reason, String message) {
+        return new TransferOrder(transferId, fromAccountId, toAccountId, amount, feeApplied, fxRate,
+                fxRateVersion, debitAmount, creditAmount, currency, currencyFrom, currencyTo, transferTime, reason, message);
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeLong(transferId);
+        out.writeLong(fromAccountId);
+        out.writeLong(toAccountId);
+        writeMoney(out, amount);
+        writeMoney(out, feeApplied);
+        writeDecimal(out, fxRate);
+        out.writeBoolean(fxRateVersion != null);
+        if (fxRateVersion != null) {
+            out.writeLong(fxRateVersion);
+        }
+        writeMoney(out, debitAmount);
+        writeMoney(out, creditAmount);
+        writeString(out, currency);
+        writeString(out, currencyFrom);
+        writeString(out, currencyTo);
+        out.writeLong(transferTime);
+        writeString(out, failureReason);
+        writeString(out, failureMessage);
+    }
+
+    static TransferOrder readFrom(DataInputStream in) throws IOException {
+        return new TransferOrder(in.readLong(), in.readLong(), in.readLong(),
+                readMoney(in), readMoney(in), readDecimal(in), in.readBoolean() ? in.readLong() : null,
+                readMoney(in), readMoney(in),
+                readString(in), readString(in), readString(in),
+                in.readLong(), readString(in), readString(in));
+    }
+
+    private static void writeMoney(DataOutputStream out, Money value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getUnits());
+        }
+    }
+
+    private static Money readMoney(DataInputStream in) throws IOException {
+        return in.readBoolean() ? Money.ofUnits(in.readLong()) : null;
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        writeString(out, value == null ? null : value.toPlainString());
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        String value = readString(in);
+        return value == null ? null : new BigDecimal(value);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,155 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.journal;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.Transfer;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *  One committed state of a transfer row, as written to the transfer event journal. sequence is given by the
+ *  journal writer, it grows by one per event over all segments.
+ *  Binary layout: fixed longs for ids, time and the non null amounts (Money units, the FX rate at RATE_SCALE),
+ *  a flag byte for the nullable ones, short length prefixed strings. A typical event is around 100 bytes.
+ * */
+public record TransferEvent(long sequence,
+                            long eventTime,
+                            long transferId,
+                            long fromAccountId,
+                            long toAccountId,
+                            TransferState state,
+                            Money amount,
+                            Money feeApplied,
+                            BigDecimal fxRate,
+                            Long fxRateVersion,
+                            Money debitAmount,
+                            Money creditAmount,
+                            String currency,
+                            String currencyFrom,
+                            String currencyTo,
+                            String failureReason,
+                            String failureMessage) {
+
+    private static final int FEE = 1;
+    private static final int FX_RATE = 2;
+    private static final int FX_RATE_VERSION = 4;
+    private static final int DEBIT = 8;
+    private static final int CREDIT = 16;
+
+    // sequence, time, three ids, state, flags, amount and the five optional longs
+    private static final int MAX_FIXED_BYTES = 8 * 5 + 2 + 8 * 6;
+
+    /**
+     *  Snapshot of the transfer as it is now, the journal numbers it when it is written.
+     * */
+    public static TransferEvent of(Transfer transfer) {
+        return new TransferEvent(0, System.currentTimeMillis(), transfer.getId(),
+                idOrZero(transfer.getFromAccountIdRaw()), idOrZero(transfer.getToAccountIdRaw()), transfer.getState(),
+                transfer.getAmount(), transfer.getFeeApplied(), transfer.getFxRate(), transfer.getFxRateVersion(),
+                transfer.getDebitAmount(), transfer.getCreditAmount(),
+                codeOf(transfer.getCurrency()), codeOf(transfer.getCurrencyFrom()), codeOf(transfer.getCurrencyTo()),
+                transfer.getFailureReason(), transfer.getFailureMessage());
+    }
+
+    private static long idOrZero(Long id) {
+        return id == null ? 0 : id;
+    }
+
+    private static String codeOf(Currency currency) {
+        return currency == null ? null : currency.getCode();
+    }
+
+    public boolean involves(long accountId) {
+        return fromAccountId == accountId || toAccountId == accountId;
+    }
+
+    /**
+     *  Upper bound of the encoded size, so the writer knows whether the event still fits into the segment.
+     * */
+    int maxEncodedBytes() {
+        return MAX_FIXED_BYTES + maxStringBytes(currency) + maxStringBytes(currencyFrom) + maxStringBytes(currencyTo)
+                + maxStringBytes(failureReason) + maxStringBytes(failureMessage);
+    }
+
+    void encode(ByteBuffer out, long sequence) {
+        out.putLong(sequence);
+        out.putLong(eventTime);
+        out.putLong(transferId);
+        out.putLong(fromAccountId);
+        out.putLong(toAccountId);
+        out.put((byte) state.ordinal());
+        int flags = (feeApplied != null ? FEE : 0) | (fxRate != null ? FX_RATE : 0)
+                | (fxRateVersion != null ? FX_RATE_VERSION : 0)
+                | (debitAmount != null ? DEBIT : 0) | (creditAmount != null ? CREDIT : 0);
+        out.put((byte) flags);
+        out.putLong(amount.getUnits());
+        if (feeApplied != null) {
+            out.putLong(feeApplied.getUnits());
+        }
+        if (fxRate != null) {
+            out.putLong(Money.rateUnits(fxRate));
+        }
+        if (fxRateVersion != null) {
+            out.putLong(fxRateVersion);
+        }
+        if (debitAmount != null) {
+            out.putLong(debitAmount.getUnits());
+        }
+        if (creditAmount != null) {
+            out.putLong(creditAmount.getUnits());
+        }
+        putString(out, currency);
+        putString(out, currencyFrom);
+        putString(out, currencyTo);
+        putString(out, failureReason);
+        putString(out, failureMessage);
+    }
+
+    static TransferEvent decode(ByteBuffer in) {
+        long sequence = in.getLong();
+        long eventTime = in.getLong();
+        long transferId = in.getLong();
+        long fromAccountId = in.getLong();
+        long toAccountId = in.getLong();
+        TransferState state = TransferState.values()[in.get()];
+        int flags = in.get();
+        Money amount = Money.ofUnits(in.getLong());
+        Money fee = (flags & FEE) != 0 ? Money.ofUnits(in.getLong()) : null;
+        BigDecimal fxRate = (flags & FX_RATE) != 0 ? BigDecimal.valueOf(in.getLong(), Money.RATE_SCALE) : null;
+        Long fxRateVersion = (flags & FX_RATE_VERSION) != 0 ? in.getLong() : null;
+        Money debit = (flags & DEBIT) != 0 ? Money.ofUnits(in.getLong()) : null;
+        Money credit = (flags & CREDIT) != 0 ? Money.ofUnits(in.getLong()) : null;
+        return new TransferEvent(sequence, eventTime, transferId, fromAccountId, toAccountId, state,
+                amount, fee, fxRate, fxRateVersion, debit, credit,
+                getString(in), getString(in), getString(in), getString(in), getString(in));
+    }
+
+    // -1 is null
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int maxStringBytes(String value) {
+        // at most 3 UTF-8 bytes per char, failure messages are truncated to 255 chars
+        return 2 + (value == null ? 0 : value.length() * 3);
+    }
+}
@@ -0,0 +1,329 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.journal;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.Transfer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ *  Binary audit trail of transfers: every committed state of a transfer row (amounts, fee, FX rate and version,
+ *  failure reason) as one TransferEvent. Callers only take a snapshot and, once their transaction committed, put
+ *  it on a bounded queue. A single writer thread numbers the events and copies them into a memory mapped segment
+ *  of segment-bytes, rolling to a new one when it is full. The mapping is forced to disk every force-interval-ms,
+ *  on roll and on shutdown, so a crash of the machine loses at most that interval (a crash of the JVM alone loses
+ *  nothing that was written). A full queue makes the committing thread wait for the writer rather than drop events.
+ *  Read the segments with TransferJournalCli.
+ * */
+@Component
+public class TransferEventJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferEventJournal.class);
+
+    private static final int MIN_SEGMENT_BYTES = 64 * 1024;
+    private static final int DRAIN_BATCH = 1024;
+
+    @Value("${transfer.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${transfer.journal.dir:./data/transfer-journal}")
+    private String journalDir;
+
+    @Value("${transfer.journal.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    @Value("${transfer.journal.queue-capacity:65536}")
+    private int queueCapacity;
+
+    @Value("${transfer.journal.force-interval-ms:1000}")
+    private long forceIntervalMs;
+
+    private final LongAdder queueFullWaits = new LongAdder();
+    private final CRC32 crc = new CRC32();
+
+    private BlockingQueue<TransferEvent> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    // writer thread only, apart from the volatile counters read by getStats
+    private Path dir;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private Path segmentPath;
+    private boolean dirty;
+    private volatile long nextSequence = 1;
+    private volatile long segmentsRolled;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        segmentBytes = Math.max(segmentBytes, MIN_SEGMENT_BYTES);
+        queue = new ArrayBlockingQueue<>(Math.max(queueCapacity, DRAIN_BATCH));
+        dir = Paths.get(journalDir);
+        Files.createDirectories(dir);
+        recover();
+
+        running = true;
+        writer = new Thread(this::writeLoop, "transfer-journal");
+        writer.start();
+        log.info("Transfer event journal in {}, next sequence {}, {} byte segments",
+                dir.toAbsolutePath(), nextSequence, segmentBytes);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join();
+        writer = null;
+        closeSegment();
+        log.info("Transfer event journal stopped at sequence {}", nextSequence - 1);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     *  Journals the current state of transfer once the surrounding transaction commits (right away without one).
+     * */
+    public void record(Transfer transfer) {
+        if (enabled) {
+            record(TransferEvent.of(transfer));
+        }
+    }
+
+    public void record(TransferEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(event);
+            return;
+        }
+        PendingEvents pending = (PendingEvents) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingEvents();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.add(event);
+    }
+
+    /**
+     *  Events of one transaction, enqueued in order once it committed. A row inserted and then updated in the same
+     *  flush (sequence ids, the insert carries the state of persist time) fires both listeners with the same
+     *  final state, so an event with the same state as the previous one of its transfer replaces it.
+     * */
+    private final class PendingEvents implements TransactionSynchronization {
+        private final List<TransferEvent> events = new ArrayList<>();
+        private final Map<Long, Integer> lastIndex = new HashMap<>();
+
+        void add(TransferEvent event) {
+            Integer last = lastIndex.get(event.transferId());
+            if (last != null && events.get(last).state() == event.state()) {
+                events.set(last, event);
+                return;
+            }
+            lastIndex.put(event.transferId(), events.size());
+            events.add(event);
+        }
+
+        // bound to the transaction, not the thread: a REQUIRES_NEW transaction in between gets its own
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(TransferEventJournal.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(TransferEventJournal.this, this);
+        }
+
+        @Override
+        public void afterCommit() {
+            events.forEach(TransferEventJournal.this::enqueue);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TransferEventJournal.this);
+        }
+    }
+
+    private void enqueue(TransferEvent event) {
+        if (!running) {
+            log.warn("Transfer event journal is stopped, event of transfer {} ({}) not journaled",
+                    event.transferId(), event.state());
+            return;
+        }
+        if (queue.offer(event)) {
+            return;
+        }
+        queueFullWaits.increment();
+        try {
+            queue.put(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted, event of transfer {} ({}) not journaled", event.transferId(), event.state());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "enabled", enabled,
+                "lastSequence", nextSequence - 1,
+                "queued", queue == null ? 0 : queue.size(),
+                "queueFullWaits", queueFullWaits.sum(),
+                "segmentsRolled", segmentsRolled,
+                "segment", segmentPath == null ? "" : segmentPath.getFileName().toString());
+    }
+
+    private void writeLoop() {
+        List<TransferEvent> batch = new ArrayList<>(DRAIN_BATCH);
+        long lastForce = System.nanoTime();
+        while (running || !queue.isEmpty()) {
+            try {
+                TransferEvent first = queue.poll(Math.max(1, forceIntervalMs / 2), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, DRAIN_BATCH - 1);
+                    for (TransferEvent event : batch) {
+                        appendWithRetry(event);
+                    }
+                    batch.clear();
+                }
+                if (dirty && System.nanoTime() - lastForce >= TimeUnit.MILLISECONDS.toNanos(forceIntervalMs)) {
+                    segment.force();
+                    dirty = false;
+                    lastForce = System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     *  Only rolling a segment touches the file system and can fail, the event is then written after the retry.
+     *  An event that can't be encoded is logged and skipped.
+     * */
+    private void appendWithRetry(TransferEvent event) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                append(event);
+                return;
+            } catch (IOException e) {
+                log.error("Journaling transfer {} failed (attempt {}), retrying", event.transferId(), attempt, e);
+                Thread.sleep(Math.min(1000L * attempt, 10_000L));
+            } catch (RuntimeException e) {
+                log.error("Event of transfer {} ({}) can't be journaled, skipped", event.transferId(), event.state(), e);
+                return;
+            }
+        }
+    }
+
+    private void append(TransferEvent event) throws IOException {
+        if (segment == null || segment.remaining() < TransferJournalSegments.HEADER_BYTES + event.maxEncodedBytes()) {
+            roll();
+        }
+        int start = segment.position();
+        segment.position(start + TransferJournalSegments.HEADER_BYTES);
+        try {
+            event.encode(segment, nextSequence);
+        } catch (RuntimeException e) {
+            // wipe what was written, the next record must be followed by zeros
+            for (int i = start; i < segment.position(); i++) {
+                segment.put(i, (byte) 0);
+            }
+            segment.position(start);
+            throw e;
+        }
+        int end = segment.position();
+
+        crc.reset();
+        crc.update(segment.slice(start + TransferJournalSegments.HEADER_BYTES, end - start - TransferJournalSegments.HEADER_BYTES));
+        // length last, a reader tailing the segment never sees a record before its checksum
+        segment.putInt(start + 4, (int) crc.getValue());
+        segment.putInt(start, end - start - TransferJournalSegments.HEADER_BYTES);
+        nextSequence++;
+        dirty = true;
+    }
+
+    private void roll() throws IOException {
+        closeSegment();
+        Path next = TransferJournalSegments.segmentPath(dir, nextSequence);
+        FileChannel nextChannel = FileChannel.open(next, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            segment = nextChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        } catch (IOException e) {
+            nextChannel.close();
+            Files.deleteIfExists(next);
+            throw e;
+        }
+        channel = nextChannel;
+        segmentPath = next;
+        segmentsRolled++;
+        log.debug("Transfer event journal rolled to {}", next.getFileName());
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment == null) {
+            return;
+        }
+        segment.force();
+        dirty = false;
+        channel.close();
+        segment = null;
+        channel = null;
+    }
+
+    /**
+     *  Continues the sequence after the last readable event. Appends always go to a new segment, a torn record at
+     *  the end of the last one stays where it is and readers skip it. A last segment without any event is reused.
+     * */
+    private void recover() throws IOException {
+        List<Path> segments = TransferJournalSegments.list(dir);
+        if (segments.isEmpty()) {
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        nextSequence = TransferJournalSegments.firstSequenceOf(last);
+        int events = 0;
+        try (TransferJournalSegments.Reader reader = new TransferJournalSegments.Reader(last)) {
+            for (TransferEvent event = reader.next(); event != null; event = reader.next()) {
+                nextSequence = event.sequence() + 1;
+                events++;
+            }
+        }
+        if (events == 0) {
+            Files.delete(last);
+        }
+    }
+}
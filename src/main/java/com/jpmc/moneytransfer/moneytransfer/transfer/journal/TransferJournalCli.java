@@ -0,0 +1,247 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.journal;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ *  Reads the transfer event journal without the application (only needs the compiled classes):
+ *  <pre>
+ *  java -cp target/classes com.jpmc.moneytransfer.moneytransfer.transfer.journal.TransferJournalCli &lt;command&gt; [--name=value ...]
+ *
+ *  segments                 one line per segment: first sequence, events, bytes used
+ *  replay                   every event from the oldest segment on
+ *  tail                     the last --last events (default 10), then follows new ones until interrupted
+ *
+ *  --dir=PATH               journal directory (default ./data/transfer-journal)
+ *  --from-seq=N             skip events before sequence N
+ *  --transfer=ID            only this transfer
+ *  --account=ID             only transfers from or to this account
+ *  --state=STATE            only PROCESSING, COMPLETED or FAILED
+ *  </pre>
+ * */
+public final class TransferJournalCli {
+
+    private static final long TAIL_POLL_MS = 200;
+
+    private final PrintStream out;
+    private final Path dir;
+    private final long fromSequence;
+    private final Predicate<TransferEvent> filter;
+
+    private TransferJournalCli(PrintStream out, Map<String, String> options) {
+        this.out = out;
+        this.dir = Paths.get(options.getOrDefault("dir", "./data/transfer-journal"));
+        this.fromSequence = Long.parseLong(options.getOrDefault("from-seq", "0"));
+
+        Predicate<TransferEvent> filter = event -> event.sequence() >= fromSequence;
+        if (options.containsKey("transfer")) {
+            long transferId = Long.parseLong(options.get("transfer"));
+            filter = filter.and(event -> event.transferId() == transferId);
+        }
+        if (options.containsKey("account")) {
+            long accountId = Long.parseLong(options.get("account"));
+            filter = filter.and(event -> event.involves(accountId));
+        }
+        if (options.containsKey("state")) {
+            TransferState state = TransferState.valueOf(options.get("state").toUpperCase());
+            filter = filter.and(event -> event.state() == state);
+        }
+        this.filter = filter;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("usage: TransferJournalCli segments|replay|tail [--dir=PATH] [--from-seq=N] "
+                    + "[--transfer=ID] [--account=ID] [--state=STATE] [--last=N]");
+            System.exit(2);
+        }
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                System.err.println("Options are --name=value, got " + arg);
+                System.exit(2);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+
+        TransferJournalCli cli = new TransferJournalCli(System.out, options);
+        switch (args[0]) {
+            case "segments" -> cli.segments();
+            case "replay" -> cli.replay();
+            case "tail" -> cli.tail(Integer.parseInt(options.getOrDefault("last", "10")));
+            default -> {
+                System.err.println("Unknown command " + args[0]);
+                System.exit(2);
+            }
+        }
+    }
+
+    private void segments() throws IOException {
+        for (Path segment : TransferJournalSegments.list(dir)) {
+            long events = 0;
+            long last = -1;
+            int used;
+            try (TransferJournalSegments.Reader reader = new TransferJournalSegments.Reader(segment)) {
+                for (TransferEvent event = reader.next(); event != null; event = reader.next()) {
+                    events++;
+                    last = event.sequence();
+                }
+                used = reader.position();
+            }
+            out.printf("%s first=%d last=%s events=%d bytes=%d%n", segment.getFileName(),
+                    TransferJournalSegments.firstSequenceOf(segment), last < 0 ? "-" : last, events, used);
+        }
+    }
+
+    private void replay() throws IOException {
+        long printed = 0;
+        for (Path segment : segmentsFrom(fromSequence)) {
+            try (TransferJournalSegments.Reader reader = new TransferJournalSegments.Reader(segment)) {
+                for (TransferEvent event = reader.next(); event != null; event = reader.next()) {
+                    if (filter.test(event)) {
+                        out.println(format(event));
+                        printed++;
+                    }
+                }
+            }
+        }
+        out.flush();
+        System.err.println(printed + " events");
+    }
+
+    /**
+     *  Prints the last matching events of the newest segment, then keeps reading it and moves on to the next
+     *  segment once the writer has rolled.
+     * */
+    private void tail(int last) throws IOException, InterruptedException {
+        List<Path> segments = segmentsFrom(fromSequence);
+        if (segments.isEmpty()) {
+            segments = waitForSegment();
+        }
+        Path current = segments.get(segments.size() - 1);
+        TransferJournalSegments.Reader reader = new TransferJournalSegments.Reader(current);
+        try {
+            ArrayDeque<TransferEvent> recent = new ArrayDeque<>();
+            for (TransferEvent event = reader.next(); event != null; event = reader.next()) {
+                if (filter.test(event)) {
+                    recent.addLast(event);
+                    if (recent.size() > last) {
+                        recent.removeFirst();
+                    }
+                }
+            }
+            recent.forEach(event -> out.println(format(event)));
+            out.flush();
+
+            while (!Thread.currentThread().isInterrupted()) {
+                boolean read = false;
+                for (TransferEvent event = reader.next(); event != null; event = reader.next()) {
+                    read = true;
+                    if (filter.test(event)) {
+                        out.println(format(event));
+                    }
+                }
+                if (read) {
+                    out.flush();
+                    continue;
+                }
+                Path next = nextSegment(current);
+                if (next == null) {
+                    Thread.sleep(TAIL_POLL_MS);
+                    continue;
+                }
+                // the writer only opens a segment after it finished the previous one, read what is left first
+                for (TransferEvent event = reader.next(); event != null; event = reader.next()) {
+                    if (filter.test(event)) {
+                        out.println(format(event));
+                    }
+                }
+                reader.close();
+                current = next;
+                reader = new TransferJournalSegments.Reader(current);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private List<Path> waitForSegment() throws IOException, InterruptedException {
+        List<Path> segments = TransferJournalSegments.list(dir);
+        while (segments.isEmpty()) {
+            Thread.sleep(TAIL_POLL_MS);
+            segments = TransferJournalSegments.list(dir);
+        }
+        return segments;
+    }
+
+    private Path nextSegment(Path current) throws IOException {
+        for (Path segment : TransferJournalSegments.list(dir)) {
+            if (segment.compareTo(current) > 0) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     *  Segments that can hold events at or after sequence, the one containing it included.
+     * */
+    private List<Path> segmentsFrom(long sequence) throws IOException {
+        List<Path> segments = TransferJournalSegments.list(dir);
+        int first = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            if (TransferJournalSegments.firstSequenceOf(segments.get(i)) <= sequence) {
+                first = i;
+            }
+        }
+        return segments.subList(first, segments.size());
+    }
+
+    static String format(TransferEvent event) {
+        StringBuilder line = new StringBuilder(160)
+                .append("seq=").append(event.sequence())
+                .append(' ').append(Instant.ofEpochMilli(event.eventTime()))
+                .append(" transfer=").append(event.transferId())
+                .append(' ').append(event.fromAccountId()).append("->").append(event.toAccountId())
+                .append(' ').append(event.state())
+                .append(" amount=").append(event.amount()).append(' ').append(event.currency());
+        appendMoney(line, "fee", event.feeApplied(), event.currencyFrom());
+        appendMoney(line, "debit", event.debitAmount(), event.currencyFrom());
+        appendMoney(line, "credit", event.creditAmount(), event.currencyTo());
+        if (event.fxRate() != null) {
+            line.append(" fx=").append(event.fxRate().toPlainString());
+            if (event.fxRateVersion() != null) {
+                line.append(" (v").append(event.fxRateVersion()).append(')');
+            }
+        }
+        if (event.failureReason() != null) {
+            line.append(" reason=").append(event.failureReason());
+        }
+        if (event.failureMessage() != null) {
+            line.append(" message=\"").append(event.failureMessage()).append('"');
+        }
+        return line.toString();
+    }
+
+    private static void appendMoney(StringBuilder line, String name, Money value, String currency) {
+        if (value != null) {
+            line.append(' ').append(name).append('=').append(value);
+            if (currency != null) {
+                line.append(' ').append(currency);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.journal;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.Transfer;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ *  Journals every insert and update of a Transfer row, whichever path wrote it (single, batch, queued).
+ *  Hibernate gets its entity listeners from Spring, so the journal is injected.
+ *  Rows written with plain SQL (failQueued, the ledger projector) are journaled by their writers.
+ * */
+public class TransferJournalListener {
+
+    @Autowired
+    private TransferEventJournal journal;
+
+    @PostPersist
+    @PostUpdate
+    public void onWrite(Transfer transfer) {
+        journal.record(transfer);
+    }
+}
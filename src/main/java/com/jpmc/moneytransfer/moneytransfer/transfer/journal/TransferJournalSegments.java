@@ -0,0 +1,115 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ *  File layout of the transfer event journal, shared by the writer and the CLI. A segment is a file of fixed size
+ *  named after the sequence of its first event, created zero filled and then filled with records
+ *  [length][crc32][payload]. A zero length is the end of what was written so far, a record whose crc doesn't
+ *  match is a write that was cut off by a crash, the writer never appends after either and starts a new segment.
+ * */
+final class TransferJournalSegments {
+
+    static final int HEADER_BYTES = 8;
+
+    private static final String PREFIX = "transfer-events-";
+    private static final String SUFFIX = ".seg";
+
+    private TransferJournalSegments() {
+    }
+
+    static Path segmentPath(Path dir, long firstSequence) {
+        return dir.resolve(String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX));
+    }
+
+    static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     *  Segments of dir, oldest first (the zero padded sequence sorts by name).
+     * */
+    static List<Path> list(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return new ArrayList<>(files
+                    .filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    /**
+     *  Reads one segment through a read only mapping. The mapping shares the page cache with the writer, so a
+     *  reader that got null from next() sees records appended later by calling next() again.
+     * */
+    static final class Reader implements Closeable {
+
+        private final Path segment;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final CRC32 crc = new CRC32();
+
+        Reader(Path segment) throws IOException {
+            this.segment = segment;
+            this.channel = FileChannel.open(segment, StandardOpenOption.READ);
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        Path segment() {
+            return segment;
+        }
+
+        /**
+         *  Bytes of the valid records read so far.
+         * */
+        int position() {
+            return buffer.position();
+        }
+
+        /**
+         *  The next record, null at the end of what has been written (or at a torn record).
+         * */
+        TransferEvent next() {
+            int start = buffer.position();
+            if (start + HEADER_BYTES > buffer.limit()) {
+                return null;
+            }
+            int length = buffer.getInt(start);
+            int checksum = buffer.getInt(start + 4);
+            if (length <= 0 || start + HEADER_BYTES + length > buffer.limit()) {
+                return null;
+            }
+            ByteBuffer payload = buffer.slice(start + HEADER_BYTES, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                return null;
+            }
+            buffer.position(start + HEADER_BYTES + length);
+            return TransferEvent.decode(payload);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
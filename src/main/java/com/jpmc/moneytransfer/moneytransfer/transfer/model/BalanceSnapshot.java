@@ -0,0 +1,74 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ *  Balance of an account after all its ledger entries up to lastEntryId, written by the LedgerCompactor.
+ *  The newest one is mirrored in account.balance/ledger_position, the older ones are kept so a balance at a past
+ *  time starts from the nearest snapshot before it. An account's first snapshot is its opening balance at entry 0.
+ * */
+@Entity
+@Table(name = "balance_snapshot", indexes = {
+        @Index(name = "idx_balance_snapshot_account_time", columnList = "account_id, snapshot_time")})
+public class BalanceSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "snapshot_id")
+    private Long id;
+
+    @Column(name = "account_id", nullable = false, updatable = false)
+    private Long accountId;
+
+    @Column(name = "last_entry_id", nullable = false, updatable = false)
+    private long lastEntryId;
+
+    @Column(name = "balance", nullable = false, updatable = false, precision = 20, scale = 4)
+    private Money balance;
+
+    // every entry up to lastEntryId was committed before this, every later one after it
+    @Column(name = "snapshot_time", nullable = false, updatable = false)
+    private LocalDateTime snapshotTime;
+
+    // entries rolled up into this snapshot
+    @Column(name = "entry_count", nullable = false, updatable = false)
+    private long entryCount;
+
+    protected BalanceSnapshot() {
+    }
+
+    public BalanceSnapshot(Long accountId, long lastEntryId, Money balance, LocalDateTime snapshotTime, long entryCount) {
+        this.accountId = accountId;
+        this.lastEntryId = lastEntryId;
+        this.balance = balance;
+        this.snapshotTime = snapshotTime;
+        this.entryCount = entryCount;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public long getLastEntryId() {
+        return lastEntryId;
+    }
+
+    public Money getBalance() {
+        return balance;
+    }
+
+    public LocalDateTime getSnapshotTime() {
+        return snapshotTime;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+}
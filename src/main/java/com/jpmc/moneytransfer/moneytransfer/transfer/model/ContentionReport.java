@@ -0,0 +1,25 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ *  Row lock waits of one profiler window, the accounts that were waited on longest first. Per account numbers are
+ *  Space-Saving estimates: waitMs is within errorMs of the real wait, acquisitions and maxWaitMs only count from the
+ *  moment the account was tracked. The window totals are exact.
+ * */
+public record ContentionReport(LocalDateTime windowStart,
+                               LocalDateTime windowEnd,
+                               long acquisitions,
+                               double waitMs,
+                               List<AccountContention> hottestAccounts) {
+
+    public record AccountContention(Long accountId,
+                                    double waitMs,
+                                    double errorMs,
+                                    double shareOfWait,
+                                    long acquisitions,
+                                    double avgWaitMs,
+                                    double maxWaitMs) {
+    }
+}
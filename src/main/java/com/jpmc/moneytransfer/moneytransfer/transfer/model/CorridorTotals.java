@@ -0,0 +1,36 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+import java.math.BigDecimal;
+
+/**
+ *  Sums of completed transfers from one currency to another, see ReconciliationCorridorTotal.
+ * */
+public record CorridorTotals(String currencyFrom,
+                             String currencyTo,
+                             long transfers,
+                             BigDecimal amountTotal,
+                             BigDecimal feeTotal,
+                             BigDecimal debitTotal,
+                             BigDecimal creditTotal,
+                             BigDecimal expectedCreditTotal) {
+
+    public CorridorTotals plus(CorridorTotals other) {
+        return new CorridorTotals(currencyFrom, currencyTo, transfers + other.transfers,
+                amountTotal.add(other.amountTotal), feeTotal.add(other.feeTotal), debitTotal.add(other.debitTotal),
+                creditTotal.add(other.creditTotal), expectedCreditTotal.add(other.expectedCreditTotal));
+    }
+
+    /**
+     *  Debits minus fees are the amounts sent, in the sender currency.
+     * */
+    public boolean isDebitConserved() {
+        return debitTotal.subtract(feeTotal).compareTo(amountTotal) == 0;
+    }
+
+    /**
+     *  Credits are the amounts after FX, in the receiver currency.
+     * */
+    public boolean isCreditConserved() {
+        return creditTotal.compareTo(expectedCreditTotal) == 0;
+    }
+}
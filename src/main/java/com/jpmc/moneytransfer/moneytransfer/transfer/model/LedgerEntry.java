@@ -0,0 +1,60 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ *  One side of a transfer in DOUBLE_ENTRY mode: the debit of the sender (negative, debit amount incl. fee, sender
+ *  currency) or the credit of the receiver (positive, credit amount, receiver currency). Rows are only ever inserted.
+ *  Ids are IDENTITY on purpose: an account's entries are inserted while its row is locked, so an entry committed
+ *  after a snapshot always has a higher id than the entries the snapshot covers. A pooled sequence hands out
+ *  blocks in advance and would break that.
+ * */
+@Entity
+@Table(name = "ledger_entry", indexes = {
+        @Index(name = "idx_ledger_entry_account", columnList = "account_id, entry_id")})
+public class LedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "entry_id")
+    private Long id;
+
+    @Column(name = "account_id", nullable = false, updatable = false)
+    private Long accountId;
+
+    @Column(name = "transfer_id", nullable = false, updatable = false)
+    private Long transferId;
+
+    // signed, debits are negative
+    @Column(name = "amount", nullable = false, updatable = false, precision = 20, scale = 4)
+    private Money amount;
+
+    @Column(name = "entry_time", nullable = false, updatable = false)
+    private LocalDateTime entryTime;
+
+    protected LedgerEntry() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public Long getTransferId() {
+        return transferId;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    public LocalDateTime getEntryTime() {
+        return entryTime;
+    }
+}
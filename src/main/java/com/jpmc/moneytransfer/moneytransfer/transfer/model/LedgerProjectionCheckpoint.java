@@ -0,0 +1,37 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+import com.jpmc.moneytransfer.moneytransfer.BaseEntity;
+import jakarta.persistence.*;
+
+/**
+ *  How far the journal of one ledger engine partition has been projected into the account/transfer tables.
+ *  Written in the same transaction as the projected rows, so replay starts exactly after it.
+ * */
+@Entity
+@Table(name = "ledger_projection_checkpoint")
+public class LedgerProjectionCheckpoint extends BaseEntity {
+
+    @Id
+    @Column(name = "partition_no")
+    private Integer partitionNo;
+
+    // byte offset in the partition's journal file after the last projected record
+    @Column(name = "journal_offset", nullable = false)
+    private long journalOffset;
+
+    protected LedgerProjectionCheckpoint() {
+    }
+
+    public LedgerProjectionCheckpoint(Integer partitionNo, long journalOffset) {
+        this.partitionNo = partitionNo;
+        this.journalOffset = journalOffset;
+    }
+
+    public Integer getPartitionNo() {
+        return partitionNo;
+    }
+
+    public long getJournalOffset() {
+        return journalOffset;
+    }
+}
@@ -0,0 +1,39 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+
+/**
+ *  Debits and credits of an account's completed transfers in all sealed ReconciliationBlocks, so an account check
+ *  only has to add the transfers after the last block. Rows are upserted with SQL when a block is sealed.
+ * */
+@Entity
+@Table(name = "reconciliation_account_flow")
+public class ReconciliationAccountFlow {
+
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+
+    @Column(name = "sent_total", nullable = false, precision = 24, scale = 4)
+    private BigDecimal sentTotal;
+
+    @Column(name = "received_total", nullable = false, precision = 24, scale = 4)
+    private BigDecimal receivedTotal;
+
+    protected ReconciliationAccountFlow() {
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public BigDecimal getSentTotal() {
+        return sentTotal;
+    }
+
+    public BigDecimal getReceivedTotal() {
+        return receivedTotal;
+    }
+}
@@ -0,0 +1,71 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+import com.jpmc.moneytransfer.moneytransfer.BaseEntity;
+import jakarta.persistence.*;
+
+/**
+ *  Checkpoint of the reconciliation job: a range of transfer ids that was settled (no PROCESSING rows, nothing new
+ *  for a while) and whose totals went into reconciliation_corridor_total and reconciliation_account_flow.
+ *  Later runs start after the last block. Blocks are sealed in order, so they always cover 1 .. lastTransferId.
+ * */
+@Entity
+@Table(name = "reconciliation_block")
+public class ReconciliationBlock extends BaseEntity {
+
+    @Id
+    @Column(name = "block_no")
+    private Long blockNo;
+
+    @Column(name = "first_transfer_id", nullable = false)
+    private long firstTransferId;
+
+    @Column(name = "last_transfer_id", nullable = false)
+    private long lastTransferId;
+
+    @Column(name = "completed", nullable = false)
+    private long completed;
+
+    @Column(name = "failed", nullable = false)
+    private long failed;
+
+    // completed transfers whose debit or credit doesn't follow from amount, fee and FX rate
+    @Column(name = "mismatches", nullable = false)
+    private long mismatches;
+
+    protected ReconciliationBlock() {
+    }
+
+    public ReconciliationBlock(Long blockNo, long firstTransferId, long lastTransferId, long completed, long failed,
+                               long mismatches) {
+        this.blockNo = blockNo;
+        this.firstTransferId = firstTransferId;
+        this.lastTransferId = lastTransferId;
+        this.completed = completed;
+        this.failed = failed;
+        this.mismatches = mismatches;
+    }
+
+    public Long getBlockNo() {
+        return blockNo;
+    }
+
+    public long getFirstTransferId() {
+        return firstTransferId;
+    }
+
+    public long getLastTransferId() {
+        return lastTransferId;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getMismatches() {
+        return mismatches;
+    }
+}
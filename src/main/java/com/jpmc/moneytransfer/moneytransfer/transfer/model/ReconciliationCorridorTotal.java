@@ -0,0 +1,72 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+
+/**
+ *  Sums of the completed transfers of one sealed ReconciliationBlock from one currency to another. Conserved when
+ *  debits minus fees are the amounts and the credits are the amounts converted with each transfer's own FX rate.
+ * */
+@Entity
+@Table(name = "reconciliation_corridor_total", indexes = {
+        @Index(name = "idx_reconciliation_corridor_block", columnList = "block_no")})
+public class ReconciliationCorridorTotal {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "total_id")
+    private Long id;
+
+    @Column(name = "block_no", nullable = false, updatable = false)
+    private Long blockNo;
+
+    @Column(name = "currency_from", nullable = false, updatable = false, length = 3)
+    private String currencyFrom;
+
+    @Column(name = "currency_to", nullable = false, updatable = false, length = 3)
+    private String currencyTo;
+
+    @Column(name = "transfers", nullable = false, updatable = false)
+    private long transfers;
+
+    @Column(name = "amount_total", nullable = false, updatable = false, precision = 24, scale = 4)
+    private BigDecimal amountTotal;
+
+    @Column(name = "fee_total", nullable = false, updatable = false, precision = 24, scale = 4)
+    private BigDecimal feeTotal;
+
+    @Column(name = "debit_total", nullable = false, updatable = false, precision = 24, scale = 4)
+    private BigDecimal debitTotal;
+
+    @Column(name = "credit_total", nullable = false, updatable = false, precision = 24, scale = 4)
+    private BigDecimal creditTotal;
+
+    // sum of amount * fx_rate (HALF_UP to 4 places) per transfer, what creditTotal has to be
+    @Column(name = "expected_credit_total", nullable = false, updatable = false, precision = 24, scale = 4)
+    private BigDecimal expectedCreditTotal;
+
+    protected ReconciliationCorridorTotal() {
+    }
+
+    public ReconciliationCorridorTotal(Long blockNo, CorridorTotals totals) {
+        this.blockNo = blockNo;
+        this.currencyFrom = totals.currencyFrom();
+        this.currencyTo = totals.currencyTo();
+        this.transfers = totals.transfers();
+        this.amountTotal = totals.amountTotal();
+        this.feeTotal = totals.feeTotal();
+        this.debitTotal = totals.debitTotal();
+        this.creditTotal = totals.creditTotal();
+        this.expectedCreditTotal = totals.expectedCreditTotal();
+    }
+
+    public Long getBlockNo() {
+        return blockNo;
+    }
+
+    public CorridorTotals toTotals() {
+        return new CorridorTotals(currencyFrom, currencyTo, transfers, amountTotal, feeTotal, debitTotal, creditTotal,
+                expectedCreditTotal);
+    }
+}
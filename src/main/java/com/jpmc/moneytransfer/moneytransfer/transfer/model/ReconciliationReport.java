@@ -0,0 +1,36 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ *  Outcome of one reconciliation run. Corridor totals and transfer mismatches cover every transfer up to
+ *  lastTransferId (sealed blocks from their checkpoint, the rest scanned), account discrepancies every account.
+ *  Only the first few mismatched transfers and accounts are listed, the counts are complete.
+ * */
+public record ReconciliationReport(LocalDateTime startedAt,
+                                   long durationMs,
+                                   long lastTransferId,
+                                   long sealedUpToTransferId,
+                                   int blocksSealed,
+                                   int blocksReopened,
+                                   long transfersScanned,
+                                   List<CorridorTotals> corridors,
+                                   long transferMismatches,
+                                   List<Long> mismatchedTransferIds,
+                                   long accountsChecked,
+                                   long accountDiscrepancies,
+                                   List<AccountDiscrepancy> discrepantAccounts) {
+
+    /**
+     *  Account whose balance isn't opening balance + credits - debits of its completed transfers.
+     * */
+    public record AccountDiscrepancy(Long accountId, BigDecimal balance, BigDecimal expectedBalance) {
+    }
+
+    public boolean isConserved() {
+        return transferMismatches == 0 && accountDiscrepancies == 0
+                && corridors.stream().allMatch(c -> c.isDebitConserved() && c.isCreditConserved());
+    }
+}
@@ -1,7 +1,9 @@
 package com.jpmc.moneytransfer.moneytransfer.transfer.model;
 
+import com.jpmc.moneytransfer.moneytransfer.Money;
 import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
 import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.transfer.journal.TransferJournalListener;
 import jakarta.persistence.*;
 
 import java.math.BigDecimal;
@@ -11,11 +13,25 @@ import java.time.LocalDateTime;
  *  Transfer Entity keeps record of the Transfer Request
  * */
 @Entity
-@Table(name = "transfer")
+@EntityListeners(TransferJournalListener.class)
+// state first so the async queue (PROCESSING rows in id order) is an index range scan
+// account history seeks (account, time, id) newest first, one index per side of the transfer, descending so
+// H2 can read them in order too
+@Table(name = "transfer", indexes = {
+        @Index(name = "idx_transfer_state", columnList = "state, transfer_id"),
+        @Index(name = "idx_transfer_from_time", columnList = "from_account_id_raw, transfer_time DESC, transfer_id DESC"),
+        @Index(name = "idx_transfer_to_time", columnList = "to_account_id_raw, transfer_time DESC, transfer_id DESC"),
+        // NULLs don't collide, only transfers submitted with a key are constrained
+        @Index(name = "uk_transfer_idempotency_key", columnList = "idempotency_key", unique = true)})
 public class Transfer {
 
+    public static final int FAILURE_MESSAGE_LENGTH = 255;
+    public static final int IDEMPOTENCY_KEY_LENGTH = 64;
+
+    // pooled sequence (a table on MySQL) so inserts can be batched, see IdSequenceAligner for existing rows
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfer_seq")
+    @SequenceGenerator(name = "transfer_seq", sequenceName = "transfer_seq", allocationSize = 50)
     @Column(name = "transfer_id")
     private Long id;
 
@@ -35,20 +51,24 @@ public class Transfer {
 
 
     @Column(name = "amount", nullable = false, precision = 19, scale = 4)
-    private BigDecimal amount;
+    private Money amount;
 
     @Column(name = "fee_applied", nullable = true, precision = 19, scale = 4)
-    private BigDecimal feeApplied;
+    private Money feeApplied;
 
     @Column(name = "fx_rate", nullable = true, precision = 19, scale = 6)
     private BigDecimal fxRate;
 
+    // version of the FX rate snapshot fxRate was taken from
+    @Column(name = "fx_rate_version", nullable = true)
+    private Long fxRateVersion;
+
     @Column(name = "debit_Amount", nullable = true, precision = 19, scale = 4)
-    private BigDecimal debitAmount;
+    private Money debitAmount;
 
 
     @Column(name = "credit_Amount", nullable = true, precision = 19, scale = 4)
-    private BigDecimal creditAmount;
+    private Money creditAmount;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = true)
     @JoinColumn(name = "currency", referencedColumnName = "currency_code")
@@ -69,6 +89,16 @@ public class Transfer {
     @Column(name = "state", nullable = false, length = 20)
     private TransferState state;
 
+    // reason code (TransferException/TransferRuntimeException Reason) and message of a FAILED transfer
+    @Column(name = "failure_reason", nullable = true, length = 40)
+    private String failureReason;
+
+    @Column(name = "failure_message", nullable = true, length = FAILURE_MESSAGE_LENGTH)
+    private String failureMessage;
+
+    @Column(name = "idempotency_key", nullable = true, updatable = false, length = IDEMPOTENCY_KEY_LENGTH)
+    private String idempotencyKey;
+
     @PrePersist
     public void onCreate() {
         this.transferTime = LocalDateTime.now();
@@ -79,7 +109,7 @@ public class Transfer {
 
     public Transfer(Long fromAccountId,
                     Long toAccountId,
-                    BigDecimal amount,
+                    Money amount,
                     TransferState state){
         this.fromAccountIdRaw = fromAccountId;
         this.toAccountIdRaw = toAccountId;
@@ -124,19 +154,19 @@ public class Transfer {
         this.toAccountIdRaw = toAccountId;
     }
 
-    public BigDecimal getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(BigDecimal amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
-    public BigDecimal getFeeApplied() {
+    public Money getFeeApplied() {
         return feeApplied;
     }
 
-    public void setFeeApplied(BigDecimal feeApplied) {
+    public void setFeeApplied(Money feeApplied) {
         this.feeApplied = feeApplied;
     }
 
@@ -148,11 +178,19 @@ public class Transfer {
         this.fxRate = fxRate;
     }
 
-    public BigDecimal getDebitAmount() {
+    public Long getFxRateVersion() {
+        return fxRateVersion;
+    }
+
+    public void setFxRateVersion(Long fxRateVersion) {
+        this.fxRateVersion = fxRateVersion;
+    }
+
+    public Money getDebitAmount() {
         return debitAmount;
     }
 
-    public void setDebitAmount(BigDecimal convertedAmount) {
+    public void setDebitAmount(Money convertedAmount) {
         this.debitAmount = convertedAmount;
     }
 
@@ -197,11 +235,41 @@ public class Transfer {
         this.currency = currency;
     }
 
-    public BigDecimal getCreditAmount() {
+    public Money getCreditAmount() {
         return creditAmount;
     }
 
-    public void setCreditAmount(BigDecimal creditAmount) {
+    public void setCreditAmount(Money creditAmount) {
         this.creditAmount = creditAmount;
     }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    public String getFailureMessage() {
+        return failureMessage;
+    }
+
+    /**
+     *  Marks the transfer FAILED with the reason code and message (cut to fit the column).
+     * */
+    public void fail(String reason, String message) {
+        this.state = TransferState.FAILED;
+        this.failureReason = reason;
+        this.failureMessage = truncateFailureMessage(message);
+    }
+
+    public static String truncateFailureMessage(String message) {
+        return message == null || message.length() <= FAILURE_MESSAGE_LENGTH
+                ? message : message.substring(0, FAILURE_MESSAGE_LENGTH);
+    }
 }
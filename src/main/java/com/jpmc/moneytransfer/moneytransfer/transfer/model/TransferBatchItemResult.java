@@ -0,0 +1,49 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+/**
+ *  Outcome of one item of a batch transfer. transferId is null when the item was rejected before a record was written.
+ * */
+public class TransferBatchItemResult {
+
+    private final int index;
+    private final Long transferId;
+    private final TransferState state;
+    private final String failureReason;
+    private final String message;
+
+    public TransferBatchItemResult(int index, Long transferId, TransferState state, String failureReason, String message) {
+        this.index = index;
+        this.transferId = transferId;
+        this.state = state;
+        this.failureReason = failureReason;
+        this.message = message;
+    }
+
+    public static TransferBatchItemResult completed(int index, Long transferId) {
+        return new TransferBatchItemResult(index, transferId, TransferState.COMPLETED, null, null);
+    }
+
+    public static TransferBatchItemResult failed(int index, Long transferId, String failureReason, String message) {
+        return new TransferBatchItemResult(index, transferId, TransferState.FAILED, failureReason, message);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Long getTransferId() {
+        return transferId;
+    }
+
+    public TransferState getState() {
+        return state;
+    }
+
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,26 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ *  One transfer of an account's history, read straight into this record so no Transfer entity (and none of its
+ *  EAGER accounts) is loaded. Currencies are the codes, debit/credit amounts are null for transfers that failed early.
+ * */
+public record TransferHistoryItem(Long transferId,
+                                  LocalDateTime transferTime,
+                                  Long fromAccountId,
+                                  Long toAccountId,
+                                  Money amount,
+                                  String currency,
+                                  Money feeApplied,
+                                  Money debitAmount,
+                                  String debitCurrency,
+                                  Money creditAmount,
+                                  String creditCurrency,
+                                  BigDecimal fxRate,
+                                  TransferState state,
+                                  String failureReason) {
+}
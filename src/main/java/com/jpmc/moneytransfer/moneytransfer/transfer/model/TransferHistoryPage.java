@@ -0,0 +1,10 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+import java.util.List;
+
+/**
+ *  A page of an account's transfers, newest first. nextCursor is null on the last page, otherwise it is passed back
+ *  to get the page after this one.
+ * */
+public record TransferHistoryPage(List<TransferHistoryItem> transfers, String nextCursor) {
+}
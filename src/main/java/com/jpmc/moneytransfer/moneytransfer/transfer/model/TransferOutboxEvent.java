@@ -0,0 +1,85 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ *  Outbox row: a transfer reached COMPLETED or FAILED, for one of its accounts (a completed transfer has a row for
+ *  the sender and one for the receiver). Inserted with JDBC by TransferOutboxService in the transaction of the
+ *  transfer, deleted by TransferOutboxPublisher once the sink took it. The id is assigned by the insert, which
+ *  happens while the transfer holds its account locks, so per account ids follow commit order.
+ * */
+@Entity
+// the publisher reads one partition at a time in id order
+@Table(name = "transfer_outbox", indexes = {
+        @Index(name = "idx_transfer_outbox_partition", columnList = "partition_no, outbox_id")})
+public class TransferOutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "outbox_id")
+    private Long id;
+
+    // account id modulo transfer.outbox.partitions, one publisher at a time per partition
+    @Column(name = "partition_no", nullable = false)
+    private int partitionNo;
+
+    @Column(name = "account_id", nullable = false)
+    private long accountId;
+
+    @Column(name = "transfer_id", nullable = false)
+    private long transferId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "state", nullable = false, length = 20)
+    private TransferState state;
+
+    @Column(name = "from_account_id", nullable = false)
+    private long fromAccountId;
+
+    @Column(name = "to_account_id", nullable = false)
+    private long toAccountId;
+
+    @Column(name = "amount", nullable = false, precision = 19, scale = 4)
+    private Money amount;
+
+    @Column(name = "fee_applied", precision = 19, scale = 4)
+    private Money feeApplied;
+
+    @Column(name = "fx_rate", precision = 19, scale = 6)
+    private BigDecimal fxRate;
+
+    @Column(name = "debit_amount", precision = 19, scale = 4)
+    private Money debitAmount;
+
+    @Column(name = "credit_amount", precision = 19, scale = 4)
+    private Money creditAmount;
+
+    @Column(name = "currency", length = 3)
+    private String currency;
+
+    @Column(name = "currency_from", length = 3)
+    private String currencyFrom;
+
+    @Column(name = "currency_to", length = 3)
+    private String currencyTo;
+
+    @Column(name = "failure_reason", length = 40)
+    private String failureReason;
+
+    @Column(name = "failure_message", length = Transfer.FAILURE_MESSAGE_LENGTH)
+    private String failureMessage;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    protected TransferOutboxEvent() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
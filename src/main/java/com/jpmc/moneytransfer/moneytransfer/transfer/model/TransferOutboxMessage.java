@@ -0,0 +1,30 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ *  What a TransferEventSink receives: a transfer that reached COMPLETED or FAILED, addressed to accountId (sender
+ *  or receiver). Delivery is at least once, outboxId identifies a message across redeliveries and grows with the
+ *  commit order of the account's transfers.
+ * */
+public record TransferOutboxMessage(long outboxId,
+                                    long accountId,
+                                    long transferId,
+                                    TransferState state,
+                                    long fromAccountId,
+                                    long toAccountId,
+                                    Money amount,
+                                    Money feeApplied,
+                                    BigDecimal fxRate,
+                                    Money debitAmount,
+                                    Money creditAmount,
+                                    String currency,
+                                    String currencyFrom,
+                                    String currencyTo,
+                                    String failureReason,
+                                    String failureMessage,
+                                    LocalDateTime createdAt) {
+}
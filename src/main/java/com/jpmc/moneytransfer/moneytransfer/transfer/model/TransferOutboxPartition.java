@@ -0,0 +1,47 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ *  Lease on one outbox partition. A publisher locks the row (SKIP LOCKED, so publishers on other threads and nodes
+ *  take other partitions) for the transaction that delivers and deletes a batch of the partition's outbox rows,
+ *  which keeps the rows of an account in order. claimedAt rotates the claims over all partitions.
+ * */
+@Entity
+@Table(name = "transfer_outbox_partition")
+public class TransferOutboxPartition {
+
+    @Id
+    @Column(name = "partition_no")
+    private Integer partitionNo;
+
+    @Column(name = "claimed_at", nullable = false)
+    private LocalDateTime claimedAt;
+
+    // outbox rows delivered from this partition, over all publishers
+    @Column(name = "delivered", nullable = false)
+    private long delivered;
+
+    protected TransferOutboxPartition() {
+    }
+
+    public TransferOutboxPartition(Integer partitionNo) {
+        this.partitionNo = partitionNo;
+        this.claimedAt = LocalDateTime.now();
+    }
+
+    public Integer getPartitionNo() {
+        return partitionNo;
+    }
+
+    public long getDelivered() {
+        return delivered;
+    }
+
+    public void claimed(int deliveredRows) {
+        claimedAt = LocalDateTime.now();
+        delivered += deliveredRows;
+    }
+}
@@ -1,16 +1,23 @@
 package com.jpmc.moneytransfer.moneytransfer.transfer.model;
 
 import com.jpmc.moneytransfer.moneytransfer.BaseEntity;
+import com.jpmc.moneytransfer.moneytransfer.account.model.AccountTier;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
 
 /*
- * Transfer Policy Entity
+ * Transfer Policy Entity, second level cached like Currency
+ * Fee policies (name starting with TRANSFER_FEE) can be narrowed to a corridor, an account tier and an amount band,
+ * a null column matches anything. FeeService compiles them into a FeeSchedule.
  * */
 
 @Entity
 @Table(name = "transfer_policy")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "transferPolicy")
 public class TransferPolicy  extends BaseEntity {
 
     @Id
@@ -23,6 +30,20 @@ public class TransferPolicy  extends BaseEntity {
     @Column(name = "enabled", nullable = false)
     private boolean enabled = true;
 
+    @Column(name = "currency_from", length = 3)
+    private String currencyFrom;
+
+    @Column(name = "currency_to", length = 3)
+    private String currencyTo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "account_tier", length = 20)
+    private AccountTier accountTier;
+
+    // lower bound (inclusive) of the amount band, the band ends where the next band of the same schedule starts
+    @Column(name = "min_amount", precision = 19, scale = 4)
+    private BigDecimal minAmount;
+
     protected TransferPolicy() {
     }
 
@@ -56,4 +77,36 @@ public class TransferPolicy  extends BaseEntity {
         this.enabled = enabled;
     }
 
+    public String getCurrencyFrom() {
+        return currencyFrom;
+    }
+
+    public void setCurrencyFrom(String currencyFrom) {
+        this.currencyFrom = currencyFrom;
+    }
+
+    public String getCurrencyTo() {
+        return currencyTo;
+    }
+
+    public void setCurrencyTo(String currencyTo) {
+        this.currencyTo = currencyTo;
+    }
+
+    public AccountTier getAccountTier() {
+        return accountTier;
+    }
+
+    public void setAccountTier(AccountTier accountTier) {
+        this.accountTier = accountTier;
+    }
+
+    public BigDecimal getMinAmount() {
+        return minAmount;
+    }
+
+    public void setMinAmount(BigDecimal minAmount) {
+        this.minAmount = minAmount;
+    }
+
 }
@@ -18,8 +18,9 @@ public class TransferRequestDTO {
     @NotNull(message = "Amount is required")
     @DecimalMin(value = "0.01", inclusive = true,
             message = "Amount must be at least 0.01")
-    @Digits(integer = 15, fraction = 4,
-            message = "Amount must have max 15 integer digits and 4 decimal places")
+    // 14 integer digits keep every valid amount inside Money.MAX
+    @Digits(integer = 14, fraction = 4,
+            message = "Amount must have max 14 integer digits and 4 decimal places")
     private BigDecimal amount;
 
     /**
@@ -30,6 +31,12 @@ public class TransferRequestDTO {
             message = "Currency must be a valid 3-letter ISO-4217 code in upper-case")
     private String currency;
 
+    /**
+     * optional, chosen by the client and sent again on every retry of the same transfer
+     */
+    @Size(min = 1, max = 64, message = "Idempotency key must have 1 to 64 characters")
+    private String idempotencyKey;
+
 
     public TransferRequestDTO() { /* for Jackson / Bean Validation */ }
 
@@ -40,6 +47,12 @@ public class TransferRequestDTO {
         this.currency = currency;
     }
 
+    public TransferRequestDTO(Long senderAccountId, Long receiverAccountId, BigDecimal amount, String currency,
+                              String idempotencyKey) {
+        this(senderAccountId, receiverAccountId, amount, currency);
+        this.idempotencyKey = idempotencyKey;
+    }
+
     public Long getSenderAccountId() {
         return senderAccountId;
     }
@@ -71,4 +84,12 @@ public class TransferRequestDTO {
     public void setCurrency(String currency) {
         this.currency = currency;
     }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
 }
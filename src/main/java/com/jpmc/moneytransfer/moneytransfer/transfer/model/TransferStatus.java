@@ -0,0 +1,7 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.model;
+
+/**
+ *  State of a transfer as returned by the status endpoint, failureReason/failureMessage are only set when it FAILED.
+ * */
+public record TransferStatus(Long transferId, TransferState state, String failureReason, String failureMessage) {
+}
@@ -0,0 +1,25 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.repository;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.BalanceSnapshot;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    /**
+     *  Newest snapshots of the account taken at or before the time, newest first.
+     * */
+    @Query("SELECT s FROM BalanceSnapshot s WHERE s.accountId = :accountId AND s.snapshotTime <= :time " +
+            "ORDER BY s.snapshotTime DESC, s.id DESC")
+    List<BalanceSnapshot> findLatestAtOrBefore(@Param("accountId") Long accountId, @Param("time") LocalDateTime time,
+                                               Limit limit);
+
+    boolean existsByAccountId(Long accountId);
+}
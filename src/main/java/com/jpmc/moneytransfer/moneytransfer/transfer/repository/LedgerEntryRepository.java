@@ -0,0 +1,59 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.repository;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ *  Reads of the append-only ledger, the rows are written with JDBC batches by DoubleEntryLedgerService.
+ *  Sums are native so they come back as plain decimals.
+ * */
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    /**
+     *  Sum, last id and number of the account's entries after an entry id (0 for all).
+     * */
+    interface EntryTotals {
+        BigDecimal getTotal();
+
+        Long getLastEntryId();
+
+        long getEntryCount();
+    }
+
+    /**
+     *  Sum of the account's entries after its snapshot, a range scan of idx_ledger_entry_account.
+     * */
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM ledger_entry WHERE account_id = :accountId AND entry_id > :after",
+            nativeQuery = true)
+    BigDecimal sumAfter(@Param("accountId") Long accountId, @Param("after") long after);
+
+    /**
+     *  Same, but only the entries made up to the given time.
+     * */
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM ledger_entry " +
+            "WHERE account_id = :accountId AND entry_id > :after AND entry_time <= :time", nativeQuery = true)
+    BigDecimal sumAfterUntil(@Param("accountId") Long accountId, @Param("after") long after,
+                             @Param("time") LocalDateTime time);
+
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) AS total, MAX(entry_id) AS lastEntryId, COUNT(*) AS entryCount " +
+            "FROM ledger_entry WHERE account_id = :accountId AND entry_id > :after", nativeQuery = true)
+    EntryTotals totalsAfter(@Param("accountId") Long accountId, @Param("after") long after);
+
+    /**
+     *  Accounts with at least minEntries entries after their snapshot (account.ledger_position), lowest id first.
+     *  Scans every uncompacted entry, only for LedgerCompactor.compactAll(), the scheduled runs use the counts of
+     *  DoubleEntryLedgerService.
+     * */
+    @Query(value = "SELECT e.account_id FROM ledger_entry e JOIN account a ON a.account_id = e.account_id " +
+            "WHERE e.entry_id > a.ledger_position GROUP BY e.account_id HAVING COUNT(*) >= :minEntries " +
+            "ORDER BY e.account_id LIMIT :max", nativeQuery = true)
+    List<Long> findAccountsToCompact(@Param("minEntries") long minEntries, @Param("max") int max);
+}
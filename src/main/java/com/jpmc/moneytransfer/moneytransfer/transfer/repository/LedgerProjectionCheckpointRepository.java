@@ -0,0 +1,9 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.repository;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.LedgerProjectionCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface LedgerProjectionCheckpointRepository extends JpaRepository<LedgerProjectionCheckpoint, Integer> {
+}
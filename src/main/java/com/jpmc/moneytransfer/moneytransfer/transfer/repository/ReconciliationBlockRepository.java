@@ -0,0 +1,16 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.repository;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.ReconciliationBlock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ReconciliationBlockRepository extends JpaRepository<ReconciliationBlock, Long> {
+
+    Optional<ReconciliationBlock> findTopByOrderByBlockNoDesc();
+
+    List<ReconciliationBlock> findAllByOrderByBlockNo();
+}
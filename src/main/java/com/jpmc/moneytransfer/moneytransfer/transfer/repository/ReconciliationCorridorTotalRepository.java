@@ -0,0 +1,21 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.repository;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.CorridorTotals;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.ReconciliationCorridorTotal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReconciliationCorridorTotalRepository extends JpaRepository<ReconciliationCorridorTotal, Long> {
+
+    /**
+     *  Totals of all sealed blocks per corridor, one row per currency pair whatever the number of blocks.
+     * */
+    @Query("SELECT new com.jpmc.moneytransfer.moneytransfer.transfer.model.CorridorTotals(c.currencyFrom, c.currencyTo, " +
+            "SUM(c.transfers), SUM(c.amountTotal), SUM(c.feeTotal), SUM(c.debitTotal), SUM(c.creditTotal), " +
+            "SUM(c.expectedCreditTotal)) FROM ReconciliationCorridorTotal c GROUP BY c.currencyFrom, c.currencyTo")
+    List<CorridorTotals> sumPerCorridor();
+}
@@ -0,0 +1,25 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.repository;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferOutboxPartition;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TransferOutboxPartitionRepository extends JpaRepository<TransferOutboxPartition, Integer> {
+
+    /**
+     *  Leases the partition claimed longest ago that no other publisher holds, SKIP LOCKED.
+     * */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT p FROM TransferOutboxPartition p ORDER BY p.claimedAt, p.partitionNo")
+    List<TransferOutboxPartition> claimNext(Limit limit);
+}
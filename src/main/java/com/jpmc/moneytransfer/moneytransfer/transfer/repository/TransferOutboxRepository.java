@@ -0,0 +1,30 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.repository;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferOutboxEvent;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferOutboxMessage;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TransferOutboxRepository extends JpaRepository<TransferOutboxEvent, Long> {
+
+    /**
+     *  Oldest undelivered rows of a partition, read under its lease.
+     * */
+    @Query("SELECT new com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferOutboxMessage(" +
+            "o.id, o.accountId, o.transferId, o.state, o.fromAccountId, o.toAccountId, o.amount, o.feeApplied, o.fxRate, " +
+            "o.debitAmount, o.creditAmount, o.currency, o.currencyFrom, o.currencyTo, o.failureReason, o.failureMessage, " +
+            "o.createdAt) FROM TransferOutboxEvent o WHERE o.partitionNo = :partition ORDER BY o.id")
+    List<TransferOutboxMessage> findPending(@Param("partition") int partition, Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM TransferOutboxEvent o WHERE o.id IN :ids")
+    int deleteDelivered(@Param("ids") Collection<Long> ids);
+}
@@ -1,9 +1,111 @@
 package com.jpmc.moneytransfer.moneytransfer.transfer.repository;
 
 import com.jpmc.moneytransfer.moneytransfer.transfer.model.Transfer;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferHistoryItem;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
 public interface TransferRepository extends JpaRepository<Transfer, Long> {
+
+    String HISTORY_ITEM = "SELECT new com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferHistoryItem(" +
+            "t.id, t.transferTime, t.fromAccountIdRaw, t.toAccountIdRaw, t.amount, t.currency.code, t.feeApplied, " +
+            "t.debitAmount, t.currencyFrom.code, t.creditAmount, t.currencyTo.code, t.fxRate, t.state, t.failureReason) " +
+            "FROM Transfer t ";
+
+    // seek past the cursor, (transfer_time, transfer_id) < (:time, :id) spelled out with a plain range on
+    // transfer_time first: that's what lets H2 and MySQL start in the index at the cursor instead of filtering
+    String BEFORE_CURSOR = "AND t.transferTime <= :time AND (t.transferTime < :time OR t.id < :id) ";
+
+    /**
+     *  Transfers sent by the account older than the cursor, newest first, straight off idx_transfer_from_time.
+     *  The account is repeated in the ORDER BY so the order matches the index and no sort is needed.
+     * */
+    @Query(HISTORY_ITEM + "WHERE t.fromAccountIdRaw = :accountId " + BEFORE_CURSOR +
+            "ORDER BY t.fromAccountIdRaw, t.transferTime DESC, t.id DESC")
+    List<TransferHistoryItem> findSentBefore(@Param("accountId") Long accountId, @Param("time") LocalDateTime time,
+                                             @Param("id") Long id, Limit limit);
+
+    /**
+     *  Transfers received by the account older than the cursor, newest first, straight off idx_transfer_to_time.
+     * */
+    @Query(HISTORY_ITEM + "WHERE t.toAccountIdRaw = :accountId " + BEFORE_CURSOR +
+            "ORDER BY t.toAccountIdRaw, t.transferTime DESC, t.id DESC")
+    List<TransferHistoryItem> findReceivedBefore(@Param("accountId") Long accountId, @Param("time") LocalDateTime time,
+                                                 @Param("id") Long id, Limit limit);
+
+    // rows per round trip of a statement export, the driver only ever holds this many
+    String EXPORT_FETCH_SIZE = "1000";
+
+    // transfers of a statement period, [from, to)
+    String IN_PERIOD = "AND t.transferTime >= :from AND t.transferTime < :to ";
+
+    /**
+     *  Transfers sent by the account in the period, newest first off idx_transfer_from_time, read through a forward
+     *  only cursor. Has to be consumed (and closed) inside a transaction.
+     * */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")})
+    @Query(HISTORY_ITEM + "WHERE t.fromAccountIdRaw = :accountId " + IN_PERIOD +
+            "ORDER BY t.fromAccountIdRaw, t.transferTime DESC, t.id DESC")
+    Stream<TransferHistoryItem> streamSent(@Param("accountId") Long accountId, @Param("from") LocalDateTime from,
+                                           @Param("to") LocalDateTime to);
+
+    /**
+     *  Transfers received by the account in the period, newest first off idx_transfer_to_time.
+     * */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")})
+    @Query(HISTORY_ITEM + "WHERE t.toAccountIdRaw = :accountId " + IN_PERIOD +
+            "ORDER BY t.toAccountIdRaw, t.transferTime DESC, t.id DESC")
+    Stream<TransferHistoryItem> streamReceived(@Param("accountId") Long accountId, @Param("from") LocalDateTime from,
+                                               @Param("to") LocalDateTime to);
+
+    @Query("SELECT new com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferStatus(" +
+            "t.id, t.state, t.failureReason, t.failureMessage) FROM Transfer t WHERE t.id = :id")
+    Optional<TransferStatus> findStatusById(@Param("id") Long id);
+
+    @Query("SELECT t FROM Transfer t LEFT JOIN FETCH t.currency WHERE t.idempotencyKey = :key")
+    Optional<Transfer> findByIdempotencyKey(@Param("key") String key);
+
+    @Query("SELECT t FROM Transfer t LEFT JOIN FETCH t.currency WHERE t.idempotencyKey IN :keys")
+    List<Transfer> findAllByIdempotencyKeyIn(@Param("keys") Collection<String> keys);
+
+    /**
+     *  Oldest queued transfers. Synchronous transfers never commit a PROCESSING row, so these are async submissions.
+     * */
+    @Query("SELECT t.id FROM Transfer t " +
+            "WHERE t.state = com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState.PROCESSING ORDER BY t.id")
+    List<Long> findQueuedIds(Limit limit);
+
+    /**
+     *  Locks a queued transfer for execution, SKIP LOCKED so a row another node is working on is just passed over.
+     * */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT t FROM Transfer t WHERE t.id = :id " +
+            "AND t.state = com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState.PROCESSING")
+    Optional<Transfer> claimQueued(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE Transfer t SET t.state = com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState.FAILED, " +
+            "t.failureReason = :reason, t.failureMessage = :message " +
+            "WHERE t.id = :id AND t.state = com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState.PROCESSING")
+    int failQueued(@Param("id") Long id, @Param("reason") String reason, @Param("message") String message);
 }
@@ -0,0 +1,32 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.ContentionReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ *  GET /actuator/contention: the accounts with the longest row lock waits, current and previous window.
+ *  DELETE starts a new window and drops the previous one.
+ * */
+@Component
+@Endpoint(id = "contention")
+public class AccountContentionEndpoint {
+
+    @Autowired
+    private AccountContentionProfiler profiler;
+
+    @ReadOperation
+    public Map<String, ContentionReport> contention() {
+        return profiler.report();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        profiler.reset();
+    }
+}
@@ -0,0 +1,168 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.ContentionReport;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.ContentionReport.AccountContention;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ *  Always on profiler of account row lock waits: how long each SELECT ... FOR UPDATE in attachLockedAccountsOrdered
+ *  (and the FOR UPDATE/FOR SHARE pair of DOUBLE_ENTRY) took, per account. Waits go into a few Space-Saving
+ *  summaries of capacity counters each, a caller picks one at random and holds its monitor for a table probe and a
+ *  few heap swaps, so a recording costs well under a microsecond next to a lock that costs a database round trip.
+ *  Memory is fixed however many accounts there are. Counting runs in windows of window-ms, the current one and
+ *  the last complete one are reported, so a convoy shows up within a window and fades once it's over.
+ * */
+@Component
+public class AccountContentionProfiler {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountContentionProfiler.class);
+
+    private static final double NANOS_PER_MS = 1_000_000.0;
+
+    @Value("${transfer.contention.enabled:true}")
+    private boolean enabled;
+
+    // counters per summary, the top-k reported are accurate while they hold a good part of the wait
+    @Value("${transfer.contention.capacity:256}")
+    private int capacity;
+
+    @Value("${transfer.contention.top-k:20}")
+    private int topK;
+
+    // independent summaries, merged when read. More means less monitor contention and a bit more error
+    @Value("${transfer.contention.stripes:4}")
+    private int stripes;
+
+    private volatile Window current;
+    private volatile Window previous;
+
+    private final class Window {
+        final LocalDateTime start = LocalDateTime.now();
+        final SpaceSaving[] summaries = new SpaceSaving[stripes];
+
+        Window() {
+            for (int i = 0; i < summaries.length; i++) {
+                summaries[i] = new SpaceSaving(capacity);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        // one bit per summary in the merge
+        stripes = Math.max(1, Math.min(stripes, 64));
+        current = new Window();
+        if (enabled) {
+            log.info("Account contention profiler on, top {} of {} x {} counters", topK, stripes, capacity);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     *  Records that locking accountId took waitNanos.
+     * */
+    public void record(Long accountId, long waitNanos) {
+        if (!enabled) {
+            return;
+        }
+        SpaceSaving summary = current.summaries[ThreadLocalRandom.current().nextInt(stripes)];
+        synchronized (summary) {
+            summary.add(accountId, waitNanos);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${transfer.contention.window-ms:60000}",
+            initialDelayString = "${transfer.contention.window-ms:60000}")
+    public void rotate() {
+        // a recording racing with the swap lands in the window being retired, that's fine
+        previous = current;
+        current = new Window();
+    }
+
+    /**
+     *  The current window (so far) and the last complete one, if there was one yet.
+     * */
+    public Map<String, ContentionReport> report() {
+        Map<String, ContentionReport> report = new HashMap<>();
+        Window now = current;
+        Window before = previous;
+        report.put("current", report(now, null));
+        if (before != null) {
+            report.put("previous", report(before, now.start));
+        }
+        return report;
+    }
+
+    public void reset() {
+        previous = null;
+        current = new Window();
+    }
+
+    /**
+     *  Merges the window's summaries: per account weights and errors add up, and a summary that doesn't track the
+     *  account might still have had up to its smallest weight of it, that goes into the error too.
+     * */
+    private ContentionReport report(Window window, LocalDateTime end) {
+        long acquisitions = 0;
+        long total = 0;
+        Map<Long, long[]> merged = new HashMap<>();
+        long[] bounds = new long[stripes];
+        for (int i = 0; i < stripes; i++) {
+            SpaceSaving summary = window.summaries[i];
+            List<SpaceSaving.Entry> entries;
+            synchronized (summary) {
+                acquisitions += summary.observations();
+                total += summary.total();
+                bounds[i] = summary.untrackedBound();
+                entries = summary.entries();
+            }
+            for (SpaceSaving.Entry entry : entries) {
+                // weight, error, count, max, bitmask of the summaries that track it
+                long[] sum = merged.computeIfAbsent(entry.key(), k -> new long[5]);
+                sum[0] += entry.weight();
+                sum[1] += entry.error();
+                sum[2] += entry.count();
+                sum[3] = Math.max(sum[3], entry.max());
+                sum[4] |= 1L << i;
+            }
+        }
+
+        long totalWait = total;
+        List<AccountContention> hottest = new ArrayList<>(merged.size());
+        merged.forEach((accountId, sum) -> {
+            long error = sum[1];
+            for (int i = 0; i < stripes; i++) {
+                if ((sum[4] & (1L << i)) == 0) {
+                    error += bounds[i];
+                }
+            }
+            hottest.add(new AccountContention(accountId,
+                    sum[0] / NANOS_PER_MS,
+                    error / NANOS_PER_MS,
+                    totalWait == 0 ? 0 : (double) sum[0] / totalWait,
+                    sum[2],
+                    // the inherited error was waited on before the account was tracked
+                    (sum[0] - sum[1]) / NANOS_PER_MS / sum[2],
+                    sum[3] / NANOS_PER_MS));
+        });
+        hottest.sort(Comparator.comparingDouble(AccountContention::waitMs).reversed());
+        return new ContentionReport(window.start, end, acquisitions, total / NANOS_PER_MS,
+                List.copyOf(hottest.subList(0, Math.min(topK, hottest.size()))));
+    }
+}
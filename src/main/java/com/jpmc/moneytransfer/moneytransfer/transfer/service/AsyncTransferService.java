@@ -0,0 +1,222 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  Async transfer submission. submit() only saves the transfer as PROCESSING and returns its id, the committed
+ *  PROCESSING rows are the queue. A dispatcher thread reads them in id order and hands them to a fixed pool of
+ *  workers, each worker claims its row with SELECT ... FOR UPDATE SKIP LOCKED and runs the transfer in that same
+ *  transaction, so a transfer commits its balances and its final state together and runs exactly once, also with
+ *  several nodes draining the same table. A row another node claimed first is passed over until the next poll
+ *  interval, so a dispatcher doesn't keep handing out the oldest rows while other nodes run them.
+ *  Rows left PROCESSING by a crash are picked up again on startup.
+ *  Not available in IN_MEMORY mode, the ledger engine inserts its transfer rows itself.
+ * */
+@Service
+public class AsyncTransferService {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncTransferService.class);
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private TransferConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private TransferThreads transferThreads;
+
+    @Value("${transfer.async.enabled:true}")
+    private boolean enabled;
+
+    @Value("${transfer.async.workers:4}")
+    private int workerCount;
+
+    // queued ids read per poll, also bounds how many are handed to the pool at once
+    @Value("${transfer.async.claim-batch:64}")
+    private int claimBatch;
+
+    // fallback poll for rows submitted by other nodes, local submissions wake the dispatcher right away
+    @Value("${transfer.async.poll-interval-ms:500}")
+    private long pollIntervalMs;
+
+    private ThreadPoolExecutor workers;
+    private Thread dispatcher;
+    private Semaphore slots;
+    private final Semaphore wakeUp = new Semaphore(0);
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    // claimed by another node since lostSince, not handed out again before the next poll interval
+    private final Set<Long> lost = ConcurrentHashMap.newKeySet();
+    private long lostSince;
+    private volatile boolean running;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder lostClaims = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (transferService.getExecutionMode() == TransferExecutionMode.IN_MEMORY) {
+            enabled = false;
+        }
+        if (!enabled) {
+            return;
+        }
+        slots = new Semaphore(claimBatch);
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), transferThreads.factory("async-transfer-worker"));
+        running = true;
+        dispatcher = new Thread(this::dispatch, "async-transfer-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        log.info("Async transfers enabled: {} {} workers", workerCount, transferThreads.isVirtual() ? "virtual" : "platform");
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        dispatcher.interrupt();
+        workers.shutdown();
+        // whatever doesn't finish rolls back and stays queued for the next start
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     *  Saves the transfer as PROCESSING and returns its id without running it. Only an unknown currency is
+     *  rejected here, every other failure shows up in the transfer status.
+     * */
+    public Long submit(TransferRequestDTO dto) throws TransferException {
+        if (!enabled) {
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.INVALID_ARGUMENT,
+                    "Async transfers are disabled");
+        }
+        Long id = transferService.submitTransfer(dto);
+        submitted.increment();
+        wakeUp.release();
+        return id;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("submitted", submitted.sum());
+        stats.put("executed", executed.sum());
+        stats.put("conflicts", conflicts.sum());
+        stats.put("lostClaims", lostClaims.sum());
+        stats.put("errors", errors.sum());
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+
+    private void dispatch() {
+        while (running) {
+            try {
+                wakeUp.drainPermits();
+                if (System.nanoTime() - lostSince > TimeUnit.MILLISECONDS.toNanos(pollIntervalMs)) {
+                    lost.clear();
+                    lostSince = System.nanoTime();
+                }
+                // read past the rows running here or elsewhere, so up to claimBatch of them are new
+                List<Long> queued = transferRepository.findQueuedIds(Limit.of(claimBatch + inFlight.size() + lost.size()));
+                int handedOut = 0;
+                for (Long id : queued) {
+                    if (lost.contains(id) || !inFlight.add(id)) {
+                        continue;
+                    }
+                    slots.acquire();
+                    workers.execute(() -> run(id));
+                    handedOut++;
+                }
+                if (handedOut == 0) {
+                    // everything queued is running here or on another node (or nothing is queued):
+                    // wait for a submit or a finish
+                    wakeUp.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Async transfer dispatcher failed, retrying in {} ms", pollIntervalMs, e);
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void run(Long id) {
+        boolean claimed = true;
+        try {
+            concurrencyLimiter.acquire();
+            try {
+                claimed = transferService.executeQueuedTransfer(id);
+                if (claimed) {
+                    executed.increment();
+                } else {
+                    // locked by another node (or already final): only a successful claim counts as progress
+                    lostClaims.increment();
+                    lost.add(id);
+                }
+            } finally {
+                concurrencyLimiter.release();
+            }
+        } catch (TransientDataAccessException e) {
+            // lost an OPTIMISTIC version check, a lock wait or a deadlock: rolled back, still PROCESSING,
+            // so it is picked up again
+            conflicts.increment();
+            log.debug("Queued transfer {} rolled back ({}), requeued", id, e.getClass().getSimpleName());
+        } catch (TransferRuntimeException e) {
+            if (e.getReason() == TransferRuntimeException.Reason.OVERLOADED) {
+                // never started, still queued
+                conflicts.increment();
+                return;
+            }
+            errors.increment();
+            log.error("Queued transfer {} failed", id, e);
+            transferService.failQueuedTransfer(id, e.getReason().name(), e.getMessage());
+        } catch (RuntimeException e) {
+            errors.increment();
+            log.error("Queued transfer {} failed", id, e);
+            transferService.failQueuedTransfer(id, TransferRuntimeException.Reason.UNKNOWN_ERROR.name(), e.getMessage());
+        } finally {
+            inFlight.remove(id);
+            slots.release();
+            if (claimed) {
+                // a lost row is running elsewhere, polling again right away would only find it again
+                wakeUp.release();
+            }
+        }
+    }
+}
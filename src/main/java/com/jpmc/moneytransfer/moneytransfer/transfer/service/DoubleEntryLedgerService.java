@@ -0,0 +1,159 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.BalanceSnapshot;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.Transfer;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.BalanceSnapshotRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.LedgerEntryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  Balances of DOUBLE_ENTRY mode. A transfer doesn't update account rows, it appends a debit and a credit to
+ *  ledger_entry.
+ *  The balance of an account is its last snapshot (account.balance as of account.ledger_position, moved forward by
+ *  the LedgerCompactor) plus the entries after it. Entries of an account are only inserted while its row is locked,
+ *  FOR UPDATE by a debit and FOR SHARE by a credit, that's what lets the compactor move the snapshot safely.
+ * */
+@Service
+public class DoubleEntryLedgerService {
+
+    private static final String INSERT_ENTRY =
+            "INSERT INTO ledger_entry (account_id, transfer_id, amount, entry_time) VALUES (?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private LedgerEntryRepository entryRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository snapshotRepository;
+
+    // entries this node appended per account since the compactor last took it, so it never has to scan the ledger
+    private final ConcurrentHashMap<Long, LongAdder> uncompacted = new ConcurrentHashMap<>();
+
+    /**
+     *  Balance of an account now (at is null) or at a past time, empty when there is no such account.
+     *  The account row is one consistent (snapshot, position) pair, a compaction in between doesn't count twice.
+     * */
+    @Transactional(readOnly = true)
+    public Optional<Money> findBalance(Long accountId, LocalDateTime at) {
+        return accountRepository.findUnlockedById(accountId)
+                .map(account -> at == null ? balanceOf(account) : balanceAt(account, at));
+    }
+
+    /**
+     *  Current balance of an account the caller has locked (or at least read in this transaction).
+     * */
+    public Money balanceOf(Account account) {
+        return account.getBalance().plus(Money.of(entryRepository.sumAfter(account.getId(), account.getLedgerPosition())));
+    }
+
+    /**
+     *  Balance at a past time: the newest snapshot taken at or before it plus the entries after that snapshot made
+     *  up to the time. Without any snapshot yet account.balance is still the opening balance. Read without locks,
+     *  account has to be read before this is called.
+     * */
+    public Money balanceAt(Account account, LocalDateTime time) {
+        List<BalanceSnapshot> snapshots = snapshotRepository.findLatestAtOrBefore(account.getId(), time, Limit.of(1));
+        Money base;
+        long after;
+        if (!snapshots.isEmpty()) {
+            base = snapshots.get(0).getBalance();
+            after = snapshots.get(0).getLastEntryId();
+        } else if (account.getLedgerPosition() == 0 && !time.isBefore(account.getCreatedAt())) {
+            base = account.getBalance();
+            after = 0;
+        } else {
+            // before the opening snapshot, the account didn't exist yet
+            return Money.ZERO;
+        }
+        return base.plus(Money.of(entryRepository.sumAfterUntil(account.getId(), after, time)));
+    }
+
+    /**
+     *  Balances for the items of one batch chunk, its entries are only appended once all of them ran.
+     * */
+    public PendingBalances pendingBalances() {
+        return new PendingBalances();
+    }
+
+    /**
+     *  Appends the debit of the sender and the credit of the receiver of each completed transfer, one JDBC batch.
+     *  Runs in the transfer's transaction, with both accounts locked.
+     * */
+    public void append(List<Transfer> transfers) {
+        if (transfers.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(transfers.size() * 2);
+        for (Transfer transfer : transfers) {
+            rows.add(new Object[]{transfer.getFromAccountIdRaw(), transfer.getId(),
+                    transfer.getDebitAmount().negate().toBigDecimal(), now});
+            rows.add(new Object[]{transfer.getToAccountIdRaw(), transfer.getId(),
+                    transfer.getCreditAmount().toBigDecimal(), now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_ENTRY, rows);
+        for (Transfer transfer : transfers) {
+            uncompacted.computeIfAbsent(transfer.getFromAccountIdRaw(), id -> new LongAdder()).increment();
+            uncompacted.computeIfAbsent(transfer.getToAccountIdRaw(), id -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     *  Accounts this node appended at least minEntries entries to since they were last taken, up to max, their
+     *  counts start over at zero. A count can be a bit high (a rolled back transfer, entries a compaction already
+     *  took), the compactor just finds fewer. Entries of other nodes or from before a restart aren't counted here.
+     * */
+    public List<Long> takeAccountsToCompact(long minEntries, int max) {
+        List<Long> accountIds = new ArrayList<>();
+        for (Map.Entry<Long, LongAdder> entry : uncompacted.entrySet()) {
+            if (accountIds.size() >= max) {
+                break;
+            }
+            if (entry.getValue().sum() >= minEntries && uncompacted.remove(entry.getKey(), entry.getValue())) {
+                accountIds.add(entry.getKey());
+            }
+        }
+        return accountIds;
+    }
+
+    /**
+     *  Derived balance of each account of a chunk (read once) plus the debits and credits of the chunk's items so far.
+     * */
+    public final class PendingBalances {
+
+        private final Map<Long, Money> derived = new HashMap<>();
+        private final Map<Long, Money> pending = new HashMap<>();
+
+        public Money balanceOf(Account account) {
+            return derived.computeIfAbsent(account.getId(), id -> DoubleEntryLedgerService.this.balanceOf(account))
+                    .plus(pending.getOrDefault(account.getId(), Money.ZERO));
+        }
+
+        public void apply(Transfer transfer) {
+            pending.merge(transfer.getFromAccountIdRaw(), transfer.getDebitAmount().negate(), Money::plus);
+            pending.merge(transfer.getToAccountIdRaw(), transfer.getCreditAmount(), Money::plus);
+        }
+    }
+}
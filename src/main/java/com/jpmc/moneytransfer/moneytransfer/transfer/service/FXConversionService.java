@@ -4,37 +4,112 @@ package com.jpmc.moneytransfer.moneytransfer.transfer.service;
  * FX Conversion Service
  * */
 
+import com.jpmc.moneytransfer.moneytransfer.Money;
 import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * FX Conversion Service talks to an external FX provider to convert currency (currently a mock HashMap)
+ * FX Conversion Service talks to an external FX provider to convert currency (fed by FxRateFeed or addRate calls)
+ * Readers get an immutable FxRateSnapshot, writers rebuild it from the quoted rates and swap it in as a whole.
  * */
 @Service
 public class FXConversionService {
 
-    //FX rates for each currency pair
-    private final Map<Currency, Map<Currency, BigDecimal>> fxRates = new ConcurrentHashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(FXConversionService.class);
+
+    // pairs that can't be quoted directly are crossed through this currency
+    @Value("${transfer.fx.base-currency:USD}")
+    private String baseCurrency;
+
+    // transfers are rejected when their rate was quoted longer ago than this, 0 = no limit
+    @Value("${transfer.fx.max-rate-age-ms:0}")
+    private long maxRateAgeMs;
+
+    //quoted FX rates for each currency pair (from code -> to code), guarded by this
+    private final Map<String, Map<String, FxTick>> quotedRates = new HashMap<>();
+
+    private final AtomicReference<FxRateSnapshot> snapshot = new AtomicReference<>(FxRateSnapshot.EMPTY);
 
 
     public void addRate(Currency from, Currency to, BigDecimal rate) {
-        fxRates.computeIfAbsent(from, k -> new ConcurrentHashMap<>()).put(to, rate);
+        publish(List.of(new FxTick(from.getCode(), to.getCode(), rate, System.currentTimeMillis())));
     }
 
-    public BigDecimal getRate(Currency from, Currency to) throws TransferException {
-        BigDecimal rate =
-                fxRates.getOrDefault(from, Map.of())
-                        .get(to);
-
-        if (rate == null) {
-            throw new TransferException(
-                    TransferException.Reason.FX_RATE_MISSING,
-                    "FX rate not available for " + from + " → " + to);
+    /**
+     *  Adds or replaces several quotes (quoted now) and publishes one new snapshot for all of them.
+     * */
+    public void addRates(Map<String, Map<String, BigDecimal>> rates) {
+        long now = System.currentTimeMillis();
+        List<FxTick> ticks = new ArrayList<>();
+        rates.forEach((from, row) -> row.forEach((to, rate) -> ticks.add(new FxTick(from, to, rate, now))));
+        publish(ticks);
+    }
+
+    /**
+     *  Applies ticks and publishes one new snapshot. A tick older than the quote already held for its pair is ignored.
+     *  Returns the number of ticks applied.
+     * */
+    public synchronized int publish(Collection<FxTick> ticks) {
+        for (FxTick tick : ticks) {
+            if (tick.rate() == null || Money.rateUnits(tick.rate()) <= 0) {
+                throw new IllegalArgumentException("FX rate must be positive: " + tick);
+            }
+        }
+        int applied = 0;
+        for (FxTick tick : ticks) {
+            Map<String, FxTick> row = quotedRates.computeIfAbsent(tick.from(), k -> new HashMap<>());
+            FxTick current = row.get(tick.to());
+            if (current == null || current.timestamp() <= tick.timestamp()) {
+                row.put(tick.to(), tick);
+                applied++;
+            }
+        }
+        if (applied == 0) {
+            return 0;
         }
-        return rate;
+
+        FxRateSnapshot next = FxRateSnapshot.build(snapshot.get().getVersion() + 1, quotedRates, baseCurrency);
+        snapshot.set(next);
+        log.debug("Published FX rates v{} ({} ticks)", next.getVersion(), applied);
+        return applied;
+    }
+
+    /**
+     *  Current rates, no age check.
+     * */
+    public FxRateSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     *  Rate to price a transfer with, from one snapshot so the recorded version matches the rate.
+     *  Fails with FX_RATE_STALE when the rate is older than transfer.fx.max-rate-age-ms.
+     * */
+    public FxQuote quote(Currency from, Currency to) throws TransferException {
+        FxQuote quote = snapshot.get().getQuote(from, to);
+        if (maxRateAgeMs > 0) {
+            long age = System.currentTimeMillis() - quote.asOf();
+            if (age > maxRateAgeMs) {
+                throw new TransferException(
+                        TransferException.Reason.FX_RATE_STALE,
+                        "FX rate " + from.getCode() + " → " + to.getCode() + " is " + age + " ms old (max " + maxRateAgeMs + " ms)");
+            }
+        }
+        return quote;
+    }
+
+    public BigDecimal getRate(Currency from, Currency to) throws TransferException {
+        return quote(from, to).rate();
     }
 }
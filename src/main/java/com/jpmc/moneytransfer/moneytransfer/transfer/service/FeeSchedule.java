@@ -0,0 +1,189 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.AccountTier;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferPolicy;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ *  Immutable fee lookup compiled from the TRANSFER_FEE* policies.
+ *  Every (from currency, to currency, tier) cell holds the band schedules that can apply to it, most specific first:
+ *  corridor beats tier, exact currency beats any. The first schedule with a band covering the amount gives the rate,
+ *  so a lookup is two slot reads and a binary search over longs, no allocation.
+ * */
+public final class FeeSchedule {
+
+    // rateFor result when no policy applies
+    public static final long NO_FEE = -1;
+
+    private static final AccountTier[] TIERS = AccountTier.values();
+
+    static final FeeSchedule EMPTY = compile(0, List.of());
+
+    /**
+     *  One enabled fee policy, null currency/tier matches anything.
+     * */
+    public record FeeRule(String name, String currencyFrom, String currencyTo, AccountTier tier,
+                          BigDecimal minAmount, BigDecimal rate) {
+
+        static FeeRule from(TransferPolicy policy) {
+            BigDecimal minAmount = policy.getMinAmount() == null ? BigDecimal.ZERO : policy.getMinAmount();
+            return new FeeRule(policy.getPolicyName(), policy.getCurrencyFrom(), policy.getCurrencyTo(),
+                    policy.getAccountTier(), minAmount, policy.getValue());
+        }
+
+        private List<Object> key() {
+            return Arrays.asList(currencyFrom, currencyTo, tier);
+        }
+    }
+
+    /**
+     *  Amount bands of one (from, to, tier) key, floors ascending, as Money units and Money.RATE_SCALE units.
+     * */
+    private static final class Bands {
+        private final long[] floors;
+        private final long[] rates;
+
+        private Bands(List<FeeRule> rules) {
+            floors = new long[rules.size()];
+            rates = new long[rules.size()];
+            for (int i = 0; i < rules.size(); i++) {
+                floors[i] = Money.of(rules.get(i).minAmount()).getUnits();
+                rates[i] = Money.rateUnits(rules.get(i).rate());
+            }
+        }
+
+        /**
+         *  Rate of the highest band starting at or below amount, NO_FEE if amount is below the first band.
+         * */
+        private long rateFor(long amount) {
+            int low = 0;
+            int high = floors.length - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (floors[mid] <= amount) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found < 0 ? NO_FEE : rates[found];
+        }
+    }
+
+    private final long version;
+    private final List<FeeRule> rules;
+    // currency code -> slot, slot 0 stands for every code no policy names
+    private final Map<String, Integer> fromSlots;
+    private final Map<String, Integer> toSlots;
+    private final int toSize;
+    // [(fromSlot * toSize + toSlot) * tiers + tier]
+    private final Bands[][] cells;
+
+    private FeeSchedule(long version, List<FeeRule> rules, Map<String, Integer> fromSlots,
+                        Map<String, Integer> toSlots, Bands[][] cells) {
+        this.version = version;
+        this.rules = rules;
+        this.fromSlots = fromSlots;
+        this.toSlots = toSlots;
+        this.toSize = toSlots.size() + 1;
+        this.cells = cells;
+    }
+
+    static FeeSchedule compile(long version, List<FeeRule> rules) {
+        Map<List<Object>, List<FeeRule>> byKey = new HashMap<>();
+        for (FeeRule rule : rules) {
+            if (rule.rate() == null || rule.rate().signum() < 0) {
+                throw new IllegalArgumentException("Fee policy " + rule.name() + " has an invalid rate: " + rule.rate());
+            }
+            if (rule.minAmount().signum() < 0) {
+                throw new IllegalArgumentException("Fee policy " + rule.name() + " has a negative min amount");
+            }
+            byKey.computeIfAbsent(rule.key(), k -> new ArrayList<>()).add(rule);
+        }
+
+        Map<List<Object>, Bands> bands = new HashMap<>();
+        byKey.forEach((key, keyRules) -> {
+            keyRules.sort(Comparator.comparing(FeeRule::minAmount));
+            for (int i = 1; i < keyRules.size(); i++) {
+                if (keyRules.get(i).minAmount().compareTo(keyRules.get(i - 1).minAmount()) == 0) {
+                    throw new IllegalArgumentException("Fee policies " + keyRules.get(i - 1).name() + " and "
+                            + keyRules.get(i).name() + " start the same amount band");
+                }
+            }
+            bands.put(key, new Bands(keyRules));
+        });
+
+        List<String> fromCodes = slotCodes(rules, FeeRule::currencyFrom);
+        List<String> toCodes = slotCodes(rules, FeeRule::currencyTo);
+        Bands[][] cells = new Bands[fromCodes.size() * toCodes.size() * TIERS.length][];
+        for (int from = 0; from < fromCodes.size(); from++) {
+            for (int to = 0; to < toCodes.size(); to++) {
+                for (AccountTier tier : TIERS) {
+                    cells[(from * toCodes.size() + to) * TIERS.length + tier.ordinal()] =
+                            candidates(bands, fromCodes.get(from), toCodes.get(to), tier);
+                }
+            }
+        }
+        return new FeeSchedule(version, List.copyOf(rules), slots(fromCodes), slots(toCodes), cells);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<FeeRule> getRules() {
+        return rules;
+    }
+
+    /**
+     *  Fee rate for the transfer in Money.RATE_SCALE units, NO_FEE when no policy applies.
+     * */
+    public long rateFor(String currencyFrom, String currencyTo, AccountTier tier, Money amount) {
+        int from = currencyFrom == null ? 0 : fromSlots.getOrDefault(currencyFrom, 0);
+        int to = currencyTo == null ? 0 : toSlots.getOrDefault(currencyTo, 0);
+        AccountTier accountTier = tier == null ? AccountTier.STANDARD : tier;
+        for (Bands candidate : cells[(from * toSize + to) * TIERS.length + accountTier.ordinal()]) {
+            long rate = candidate.rateFor(amount.getUnits());
+            if (rate != NO_FEE) {
+                return rate;
+            }
+        }
+        return NO_FEE;
+    }
+
+    private static Bands[] candidates(Map<List<Object>, Bands> bands, String from, String to, AccountTier tier) {
+        List<Bands> found = new ArrayList<>(8);
+        for (String fromKey : from == null ? new String[]{null} : new String[]{from, null}) {
+            for (String toKey : to == null ? new String[]{null} : new String[]{to, null}) {
+                for (AccountTier tierKey : new AccountTier[]{tier, null}) {
+                    Bands match = bands.get(Arrays.asList(fromKey, toKey, tierKey));
+                    if (match != null) {
+                        found.add(match);
+                    }
+                }
+            }
+        }
+        return found.toArray(new Bands[0]);
+    }
+
+    private static List<String> slotCodes(List<FeeRule> rules, Function<FeeRule, String> code) {
+        List<String> codes = new ArrayList<>();
+        codes.add(null);
+        rules.stream().map(code).filter(Objects::nonNull).distinct().sorted().forEach(codes::add);
+        return codes;
+    }
+
+    private static Map<String, Integer> slots(List<String> codes) {
+        Map<String, Integer> slots = new HashMap<>();
+        for (int i = 1; i < codes.size(); i++) {
+            slots.put(codes.get(i), i);
+        }
+        return Map.copyOf(slots);
+    }
+}
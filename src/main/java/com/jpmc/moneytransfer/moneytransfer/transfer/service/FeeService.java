@@ -1,19 +1,22 @@
 package com.jpmc.moneytransfer.moneytransfer.transfer.service;
 
 
-import com.jpmc.moneytransfer.moneytransfer.CommonHelper;
-import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferPolicy;
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.AccountTier;
 import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferPolicyRepository;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
 
 /**
- * Fee Service to calculate the fee for transfer and store the fee as cache
+ * Fee Service to calculate the fee for transfer. Fee policies are compiled into an immutable FeeSchedule that
+ * transfers read without locking, a background reload swaps in a new one when the policies changed.
  */
 @Service
 public class FeeService {
@@ -25,46 +28,66 @@ public class FeeService {
     @Autowired
     private TransferPolicyRepository transferPolicyRepository;
 
-    private TransferPolicy transferFeePolicy;
-    @Autowired
-    private CommonHelper commonHelper;
+    private volatile FeeSchedule feeSchedule = FeeSchedule.EMPTY;
 
     @PostConstruct
     public void init() {
         try {
             refreshCache();
-        } catch (IllegalStateException e) {
-            log.error("Error loading transfer fee policy", e);
+        } catch (RuntimeException e) {
+            log.error("Error loading transfer fee policies", e);
         }
     }
 
-    public void refreshCache() {
+    /**
+     *  Picks up policy changes made outside the app, transfers keep using the current schedule meanwhile.
+     * */
+    @Scheduled(initialDelayString = "${transfer.fee.reload-interval-ms:30000}",
+            fixedDelayString = "${transfer.fee.reload-interval-ms:30000}")
+    public void reload() {
+        try {
+            refreshCache();
+        } catch (RuntimeException e) {
+            log.error("Fee policy reload failed, keeping fee schedule v{}", feeSchedule.getVersion(), e);
+        }
+    }
 
-        this.transferFeePolicy = transferPolicyRepository.findById(TRANSFER_FEE_POLICY_KEY)
-                .orElseThrow(() -> new IllegalStateException("TRANSFER_FEE policy not found in DB"));
+    /**
+     *  Reads the enabled TRANSFER_FEE* policies and publishes a new schedule if they changed.
+     * */
+    public synchronized boolean refreshCache() {
+        List<FeeSchedule.FeeRule> rules = transferPolicyRepository.findAll().stream()
+                .filter(policy -> policy.isEnabled() && policy.getPolicyName().startsWith(TRANSFER_FEE_POLICY_KEY))
+                .map(FeeSchedule.FeeRule::from)
+                .sorted(Comparator.comparing(FeeSchedule.FeeRule::name))
+                .toList();
+        if (rules.equals(feeSchedule.getRules())) {
+            return false;
+        }
 
-        log.info("Loaded transfer fee policy: {} = {}",
-                transferFeePolicy.getPolicyName(),
-                transferFeePolicy.getValue());
+        FeeSchedule next = FeeSchedule.compile(feeSchedule.getVersion() + 1, rules);
+        feeSchedule = next;
+        log.info("Loaded fee schedule v{} with {} policies", next.getVersion(), rules.size());
+        return true;
     }
 
-    public TransferPolicy getTransferFeePolicy() {
-        return transferFeePolicy;
+    public FeeSchedule getFeeSchedule() {
+        return feeSchedule;
     }
 
-    public BigDecimal calculateFee(BigDecimal amount) {
-        log.debug("Calculating fee for amount: {}", transferFeePolicy.getValue());
-
+    /**
+     *  Fee for amount sent from a tier account over the currencyFrom -> currencyTo corridor, zero when no policy applies.
+     * */
+    public Money calculateFee(Money amount, String currencyFrom, String currencyTo, AccountTier tier) {
         if (amount == null) {
             throw new IllegalArgumentException("amount must not be null");
         }
 
-        if (transferFeePolicy == null || !transferFeePolicy.isEnabled()) {
-            return BigDecimal.ZERO;
+        long rate = feeSchedule.rateFor(currencyFrom, currencyTo, tier, amount);
+        if (rate == FeeSchedule.NO_FEE) {
+            return Money.ZERO;
         }
-
-         return commonHelper.multiply(amount, transferFeePolicy.getValue());
-
+        return amount.multiplyRate(rate);
     }
 
 
@@ -0,0 +1,10 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import java.math.BigDecimal;
+
+/**
+ *  Rate a transfer is priced with (also as Money.RATE_SCALE units for Money.multiplyRate), the snapshot version it
+ *  came from and when it was quoted (epoch millis). For inverse/cross rates asOf is the oldest quote used.
+ * */
+public record FxQuote(BigDecimal rate, long rateUnits, long version, long asOf) {
+}
@@ -0,0 +1,242 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  Feeds FXConversionService from tick files dropped in a directory and/or a line based socket on localhost
+ *  (stand in for a market data feed). Both speak the same format, one tick per line:
+ *  <pre>FROM,TO,RATE[,EPOCH_MILLIS]</pre>
+ *  Ticks are coalesced per pair (latest wins) and published as one snapshot every publish interval, so a burst of
+ *  ticks costs one rebuild and readers never wait on the feed.
+ * */
+@Component
+@ConditionalOnProperty(name = "transfer.fx.feed.enabled", havingValue = "true")
+public class FxRateFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(FxRateFeed.class);
+
+    @Autowired
+    private FXConversionService fxConversionService;
+
+    // *.ticks files are read once and renamed to *.done, empty = off. Written under another name and renamed into place
+    // by the producer, a file is read as soon as it shows up
+    @Value("${transfer.fx.feed.dir:}")
+    private String feedDir;
+
+    // localhost port of the line feed, 0 = off
+    @Value("${transfer.fx.feed.port:0}")
+    private int feedPort;
+
+    @Value("${transfer.fx.feed.publish-interval-ms:100}")
+    private long publishIntervalMs;
+
+    // ticks stamped further ahead of this clock are dropped, one of them would hold its pair until then
+    @Value("${transfer.fx.feed.max-clock-skew-ms:1000}")
+    private long maxClockSkewMs;
+
+    // latest tick per pair since the last publish
+    private final Map<String, FxTick> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder ticksReceived = new LongAdder();
+    private final LongAdder ticksCoalesced = new LongAdder();
+    private final LongAdder badLines = new LongAdder();
+    private final LongAdder snapshotsPublished = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        running = true;
+        scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "fx-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::publishPending, publishIntervalMs, publishIntervalMs, TimeUnit.MILLISECONDS);
+
+        if (!feedDir.isBlank()) {
+            Path dir = Paths.get(feedDir);
+            Files.createDirectories(dir);
+            scheduler.scheduleWithFixedDelay(() -> scanDirectory(dir), 0, publishIntervalMs, TimeUnit.MILLISECONDS);
+            log.info("FX feed reading tick files from {}", dir.toAbsolutePath());
+        }
+        if (feedPort > 0) {
+            serverSocket = new ServerSocket(feedPort, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::acceptConnections, "fx-feed-socket");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            log.info("FX feed listening on localhost:{}", feedPort);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                log.warn("Failed to close FX feed socket", e);
+            }
+        }
+        scheduler.shutdownNow();
+        publishPending();
+    }
+
+    /**
+     *  Reads ticks from a reader until it ends, used for files and socket connections alike.
+     * */
+    public void ingest(Reader source) throws IOException {
+        BufferedReader reader = source instanceof BufferedReader buffered ? buffered : new BufferedReader(source);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            FxTick tick = parse(line);
+            if (tick != null) {
+                offer(tick);
+            }
+        }
+    }
+
+    public void offer(FxTick tick) {
+        ticksReceived.increment();
+        if (pending.putIfAbsent(tick.pair(), tick) != null) {
+            ticksCoalesced.increment();
+            pending.merge(tick.pair(), tick,
+                    (current, next) -> next.timestamp() >= current.timestamp() ? next : current);
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        return Map.of(
+                "ticksReceived", ticksReceived.sum(),
+                "ticksCoalesced", ticksCoalesced.sum(),
+                "badLines", badLines.sum(),
+                "snapshotsPublished", snapshotsPublished.sum(),
+                "pending", (long) pending.size(),
+                "ratesVersion", fxConversionService.getSnapshot().getVersion());
+    }
+
+    void publishPending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<FxTick> ticks = new ArrayList<>(pending.size());
+        for (String pair : pending.keySet()) {
+            FxTick tick = pending.remove(pair);
+            if (tick != null) {
+                ticks.add(tick);
+            }
+        }
+        try {
+            if (fxConversionService.publish(ticks) > 0) {
+                snapshotsPublished.increment();
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to publish {} FX ticks", ticks.size(), e);
+        }
+    }
+
+    private void scanDirectory(Path dir) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.ticks")) {
+            for (Path file : files) {
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    ingest(reader);
+                }
+                Files.move(file, file.resolveSibling(file.getFileName() + ".done"), StandardCopyOption.REPLACE_EXISTING);
+                log.debug("FX tick file {} ingested", file.getFileName());
+            }
+        } catch (IOException e) {
+            log.error("Failed to read FX tick files from {}", dir, e);
+        }
+    }
+
+    private void acceptConnections() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread reader = new Thread(() -> readConnection(socket), "fx-feed-conn");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (running) {
+                    log.error("FX feed socket accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void readConnection(Socket socket) {
+        try (socket; Reader reader = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)) {
+            ingest(reader);
+        } catch (IOException e) {
+            if (running) {
+                log.warn("FX feed connection from {} dropped", socket.getRemoteSocketAddress(), e);
+            }
+        }
+    }
+
+    /**
+     *  null for blank lines, comments (#) and lines that don't parse or don't make a usable tick: a rate that
+     *  rounds to 0 or doesn't fit a long at rate scale, or a timestamp in the future. Those are dropped here one
+     *  by one, publish() would reject the whole coalesced update for them.
+     * */
+    private FxTick parse(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return null;
+        }
+        String[] fields = trimmed.split(",");
+        try {
+            if (fields.length < 3 || fields.length > 4) {
+                throw new IllegalArgumentException("expected FROM,TO,RATE[,EPOCH_MILLIS]");
+            }
+            BigDecimal rate = new BigDecimal(fields[2].trim());
+            if (Money.rateUnits(rate) <= 0) {
+                throw new IllegalArgumentException("rate must be positive at " + Money.RATE_SCALE + " decimals");
+            }
+            long now = System.currentTimeMillis();
+            long timestamp = fields.length == 4 ? Long.parseLong(fields[3].trim()) : now;
+            if (timestamp > now + maxClockSkewMs) {
+                throw new IllegalArgumentException("timestamp is " + (timestamp - now) + " ms in the future");
+            }
+            return new FxTick(fields[0].trim(), fields[1].trim(), rate, timestamp);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            badLines.increment();
+            log.warn("Skipping FX tick '{}': {}", line, e.getMessage());
+            return null;
+        }
+    }
+}
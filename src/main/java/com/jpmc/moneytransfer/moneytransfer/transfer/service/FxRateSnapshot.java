@@ -0,0 +1,135 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ *  Immutable set of FX rates. Currencies get a slot number and rates sit in a dense n x n matrix, so a lookup is
+ *  two index reads. Inverses and cross rates through the base currency are worked out once when the snapshot is built.
+ *  A transfer prices against one snapshot and records its version. Each rate keeps the time it was quoted.
+ * */
+public final class FxRateSnapshot {
+
+    // matches the fx_rate column, all rates are rounded to it so the stored rate is the one that was used
+    public static final int FX_RATE_SCALE = Money.RATE_SCALE;
+
+    static final FxRateSnapshot EMPTY = new FxRateSnapshot(0, Map.of(), new BigDecimal[0], new long[0], new long[0]);
+
+    private final long version;
+    private final Map<String, Integer> slots;
+    // row major, rates[from * n + to], null when the pair can't be priced
+    private final BigDecimal[] rates;
+    // the same rates as Money.RATE_SCALE units
+    private final long[] rateUnits;
+    // quote time of each rate (epoch millis), derived rates take their oldest leg
+    private final long[] asOf;
+    private final int size;
+
+    private FxRateSnapshot(long version, Map<String, Integer> slots, BigDecimal[] rates, long[] rateUnits, long[] asOf) {
+        this.version = version;
+        this.slots = slots;
+        this.rates = rates;
+        this.rateUnits = rateUnits;
+        this.asOf = asOf;
+        this.size = slots.size();
+    }
+
+    /**
+     *  Builds the matrix from quoted rates (from code -> to code -> tick). Quoted rates always win, then inverses of
+     *  quoted rates, then cross rates via baseCurrency.
+     * */
+    static FxRateSnapshot build(long version, Map<String, Map<String, FxTick>> quoted, String baseCurrency) {
+        TreeSet<String> codes = new TreeSet<>(quoted.keySet());
+        quoted.values().forEach(row -> codes.addAll(row.keySet()));
+
+        Map<String, Integer> slots = new HashMap<>();
+        for (String code : codes) {
+            slots.put(code, slots.size());
+        }
+        int n = slots.size();
+        BigDecimal[] rates = new BigDecimal[n * n];
+        long[] asOf = new long[n * n];
+
+        for (int i = 0; i < n; i++) {
+            rates[i * n + i] = BigDecimal.ONE.setScale(FX_RATE_SCALE);
+            asOf[i * n + i] = Long.MAX_VALUE;
+        }
+        quoted.forEach((from, row) -> row.forEach((to, tick) -> {
+            int slot = slots.get(from) * n + slots.get(to);
+            rates[slot] = tick.rate().setScale(FX_RATE_SCALE, RoundingMode.HALF_EVEN);
+            asOf[slot] = tick.timestamp();
+        }));
+
+        // inverses of quoted rates
+        quoted.forEach((from, row) -> row.forEach((to, tick) -> {
+            int inverse = slots.get(to) * n + slots.get(from);
+            if (rates[inverse] == null) {
+                rates[inverse] = BigDecimal.ONE.divide(tick.rate(), FX_RATE_SCALE, RoundingMode.HALF_EVEN);
+                asOf[inverse] = tick.timestamp();
+            }
+        }));
+
+        // cross rates: from -> base -> to
+        Integer base = slots.get(baseCurrency);
+        if (base != null) {
+            for (int from = 0; from < n; from++) {
+                BigDecimal toBase = rates[from * n + base];
+                if (toBase == null) {
+                    continue;
+                }
+                for (int to = 0; to < n; to++) {
+                    BigDecimal fromBase = rates[base * n + to];
+                    if (rates[from * n + to] == null && fromBase != null) {
+                        rates[from * n + to] = toBase.multiply(fromBase).setScale(FX_RATE_SCALE, RoundingMode.HALF_EVEN);
+                        asOf[from * n + to] = Math.min(asOf[from * n + base], asOf[base * n + to]);
+                    }
+                }
+            }
+        }
+        long[] rateUnits = new long[n * n];
+        for (int i = 0; i < rates.length; i++) {
+            if (rates[i] != null) {
+                rateUnits[i] = Money.rateUnits(rates[i]);
+            }
+        }
+        return new FxRateSnapshot(version, Map.copyOf(slots), rates, rateUnits, asOf);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public BigDecimal getRate(Currency from, Currency to) throws TransferException {
+        return getQuote(from, to).rate();
+    }
+
+    public FxQuote getQuote(Currency from, Currency to) throws TransferException {
+        Integer fromSlot = slots.get(from.getCode());
+        Integer toSlot = slots.get(to.getCode());
+        BigDecimal rate = fromSlot == null || toSlot == null ? null : rates[fromSlot * size + toSlot];
+        if (rate == null) {
+            throw new TransferException(
+                    TransferException.Reason.FX_RATE_MISSING,
+                    "FX rate not available for " + from.getCode() + " → " + to.getCode() + " (rates v" + version + ")");
+        }
+        return new FxQuote(rate, rateUnits[fromSlot * size + toSlot], version, asOf[fromSlot * size + toSlot]);
+    }
+
+    /**
+     *  null when either currency is unknown or the pair can't be derived.
+     * */
+    public BigDecimal findRate(String fromCode, String toCode) {
+        Integer from = slots.get(fromCode);
+        Integer to = slots.get(toCode);
+        if (from == null || to == null) {
+            return null;
+        }
+        return rates[from * size + to];
+    }
+}
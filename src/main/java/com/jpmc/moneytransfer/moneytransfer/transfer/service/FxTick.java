@@ -0,0 +1,13 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import java.math.BigDecimal;
+
+/**
+ *  One quoted rate from -> to as of timestamp (epoch millis).
+ * */
+public record FxTick(String from, String to, BigDecimal rate, long timestamp) {
+
+    String pair() {
+        return from + "/" + to;
+    }
+}
@@ -0,0 +1,47 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferOutboxMessage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  In process sink for tests: keeps every delivered message in arrival order. failNextDeliveries makes the next
+ *  deliver calls throw, to see batches come again.
+ * */
+@Component
+@ConditionalOnProperty(name = "transfer.outbox.sink", havingValue = "in-memory")
+public class InMemoryTransferEventSink implements TransferEventSink {
+
+    private final List<TransferOutboxMessage> delivered = new ArrayList<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+
+    @Override
+    public void deliver(List<TransferOutboxMessage> messages) {
+        if (failuresLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+            throw new IllegalStateException("Delivery of " + messages.size() + " messages failed on purpose");
+        }
+        synchronized (delivered) {
+            delivered.addAll(messages);
+        }
+    }
+
+    public void failNextDeliveries(int deliveries) {
+        failuresLeft.set(deliveries);
+    }
+
+    public List<TransferOutboxMessage> getDelivered() {
+        synchronized (delivered) {
+            return new ArrayList<>(delivered);
+        }
+    }
+
+    public void clear() {
+        synchronized (delivered) {
+            delivered.clear();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.BalanceSnapshot;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.BalanceSnapshotRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.LedgerEntryRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  Rolls the ledger entries of busy accounts up into a new BalanceSnapshot, so a balance read only sums the few
+ *  entries made since. Per account and transaction: lock the account row (every writer of its entries holds a lock
+ *  on it, so nothing is in flight), sum the entries after the current snapshot, insert the snapshot and move
+ *  account.balance/ledger_position to it. The first snapshot of an account also records its opening balance.
+ *  Runs on a schedule in DOUBLE_ENTRY mode only, over the accounts DoubleEntryLedgerService counted entries for.
+ *  compactAll() scans the ledger for every account instead, it is there to fold everything before switching to
+ *  another mode.
+ * */
+@Service
+public class LedgerCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerCompactor.class);
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private LedgerEntryRepository entryRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private DoubleEntryLedgerService ledgerService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${transfer.execution-mode:PESSIMISTIC}")
+    private TransferExecutionMode executionMode;
+
+    // an account is compacted once it has this many entries after its snapshot
+    @Value("${transfer.double-entry.compact-after-entries:100}")
+    private long compactAfterEntries;
+
+    // accounts compacted per run at most
+    @Value("${transfer.double-entry.compaction-batch:500}")
+    private int compactionBatch;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder entriesRolledUp = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    @Scheduled(initialDelayString = "${transfer.double-entry.compaction-interval-ms:5000}",
+            fixedDelayString = "${transfer.double-entry.compaction-interval-ms:5000}")
+    public void compactScheduled() {
+        if (executionMode != TransferExecutionMode.DOUBLE_ENTRY) {
+            return;
+        }
+        try {
+            compact(ledgerService.takeAccountsToCompact(compactAfterEntries, compactionBatch));
+        } catch (RuntimeException e) {
+            log.error("Ledger compaction failed", e);
+        }
+    }
+
+    /**
+     *  Compacts every account with at least one entry after its snapshot, afterwards account.balance is the whole
+     *  balance again. Returns the number of snapshots written.
+     * */
+    public int compactAll() {
+        int total = 0;
+        for (int written = compact(entryRepository.findAccountsToCompact(1, compactionBatch)); written > 0;
+             written = compact(entryRepository.findAccountsToCompact(1, compactionBatch))) {
+            total += written;
+        }
+        return total;
+    }
+
+    /**
+     *  One pass over the given accounts, those without entries after their snapshot are left alone.
+     * */
+    public int compact(List<Long> accountIds) {
+        runs.increment();
+        int written = 0;
+        for (Long accountId : accountIds) {
+            if (Boolean.TRUE.equals(transactionTemplate.execute(status -> compactAccount(accountId)))) {
+                written++;
+            }
+        }
+        if (written > 0) {
+            log.info("Ledger compaction wrote {} snapshots", written);
+        }
+        return written;
+    }
+
+    private boolean compactAccount(Long accountId) {
+        Account account = accountRepository.findById(accountId).orElse(null);
+        if (account == null) {
+            return false;
+        }
+        long position = account.getLedgerPosition();
+        LedgerEntryRepository.EntryTotals totals = entryRepository.totalsAfter(accountId, position);
+        if (totals.getEntryCount() == 0) {
+            return false;
+        }
+
+        if (position == 0 && !snapshotRepository.existsByAccountId(accountId)) {
+            snapshotRepository.save(new BalanceSnapshot(accountId, 0, account.getBalance(), account.getCreatedAt(), 0));
+        }
+        Money balance = account.getBalance().plus(Money.of(totals.getTotal()));
+        snapshotRepository.save(new BalanceSnapshot(accountId, totals.getLastEntryId(), balance,
+                LocalDateTime.now(), totals.getEntryCount()));
+        account.applyLedgerSnapshot(balance, totals.getLastEntryId());
+
+        snapshots.increment();
+        entriesRolledUp.add(totals.getEntryCount());
+        log.debug("Account {} compacted up to entry {}: {} entries, balance {}",
+                accountId, totals.getLastEntryId(), totals.getEntryCount(), balance);
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("executionMode", executionMode);
+        stats.put("runs", runs.sum());
+        stats.put("snapshots", snapshots.sum());
+        stats.put("entriesRolledUp", entriesRolledUp.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,515 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.CorridorTotals;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.ReconciliationBlock;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.ReconciliationCorridorTotal;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.ReconciliationReport;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.ReconciliationReport.AccountDiscrepancy;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.ReconciliationBlockRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.ReconciliationCorridorTotalRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ *  Proves that money is conserved, in two parallel passes over id ranges on a ForkJoinPool:
+ *  <ul>
+ *  <li>transfers, in blocks of transfer ids: per currency corridor debits minus fees are the amounts and credits
+ *  are the amounts after each transfer's FX rate, and no single completed transfer breaks that. Settled blocks are
+ *  sealed into a ReconciliationBlock checkpoint with their corridor totals and per-account flows, so a rerun only
+ *  scans the transfers after the last block. Ids come from pooled sequences, a quiet node can still commit a
+ *  transfer with an id inside a sealed block, so each run recounts the sealed blocks first and reopens them from
+ *  the first one whose row count changed.</li>
+ *  <li>accounts, in ranges of account ids: balance (slots for hot accounts, plus uncompacted ledger entries in
+ *  DOUBLE_ENTRY mode) is opening_balance + credits - debits of the account's completed transfers. Each range is
+ *  read in one REPEATABLE READ transaction, a consistent snapshot without locks on MySQL/InnoDB and H2.</li>
+ *  </ul>
+ *  Nothing is locked and no account or transfer row is written. Runs on a schedule and on demand.
+ *  The per-account flows are added up with MySQL's INSERT ... ON DUPLICATE KEY UPDATE ... VALUES(), which H2 only
+ *  accepts in MODE=MySQL (as the h2 and test profiles' URLs set it), another database needs its MERGE or ON CONFLICT form.
+ * */
+@Service
+public class LedgerReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerReconciliationService.class);
+
+    private static final String EXPECTED_CREDIT =
+            "CASE WHEN currency_from = currency_to THEN amount ELSE ROUND(amount * fx_rate, 4) END";
+
+    private static final String MISMATCH = "debit_amount IS NULL OR credit_amount IS NULL " +
+            "OR debit_amount <> amount + COALESCE(fee_applied, 0) OR credit_amount <> COALESCE(" + EXPECTED_CREDIT + ", -1)";
+
+    // one scan of a block: corridor totals, state counts, mismatches and the newest transfer
+    private static final String SCAN_BLOCK = "SELECT state, currency_from, currency_to, COUNT(*) AS transfers, " +
+            "SUM(amount) AS amount_total, SUM(COALESCE(fee_applied, 0)) AS fee_total, " +
+            "SUM(COALESCE(debit_amount, 0)) AS debit_total, SUM(COALESCE(credit_amount, 0)) AS credit_total, " +
+            "SUM(" + EXPECTED_CREDIT + ") AS expected_credit_total, " +
+            "SUM(CASE WHEN " + MISMATCH + " THEN 1 ELSE 0 END) AS mismatches, MAX(transfer_time) AS last_time " +
+            "FROM transfer WHERE transfer_id BETWEEN ? AND ? GROUP BY state, currency_from, currency_to";
+
+    private static final String COUNT_BLOCK = "SELECT COUNT(*) FROM transfer WHERE transfer_id BETWEEN ? AND ?";
+
+    private static final String MISMATCHED_IDS = "SELECT transfer_id FROM transfer " +
+            "WHERE transfer_id BETWEEN ? AND ? AND state = 'COMPLETED' AND (" + MISMATCH + ") ORDER BY transfer_id LIMIT ?";
+
+    private static final String ADD_SENT_FLOWS =
+            "INSERT INTO reconciliation_account_flow (account_id, sent_total, received_total) " +
+            "SELECT from_account_id_raw, SUM(debit_amount), 0 FROM transfer " +
+            "WHERE transfer_id BETWEEN ? AND ? AND state = 'COMPLETED' GROUP BY from_account_id_raw " +
+            "ON DUPLICATE KEY UPDATE sent_total = sent_total + VALUES(sent_total)";
+
+    private static final String ADD_RECEIVED_FLOWS =
+            "INSERT INTO reconciliation_account_flow (account_id, sent_total, received_total) " +
+            "SELECT to_account_id_raw, 0, SUM(credit_amount) FROM transfer " +
+            "WHERE transfer_id BETWEEN ? AND ? AND state = 'COMPLETED' GROUP BY to_account_id_raw " +
+            "ON DUPLICATE KEY UPDATE received_total = received_total + VALUES(received_total)";
+
+    private static final String ACCOUNTS = "SELECT a.account_id, a.balance, a.opening_balance, a.balance_slots, " +
+            "f.sent_total, f.received_total FROM account a " +
+            "LEFT JOIN reconciliation_account_flow f ON f.account_id = a.account_id " +
+            "WHERE a.account_id BETWEEN ? AND ?";
+
+    private static final String SLOT_BALANCES = "SELECT account_id, SUM(balance) FROM account_balance_slot " +
+            "WHERE account_id BETWEEN ? AND ? GROUP BY account_id";
+
+    private static final String UNCOMPACTED_ENTRIES = "SELECT e.account_id, SUM(e.amount) FROM ledger_entry e " +
+            "JOIN account a ON a.account_id = e.account_id " +
+            "WHERE e.account_id BETWEEN ? AND ? AND e.entry_id > a.ledger_position GROUP BY e.account_id";
+
+    private static final String UNSEALED_SENT = "SELECT from_account_id_raw, SUM(debit_amount) FROM transfer " +
+            "WHERE transfer_id > ? AND state = 'COMPLETED' AND from_account_id_raw BETWEEN ? AND ? " +
+            "GROUP BY from_account_id_raw";
+
+    private static final String UNSEALED_RECEIVED = "SELECT to_account_id_raw, SUM(credit_amount) FROM transfer " +
+            "WHERE transfer_id > ? AND state = 'COMPLETED' AND to_account_id_raw BETWEEN ? AND ? " +
+            "GROUP BY to_account_id_raw";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ReconciliationBlockRepository blockRepository;
+
+    @Autowired
+    private ReconciliationCorridorTotalRepository corridorTotalRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${transfer.reconciliation.enabled:true}")
+    private boolean enabled;
+
+    // threads of the pool, each holds one connection while it scans a range
+    @Value("${transfer.reconciliation.parallelism:4}")
+    private int parallelism;
+
+    @Value("${transfer.reconciliation.block-size:1000000}")
+    private long blockSize;
+
+    @Value("${transfer.reconciliation.account-partition-size:50000}")
+    private long accountPartitionSize;
+
+    // a block is only sealed once its newest transfer is older than this, so late pooled ids rarely reopen one
+    @Value("${transfer.reconciliation.settle-seconds:300}")
+    private long settleSeconds;
+
+    // mismatched transfers and discrepant accounts listed in the report, the counts are always complete
+    @Value("${transfer.reconciliation.max-reported:100}")
+    private int maxReported;
+
+    private ForkJoinPool pool;
+    private TransactionTemplate scanTransaction;
+    private TransactionTemplate snapshotTransaction;
+    private TransactionTemplate sealTransaction;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile ReconciliationReport lastReport;
+
+    @PostConstruct
+    public void init() {
+        pool = new ForkJoinPool(parallelism);
+        scanTransaction = new TransactionTemplate(transactionManager);
+        scanTransaction.setReadOnly(true);
+        scanTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        snapshotTransaction = new TransactionTemplate(transactionManager);
+        snapshotTransaction.setReadOnly(true);
+        snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        sealTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Scheduled(initialDelayString = "${transfer.reconciliation.interval-ms:3600000}",
+            fixedDelayString = "${transfer.reconciliation.interval-ms:3600000}")
+    public void reconcileScheduled() {
+        if (!enabled || running.get()) {
+            return;
+        }
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.error("Reconciliation failed", e);
+        }
+    }
+
+    public Optional<ReconciliationReport> getLastReport() {
+        return Optional.ofNullable(lastReport);
+    }
+
+    /**
+     *  One full run, fails with CONCURRENT_UPDATE while another one is in progress on this node.
+     * */
+    public ReconciliationReport reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.CONCURRENT_UPDATE,
+                    "Reconciliation is already running");
+        }
+        try {
+            ReconciliationReport report = run();
+            lastReport = report;
+            if (report.isConserved()) {
+                log.info("Reconciliation up to transfer {}: conserved, {} transfers scanned, {} blocks sealed, " +
+                                "{} accounts checked in {} ms", report.lastTransferId(), report.transfersScanned(),
+                        report.blocksSealed(), report.accountsChecked(), report.durationMs());
+            } else {
+                log.warn("Reconciliation up to transfer {}: {} mismatched transfers, {} discrepant accounts, " +
+                                "corridors {}", report.lastTransferId(), report.transferMismatches(),
+                        report.accountDiscrepancies(), report.corridors());
+            }
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private ReconciliationReport run() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.nanoTime();
+
+        int reopened = reopenChangedBlocks();
+
+        // transfers: scan everything after the last sealed block, then seal the settled blocks in order
+        long lastTransferId = queryLong("SELECT COALESCE(MAX(transfer_id), 0) FROM transfer");
+        Long lowestProcessing = jdbcTemplate.queryForObject(
+                "SELECT MIN(transfer_id) FROM transfer WHERE state = 'PROCESSING'", Long.class);
+        Optional<ReconciliationBlock> lastBlock = blockRepository.findTopByOrderByBlockNoDesc();
+        long sealedUpTo = lastBlock.map(ReconciliationBlock::getLastTransferId).orElse(0L);
+        long nextBlockNo = lastBlock.map(block -> block.getBlockNo() + 1).orElse(0L);
+
+        List<long[]> ranges = new ArrayList<>();
+        for (long first = sealedUpTo + 1; first <= lastTransferId; first += blockSize) {
+            ranges.add(new long[]{first, first + blockSize - 1});
+        }
+        List<BlockScan> scans = ranges.isEmpty() ? List.of() : pool.invoke(new PartitionTask<>(ranges, this::scanBlockInTransaction,
+                LedgerReconciliationService::concat));
+
+        // totals of the blocks sealed before this run, the scanned ones are added below
+        Map<String, CorridorTotals> corridors = new LinkedHashMap<>();
+        for (CorridorTotals totals : corridorTotalRepository.sumPerCorridor()) {
+            corridors.put(corridorKey(totals.currencyFrom(), totals.currencyTo()), totals);
+        }
+        long mismatches = queryLong("SELECT COALESCE(SUM(mismatches), 0) FROM reconciliation_block");
+
+        LocalDateTime settledBefore = LocalDateTime.now().minusSeconds(settleSeconds);
+        int sealed = 0;
+        for (BlockScan scan : scans) {
+            if (!scan.isSettled(lastTransferId, lowestProcessing, settledBefore)) {
+                break;
+            }
+            long blockNo = nextBlockNo + sealed;
+            sealTransaction.executeWithoutResult(status -> seal(blockNo, scan));
+            sealed++;
+        }
+
+        long scanned = 0;
+        List<Long> mismatchedIds = new ArrayList<>();
+        for (BlockScan scan : scans) {
+            // sealed in this run or not, every scanned block is counted once
+            scan.corridors.values().forEach(totals -> corridors.merge(
+                    corridorKey(totals.currencyFrom(), totals.currencyTo()), totals, CorridorTotals::plus));
+            mismatches += scan.mismatches;
+            scanned += scan.rows;
+            scan.mismatchedIds.stream().limit(maxReported - mismatchedIds.size()).forEach(mismatchedIds::add);
+        }
+
+        // accounts: balance against opening balance and flows, one consistent snapshot per range
+        AccountCheck accounts = checkAccounts();
+
+        return new ReconciliationReport(startedAt, (System.nanoTime() - start) / 1_000_000, lastTransferId,
+                sealed > 0 ? scans.get(sealed - 1).lastId : sealedUpTo, sealed, reopened, scanned,
+                List.copyOf(corridors.values()), mismatches, mismatchedIds,
+                accounts.checked, accounts.discrepancies,
+                List.copyOf(accounts.discrepantAccounts.subList(0, Math.min(maxReported, accounts.discrepantAccounts.size()))));
+    }
+
+    /**
+     *  Recounts the rows of every sealed block (a range count on the primary key). A block that has more rows than
+     *  it sealed got a transfer with a pooled id handed out after it was sealed: that block and every later one are
+     *  dropped and scanned again, and the account flows are added up again from the blocks that are kept, there is
+     *  no telling which rows the dropped ones had added. Returns the number of blocks dropped.
+     * */
+    private int reopenChangedBlocks() {
+        List<ReconciliationBlock> blocks = blockRepository.findAllByOrderByBlockNo();
+        if (blocks.isEmpty()) {
+            return 0;
+        }
+        List<Long> changed = pool.invoke(new PartitionTask<>(blocks, block -> scanTransaction.execute(status ->
+                        queryLong(COUNT_BLOCK, block.getFirstTransferId(), block.getLastTransferId())
+                                == block.getCompleted() + block.getFailed() ? List.<Long>of() : List.of(block.getBlockNo())),
+                LedgerReconciliationService::concat));
+        if (changed.isEmpty()) {
+            return 0;
+        }
+        long firstChanged = changed.get(0);
+        List<ReconciliationBlock> kept = blocks.stream().filter(block -> block.getBlockNo() < firstChanged).toList();
+        List<ReconciliationBlock> dropped = blocks.subList(kept.size(), blocks.size());
+        sealTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM reconciliation_corridor_total WHERE block_no >= ?", firstChanged);
+            // through the repository, the blocks may still be in this request's persistence context
+            blockRepository.deleteAll(dropped);
+            jdbcTemplate.update("DELETE FROM reconciliation_account_flow");
+            if (!kept.isEmpty()) {
+                long firstId = kept.get(0).getFirstTransferId();
+                long lastId = kept.get(kept.size() - 1).getLastTransferId();
+                jdbcTemplate.update(ADD_SENT_FLOWS, firstId, lastId);
+                jdbcTemplate.update(ADD_RECEIVED_FLOWS, firstId, lastId);
+            }
+        });
+        log.warn("Reconciliation block {} got transfers after it was sealed, {} blocks reopened", firstChanged,
+                dropped.size());
+        return dropped.size();
+    }
+
+    private List<BlockScan> scanBlockInTransaction(long[] range) {
+        BlockScan scan = scanTransaction.execute(status -> scanBlock(range[0], range[1]));
+        return List.of(scan);
+    }
+
+    private BlockScan scanBlock(long firstId, long lastId) {
+        BlockScan scan = new BlockScan(firstId, lastId);
+        jdbcTemplate.query(SCAN_BLOCK, rs -> {
+            String state = rs.getString("state");
+            long transfers = rs.getLong("transfers");
+            scan.rows += transfers;
+            Timestamp lastTime = rs.getTimestamp("last_time");
+            if (lastTime != null && (scan.lastTime == null || lastTime.toLocalDateTime().isAfter(scan.lastTime))) {
+                scan.lastTime = lastTime.toLocalDateTime();
+            }
+            switch (state) {
+                case "COMPLETED" -> {
+                    scan.completed += transfers;
+                    scan.mismatches += rs.getLong("mismatches");
+                    CorridorTotals totals = new CorridorTotals(rs.getString("currency_from"), rs.getString("currency_to"),
+                            transfers, decimal(rs.getBigDecimal("amount_total")), decimal(rs.getBigDecimal("fee_total")),
+                            decimal(rs.getBigDecimal("debit_total")), decimal(rs.getBigDecimal("credit_total")),
+                            decimal(rs.getBigDecimal("expected_credit_total")));
+                    scan.corridors.merge(corridorKey(totals.currencyFrom(), totals.currencyTo()), totals,
+                            CorridorTotals::plus);
+                }
+                case "FAILED" -> scan.failed += transfers;
+                default -> scan.pending += transfers;
+            }
+        }, firstId, lastId);
+        if (scan.mismatches > 0) {
+            scan.mismatchedIds.addAll(jdbcTemplate.queryForList(MISMATCHED_IDS, Long.class, firstId, lastId, maxReported));
+        }
+        return scan;
+    }
+
+    /**
+     *  Checkpoints a settled block: its counts, corridor totals and the flows of its accounts, in one transaction.
+     * */
+    private void seal(long blockNo, BlockScan scan) {
+        blockRepository.save(new ReconciliationBlock(blockNo, scan.firstId, scan.lastId, scan.completed, scan.failed,
+                scan.mismatches));
+        corridorTotalRepository.saveAll(scan.corridors.values().stream()
+                .map(totals -> new ReconciliationCorridorTotal(blockNo, totals))
+                .toList());
+        jdbcTemplate.update(ADD_SENT_FLOWS, scan.firstId, scan.lastId);
+        jdbcTemplate.update(ADD_RECEIVED_FLOWS, scan.firstId, scan.lastId);
+        log.debug("Reconciliation block {} sealed: transfers {} - {}, {} completed", blockNo, scan.firstId,
+                scan.lastId, scan.completed);
+    }
+
+    private AccountCheck checkAccounts() {
+        Map<String, Object> bounds = jdbcTemplate.queryForMap("SELECT MIN(account_id) AS first_id, " +
+                "MAX(account_id) AS last_id FROM account");
+        if (bounds.get("first_id") == null) {
+            return new AccountCheck();
+        }
+        long firstId = ((Number) bounds.get("first_id")).longValue();
+        long lastId = ((Number) bounds.get("last_id")).longValue();
+        List<long[]> ranges = new ArrayList<>();
+        for (long first = firstId; first <= lastId; first += accountPartitionSize) {
+            ranges.add(new long[]{first, Math.min(first + accountPartitionSize - 1, lastId)});
+        }
+        return pool.invoke(new PartitionTask<>(ranges,
+                range -> snapshotTransaction.execute(status -> checkAccountRange(range[0], range[1])),
+                AccountCheck::plus));
+    }
+
+    /**
+     *  Runs in one REPEATABLE READ transaction: balances, the sealed flows and the unsealed transfers are all read
+     *  from the same snapshot, a transfer committing meanwhile is either in all of them or in none.
+     * */
+    private AccountCheck checkAccountRange(long firstId, long lastId) {
+        long sealedUpTo = queryLong("SELECT COALESCE(MAX(last_transfer_id), 0) FROM reconciliation_block");
+        Map<Long, BigDecimal> slots = sumsById(SLOT_BALANCES, firstId, lastId);
+        Map<Long, BigDecimal> entries = sumsById(UNCOMPACTED_ENTRIES, firstId, lastId);
+        Map<Long, BigDecimal> sent = sumsById(UNSEALED_SENT, sealedUpTo, firstId, lastId);
+        Map<Long, BigDecimal> received = sumsById(UNSEALED_RECEIVED, sealedUpTo, firstId, lastId);
+
+        AccountCheck check = new AccountCheck();
+        jdbcTemplate.query(ACCOUNTS, rs -> {
+            long accountId = rs.getLong("account_id");
+            BigDecimal balance = rs.getInt("balance_slots") > 0
+                    ? slots.getOrDefault(accountId, BigDecimal.ZERO)
+                    : rs.getBigDecimal("balance");
+            balance = balance.add(entries.getOrDefault(accountId, BigDecimal.ZERO));
+            BigDecimal expected = rs.getBigDecimal("opening_balance")
+                    .subtract(decimal(rs.getBigDecimal("sent_total")))
+                    .subtract(sent.getOrDefault(accountId, BigDecimal.ZERO))
+                    .add(decimal(rs.getBigDecimal("received_total")))
+                    .add(received.getOrDefault(accountId, BigDecimal.ZERO));
+            check.checked++;
+            if (balance.compareTo(expected) != 0) {
+                check.discrepancies++;
+                if (check.discrepantAccounts.size() < maxReported) {
+                    check.discrepantAccounts.add(new AccountDiscrepancy(accountId, balance, expected));
+                }
+            }
+        }, firstId, lastId);
+        return check;
+    }
+
+    private Map<Long, BigDecimal> sumsById(String sql, Object... args) {
+        Map<Long, BigDecimal> sums = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            sums.put(rs.getLong(1), decimal(rs.getBigDecimal(2)));
+        }, args);
+        return sums;
+    }
+
+    private long queryLong(String sql, Object... args) {
+        Long value = jdbcTemplate.queryForObject(sql, Long.class, args);
+        return value == null ? 0 : value;
+    }
+
+    private static BigDecimal decimal(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+
+    private static String corridorKey(String from, String to) {
+        return from + "->" + to;
+    }
+
+    private static <T> List<T> concat(List<T> left, List<T> right) {
+        List<T> all = new ArrayList<>(left.size() + right.size());
+        all.addAll(left);
+        all.addAll(right);
+        return all;
+    }
+
+    /**
+     *  Splits the partitions in halves until one is left, runs it and merges the results in partition order.
+     * */
+    private static final class PartitionTask<P, R> extends RecursiveTask<R> {
+
+        private final List<P> partitions;
+        private final Function<P, R> run;
+        private final BinaryOperator<R> merge;
+
+        PartitionTask(List<P> partitions, Function<P, R> run, BinaryOperator<R> merge) {
+            this.partitions = partitions;
+            this.run = run;
+            this.merge = merge;
+        }
+
+        @Override
+        protected R compute() {
+            if (partitions.size() == 1) {
+                return run.apply(partitions.get(0));
+            }
+            int middle = partitions.size() / 2;
+            PartitionTask<P, R> left = new PartitionTask<>(partitions.subList(0, middle), run, merge);
+            PartitionTask<P, R> right = new PartitionTask<>(partitions.subList(middle, partitions.size()), run, merge);
+            left.fork();
+            R rightResult = right.compute();
+            return merge.apply(left.join(), rightResult);
+        }
+    }
+
+    private static final class BlockScan {
+
+        private final long firstId;
+        private final long lastId;
+        private final Map<String, CorridorTotals> corridors = new LinkedHashMap<>();
+        private final List<Long> mismatchedIds = new ArrayList<>();
+        private long rows;
+        private long completed;
+        private long failed;
+        private long pending;
+        private long mismatches;
+        private LocalDateTime lastTime;
+
+        BlockScan(long firstId, long lastId) {
+            this.firstId = firstId;
+            this.lastId = lastId;
+        }
+
+        /**
+         *  Nothing should change in the block any more: ids after it exist, nothing in it or before it is still
+         *  processing and its newest transfer is old enough for pooled ids handed out before it to be used. A node
+         *  that stays quiet longer than that can still add one, reopenChangedBlocks() catches it.
+         * */
+        boolean isSettled(long lastTransferId, Long lowestProcessing, LocalDateTime settledBefore) {
+            return lastId < lastTransferId
+                    && pending == 0
+                    && (lowestProcessing == null || lowestProcessing > lastId)
+                    && (lastTime == null || lastTime.isBefore(settledBefore));
+        }
+    }
+
+    private static final class AccountCheck {
+
+        private long checked;
+        private long discrepancies;
+        private final List<AccountDiscrepancy> discrepantAccounts = new ArrayList<>();
+
+        AccountCheck plus(AccountCheck other) {
+            AccountCheck sum = new AccountCheck();
+            sum.checked = checked + other.checked;
+            sum.discrepancies = discrepancies + other.discrepancies;
+            sum.discrepantAccounts.addAll(discrepantAccounts);
+            sum.discrepantAccounts.addAll(other.discrepantAccounts);
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferOutboxMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ *  Default sink, stand in for a message broker: one DEBUG line per message.
+ * */
+@Component
+@ConditionalOnProperty(name = "transfer.outbox.sink", havingValue = "logging", matchIfMissing = true)
+public class LoggingTransferEventSink implements TransferEventSink {
+
+    private static final Logger log = LoggerFactory.getLogger(LoggingTransferEventSink.class);
+
+    @Override
+    public void deliver(List<TransferOutboxMessage> messages) {
+        if (!log.isDebugEnabled()) {
+            return;
+        }
+        for (TransferOutboxMessage message : messages) {
+            log.debug("Transfer {} {} for account {} (outbox {})", message.transferId(), message.state(),
+                    message.accountId(), message.outboxId());
+        }
+    }
+}
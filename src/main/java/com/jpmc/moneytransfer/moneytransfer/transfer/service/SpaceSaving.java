@@ -0,0 +1,184 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Weighted Space-Saving summary (Metwally, Agrawal, El Abbadi): the heaviest keys of a stream in a fixed number of
+ *  counters. A key that isn't tracked takes over the counter with the smallest weight and keeps that weight as its
+ *  error, so a tracked weight overestimates by at most its error, and every key heavier than total / capacity is
+ *  tracked. Counters sit in a min-heap on weight and are found by key in an open addressing table on the primitive
+ *  key, an add is a probe and O(log capacity) swaps. An evicted counter is reused, nothing is allocated once the
+ *  summary is full. Not thread safe.
+ * */
+final class SpaceSaving {
+
+    record Entry(long key, long weight, long error, long count, long max) {
+    }
+
+    private static final class Counter {
+        long key;
+        long weight;
+        long error;
+        long count;
+        long max;
+        int position;
+    }
+
+    private final int capacity;
+    private final Counter[] heap;
+    // linear probing, at most half full, a free slot is null
+    private final long[] slotKeys;
+    private final Counter[] slots;
+    private final int mask;
+    private int size;
+    private long total;
+    private long observations;
+
+    SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.heap = new Counter[capacity];
+        int tableSize = Integer.highestOneBit(Math.max(1, capacity * 2 - 1)) << 1;
+        this.slotKeys = new long[tableSize];
+        this.slots = new Counter[tableSize];
+        this.mask = tableSize - 1;
+    }
+
+    void add(long key, long weight) {
+        total += weight;
+        observations++;
+        Counter counter = find(key);
+        if (counter != null) {
+            counter.weight += weight;
+            counter.count++;
+            counter.max = Math.max(counter.max, weight);
+            siftDown(counter.position);
+            return;
+        }
+        if (size < capacity) {
+            counter = new Counter();
+            counter.key = key;
+            counter.weight = weight;
+            counter.count = 1;
+            counter.max = weight;
+            counter.position = size;
+            heap[size++] = counter;
+            insert(counter);
+            siftUp(counter.position);
+            return;
+        }
+        // evict the lightest key, the newcomer might have had up to its weight already
+        counter = heap[0];
+        remove(counter.key);
+        counter.key = key;
+        counter.error = counter.weight;
+        counter.weight += weight;
+        counter.count = 1;
+        counter.max = weight;
+        insert(counter);
+        siftDown(0);
+    }
+
+    long total() {
+        return total;
+    }
+
+    long observations() {
+        return observations;
+    }
+
+    /**
+     *  What an untracked key can have at most: the smallest weight once every counter is used, 0 before.
+     * */
+    long untrackedBound() {
+        return size < capacity ? 0 : heap[0].weight;
+    }
+
+    List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Counter c = heap[i];
+            entries.add(new Entry(c.key, c.weight, c.error, c.count, c.max));
+        }
+        return entries;
+    }
+
+    private Counter find(long key) {
+        for (int i = home(key); slots[i] != null; i = (i + 1) & mask) {
+            if (slotKeys[i] == key) {
+                return slots[i];
+            }
+        }
+        return null;
+    }
+
+    private void insert(Counter counter) {
+        int i = home(counter.key);
+        while (slots[i] != null) {
+            i = (i + 1) & mask;
+        }
+        slotKeys[i] = counter.key;
+        slots[i] = counter;
+    }
+
+    /**
+     *  Removes a tracked key and shifts the rest of its probe run back, so lookups never need tombstones.
+     * */
+    private void remove(long key) {
+        int hole = home(key);
+        while (slotKeys[hole] != key || slots[hole] == null) {
+            hole = (hole + 1) & mask;
+        }
+        slots[hole] = null;
+        for (int i = (hole + 1) & mask; slots[i] != null; i = (i + 1) & mask) {
+            int home = home(slotKeys[i]);
+            // stays when its home lies cyclically in (hole, i], moving it would put it before its home
+            boolean stays = hole < i ? home > hole && home <= i : home > hole || home <= i;
+            if (!stays) {
+                slotKeys[hole] = slotKeys[i];
+                slots[hole] = slots[i];
+                slots[i] = null;
+                hole = i;
+            }
+        }
+    }
+
+    private int home(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private void siftUp(int position) {
+        Counter counter = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (heap[parent].weight <= counter.weight) {
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(counter, position);
+    }
+
+    private void siftDown(int position) {
+        Counter counter = heap[position];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            if (child + 1 < size && heap[child + 1].weight < heap[child].weight) {
+                child++;
+            }
+            if (counter.weight <= heap[child].weight) {
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+        place(counter, position);
+    }
+
+    private void place(Counter counter, int position) {
+        heap[position] = counter;
+        counter.position = position;
+    }
+}
@@ -0,0 +1,102 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  Fair semaphore in front of the database transfer paths, one permit per pooled connection (by default the Hikari
+ *  maximum-pool-size). Callers beyond that park here, which is cheap for virtual threads, instead of piling up in
+ *  Hikari and failing after connection-timeout. A caller that can't get a permit within max-wait-ms gets OVERLOADED.
+ *  Not used in IN_MEMORY mode, the ledger engine doesn't hold a connection per transfer.
+ * */
+@Component
+public class TransferConcurrencyLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferConcurrencyLimiter.class);
+
+    // read directly, TransferService depends on this bean
+    @Value("${transfer.execution-mode:PESSIMISTIC}")
+    private TransferExecutionMode executionMode;
+
+    @Value("${transfer.limiter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${transfer.limiter.permits:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int permits;
+
+    @Value("${transfer.limiter.max-wait-ms:30000}")
+    private long maxWaitMs;
+
+    private Semaphore semaphore;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (executionMode == TransferExecutionMode.IN_MEMORY) {
+            enabled = false;
+        }
+        semaphore = new Semaphore(permits, true);
+        if (enabled) {
+            log.info("Transfer concurrency limited to {} (max wait {} ms)", permits, maxWaitMs);
+        }
+    }
+
+    /**
+     *  Blocks until a permit is free, every acquire has to be paired with a release in a finally block.
+     * */
+    public void acquire() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            if (!semaphore.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new TransferRuntimeException(TransferRuntimeException.Reason.OVERLOADED,
+                        "No database capacity for the transfer within " + maxWaitMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.OVERLOADED,
+                    "Interrupted while waiting for database capacity", e);
+        }
+        long waited = System.nanoTime() - start;
+        acquired.increment();
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    public void release() {
+        if (enabled) {
+            semaphore.release();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long count = acquired.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("permits", permits);
+        stats.put("available", semaphore.availablePermits());
+        stats.put("waiting", semaphore.getQueueLength());
+        stats.put("acquired", count);
+        stats.put("rejected", rejected.sum());
+        stats.put("avgWaitMs", count == 0 ? 0.0 : waitNanos.sum() / 1e6 / count);
+        stats.put("maxWaitMs", maxWaitNanos.get() / 1e6);
+        return stats;
+    }
+}
@@ -0,0 +1,17 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferOutboxMessage;
+
+import java.util.List;
+
+/**
+ *  Where TransferOutboxPublisher delivers outbox messages, chosen with transfer.outbox.sink (logging, in-memory, or
+ *  any other value plus a bean of your own implementing this). messages are one partition's batch in outbox id
+ *  order, so in commit order per account. Returning means all of them were taken, throwing means none counts as
+ *  delivered and the batch comes again, in the same order. Messages can arrive more than once (a crash between
+ *  deliver and the commit of their deletion), deduplicate on outboxId.
+ * */
+public interface TransferEventSink {
+
+    void deliver(List<TransferOutboxMessage> messages) throws Exception;
+}
@@ -23,6 +23,7 @@ public class TransferException extends Exception{
         INSUFFICIENT_FUNDS,
         ACCOUNT_NOT_FOUND,
         FX_RATE_MISSING,
+        FX_RATE_STALE,
         INVALID_CURRENCY,
         INVALID_FEE_AMOUNT,
         SELF_TRANSFER, INVALID_TRANSFER_RECORD,
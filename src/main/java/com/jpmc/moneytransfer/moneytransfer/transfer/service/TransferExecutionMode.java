@@ -0,0 +1,18 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+/**
+ *  How a transfer applies its debit and credit. Selected per deployment with transfer.execution-mode.
+ * */
+public enum TransferExecutionMode {
+    // lock both account rows with SELECT ... FOR UPDATE, check in Java, write through dirty checking
+    PESSIMISTIC,
+    // no SELECT ... FOR UPDATE: conditional UPDATE for the debit, increment for the credit, row count decides
+    ATOMIC_UPDATE,
+    // no row locks, @Version checked at commit, the whole transfer is retried with jittered backoff on a conflict
+    OPTIMISTIC,
+    // append-only: a debit and a credit row in ledger_entry per transfer, balances are the last snapshot plus the
+    // entries after it (DoubleEntryLedgerService), account rows are only updated by the LedgerCompactor
+    DOUBLE_ENTRY,
+    // balances live in the in-memory ledger engine (transfer.engine), the tables are an async projection of its journal
+    IN_MEMORY
+}
@@ -0,0 +1,251 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferHistoryItem;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ *  Statement export of an account: every transfer it sent or received in a period, newest first, written as CSV or
+ *  NDJSON while it is read. Sent and received come from one forward only cursor each (the same indexes as the
+ *  history pages) and are merged row by row, nothing is collected, so the heap used is the same for 10 rows or
+ *  10 million. Rows are TransferHistoryItem projections, the persistence context stays empty.
+ * */
+@Service
+public class TransferExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferExportService.class);
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(1970, 1, 1);
+    private static final LocalDate LAST_DAY = LocalDate.of(9999, 12, 30);
+
+    private static final Comparator<TransferHistoryItem> NEWEST_FIRST =
+            Comparator.comparing(TransferHistoryItem::transferTime)
+                    .thenComparing(TransferHistoryItem::transferId)
+                    .reversed();
+
+    private static final String CSV_HEADER = "transferId,transferTime,fromAccountId,toAccountId,amount,currency," +
+            "feeApplied,debitAmount,debitCurrency,creditAmount,creditCurrency,fxRate,state,failureReason";
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format of(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new TransferRuntimeException(TransferRuntimeException.Reason.INVALID_ARGUMENT,
+                        "Unsupported export format: " + name);
+            }
+        }
+    }
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     *  Checks the period before anything is written, from and to are inclusive days and may be null (open ended).
+     * */
+    public void checkPeriod(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.INVALID_ARGUMENT,
+                    "Statement period starts after it ends: " + from + " - " + to);
+        }
+    }
+
+    /**
+     *  Writes the account's transfers from the first to the last day to out and returns how many there were.
+     *  out is flushed but not closed. Runs in one read only transaction, the cursors live as long as the export.
+     * */
+    @Transactional(readOnly = true)
+    public long export(Long accountId, LocalDate from, LocalDate to, Format format, OutputStream out) throws IOException {
+        checkPeriod(from, to);
+        LocalDateTime start = (from == null ? FIRST_DAY : from).atStartOfDay();
+        LocalDateTime end = (to == null ? LAST_DAY : to).plusDays(1).atStartOfDay();
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        RowWriter rows = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer, objectMapper);
+        long count = 0;
+        try (Stream<TransferHistoryItem> sent = transferRepository.streamSent(accountId, start, end);
+             Stream<TransferHistoryItem> received = transferRepository.streamReceived(accountId, start, end)) {
+            rows.begin();
+            Iterator<TransferHistoryItem> s = sent.iterator();
+            Iterator<TransferHistoryItem> r = received.iterator();
+            TransferHistoryItem nextSent = s.hasNext() ? s.next() : null;
+            TransferHistoryItem nextReceived = r.hasNext() ? r.next() : null;
+            while (nextSent != null || nextReceived != null) {
+                TransferHistoryItem next;
+                if (nextReceived == null || (nextSent != null && NEWEST_FIRST.compare(nextSent, nextReceived) <= 0)) {
+                    next = nextSent;
+                    nextSent = s.hasNext() ? s.next() : null;
+                } else {
+                    next = nextReceived;
+                    nextReceived = r.hasNext() ? r.next() : null;
+                }
+                // a (failed) transfer to itself is on both cursors, one after the other
+                if (nextReceived != null && nextReceived.transferId().equals(next.transferId())) {
+                    nextReceived = r.hasNext() ? r.next() : null;
+                }
+                rows.write(next);
+                count++;
+            }
+            rows.end();
+        }
+        writer.flush();
+        log.info("Exported {} transfers of account {} as {}", count, accountId, format);
+        return count;
+    }
+
+    private interface RowWriter {
+        void begin() throws IOException;
+
+        void write(TransferHistoryItem item) throws IOException;
+
+        void end() throws IOException;
+    }
+
+    private record CsvRowWriter(Writer writer) implements RowWriter {
+
+        @Override
+        public void begin() throws IOException {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(TransferHistoryItem item) throws IOException {
+            writer.write(String.valueOf(item.transferId()));
+            writer.write(',');
+            writer.write(String.valueOf(item.transferTime()));
+            writer.write(',');
+            writer.write(String.valueOf(item.fromAccountId()));
+            writer.write(',');
+            writer.write(String.valueOf(item.toAccountId()));
+            writer.write(',');
+            writeMoney(item.amount());
+            writer.write(',');
+            writeText(item.currency());
+            writer.write(',');
+            writeMoney(item.feeApplied());
+            writer.write(',');
+            writeMoney(item.debitAmount());
+            writer.write(',');
+            writeText(item.debitCurrency());
+            writer.write(',');
+            writeMoney(item.creditAmount());
+            writer.write(',');
+            writeText(item.creditCurrency());
+            writer.write(',');
+            if (item.fxRate() != null) {
+                writer.write(item.fxRate().toPlainString());
+            }
+            writer.write(',');
+            writeText(item.state() == null ? null : item.state().name());
+            writer.write(',');
+            writeText(item.failureReason());
+            writer.write('\n');
+        }
+
+        @Override
+        public void end() {
+        }
+
+        private void writeMoney(Money money) throws IOException {
+            if (money != null) {
+                writer.write(money.toBigDecimal().toPlainString());
+            }
+        }
+
+        private void writeText(String text) throws IOException {
+            if (text == null) {
+                return;
+            }
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private static final class NdjsonRowWriter implements RowWriter {
+
+        private final Writer writer;
+        private final JsonGenerator generator;
+        private final ObjectWriter itemWriter;
+        private boolean written;
+
+        NdjsonRowWriter(Writer writer, ObjectMapper objectMapper) throws IOException {
+            this.writer = writer;
+            this.generator = objectMapper.getFactory().createGenerator(writer)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            // one generator for all rows, they are separated as root values. The buffered writer decides when bytes
+            // go out, not every row
+            this.itemWriter = objectMapper.writerFor(TransferHistoryItem.class)
+                    .withRootValueSeparator("\n")
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        }
+
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public void write(TransferHistoryItem item) throws IOException {
+            itemWriter.writeValue(generator, item);
+            written = true;
+        }
+
+        @Override
+        public void end() throws IOException {
+            generator.flush();
+            if (written) {
+                writer.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferHistoryItem;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferHistoryPage;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ *  Transfer history of an account, newest first, with keyset pagination: a page continues after the
+ *  (transfer_time, transfer_id) of the last row of the previous one instead of skipping OFFSET rows, so page 10,000
+ *  costs the same index seek as page 1. Sent and received transfers are read with one seek each on their own
+ *  composite index and merged, an OR over both columns couldn't use either index.
+ * */
+@Service
+public class TransferHistoryService {
+
+    // cursor of the first page, newer than any transfer
+    private static final LocalDateTime FIRST_PAGE_TIME = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private static final Comparator<TransferHistoryItem> NEWEST_FIRST =
+            Comparator.comparing(TransferHistoryItem::transferTime)
+                    .thenComparing(TransferHistoryItem::transferId)
+                    .reversed();
+
+    private record Position(LocalDateTime time, long id) {
+    }
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Value("${transfer.history.max-page-size:500}")
+    private int maxPageSize;
+
+    /**
+     *  One page of the account's transfers. cursor is null for the first page, then the nextCursor of the page before.
+     * */
+    public TransferHistoryPage getHistory(Long accountId, String cursor, int pageSize) {
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.INVALID_ARGUMENT,
+                    "Page size must be between 1 and " + maxPageSize);
+        }
+        Position after = cursor == null ? new Position(FIRST_PAGE_TIME, Long.MAX_VALUE) : decodeCursor(cursor);
+
+        // one extra row per side tells whether there is a next page
+        Limit limit = Limit.of(pageSize + 1);
+        List<TransferHistoryItem> sent = transferRepository.findSentBefore(accountId, after.time(), after.id(), limit);
+        List<TransferHistoryItem> received = transferRepository.findReceivedBefore(accountId, after.time(), after.id(), limit);
+
+        List<TransferHistoryItem> merged = merge(sent, received, pageSize + 1);
+        if (merged.size() <= pageSize) {
+            return new TransferHistoryPage(merged, null);
+        }
+        List<TransferHistoryItem> page = merged.subList(0, pageSize);
+        TransferHistoryItem last = page.get(pageSize - 1);
+        return new TransferHistoryPage(List.copyOf(page), encodeCursor(last));
+    }
+
+    /**
+     *  Merges two newest first lists into one, up to max rows. A (failed) transfer from an account to itself is in
+     *  both lists and is kept once.
+     * */
+    private static List<TransferHistoryItem> merge(List<TransferHistoryItem> sent, List<TransferHistoryItem> received, int max) {
+        List<TransferHistoryItem> merged = new ArrayList<>(Math.min(max, sent.size() + received.size()));
+        int s = 0;
+        int r = 0;
+        while (merged.size() < max && (s < sent.size() || r < received.size())) {
+            TransferHistoryItem next;
+            if (r >= received.size() || (s < sent.size() && NEWEST_FIRST.compare(sent.get(s), received.get(r)) <= 0)) {
+                next = sent.get(s++);
+            } else {
+                next = received.get(r++);
+            }
+            if (merged.isEmpty() || !merged.get(merged.size() - 1).transferId().equals(next.transferId())) {
+                merged.add(next);
+            }
+        }
+        return merged;
+    }
+
+    private static String encodeCursor(TransferHistoryItem last) {
+        String position = last.transferTime() + "," + last.transferId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Position decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",");
+            if (position.length == 2) {
+                return new Position(LocalDateTime.parse(position[0]), Long.parseLong(position[1]));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // falls through to the rejection below
+        }
+        throw new TransferRuntimeException(TransferRuntimeException.Reason.INVALID_ARGUMENT, "Invalid cursor: " + cursor);
+    }
+}
@@ -0,0 +1,177 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  Recent idempotency keys and the outcome of the transfer that first used them, bounded by size and age.
+ *  The first request with a key runs, a duplicate gets the same transfer id (or the same failure) back without
+ *  touching the database, and a duplicate that arrives while the first one is still running waits for it.
+ *  Only outcomes that were committed are kept: when the first request fails with a rollback (OVERLOADED, a lock or
+ *  version conflict...) its waiters get that failure but the key is forgotten, so the client's next retry runs again.
+ *  A key first used by an async submit only stands for the queued transfer's id, a synchronous request with it is
+ *  answered from that transfer's current state instead.
+ *  Per node only, across nodes and restarts the unique index on transfer.idempotency_key catches duplicates.
+ * */
+@Component
+public class TransferIdempotencyCache {
+
+    @Value("${transfer.idempotency.cache-size:100000}")
+    private long cacheSize;
+
+    @Value("${transfer.idempotency.cache-ttl-minutes:60}")
+    private long cacheTtlMinutes;
+
+    private Cache<String, Entry> entries;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder waited = new LongAdder();
+
+    /**
+     *  The transfer of an idempotent request, may throw the same checked failure the client should see.
+     * */
+    @FunctionalInterface
+    public interface Execution {
+        Long run() throws TransferException;
+    }
+
+    /**
+     *  Answer to a synchronous request for a transfer that was queued, from the state it has now.
+     * */
+    @FunctionalInterface
+    public interface QueuedOutcome {
+        Long of(Long transferId) throws TransferException;
+    }
+
+    // queued: the key came from an async submit, outcome is the id of the queued transfer
+    private record Entry(String fingerprint, CompletableFuture<Long> outcome, boolean queued) {
+    }
+
+    @PostConstruct
+    public void init() {
+        entries = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutes))
+                .build();
+    }
+
+    /**
+     *  Runs execution once per idempotency key, requests without a key always run.
+     *  A key reused for a different transfer (other accounts, amount or currency) is rejected with INVALID_ARGUMENT.
+     *  If the key belongs to a queued transfer the answer is queuedOutcome of its id.
+     * */
+    public Long execute(TransferRequestDTO dto, Execution execution, QueuedOutcome queuedOutcome) throws TransferException {
+        String key = dto.getIdempotencyKey();
+        if (key == null) {
+            return execution.run();
+        }
+
+        Entry mine = new Entry(fingerprint(dto), new CompletableFuture<>(), false);
+        Entry first = entries.asMap().putIfAbsent(key, mine);
+        if (first == null) {
+            return runFirst(key, mine, execution);
+        }
+        checkSameTransfer(key, first.fingerprint(), mine.fingerprint());
+        Long id = awaitOutcome(first.outcome());
+        return first.queued() ? queuedOutcome.of(id) : id;
+    }
+
+    /**
+     *  Like execute for an async submit: what the key keeps is the id of the queued transfer, whatever happens to it.
+     * */
+    public Long submit(TransferRequestDTO dto, Execution execution) throws TransferException {
+        String key = dto.getIdempotencyKey();
+        if (key == null) {
+            return execution.run();
+        }
+
+        Entry mine = new Entry(fingerprint(dto), new CompletableFuture<>(), true);
+        Entry first = entries.asMap().putIfAbsent(key, mine);
+        if (first == null) {
+            return runFirst(key, mine, execution);
+        }
+        checkSameTransfer(key, first.fingerprint(), mine.fingerprint());
+        return awaitOutcome(first.outcome());
+    }
+
+    private Long runFirst(String key, Entry mine, Execution execution) throws TransferException {
+        executed.increment();
+        try {
+            Long id = execution.run();
+            mine.outcome().complete(id);
+            return id;
+        } catch (TransferException e) {
+            // business failure, committed as a FAILED transfer: replay it
+            mine.outcome().completeExceptionally(e);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            entries.asMap().remove(key, mine);
+            mine.outcome().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.estimatedSize());
+        stats.put("executed", executed.sum());
+        stats.put("replayed", replayed.sum());
+        stats.put("waited", waited.sum());
+        return stats;
+    }
+
+    /**
+     *  What makes two requests the same transfer. Amount without trailing zeros, 10.5 and 10.50 are the same.
+     * */
+    static String fingerprint(Long senderAccountId, Long receiverAccountId, BigDecimal amount, String currency) {
+        return senderAccountId + ":" + receiverAccountId + ":" + amount.stripTrailingZeros().toPlainString() + ":" + currency;
+    }
+
+    static String fingerprint(TransferRequestDTO dto) {
+        return fingerprint(dto.getSenderAccountId(), dto.getReceiverAccountId(), dto.getAmount(), dto.getCurrency());
+    }
+
+    static void checkSameTransfer(String key, String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.INVALID_ARGUMENT,
+                    "Idempotency key " + key + " was already used for a different transfer");
+        }
+    }
+
+    private Long awaitOutcome(CompletableFuture<Long> outcome) throws TransferException {
+        if (outcome.isDone()) {
+            replayed.increment();
+        } else {
+            waited.increment();
+        }
+        try {
+            return outcome.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.UNKNOWN_ERROR,
+                    "Interrupted while waiting for the transfer with the same idempotency key", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TransferException transferException) {
+                throw transferException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw (Error) cause;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  Account affinity lanes in front of TransferService.transferMoney.
+ *  Each lane is a single thread, a transfer runs on the lane of its lower account id, so transfers touching the
+ *  same account queue up in memory instead of parking a pooled connection on a row lock.
+ *  When the higher account hashes to another lane, that lane is held too (a barrier task blocks it) for the
+ *  duration of the transfer. Lanes are always taken in ascending lane index, so lanes can't deadlock.
+ *  Keep transfer.lanes.count below the connection pool size, every lane holds at most one connection.
+ * */
+@Service
+public class TransferLaneDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferLaneDispatcher.class);
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private TransferThreads transferThreads;
+
+    @Value("${transfer.lanes.enabled:false}")
+    private boolean enabled;
+
+    @Value("${transfer.lanes.count:8}")
+    private int laneCount;
+
+    private Lane[] lanes;
+
+    @PostConstruct
+    public void init() {
+        // the in-memory engine already serializes per account
+        if (transferService.getExecutionMode() == TransferExecutionMode.IN_MEMORY) {
+            enabled = false;
+        }
+        if (!enabled) {
+            return;
+        }
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, transferThreads.factory("transfer-lane-" + i));
+        }
+        log.info("Transfer lanes enabled: {} lanes", laneCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (lanes != null) {
+            for (Lane lane : lanes) {
+                lane.executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     *  Same contract as TransferService.transferMoney, runs the transfer on its lane(s) when lanes are enabled.
+     * */
+    public Long transferMoney(TransferRequestDTO dto) throws TransferException {
+        if (!enabled) {
+            return transferService.transferMoney(dto);
+        }
+
+        long lower = Math.min(dto.getSenderAccountId(), dto.getReceiverAccountId());
+        long higher = Math.max(dto.getSenderAccountId(), dto.getReceiverAccountId());
+        Lane lowerLane = laneOf(lower);
+        Lane higherLane = laneOf(higher);
+        Lane first = lowerLane.index <= higherLane.index ? lowerLane : higherLane;
+        Lane held = lowerLane == higherLane ? null : (first == lowerLane ? higherLane : lowerLane);
+        long enqueued = System.nanoTime();
+        Future<Long> result = first.executor.submit(() -> {
+            first.started(enqueued);
+            if (held == null) {
+                return transferService.transferMoney(dto);
+            }
+            CountDownLatch acquired = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            held.executor.execute(() -> {
+                held.started(enqueued);
+                acquired.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            try {
+                acquired.await();
+                return transferService.transferMoney(dto);
+            } finally {
+                release.countDown();
+            }
+        });
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.UNKNOWN_ERROR,
+                    "Interrupted while waiting for transfer lane", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TransferException transferException) {
+                throw transferException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.UNKNOWN_ERROR,
+                    "Transfer lane failed", e.getCause());
+        }
+    }
+
+    /**
+     *  Queue depth, dispatched count and time spent waiting for the lane per lane.
+     * */
+    public List<Map<String, Object>> getLaneStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        if (lanes == null) {
+            return stats;
+        }
+        for (Lane lane : lanes) {
+            long started = lane.started.sum();
+            Map<String, Object> laneStats = new LinkedHashMap<>();
+            laneStats.put("lane", lane.index);
+            laneStats.put("queueDepth", lane.executor.getQueue().size());
+            laneStats.put("started", started);
+            laneStats.put("avgWaitMs", started == 0 ? 0.0 : lane.waitNanos.sum() / 1e6 / started);
+            laneStats.put("maxWaitMs", lane.maxWaitNanos.get() / 1e6);
+            stats.add(laneStats);
+        }
+        return stats;
+    }
+
+    private Lane laneOf(long accountId) {
+        return lanes[Math.floorMod(Long.hashCode(accountId), lanes.length)];
+    }
+
+    private static final class Lane {
+
+        private final int index;
+        private final ThreadPoolExecutor executor;
+        private final LongAdder started = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private Lane(int index, ThreadFactory threadFactory) {
+            this.index = index;
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    threadFactory);
+        }
+
+        // time from dispatch until the lane picked the work up
+        private void started(long enqueuedNanos) {
+            long waited = System.nanoTime() - enqueuedNanos;
+            started.increment();
+            waitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+    }
+}
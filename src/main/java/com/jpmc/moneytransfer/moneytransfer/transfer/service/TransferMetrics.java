@@ -0,0 +1,166 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  Micrometer timers for the stages of a transfer (transfer.stage, tagged stage/outcome/reason) and for the whole
+ *  transfer (transfer.duration, tagged outcome/reason). outcome is success or failure, reason the TransferException
+ *  or TransferRuntimeException reason of a failure and none otherwise. Histograms and the Prometheus export are
+ *  configured in the profile properties (management.*). Timers are looked up once per stage and reason, a
+ *  measurement is two nanoTime calls and a record.
+ * */
+@Component
+public class TransferMetrics {
+
+    public static final String STAGE_TIMER = "transfer.stage";
+    public static final String TRANSFER_TIMER = "transfer.duration";
+
+    private static final String NONE = "none";
+
+    public enum Stage {
+        RECORD_CREATION,
+        FEE_CALCULATION,
+        LOCK_ACQUISITION,
+        FX_LOOKUP,
+        DEBIT_CREDIT,
+        COMMIT;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     *  A stage, may throw the checked TransferException.
+     * */
+    @FunctionalInterface
+    public interface StageCall<T> {
+        T call() throws TransferException;
+    }
+
+    @FunctionalInterface
+    public interface StageRun {
+        void run() throws TransferException;
+    }
+
+    @Autowired
+    private MeterRegistry registry;
+
+    // success timer of each stage, failure timers by reason
+    private final Map<Stage, Timer> stageSuccess = new EnumMap<>(Stage.class);
+    private final Map<Stage, Map<String, Timer>> stageFailures = new EnumMap<>(Stage.class);
+    private final Map<String, Timer> transferTimers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (Stage stage : Stage.values()) {
+            stageSuccess.put(stage, stageTimer(stage, "success", NONE));
+            stageFailures.put(stage, new ConcurrentHashMap<>());
+        }
+    }
+
+    public <T> T time(Stage stage, StageCall<T> call) throws TransferException {
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            record(stage, NONE, start);
+            return result;
+        } catch (TransferException | RuntimeException e) {
+            record(stage, reasonOf(e), start);
+            throw e;
+        }
+    }
+
+    public void time(Stage stage, StageRun run) throws TransferException {
+        time(stage, () -> {
+            run.run();
+            return null;
+        });
+    }
+
+    /**
+     *  Times the commit (flush included) of the current transaction. A transaction that is rolled back without
+     *  trying to commit isn't recorded, one that fails to commit is recorded as a failure.
+     * */
+    public void timeCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long start;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                start = System.nanoTime();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (start == 0) {
+                    return;
+                }
+                if (status == STATUS_COMMITTED) {
+                    record(Stage.COMMIT, NONE, start);
+                } else {
+                    // the cause isn't passed to synchronizations
+                    record(Stage.COMMIT, TransferRuntimeException.Reason.UNKNOWN_ERROR.name(), start);
+                }
+            }
+        });
+    }
+
+    /**
+     *  Records a whole transfer that started at start (System.nanoTime), failure is null when it completed.
+     * */
+    public void recordTransfer(long start, Throwable failure) {
+        String reason = failure == null ? NONE : reasonOf(failure);
+        transferTimers.computeIfAbsent(reason, r -> Timer.builder(TRANSFER_TIMER)
+                        .description("Transfer latency, from the request to the outcome")
+                        .tag("outcome", failure == null ? "success" : "failure")
+                        .tag("reason", r)
+                        .register(registry))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void record(Stage stage, String reason, long start) {
+        long elapsed = System.nanoTime() - start;
+        Timer timer = NONE.equals(reason)
+                ? stageSuccess.get(stage)
+                : stageFailures.get(stage).computeIfAbsent(reason, r -> stageTimer(stage, "failure", r));
+        timer.record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer stageTimer(Stage stage, String outcome, String reason) {
+        return Timer.builder(STAGE_TIMER)
+                .description("Latency of one stage of a transfer")
+                .tag("stage", stage.tag)
+                .tag("outcome", outcome)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    static String reasonOf(Throwable e) {
+        if (e instanceof TransferException transferException) {
+            return transferException.getReason().name();
+        }
+        if (e instanceof TransferRuntimeException transferRuntimeException) {
+            return transferRuntimeException.getReason().name();
+        }
+        if (e instanceof ConcurrencyFailureException) {
+            // lock timeouts, deadlocks and version conflicts
+            return TransferRuntimeException.Reason.CONCURRENT_UPDATE.name();
+        }
+        return TransferRuntimeException.Reason.UNKNOWN_ERROR.name();
+    }
+}
@@ -0,0 +1,220 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferOutboxMessage;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferOutboxPartition;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferOutboxPartitionRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferOutboxRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  Delivers the transfer outbox to the TransferEventSink. Each worker loops over transactions that lease one
+ *  partition (SELECT ... FOR UPDATE SKIP LOCKED on transfer_outbox_partition, the one claimed longest ago that
+ *  nobody holds), read up to batch-size of its rows in id order, hand them to the sink and delete them. Workers
+ *  here and on other nodes never share a partition, so the rows of an account go out one batch after the other
+ *  in order. A batch is deleted only in the transaction that delivered it: a failed delivery rolls back and the
+ *  partition is retried after a backoff, a crash after delivery redelivers the batch (at least once).
+ *  A worker that just delivered a full batch goes on right away, an idle one sleeps poll-interval-ms after a
+ *  round over all partitions found nothing.
+ * */
+@Service
+public class TransferOutboxPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferOutboxPublisher.class);
+
+    @Autowired
+    private TransferOutboxService outboxService;
+
+    @Autowired
+    private TransferOutboxRepository outboxRepository;
+
+    @Autowired
+    private TransferOutboxPartitionRepository partitionRepository;
+
+    @Autowired
+    private TransferEventSink sink;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${transfer.outbox.workers:2}")
+    private int workerCount;
+
+    @Value("${transfer.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${transfer.outbox.poll-interval-ms:200}")
+    private long pollIntervalMs;
+
+    // first wait of a partition whose delivery failed, doubled per failure up to max-backoff-ms
+    @Value("${transfer.outbox.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    @Value("${transfer.outbox.max-backoff-ms:30000}")
+    private long maxBackoffMs;
+
+    private final Map<Integer, Long> retryAt = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> failuresInARow = new ConcurrentHashMap<>();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final List<Thread> workers = new ArrayList<>();
+    private TransactionTemplate transactionTemplate;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!outboxService.isEnabled()) {
+            return;
+        }
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        createPartitions();
+
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "transfer-outbox-publisher-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("Transfer outbox publisher: {} workers, {} partitions, batches of {} to {}",
+                workerCount, outboxService.getPartitions(), batchSize, sink.getClass().getSimpleName());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+            worker.join(10_000);
+        }
+        workers.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", outboxService.isEnabled());
+        stats.put("pending", outboxService.isEnabled() ? outboxRepository.count() : 0);
+        stats.put("delivered", delivered.sum());
+        stats.put("batches", batches.sum());
+        stats.put("failures", failures.sum());
+        stats.put("backingOff", retryAt.keySet());
+        return stats;
+    }
+
+    /**
+     *  Partition rows 0..partitions-1 (more are left from a larger setting until they are drained, they're
+     *  still claimed).
+     * */
+    private void createPartitions() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int partition = 0; partition < outboxService.getPartitions(); partition++) {
+                if (!partitionRepository.existsById(partition)) {
+                    partitionRepository.save(new TransferOutboxPartition(partition));
+                }
+            }
+        });
+    }
+
+    private void work() {
+        int idleClaims = 0;
+        while (running) {
+            try {
+                Integer published = transactionTemplate.execute(this::publishBatch);
+                if (published != null && published >= batchSize) {
+                    idleClaims = 0;
+                    continue;
+                }
+                if (published == null || published == 0) {
+                    idleClaims++;
+                } else {
+                    idleClaims = 0;
+                }
+                if (idleClaims >= outboxService.getPartitions()) {
+                    idleClaims = 0;
+                    Thread.sleep(pollIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.error("Transfer outbox publisher failed, retrying in {} ms", pollIntervalMs, e);
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     *  One lease: returns the number of messages delivered, 0 when no partition was free or it had nothing (or is
+     *  backing off after a failed delivery).
+     * */
+    private Integer publishBatch(TransactionStatus status) {
+        List<TransferOutboxPartition> claimed = partitionRepository.claimNext(Limit.of(1));
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+        TransferOutboxPartition partition = claimed.get(0);
+        Integer partitionNo = partition.getPartitionNo();
+        Long retry = retryAt.get(partitionNo);
+        if (retry != null && System.currentTimeMillis() < retry) {
+            partition.claimed(0);
+            return 0;
+        }
+
+        List<TransferOutboxMessage> messages = outboxRepository.findPending(partitionNo, Limit.of(batchSize));
+        if (messages.isEmpty()) {
+            partition.claimed(0);
+            return 0;
+        }
+        try {
+            sink.deliver(messages);
+        } catch (Exception e) {
+            status.setRollbackOnly();
+            failures.increment();
+            int inARow = failuresInARow.merge(partitionNo, 1, Integer::sum);
+            long backoff = Math.min(maxBackoffMs, retryBackoffMs << Math.min(inARow - 1, 20));
+            retryAt.put(partitionNo, System.currentTimeMillis() + backoff);
+            log.warn("Delivery of {} outbox messages of partition {} failed ({} in a row), retrying in {} ms",
+                    messages.size(), partitionNo, inARow, backoff, e);
+            return 0;
+        }
+        retryAt.remove(partitionNo);
+        failuresInARow.remove(partitionNo);
+
+        List<Long> ids = new ArrayList<>(messages.size());
+        for (TransferOutboxMessage message : messages) {
+            ids.add(message.outboxId());
+        }
+        outboxRepository.deleteDelivered(ids);
+        partition.claimed(messages.size());
+        delivered.add(messages.size());
+        batches.increment();
+        return messages.size();
+    }
+}
@@ -0,0 +1,100 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.transfer.journal.TransferEvent;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.Transfer;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ *  Writes the transactional outbox: one transfer_outbox row per account of a transfer that reached COMPLETED
+ *  (sender and receiver) or FAILED (sender), in the caller's transaction, so the row commits or rolls back with
+ *  the transfer. Called by TransferService after performTransfer while the account locks are still held, and by
+ *  the IN_MEMORY projector in its projection transaction. A JDBC batch, one statement for a whole batch chunk.
+ *  While it is enabled TransferService locks hot and DOUBLE_ENTRY receivers FOR UPDATE too, so the rows of every
+ *  account are inserted in commit order.
+ * */
+@Service
+public class TransferOutboxService {
+
+    private static final String INSERT_OUTBOX =
+            "INSERT INTO transfer_outbox (partition_no, account_id, transfer_id, state, from_account_id, to_account_id, " +
+            "amount, fee_applied, fx_rate, debit_amount, credit_amount, currency, currency_from, currency_to, " +
+            "failure_reason, failure_message, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${transfer.outbox.enabled:false}")
+    private boolean enabled;
+
+    // the partition of an account must not change while it has undelivered rows
+    @Value("${transfer.outbox.partitions:16}")
+    private int partitions;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public int partitionOf(long accountId) {
+        return (int) Math.floorMod(accountId, (long) partitions);
+    }
+
+    /**
+     *  Adds the rows of the transfers that are COMPLETED or FAILED, others are skipped.
+     * */
+    public void append(Collection<Transfer> transfers) {
+        if (!enabled) {
+            return;
+        }
+        appendEvents(transfers.stream().map(TransferEvent::of).toList());
+    }
+
+    public void appendEvents(List<TransferEvent> events) {
+        if (!enabled) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(events.size() * 2);
+        for (TransferEvent event : events) {
+            if (event.state() == TransferState.PROCESSING) {
+                continue;
+            }
+            rows.add(row(event, event.fromAccountId(), now));
+            if (event.state() == TransferState.COMPLETED && event.toAccountId() != event.fromAccountId()) {
+                rows.add(row(event, event.toAccountId(), now));
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_OUTBOX, rows);
+        }
+    }
+
+    private Object[] row(TransferEvent event, long accountId, Timestamp now) {
+        return new Object[]{
+                partitionOf(accountId), accountId, event.transferId(), event.state().name(),
+                event.fromAccountId(), event.toAccountId(),
+                decimal(event.amount()), decimal(event.feeApplied()), event.fxRate(),
+                decimal(event.debitAmount()), decimal(event.creditAmount()),
+                event.currency(), event.currencyFrom(), event.currencyTo(),
+                event.failureReason(), event.failureMessage(), now};
+    }
+
+    private static BigDecimal decimal(Money money) {
+        return money == null ? null : money.toBigDecimal();
+    }
+}
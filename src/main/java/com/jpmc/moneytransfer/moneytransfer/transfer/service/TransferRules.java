@@ -0,0 +1,59 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import org.springframework.stereotype.Component;
+
+/**
+ *  Business rules every transfer has to pass, shared by the database paths in TransferService and the in-memory
+ *  ledger engine so both reject the same transfers with the same reasons.
+ * */
+@Component
+public class TransferRules {
+
+    public void checkSelfTransfer(Long fromAccountId, Long toAccountId) throws TransferException {
+        if (fromAccountId.equals(toAccountId)) {
+            throw new TransferException(
+                    TransferException.Reason.SELF_TRANSFER,
+                    "Self transfer not allowed");
+        }
+    }
+
+    /**
+     *  The transfer has to be in the sender account's currency.
+     * */
+    public void checkSenderCurrency(Currency senderCurrency, Currency transferCurrency) throws TransferException {
+        if (!senderCurrency.equals(transferCurrency)) {
+            throw new TransferException(
+                    TransferException.Reason.INVALID_CURRENCY,
+                    "Currency mismatch from DTO and Sender's Account");
+        }
+    }
+
+    public void checkSufficientFunds(Money senderBalance, Money debitAmount) throws TransferException {
+        if (senderBalance.isLessThan(debitAmount)) {
+            throw insufficientFunds();
+        }
+    }
+
+    /**
+     *  The receiver's new balance has to fit Money (Money.MAX, below the MAX_DB_VALUE of the balance column).
+     * */
+    public void checkCreditLimit(Money receiverBalance, Money creditAmount) throws TransferException {
+        if (receiverBalance.getUnits() > Money.MAX.getUnits() - creditAmount.getUnits()) {
+            throw creditLimitExceeded();
+        }
+    }
+
+    public TransferException insufficientFunds() {
+        return new TransferException(
+                TransferException.Reason.INSUFFICIENT_FUNDS,
+                "Insufficient funds for this transaction");
+    }
+
+    public TransferException creditLimitExceeded() {
+        return new TransferException(
+                TransferException.Reason.INSUFFICIENT_FUNDS,
+                "Receiver balance exceeds database precision limit");
+    }
+}
@@ -23,6 +23,9 @@ public class TransferRuntimeException extends RuntimeException {
         UNKNOWN_ERROR,
         INVALID_ARGUMENT,
         INVALID_ACCOUNT_STATE,
-        FEE_CALCULATION_FAILED;
+        FEE_CALCULATION_FAILED,
+        CONCURRENT_UPDATE,
+        // no database capacity within transfer.limiter.max-wait-ms
+        OVERLOADED;
     }
 }
@@ -1,25 +1,47 @@
 package com.jpmc.moneytransfer.moneytransfer.transfer.service;
 
-import com.jpmc.moneytransfer.moneytransfer.CommonHelper;
+import com.jpmc.moneytransfer.moneytransfer.Money;
 import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
 import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
 import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
 import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.service.HotAccountService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.engine.LedgerEngine;
+import com.jpmc.moneytransfer.moneytransfer.transfer.engine.LedgerOutcome;
+import com.jpmc.moneytransfer.moneytransfer.transfer.journal.TransferEventJournal;
 import com.jpmc.moneytransfer.moneytransfer.transfer.model.Transfer;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferBatchItemResult;
 import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
 import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferStatus;
 import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-
-import static com.jpmc.moneytransfer.moneytransfer.CommonHelper.MAX_DB_VALUE;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Service for Transferring Money from one account to another
@@ -45,44 +67,612 @@ public class TransferService {
     private FXConversionService fxConversionService;
 
     @Autowired
-    private CommonHelper commonHelper;
+    private ApplicationContext applicationContext;
 
     @Autowired
-    private ApplicationContext applicationContext;
+    private HotAccountService hotAccountService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private TransferRules transferRules;
+
+    @Autowired
+    private TransferConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private TransferIdempotencyCache idempotencyCache;
+
+    @Autowired
+    private DoubleEntryLedgerService doubleEntryLedgerService;
 
+    @Autowired
+    private TransferMetrics transferMetrics;
+
+    @Autowired
+    private AccountContentionProfiler contentionProfiler;
+
+    @Autowired
+    private TransferEventJournal transferEventJournal;
+
+    @Autowired
+    private TransferOutboxService transferOutboxService;
+
+    // only there in IN_MEMORY mode
+    @Autowired(required = false)
+    private LedgerEngine ledgerEngine;
+
+    // proxied self, so every optimistic attempt runs in its own transaction
+    @Lazy
+    @Autowired
+    private TransferService self;
+
+    // number of batch items locked and committed together
+    @Value("${transfer.batch.chunk-size:500}")
+    private int batchChunkSize;
+
+    @Value("${transfer.execution-mode:PESSIMISTIC}")
+    private TransferExecutionMode executionMode;
+
+    // OPTIMISTIC mode: attempts per transfer and the jittered exponential backoff between them
+    @Value("${transfer.optimistic.max-attempts:5}")
+    private int optimisticMaxAttempts;
+
+    @Value("${transfer.optimistic.base-backoff-ms:2}")
+    private long optimisticBaseBackoffMs;
+
+    @Value("${transfer.optimistic.max-backoff-ms:50}")
+    private long optimisticMaxBackoffMs;
+
+    private final LongAdder optimisticRetries = new LongAdder();
+    private final LongAdder optimisticAborts = new LongAdder();
+
+    private TransactionTemplate batchTransactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        batchTransactionTemplate = new TransactionTemplate(transactionManager);
+        batchTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        log.info("Transfer execution mode: {}", executionMode);
+    }
+
+    public TransferExecutionMode getExecutionMode() {
+        return executionMode;
+    }
 
     /**
-     *  Service Entry Point
+     *  Retries and aborts of OPTIMISTIC transfers since startup. Lots of either means the workload is too
+     *  contended for optimistic mode and should go back to PESSIMISTIC.
+     * */
+    public Map<String, Long> getOptimisticStats() {
+        return Map.of(
+                "retries", optimisticRetries.sum(),
+                "aborts", optimisticAborts.sum());
+    }
+
+
+    /**
+     *  Service Entry Point. A request with an idempotency key that was seen before gets the outcome of the first one,
+     *  or the current state of the transfer if the key was used for an async submit.
+     */
+    public Long transferMoney(TransferRequestDTO transferRequestDTO) throws TransferException, TransferRuntimeException {
+        return idempotencyCache.execute(transferRequestDTO, () -> runTransfer(transferRequestDTO),
+                transferId -> outcomeOf(transferRepository.findById(transferId).orElseThrow()));
+    }
+
+    private Long runTransfer(TransferRequestDTO transferRequestDTO) throws TransferException {
+        long start = System.nanoTime();
+        try {
+            Long transferId = runTransferInMode(transferRequestDTO);
+            transferMetrics.recordTransfer(start, null);
+            return transferId;
+        } catch (TransferException | RuntimeException e) {
+            transferMetrics.recordTransfer(start, e);
+            throw e;
+        }
+    }
+
+    private Long runTransferInMode(TransferRequestDTO transferRequestDTO) throws TransferException {
+        if (executionMode == TransferExecutionMode.IN_MEMORY) {
+            return ledgerEngine.transfer(transferRequestDTO);
+        }
+        try {
+            if (executionMode == TransferExecutionMode.OPTIMISTIC) {
+                return transferWithOptimisticRetry(transferRequestDTO);
+            }
+            return executeLimited(transferRequestDTO);
+        } catch (DataIntegrityViolationException e) {
+            return replayTransferWithSameKey(transferRequestDTO, e);
+        }
+    }
+
+    /**
+     *  The idempotency key is already in the table (used on another node, before a restart or evicted from the
+     *  cache), nothing of this attempt was committed. Answers with the outcome of that transfer.
+     * */
+    private Long replayTransferWithSameKey(TransferRequestDTO transferRequestDTO, DataIntegrityViolationException e)
+            throws TransferException {
+        return outcomeOf(findTransferWithSameKey(transferRequestDTO, e));
+    }
+
+    /**
+     *  What a synchronous request gets for a transfer that already exists: its id once COMPLETED, its failure once
+     *  FAILED, CONCURRENT_UPDATE while it's still PROCESSING.
+     * */
+    private Long outcomeOf(Transfer existing) throws TransferException {
+        return switch (existing.getState()) {
+            case COMPLETED -> existing.getId();
+            case FAILED -> throw failureOf(existing);
+            default -> throw new TransferRuntimeException(TransferRuntimeException.Reason.CONCURRENT_UPDATE,
+                    "Transfer " + existing.getId() + " with idempotency key " + existing.getIdempotencyKey()
+                            + " is still processing");
+        };
+    }
+
+    private Transfer findTransferWithSameKey(TransferRequestDTO transferRequestDTO, DataIntegrityViolationException e) {
+        String key = transferRequestDTO.getIdempotencyKey();
+        if (key == null) {
+            throw e;
+        }
+        Transfer existing = transferRepository.findByIdempotencyKey(key).orElseThrow(() -> e);
+        TransferIdempotencyCache.checkSameTransfer(key, fingerprintOf(existing), TransferIdempotencyCache.fingerprint(transferRequestDTO));
+        return existing;
+    }
+
+    private static String fingerprintOf(Transfer transfer) {
+        return TransferIdempotencyCache.fingerprint(transfer.getFromAccountIdRaw(), transfer.getToAccountIdRaw(),
+                transfer.getAmount().toBigDecimal(), transfer.getCurrency().getCode());
+    }
+
+    /**
+     *  Rebuilds the failure of a FAILED transfer from its stored reason code. Business reasons are returned as a
+     *  TransferException, anything else is thrown as a TransferRuntimeException.
+     * */
+    private static TransferException failureOf(Transfer transfer) {
+        String reason = transfer.getFailureReason();
+        for (TransferException.Reason value : TransferException.Reason.values()) {
+            if (value.name().equals(reason)) {
+                return new TransferException(value, transfer.getFailureMessage());
+            }
+        }
+        TransferRuntimeException.Reason runtimeReason = TransferRuntimeException.Reason.UNKNOWN_ERROR;
+        for (TransferRuntimeException.Reason value : TransferRuntimeException.Reason.values()) {
+            if (value.name().equals(reason)) {
+                runtimeReason = value;
+            }
+        }
+        throw new TransferRuntimeException(runtimeReason, transfer.getFailureMessage());
+    }
+
+    /**
+     *  One executeTransfer attempt under a concurrency limiter permit, so at most one caller per pooled connection
+     *  is inside a transaction and the rest wait on the limiter instead of in Hikari.
+     * */
+    private Long executeLimited(TransferRequestDTO transferRequestDTO) throws TransferException {
+        concurrencyLimiter.acquire();
+        try {
+            return self.executeTransfer(transferRequestDTO);
+        } finally {
+            concurrencyLimiter.release();
+        }
+    }
+
+    /**
+     *  Runs the transfer until it commits without a version conflict. A conflict rolls back the whole attempt
+     *  (transfer record included), so each retry starts from scratch with fresh account state.
+     * */
+    private Long transferWithOptimisticRetry(TransferRequestDTO transferRequestDTO) throws TransferException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return executeLimited(transferRequestDTO);
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= optimisticMaxAttempts) {
+                    optimisticAborts.increment();
+                    log.warn("Transfer from {} to {} aborted after {} optimistic attempts",
+                            transferRequestDTO.getSenderAccountId(), transferRequestDTO.getReceiverAccountId(), attempt);
+                    throw new TransferRuntimeException(
+                            TransferRuntimeException.Reason.CONCURRENT_UPDATE,
+                            "Accounts were updated concurrently, transfer aborted after " + attempt + " attempts", e);
+                }
+                optimisticRetries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     *  Full jitter: sleeps a random time between 0 and min(max, base * 2^(attempt - 1)).
+     * */
+    private void backoff(int attempt) {
+        long cap = Math.min(optimisticMaxBackoffMs, optimisticBaseBackoffMs << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferRuntimeException(
+                    TransferRuntimeException.Reason.CONCURRENT_UPDATE,
+                    "Interrupted while waiting to retry transfer", e);
+        }
+    }
+
+    /**
+     *  One transfer attempt in its own transaction. Use transferMoney, it adds the retries for OPTIMISTIC mode.
      */
     @Transactional(isolation = Isolation.READ_COMMITTED)
-     public Long transferMoney(TransferRequestDTO transferRequestDTO) throws TransferException, TransferRuntimeException {
-         Transfer transfer = createAndSaveTransfer(transferRequestDTO);
-         log.info("Transfer created : {}", transfer.getId());
+    public Long executeTransfer(TransferRequestDTO transferRequestDTO) throws TransferException, TransferRuntimeException {
+         Transfer transfer = transferMetrics.time(TransferMetrics.Stage.RECORD_CREATION,
+                 () -> createAndSaveTransfer(transferRequestDTO));
+         transferMetrics.timeCommit();
+         log.debug("Transfer created : {}", transfer.getId());
          try {
-             log.info("Performing transfer {}", transfer.getId());
+             log.debug("Performing transfer {}", transfer.getId());
              checkSelfTransfer(transfer);
 
              //Springs Invokation Issue with Transactional scopes
              performTransfer(transfer);
+             // still under the account locks, so per account the outbox ids follow commit order
+             transferOutboxService.append(List.of(transfer));
 
-             log.info("Transfer completed {}", transfer.getId());
+             log.debug("Transfer completed {}", transfer.getId());
              return transfer.getId();
          } catch (TransferException | TransferRuntimeException ex) {
 
              log.error("Transfer failed {}", transfer.getId(), ex);
-             updateTransferRecordAsFailed(transfer);
+             updateTransferRecordAsFailed(transfer, reasonOf(ex), ex.getMessage());
+             transferOutboxService.append(List.of(transfer));
              throw ex;
          }
 
      }
 
+    /**
+     *  Async Entry Point. Only validates the currency and saves the transfer as PROCESSING, the committed row is the
+     *  queue entry that AsyncTransferService picks up. Returns the transfer id to poll getTransferStatus with,
+     *  a resubmission with the same idempotency key returns the id of the first submission.
+     * */
+    public Long submitTransfer(TransferRequestDTO transferRequestDTO) throws TransferException {
+        return idempotencyCache.submit(transferRequestDTO, () -> {
+            try {
+                return self.saveQueuedTransfer(transferRequestDTO);
+            } catch (DataIntegrityViolationException e) {
+                // already submitted, whatever its state: same id, the status endpoint has the outcome
+                return findTransferWithSameKey(transferRequestDTO, e).getId();
+            }
+        });
+    }
+
+    @Transactional
+    public Long saveQueuedTransfer(TransferRequestDTO transferRequestDTO) throws TransferException {
+        return transferMetrics.time(TransferMetrics.Stage.RECORD_CREATION,
+                () -> createAndSaveTransfer(transferRequestDTO)).getId();
+    }
+
+    /**
+     *  Runs a queued (PROCESSING) transfer in its own transaction, the row stays locked until commit so it runs once.
+     *  Business failures are committed as FAILED, anything else rolls back and is left to the caller.
+     *  Returns false when the transfer is no longer queued or is being run elsewhere.
+     * */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public boolean executeQueuedTransfer(Long transferId) {
+        Optional<Transfer> claimed = transferRepository.claimQueued(transferId);
+        if (claimed.isEmpty()) {
+            return false;
+        }
+        Transfer transfer = claimed.get();
+        transferMetrics.timeCommit();
+        try {
+            checkSelfTransfer(transfer);
+            performTransfer(transfer);
+            log.debug("Queued transfer {} completed", transferId);
+        } catch (TransferException ex) {
+            log.debug("Queued transfer {} failed: {}", transferId, ex.getMessage());
+            transfer.fail(ex.getReason().name(), ex.getMessage());
+        }
+        transferOutboxService.append(List.of(transfer));
+        return true;
+    }
+
+    /**
+     *  Marks a queued transfer FAILED after its execution rolled back. No-op when it already left PROCESSING.
+     *  The bulk update bypasses the entity listener, the row is read back for the journal and the outbox.
+     * */
+    @Transactional
+    public void failQueuedTransfer(Long transferId, String reason, String message) {
+        if (transferRepository.failQueued(transferId, reason, Transfer.truncateFailureMessage(message)) == 1
+                && (transferEventJournal.isEnabled() || transferOutboxService.isEnabled())) {
+            transferRepository.findById(transferId).ifPresent(transfer -> {
+                transferEventJournal.record(transfer);
+                transferOutboxService.append(List.of(transfer));
+            });
+        }
+    }
+
+    public Optional<TransferStatus> getTransferStatus(Long transferId) {
+        return transferRepository.findStatusById(transferId);
+    }
+
+    private static String reasonOf(Exception ex) {
+        if (ex instanceof TransferException transferException) {
+            return transferException.getReason().name();
+        }
+        if (ex instanceof TransferRuntimeException transferRuntimeException) {
+            return transferRuntimeException.getReason().name();
+        }
+        return TransferRuntimeException.Reason.UNKNOWN_ERROR.name();
+    }
+
+
+    /**
+     *  Batch Entry Point. Items are processed in chunks, each chunk is one transaction that locks all of its
+     *  accounts with a single ordered SELECT ... FOR UPDATE and writes its Transfer rows with JDBC batching.
+     *  A bad item only fails itself, the result list has one entry per request in the same order.
+     *  An item whose idempotency key is already in the table gets the result of that transfer instead of running.
+     */
+    public List<TransferBatchItemResult> transferMoneyBatch(List<TransferRequestDTO> requests) {
+        if (executionMode == TransferExecutionMode.IN_MEMORY) {
+            return transferBatchInMemory(requests);
+        }
+        List<TransferBatchItemResult> results = new ArrayList<>(requests.size());
+        for (int from = 0; from < requests.size(); from += batchChunkSize) {
+            int to = Math.min(from + batchChunkSize, requests.size());
+            results.addAll(transferChunk(requests.subList(from, to), from));
+        }
+        return results;
+    }
+
+    /**
+     *  IN_MEMORY mode: every item is submitted to the ledger engine up front, then the outcomes are collected.
+     * */
+    private List<TransferBatchItemResult> transferBatchInMemory(List<TransferRequestDTO> requests) {
+        List<TransferBatchItemResult> results = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        List<CompletableFuture<LedgerOutcome>> outcomes = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequestDTO dto = requests.get(i);
+            Set<ConstraintViolation<TransferRequestDTO>> violations = validator.validate(dto);
+            if (!violations.isEmpty()) {
+                results.set(i, TransferBatchItemResult.failed(i, null,
+                        TransferRuntimeException.Reason.INVALID_ARGUMENT.name(),
+                        violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining("; "))));
+                continue;
+            }
+            try {
+                outcomes.set(i, ledgerEngine.submit(dto));
+            } catch (TransferRuntimeException ex) {
+                results.set(i, TransferBatchItemResult.failed(i, null, ex.getReason().name(), ex.getMessage()));
+            }
+        }
+
+        for (int i = 0; i < requests.size(); i++) {
+            if (outcomes.get(i) == null) {
+                continue;
+            }
+            try {
+                LedgerOutcome outcome = ledgerEngine.await(outcomes.get(i));
+                results.set(i, outcome.isCompleted()
+                        ? TransferBatchItemResult.completed(i, outcome.transferId())
+                        : TransferBatchItemResult.failed(i, outcome.transferId(),
+                                outcome.failure().getReason().name(), outcome.failure().getMessage()));
+            } catch (TransferRuntimeException ex) {
+                results.set(i, TransferBatchItemResult.failed(i, null, ex.getReason().name(), ex.getMessage()));
+            } catch (CompletionException ex) {
+                results.set(i, TransferBatchItemResult.failed(i, null,
+                        TransferRuntimeException.Reason.UNKNOWN_ERROR.name(), ex.getCause().getMessage()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     *  Runs one chunk of a batch in its own transaction. If the transaction itself fails (e.g. lock timeout)
+     *  nothing of the chunk is committed and every item of it is reported as failed.
+     * */
+    private List<TransferBatchItemResult> transferChunk(List<TransferRequestDTO> chunk, int offset) {
+        try {
+            concurrencyLimiter.acquire();
+        } catch (TransferRuntimeException e) {
+            return failedChunk(chunk, offset, e.getReason().name(), e.getMessage());
+        }
+        try {
+            return batchTransactionTemplate.execute(status -> executeChunk(chunk, offset));
+        } catch (RuntimeException e) {
+            log.error("Transfer batch chunk at offset {} failed", offset, e);
+            return failedChunk(chunk, offset,
+                    TransferRuntimeException.Reason.UNKNOWN_ERROR.name(), "Batch chunk failed: " + e.getMessage());
+        } finally {
+            concurrencyLimiter.release();
+        }
+    }
+
+    private List<TransferBatchItemResult> failedChunk(List<TransferRequestDTO> chunk, int offset, String reason, String message) {
+        List<TransferBatchItemResult> results = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            results.add(TransferBatchItemResult.failed(offset + i, null, reason, message));
+        }
+        return results;
+    }
+
+    private List<TransferBatchItemResult> executeChunk(List<TransferRequestDTO> chunk, int offset) {
+        TransferBatchItemResult[] results = new TransferBatchItemResult[chunk.size()];
+        Transfer[] transfers = new Transfer[chunk.size()];
+        Map<String, Optional<Currency>> currencies = new HashMap<>();
+        Map<String, Integer> firstWithKey = new HashMap<>();
+        Map<Integer, Integer> sameKeyAs = new HashMap<>();
+
+        // validate the requests and build the transfer records
+        for (int i = 0; i < chunk.size(); i++) {
+            TransferRequestDTO dto = chunk.get(i);
+            Set<ConstraintViolation<TransferRequestDTO>> violations = validator.validate(dto);
+            if (!violations.isEmpty()) {
+                results[i] = TransferBatchItemResult.failed(offset + i, null,
+                        TransferRuntimeException.Reason.INVALID_ARGUMENT.name(),
+                        violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining("; ")));
+                continue;
+            }
+
+            Optional<Currency> currency = currencies.computeIfAbsent(dto.getCurrency(), currencyRepository::findByCode);
+            if (currency.isEmpty()) {
+                results[i] = TransferBatchItemResult.failed(offset + i, null,
+                        TransferException.Reason.INVALID_CURRENCY.name(), "Unsupported currency code: " + dto.getCurrency());
+                continue;
+            }
+
+            String key = dto.getIdempotencyKey();
+            if (key != null) {
+                Integer first = firstWithKey.putIfAbsent(key, i);
+                if (first != null) {
+                    // same key twice in the chunk, answered like the first one once that has run
+                    if (TransferIdempotencyCache.fingerprint(chunk.get(first)).equals(TransferIdempotencyCache.fingerprint(dto))) {
+                        sameKeyAs.put(i, first);
+                    } else {
+                        results[i] = TransferBatchItemResult.failed(offset + i, null,
+                                TransferRuntimeException.Reason.INVALID_ARGUMENT.name(),
+                                "Idempotency key " + key + " was already used for a different transfer");
+                    }
+                    continue;
+                }
+            }
+
+            Transfer transfer = new Transfer(dto.getSenderAccountId(), dto.getReceiverAccountId(), Money.of(dto.getAmount()), TransferState.PROCESSING);
+            transfer.setCurrency(currency.get());
+            transfer.setIdempotencyKey(key);
+            transfers[i] = transfer;
+        }
+
+        // keys committed by an earlier request are answered from their transfer, one lookup for the whole chunk
+        if (!firstWithKey.isEmpty()) {
+            for (Transfer existing : transferRepository.findAllByIdempotencyKeyIn(firstWithKey.keySet())) {
+                int i = firstWithKey.get(existing.getIdempotencyKey());
+                results[i] = replayedBatchItem(offset + i, existing, chunk.get(i));
+                transfers[i] = null;
+            }
+        }
+
+        Set<Long> accountIds = new HashSet<>();
+        for (Transfer transfer : transfers) {
+            if (transfer != null) {
+                accountIds.add(transfer.getFromAccountIdRaw());
+                accountIds.add(transfer.getToAccountIdRaw());
+            }
+        }
+
+        // one ordered lock statement for every account of the chunk
+        List<Account> lockedAccounts = accountIds.isEmpty() ? List.of() : accountRepository.findAllByIdInForUpdate(accountIds);
+        hotAccountService.lockAllSlotsOrdered(lockedAccounts);
+        Map<Long, Account> accounts = lockedAccounts.stream()
+                .collect(Collectors.toMap(Account::getId, Function.identity()));
+        DoubleEntryLedgerService.PendingBalances pendingBalances = executionMode == TransferExecutionMode.DOUBLE_ENTRY
+                ? doubleEntryLedgerService.pendingBalances() : null;
+
+        List<Transfer> toSave = new ArrayList<>(chunk.size());
+        List<String> failureReasons = new ArrayList<>(chunk.size());
+        List<String> failureMessages = new ArrayList<>(chunk.size());
+        for (Transfer transfer : transfers) {
+            if (transfer == null) {
+                continue;
+            }
+            String failureReason = null;
+            String failureMessage = null;
+            try {
+                performBatchItem(transfer, accounts, pendingBalances);
+            } catch (TransferException ex) {
+                failureReason = ex.getReason().name();
+                failureMessage = ex.getMessage();
+            } catch (TransferRuntimeException ex) {
+                failureReason = ex.getReason().name();
+                failureMessage = ex.getMessage();
+            }
+            if (failureReason != null) {
+                transfer.fail(failureReason, failureMessage);
+            }
+            toSave.add(transfer);
+            failureReasons.add(failureReason);
+            failureMessages.add(failureMessage);
+        }
+
+        transferRepository.saveAll(toSave);
+        transferOutboxService.append(toSave);
+        if (pendingBalances != null) {
+            doubleEntryLedgerService.append(toSave.stream()
+                    .filter(transfer -> transfer.getState() == TransferState.COMPLETED)
+                    .toList());
+        }
+
+        int saved = 0;
+        for (int i = 0; i < transfers.length; i++) {
+            if (transfers[i] == null) {
+                continue;
+            }
+            String failureReason = failureReasons.get(saved);
+            results[i] = failureReason == null
+                    ? TransferBatchItemResult.completed(offset + i, transfers[i].getId())
+                    : TransferBatchItemResult.failed(offset + i, transfers[i].getId(), failureReason, failureMessages.get(saved));
+            saved++;
+        }
+        sameKeyAs.forEach((i, first) -> results[i] = new TransferBatchItemResult(offset + i, results[first].getTransferId(),
+                results[first].getState(), results[first].getFailureReason(), results[first].getMessage()));
+
+        log.debug("Transfer batch chunk at offset {}: {} items, {} accounts locked", offset, chunk.size(), lockedAccounts.size());
+        return Arrays.asList(results);
+    }
+
+    private static TransferBatchItemResult replayedBatchItem(int index, Transfer existing, TransferRequestDTO dto) {
+        if (!fingerprintOf(existing).equals(TransferIdempotencyCache.fingerprint(dto))) {
+            return TransferBatchItemResult.failed(index, null, TransferRuntimeException.Reason.INVALID_ARGUMENT.name(),
+                    "Idempotency key " + dto.getIdempotencyKey() + " was already used for a different transfer");
+        }
+        return switch (existing.getState()) {
+            case COMPLETED -> TransferBatchItemResult.completed(index, existing.getId());
+            case FAILED -> TransferBatchItemResult.failed(index, existing.getId(),
+                    existing.getFailureReason(), existing.getFailureMessage());
+            default -> TransferBatchItemResult.failed(index, existing.getId(),
+                    TransferRuntimeException.Reason.CONCURRENT_UPDATE.name(), "Transfer is still processing");
+        };
+    }
+
+    /**
+     *  Same steps as performTransfer but against accounts that are already locked for the whole chunk.
+     *  Every check runs before the debit/credit, so a failed item leaves the accounts untouched.
+     *  In DOUBLE_ENTRY mode pendingBalances has the chunk's balances so far, otherwise it's null.
+     * */
+    private void performBatchItem(Transfer transfer, Map<Long, Account> lockedAccounts,
+                                  DoubleEntryLedgerService.PendingBalances pendingBalances) throws TransferException {
+        checkSelfTransfer(transfer);
+
+        Account sender = lockedAccounts.get(transfer.getFromAccountIdRaw());
+        if (sender == null) {
+            throw new TransferException(TransferException.Reason.ACCOUNT_NOT_FOUND,
+                    "Sender account not found: " + transfer.getFromAccountIdRaw());
+        }
+        Account receiver = lockedAccounts.get(transfer.getToAccountIdRaw());
+        if (receiver == null) {
+            throw new TransferException(TransferException.Reason.ACCOUNT_NOT_FOUND,
+                    "Receiver account not found: " + transfer.getToAccountIdRaw());
+        }
+        hotAccountService.assignLockedCreditSlot(receiver);
+        attachAccounts(transfer, sender, receiver);
+
+        validSenderCurrencyCheck(transfer);
+        computeAmounts(transfer);
+        if (pendingBalances != null) {
+            checkNoHotAccount(sender.isHot() || receiver.isHot());
+            checkPositiveAmounts(transfer);
+            transferRules.checkSufficientFunds(pendingBalances.balanceOf(sender), transfer.getDebitAmount());
+            transferRules.checkCreditLimit(pendingBalances.balanceOf(receiver), transfer.getCreditAmount());
+            pendingBalances.apply(transfer);
+        } else {
+            sufficientBalanceCheck(sender, receiver, transfer.getDebitAmount(), transfer.getCreditAmount());
+            preformDebitAndCredit(transfer);
+        }
+        transfer.setState(TransferState.COMPLETED);
+    }
+
 
      protected void checkSelfTransfer(Transfer transfer) throws TransferException {
-         if(transfer.getFromAccountIdRaw().equals(transfer.getToAccountIdRaw())){
-             throw new TransferException(
-                     TransferException.Reason.SELF_TRANSFER,
-                     "Self transfer not allowed");
-         }
+         transferRules.checkSelfTransfer(transfer.getFromAccountIdRaw(), transfer.getToAccountIdRaw());
      }
 
     /**
@@ -94,14 +684,18 @@ public class TransferService {
         Transfer transfer = new Transfer(
                 transferRequestDTO.getSenderAccountId(),
                 transferRequestDTO.getReceiverAccountId(),
-                transferRequestDTO.getAmount(),
+                Money.of(transferRequestDTO.getAmount()),
                 TransferState.PROCESSING);
 
             Currency currency = getCurrencyFromDTO(transferRequestDTO.getCurrency());
             transfer.setCurrency(currency);
-            transfer = transferRepository.save(transfer);
+            transfer.setIdempotencyKey(transferRequestDTO.getIdempotencyKey());
+            // with a key, insert right away so a duplicate fails on the unique index before any account is locked
+            transfer = transfer.getIdempotencyKey() == null
+                    ? transferRepository.save(transfer)
+                    : transferRepository.saveAndFlush(transfer);
 
-            log.info("Transfer transfer {} created (from={} to={} amt={} {})",
+            log.debug("Transfer transfer {} created (from={} to={} amt={} {})",
                     transfer.getId(),
                     transfer.getFromAccountIdRaw(), transfer.getToAccountIdRaw(),
                     transfer.getAmount(), transfer.getCurrencyFrom());
@@ -124,13 +718,15 @@ public class TransferService {
 
 
     /**
-     * Calculates and applies the transfer fee.
+     * Calculates and applies the transfer fee, the schedule depends on the corridor and the sender's tier.
      */
     protected void processTransferFee(Transfer transfer) {
         try {
-            BigDecimal fee = feeService.calculateFee(transfer.getAmount());
+            Money fee = feeService.calculateFee(transfer.getAmount(),
+                    transfer.getCurrencyFrom().getCode(), transfer.getCurrencyTo().getCode(),
+                    transfer.getFromAccount().getTier());
             //if fee is negative
-            if (fee == null || fee.compareTo(BigDecimal.ZERO) < 0) {
+            if (fee == null || fee.signum() < 0) {
                 throw new IllegalArgumentException("Fee must be non-null and non-negative");
             }
 
@@ -147,8 +743,8 @@ public class TransferService {
      * Marks the transfer record as FAILED and persists the update.
      */
     @Transactional
-    protected void updateTransferRecordAsFailed(Transfer transfer) {
-        transfer.setState(TransferState.FAILED);
+    protected void updateTransferRecordAsFailed(Transfer transfer, String reason, String message) {
+        transfer.fail(reason, message);
         transferRepository.save(transfer);
     }
 
@@ -168,11 +764,23 @@ public class TransferService {
         // Persists the transfer record
         transferRepository.save(transfer);
 
-        //calculate transfer fee (don't need account locks to do this)
-        processTransferFee(transfer);
+        if (executionMode == TransferExecutionMode.DOUBLE_ENTRY) {
+            performDoubleEntryTransfer(transfer);
+            return transfer;
+        }
+
+        // hot accounts are credited through slots, which needs the locking path
+        if (executionMode == TransferExecutionMode.ATOMIC_UPDATE && !involvesHotAccount(transfer)) {
+            performAtomicTransfer(transfer);
+            return transfer;
+        }
 
-        // Locking Accounts
-        attachLockedAccountsOrdered(transfer);
+        // Locking Accounts (OPTIMISTIC reads them unlocked and relies on the version check at commit)
+        if (executionMode == TransferExecutionMode.OPTIMISTIC && !involvesHotAccount(transfer)) {
+            transferMetrics.time(TransferMetrics.Stage.LOCK_ACQUISITION, () -> attachVersionCheckedAccounts(transfer));
+        } else {
+            transferMetrics.time(TransferMetrics.Stage.LOCK_ACQUISITION, () -> attachLockedAccountsOrdered(transfer));
+        }
 
         //Check if currency matches sender's account currency
         validSenderCurrencyCheck(transfer);
@@ -185,15 +793,168 @@ public class TransferService {
                 transfer.getCreditAmount());
 
         //perform actual debit and credit operations
-        preformDebitAndCredit(transfer);
+        transferMetrics.time(TransferMetrics.Stage.DEBIT_CREDIT, () -> preformDebitAndCredit(transfer));
         transfer.setState(TransferState.COMPLETED);
 
-        log.info("Transfer {} completed", transfer.getId());
+        log.debug("Transfer {} completed", transfer.getId());
 
 
         return transfer;
     }
 
+    /**
+     *  ATOMIC_UPDATE mode: accounts are read without locks and the balance rules are applied by the UPDATE statements.
+     *  Row locks are only held from the UPDATE to commit instead of for the whole transfer.
+     * */
+    protected void performAtomicTransfer(Transfer transfer) throws TransferException {
+        // no row locks yet, the UPDATEs take them in the debit/credit stage
+        transferMetrics.time(TransferMetrics.Stage.LOCK_ACQUISITION, () -> attachAccountsUnlocked(transfer));
+        validSenderCurrencyCheck(transfer);
+        computeAmounts(transfer);
+        transferMetrics.time(TransferMetrics.Stage.DEBIT_CREDIT, () -> applyAtomicDebitAndCredit(transfer));
+        transfer.setState(TransferState.COMPLETED);
+
+        log.debug("Transfer {} completed (atomic update)", transfer.getId());
+    }
+
+    /**
+     *  DOUBLE_ENTRY mode: the sender row is locked FOR UPDATE, so no other debit can change its derived balance
+     *  between the check and commit, the receiver only FOR SHARE, credits to it run side by side. Both in ascending
+     *  id order. No account row is updated, the transfer appends its debit and credit entry.
+     *  The credit limit is checked against the receiver's derived balance too, but under the shared lock two
+     *  concurrent credits that each fit can still take it past Money.MAX together. Only a receiver already close to
+     *  the cap is exposed to that, the outbox (receivers FOR UPDATE) closes it.
+     * */
+    protected void performDoubleEntryTransfer(Transfer transfer) throws TransferException {
+        transferMetrics.time(TransferMetrics.Stage.LOCK_ACQUISITION, () -> attachSharedAccountsOrdered(transfer));
+        // from the rows, an account another node made hot isn't in this node's set yet
+        checkNoHotAccount(transfer.getFromAccount().isHot() || transfer.getToAccount().isHot());
+
+        validSenderCurrencyCheck(transfer);
+        computeAmounts(transfer);
+        checkPositiveAmounts(transfer);
+        transferRules.checkSufficientFunds(doubleEntryLedgerService.balanceOf(transfer.getFromAccount()), transfer.getDebitAmount());
+        transferRules.checkCreditLimit(doubleEntryLedgerService.balanceOf(transfer.getToAccount()), transfer.getCreditAmount());
+        transferMetrics.time(TransferMetrics.Stage.DEBIT_CREDIT, () -> doubleEntryLedgerService.append(List.of(transfer)));
+        transfer.setState(TransferState.COMPLETED);
+
+        log.debug("Transfer {} completed (double entry)", transfer.getId());
+    }
+
+    /**
+     *  DOUBLE_ENTRY mode: the sender FOR UPDATE, the receiver FOR SHARE, in ascending id order.
+     * */
+    protected void attachSharedAccountsOrdered(Transfer transfer) throws TransferException {
+        Long senderId = transfer.getFromAccountIdRaw();
+        Long receiverId = transfer.getToAccountIdRaw();
+
+        Account sender, receiver;
+        if (senderId < receiverId) {
+            sender = getAccountOrThrow(senderId, "Sender");
+            receiver = getSharedAccountOrThrow(receiverId);
+        } else {
+            receiver = getSharedAccountOrThrow(receiverId);
+            sender = getAccountOrThrow(senderId, "Sender");
+        }
+        attachAccounts(transfer, sender, receiver);
+    }
+
+    /**
+     *  Hot accounts keep their balance in slots, the ledger has no place for that.
+     * */
+    private static void checkNoHotAccount(boolean hot) {
+        if (hot) {
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.INVALID_ACCOUNT_STATE,
+                    "Hot accounts can't take part in DOUBLE_ENTRY transfers");
+        }
+    }
+
+    private boolean involvesHotAccount(Transfer transfer) {
+        return hotAccountService.isHot(transfer.getFromAccountIdRaw())
+                || hotAccountService.isHot(transfer.getToAccountIdRaw());
+    }
+
+    /**
+     *  Reads both accounts without locking them (only their currencies are needed up front).
+     * */
+    protected void attachAccountsUnlocked(Transfer transfer) throws TransferException {
+        Account sender = accountRepository.findUnlockedById(transfer.getFromAccountIdRaw())
+                .orElseThrow(() -> new TransferException(
+                        TransferException.Reason.ACCOUNT_NOT_FOUND,
+                        "Sender account not found: " + transfer.getFromAccountIdRaw()));
+        Account receiver = accountRepository.findUnlockedById(transfer.getToAccountIdRaw())
+                .orElseThrow(() -> new TransferException(
+                        TransferException.Reason.ACCOUNT_NOT_FOUND,
+                        "Receiver account not found: " + transfer.getToAccountIdRaw()));
+        attachAccounts(transfer, sender, receiver);
+    }
+
+    /**
+     *  OPTIMISTIC mode: reads both accounts without locks. Changed accounts are written with WHERE version = ?,
+     *  unchanged ones get their version re-checked at commit so a rejection isn't based on a stale balance either.
+     * */
+    protected void attachVersionCheckedAccounts(Transfer transfer) throws TransferException {
+        Account sender = accountRepository.findVersionCheckedById(transfer.getFromAccountIdRaw())
+                .orElseThrow(() -> new TransferException(
+                        TransferException.Reason.ACCOUNT_NOT_FOUND,
+                        "Sender account not found: " + transfer.getFromAccountIdRaw()));
+        Account receiver = accountRepository.findVersionCheckedById(transfer.getToAccountIdRaw())
+                .orElseThrow(() -> new TransferException(
+                        TransferException.Reason.ACCOUNT_NOT_FOUND,
+                        "Receiver account not found: " + transfer.getToAccountIdRaw()));
+        attachAccounts(transfer, sender, receiver);
+    }
+
+    /**
+     *  Debit: UPDATE ... SET balance = balance - ? WHERE account_id = ? AND balance >= ?, credit: plain increment.
+     *  The statements run in ascending account id order like the row locks of the pessimistic path.
+     *  If the second statement doesn't apply, the first one is undone (we hold that row lock, so the undo can't fail)
+     *  and the transfer fails with the record committed as FAILED.
+     *  The statements skip hot rows too, so before a 0 row count is reported as a balance rule the row is re-read.
+     * */
+    protected void applyAtomicDebitAndCredit(Transfer transfer) throws TransferException {
+        Long senderId = transfer.getFromAccountIdRaw();
+        Long receiverId = transfer.getToAccountIdRaw();
+        BigDecimal debit = transfer.getDebitAmount().toBigDecimal();
+        BigDecimal credit = transfer.getCreditAmount().toBigDecimal();
+        BigDecimal max = Money.MAX.toBigDecimal();
+        LocalDateTime now = LocalDateTime.now();
+
+        if (senderId < receiverId) {
+            if (accountRepository.debitIfSufficient(senderId, debit, now) == 0) {
+                checkNotMadeHot(senderId);
+                throw transferRules.insufficientFunds();
+            }
+            if (accountRepository.creditIfWithinLimit(receiverId, credit, max, now) == 0) {
+                accountRepository.creditIfWithinLimit(senderId, debit, max, now);
+                checkNotMadeHot(receiverId);
+                throw transferRules.creditLimitExceeded();
+            }
+        } else {
+            if (accountRepository.creditIfWithinLimit(receiverId, credit, max, now) == 0) {
+                checkNotMadeHot(receiverId);
+                throw transferRules.creditLimitExceeded();
+            }
+            if (accountRepository.debitIfSufficient(senderId, debit, now) == 0) {
+                accountRepository.debitIfSufficient(receiverId, credit, now);
+                checkNotMadeHot(senderId);
+                throw transferRules.insufficientFunds();
+            }
+        }
+    }
+
+    /**
+     *  An account another node made hot isn't in this node's set yet, its UPDATE matched no row because of the
+     *  balance_slots = 0 guard and not because of its balance. From now on the node knows it, a retry takes the slots.
+     * */
+    private void checkNotMadeHot(Long accountId) {
+        if (accountRepository.findBalanceSlots(accountId).orElse(0) > 0) {
+            hotAccountService.markHot(accountId);
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.CONCURRENT_UPDATE,
+                    "Account " + accountId + " was made hot by another node, retry the transfer");
+        }
+    }
+
     /**
      *  Performs the actual debit and credit operations.
      * */
@@ -208,6 +969,9 @@ public class TransferService {
                     "Sender or receiver account is null");
         }
 
+        // checked up front so a bad amount can't leave the sender debited without the credit
+        checkPositiveAmounts(transfer);
+
         try {
             sender.debit(transfer.getDebitAmount());
             receiver.credit(transfer.getCreditAmount());
@@ -220,24 +984,24 @@ public class TransferService {
     }
 
 
+    protected void checkPositiveAmounts(Transfer transfer) {
+        if (transfer.getDebitAmount() == null || transfer.getDebitAmount().signum() <= 0
+                || transfer.getCreditAmount() == null || transfer.getCreditAmount().signum() <= 0) {
+            throw new TransferRuntimeException(
+                    TransferRuntimeException.Reason.INVALID_ARGUMENT,
+                    "Debit and credit amounts must be positive");
+        }
+    }
+
+
     /**
      *   Checks if the credit and debit amount are valid
      * */
-    protected void sufficientBalanceCheck(Account sender, Account receiver, BigDecimal debitAmount, BigDecimal creditAmount) throws TransferException {
-        // Check sender balance
-        if (sender.getBalance().compareTo(debitAmount) < 0) {
-            throw new TransferException(
-                    TransferException.Reason.INSUFFICIENT_FUNDS,
-                    "Insufficient funds for this transaction");
-        }
+    protected void sufficientBalanceCheck(Account sender, Account receiver, Money debitAmount, Money creditAmount) throws TransferException {
+        transferRules.checkSufficientFunds(sender.getBalance(), debitAmount);
 
-        // Check if receiver's new balance exceeds DB precision
-        BigDecimal newBalance = receiver.getBalance().add(creditAmount);
-        if (newBalance.compareTo(MAX_DB_VALUE) > 0) {
-            throw new TransferException(
-                    TransferException.Reason.INSUFFICIENT_FUNDS,
-                    "Receiver balance exceeds database precision limit");
-        }
+        // Check if receiver's new balance exceeds DB precision (for hot accounts the slot being credited)
+        transferRules.checkCreditLimit(receiver.getCreditTargetBalance(), creditAmount);
     }
 
 
@@ -246,75 +1010,117 @@ public class TransferService {
      * */
 
     protected void validSenderCurrencyCheck(Transfer transfer) throws TransferException {
-        if(!transfer.getFromAccount().getCurrency().equals(transfer.getCurrency())){
-            throw new TransferException(
-                    TransferException.Reason.INVALID_CURRENCY,
-                    "Currency mismatch from DTO and Sender's Account");
-        }
+        transferRules.checkSenderCurrency(transfer.getFromAccount().getCurrency(), transfer.getCurrency());
     }
 
     /**
      *  Attaches the accounts to the transfer record.
      *  The accounts are attached in ascending order to avoid deadlocks.
-     *  This is where the accounts are locked.
+     *  This is where the accounts are locked. Hot receivers are not row locked, only one of their slots is.
      * */
     protected void attachLockedAccountsOrdered(Transfer transfer) throws TransferException {
-        log.info("Locking Accounts {} and {} for Transfer {}", transfer.getFromAccountIdRaw(), transfer.getToAccountIdRaw(), transfer.getId());
+        log.debug("Locking Accounts {} and {} for Transfer {}", transfer.getFromAccountIdRaw(), transfer.getToAccountIdRaw(), transfer.getId());
         Long senderId = transfer.getFromAccountIdRaw();
         Long receiverId = transfer.getToAccountIdRaw();
 
         Account sender, receiver;
         if (senderId < receiverId) {
             sender = getAccountOrThrow(senderId, "Sender");
-            receiver = getAccountOrThrow(receiverId, "Receiver");
+            receiver = getCreditAccountOrThrow(receiverId);
         } else {
-            receiver = getAccountOrThrow(receiverId, "Receiver");
+            receiver = getCreditAccountOrThrow(receiverId);
             sender = getAccountOrThrow(senderId, "Sender");
         }
 
+        hotAccountService.lockSlotsOrdered(sender, receiver);
+        attachAccounts(transfer, sender, receiver);
+
+        log.debug("Accounts locked: from={} to={}", senderId, receiverId);
+
+    }
+
+    /**
+     *  Attaches already locked accounts and their currencies to the transfer record.
+     * */
+    protected void attachAccounts(Transfer transfer, Account sender, Account receiver) {
         validateAccountsHaveCurrency(sender, receiver);
         transfer.setFromAccount(sender);
         transfer.setToAccount(receiver);
         transfer.setCurrencyFrom(sender.getCurrency());
         transfer.setCurrencyTo(receiver.getCurrency());
-
-        log.info("Accounts locked: from={} to={}", senderId, receiverId);
-
     }
 
     /**
-     *  Locks Given Account
+     *  Locks Given Account, the wait goes to the contention profiler
      * */
     private Account getAccountOrThrow(Long id, String role) throws TransferException {
-        return accountRepository.findById(id)
+        long start = System.nanoTime();
+        Optional<Account> account = accountRepository.findById(id);
+        contentionProfiler.record(id, System.nanoTime() - start);
+        return account
                 .orElseThrow(() -> new TransferException(
                         TransferException.Reason.ACCOUNT_NOT_FOUND,
                         role + " account not found: " + id));
     }
 
+    /**
+     *  Locks the account FOR SHARE, DOUBLE_ENTRY receivers. FOR UPDATE while the outbox is on: its rows of an account
+     *  are only in commit order if no two transfers write them at the same time.
+     * */
+    private Account getSharedAccountOrThrow(Long id) throws TransferException {
+        if (transferOutboxService.isEnabled()) {
+            return getAccountOrThrow(id, "Receiver");
+        }
+        long start = System.nanoTime();
+        Optional<Account> account = accountRepository.findByIdForShare(id);
+        contentionProfiler.record(id, System.nanoTime() - start);
+        return account
+                .orElseThrow(() -> new TransferException(
+                        TransferException.Reason.ACCOUNT_NOT_FOUND,
+                        "Receiver account not found: " + id));
+    }
+
+    /**
+     *  Loads the receiving account, hot accounts are credited through a slot so their row is not locked (unless the
+     *  outbox is on, same as for DOUBLE_ENTRY receivers).
+     * */
+    private Account getCreditAccountOrThrow(Long id) throws TransferException {
+        if (!hotAccountService.isHot(id) || transferOutboxService.isEnabled()) {
+            return getAccountOrThrow(id, "Receiver");
+        }
+        return accountRepository.findUnlockedById(id)
+                .orElseThrow(() -> new TransferException(
+                        TransferException.Reason.ACCOUNT_NOT_FOUND,
+                        "Receiver account not found: " + id));
+    }
+
 
 
 
 
     /**
-     *  Computing credit and debit can be tightly coupled so I put them together
+     *  Computing fee, credit and debit can be tightly coupled so I put them together (needs the accounts attached)
      * */
     protected void computeAmounts(Transfer transfer) throws TransferException {
-        BigDecimal debit = transfer.getAmount().add(transfer.getFeeApplied());
+        transferMetrics.time(TransferMetrics.Stage.FEE_CALCULATION, () -> processTransferFee(transfer));
+        Money debit = transfer.getAmount().plus(transfer.getFeeApplied());
         transfer.setDebitAmount(debit);
-        log.info("Debit amount for transfer {}: {}", transfer.getId(), transfer.getDebitAmount());
+        log.debug("Debit amount for transfer {}: {}", transfer.getId(), transfer.getDebitAmount());
 
         if (transfer.getCurrencyFrom().equals(transfer.getCurrencyTo())) {
             transfer.setCreditAmount(transfer.getAmount());
         } else {
-            BigDecimal fxRate = fxConversionService.getRate(transfer.getCurrencyFrom(), transfer.getCurrencyTo());
-            BigDecimal converted = commonHelper.multiply(fxRate, transfer.getAmount());
+            FxQuote quote = transferMetrics.time(TransferMetrics.Stage.FX_LOOKUP,
+                    () -> fxConversionService.quote(transfer.getCurrencyFrom(), transfer.getCurrencyTo()));
+            BigDecimal fxRate = quote.rate();
+            Money converted = transfer.getAmount().multiplyRate(quote.rateUnits());
             transfer.setFxRate(fxRate);
+            transfer.setFxRateVersion(quote.version());
             transfer.setCreditAmount(converted);
 
-            log.info("Converted {} {} → {} {} @ {}", transfer.getAmount(),
+            log.debug("Converted {} {} → {} {} @ {} (rates v{})", transfer.getAmount(),
                     transfer.getCurrencyFrom().getCode(), converted,
-                    transfer.getCurrencyTo().getCode(), fxRate);
+                    transfer.getCurrencyTo().getCode(), fxRate, quote.version());
         }
     }
 
@@ -0,0 +1,38 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Thread factories for the transfer executors (lanes, async workers). Virtual threads when
+ *  spring.threads.virtual.enabled is set and we run on Java 21+ (see the java21 build profile), platform threads
+ *  otherwise. The Java 17 build never touches the virtual thread API, Spring's executor carries it.
+ * */
+@Component
+public class TransferThreads {
+
+    @Autowired
+    private Environment environment;
+
+    public boolean isVirtual() {
+        return Threading.VIRTUAL.isActive(environment);
+    }
+
+    public ThreadFactory factory(String name) {
+        if (isVirtual()) {
+            return new VirtualThreadTaskExecutor(name + "-").getVirtualThreadFactory();
+        }
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package com.jpmc.moneytransfer.moneytransfer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+/**
+ *  Money's long arithmetic against the BigDecimal helpers it replaced.
+ * */
+class MoneyTest {
+
+    private final CommonHelper commonHelper = new CommonHelper();
+
+    @Test
+    void multiplyRateRoundsHalfUpAtTheHalfUnit() {
+        // 1 unit * 0.5 is exactly half a unit: away from zero, both signs
+        assertMultiplyRate(1, 500_000);
+        assertMultiplyRate(-1, 500_000);
+        assertMultiplyRate(1, -500_000);
+        Assertions.assertEquals(1, Money.ofUnits(1).multiplyRate(500_000).getUnits());
+        Assertions.assertEquals(-1, Money.ofUnits(-1).multiplyRate(500_000).getUnits());
+
+        // just below and just above half a unit
+        assertMultiplyRate(1, 499_999);
+        assertMultiplyRate(1, 500_001);
+        assertMultiplyRate(-1, 499_999);
+        assertMultiplyRate(-1, 500_001);
+        Assertions.assertEquals(0, Money.ofUnits(1).multiplyRate(499_999).getUnits());
+        Assertions.assertEquals(0, Money.ofUnits(-1).multiplyRate(499_999).getUnits());
+
+        assertMultiplyRate(3, 500_000);
+        assertMultiplyRate(-3, 500_000);
+        assertMultiplyRate(12_345, 1_500_000);
+        assertMultiplyRate(-12_345, 2_500_000);
+    }
+
+    @Test
+    void multiplyRateMatchesCommonHelperForRandomAmountsAndRates() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long units = random.nextLong() % 10_000_000_000L;
+            long rateUnits = random.nextLong() % 10_000_000L;
+            assertMultiplyRate(units, rateUnits);
+        }
+    }
+
+    @Test
+    void multiplyRateFallsBackToBigDecimalWhenTheProductOverflowsALong() {
+        // 10^15 * 5 * 10^5 doesn't fit a long, the result does
+        assertMultiplyRate(1_000_000_000_000_000L, 500_000);
+        assertMultiplyRate(-1_000_000_000_000_000L, 500_001);
+        assertMultiplyRate(Long.MAX_VALUE, 999_999);
+        assertMultiplyRate(Long.MIN_VALUE + 1, 333_333);
+
+        // and a result that doesn't fit either fails
+        Assertions.assertThrows(ArithmeticException.class, () -> Money.MAX.multiplyRate(2_000_000));
+    }
+
+    @Test
+    void ofRejectsAmountsBeyondTheDatabaseAndTheLongRange() {
+        Assertions.assertEquals(Money.MAX, Money.of(Money.MAX.toBigDecimal()));
+        Assertions.assertEquals(Money.ofUnits(-Long.MAX_VALUE), Money.of(Money.MAX.toBigDecimal().negate()));
+
+        ArithmeticException beyondLong = Assertions.assertThrows(ArithmeticException.class,
+                () -> Money.of(Money.MAX.toBigDecimal().add(new BigDecimal("0.0001"))));
+        Assertions.assertTrue(beyondLong.getMessage().contains("money range"), beyondLong.getMessage());
+        Assertions.assertThrows(ArithmeticException.class, () -> Money.of(CommonHelper.MAX_DB_VALUE));
+
+        ArithmeticException beyondDb = Assertions.assertThrows(ArithmeticException.class,
+                () -> Money.of(CommonHelper.MAX_DB_VALUE.add(new BigDecimal("0.0001"))));
+        Assertions.assertTrue(beyondDb.getMessage().contains("database precision"), beyondDb.getMessage());
+        Assertions.assertThrows(ArithmeticException.class,
+                () -> Money.of(CommonHelper.MAX_DB_VALUE.negate().subtract(BigDecimal.ONE)));
+    }
+
+    @Test
+    void ofRoundsLikeCommonHelper() {
+        for (String amount : new String[]{"0.00005", "-0.00005", "0.00004", "12.34565", "-12.34565", "1"}) {
+            BigDecimal value = new BigDecimal(amount);
+            Assertions.assertEquals(commonHelper.round(value), Money.of(value).toBigDecimal(), amount);
+        }
+    }
+
+    @Test
+    void plusMinusAndNegateFailInsteadOfWrapping() {
+        Money one = Money.ofUnits(1);
+        Money min = Money.ofUnits(Long.MIN_VALUE);
+        Assertions.assertThrows(ArithmeticException.class, () -> Money.MAX.plus(one));
+        Assertions.assertThrows(ArithmeticException.class, () -> min.minus(one));
+        Assertions.assertThrows(ArithmeticException.class, () -> Money.MAX.negate().minus(Money.ofUnits(2)));
+        Assertions.assertThrows(ArithmeticException.class, min::negate);
+        Assertions.assertThrows(ArithmeticException.class, () -> Money.MAX.times(2));
+
+        Assertions.assertEquals(Money.MAX, Money.MAX.minus(one).plus(one));
+        Assertions.assertEquals(Money.ofUnits(-Long.MAX_VALUE), Money.MAX.negate());
+    }
+
+    private void assertMultiplyRate(long units, long rateUnits) {
+        Money amount = Money.ofUnits(units);
+        BigDecimal expected = commonHelper.multiply(amount.toBigDecimal(), BigDecimal.valueOf(rateUnits, Money.RATE_SCALE));
+        Assertions.assertEquals(expected, amount.multiplyRate(rateUnits).toBigDecimal(),
+                () -> units + " units * " + rateUnits + " rate units");
+    }
+}
@@ -0,0 +1,170 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferStatus;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.AsyncTransferService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferRuntimeException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ *  Async submission end to end: submit() queues a PROCESSING row, the workers drain it and the outcome is read
+ *  back through getTransferStatus.
+ * */
+@SpringBootTest
+@ActiveProfiles("test")
+class AsyncTransferTest {
+
+    @Autowired
+    private AsyncTransferService asyncTransferService;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Account sender;
+    private Account receiver;
+
+    @BeforeEach
+    void setup() {
+        Assertions.assertTrue(asyncTransferService.isEnabled());
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        sender = new Account("AsyncAlice", usd, new BigDecimal("100.00"));
+        receiver = new Account("AsyncBob", usd, new BigDecimal("100.00"));
+        accountRepository.saveAll(List.of(sender, receiver));
+    }
+
+    @Test
+    void submittedTransfersEndCompletedOrFailed() throws Exception {
+        Long completed = asyncTransferService.submit(request("10.00"));
+        Long failed = asyncTransferService.submit(request("5000.00"));
+
+        awaitState(completed, TransferState.COMPLETED);
+        TransferStatus status = awaitState(failed, TransferState.FAILED);
+        Assertions.assertEquals(TransferException.Reason.INSUFFICIENT_FUNDS.name(), status.failureReason());
+
+        Money fee = transferRepository.findById(completed).orElseThrow().getFeeApplied();
+        Assertions.assertEquals(Money.of(new BigDecimal("90.00")).minus(fee), balanceOf(sender));
+        Assertions.assertEquals(Money.of(new BigDecimal("110.00")), balanceOf(receiver));
+
+        Assertions.assertTrue(transferService.getTransferStatus(Long.MAX_VALUE).isEmpty());
+        TransferException unknownCurrency = Assertions.assertThrows(TransferException.class,
+                () -> asyncTransferService.submit(new TransferRequestDTO(sender.getId(), receiver.getId(), BigDecimal.TEN, "XXX")));
+        Assertions.assertEquals(TransferException.Reason.INVALID_CURRENCY, unknownCurrency.getReason());
+    }
+
+    @Test
+    void rolledBackAttemptIsRequeuedAndRunsOnce() throws Exception {
+        long conflicts = (long) asyncTransferService.getStats().get("conflicts");
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        // another transaction holds the sender's row lock, the worker's lock wait times out and rolls back
+        Future<?> holder = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.queryForList("SELECT account_id FROM account WHERE account_id = ? FOR UPDATE", sender.getId());
+            locked.countDown();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        try {
+            Assertions.assertTrue(locked.await(10, TimeUnit.SECONDS));
+            Long id = asyncTransferService.submit(request("10.00"));
+
+            await(() -> (long) asyncTransferService.getStats().get("conflicts") > conflicts);
+            Assertions.assertEquals(TransferState.PROCESSING, transferService.getTransferStatus(id).orElseThrow().state());
+            Assertions.assertEquals(Money.of(new BigDecimal("100.00")), balanceOf(sender));
+
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+            awaitState(id, TransferState.COMPLETED);
+            Money fee = transferRepository.findById(id).orElseThrow().getFeeApplied();
+            Assertions.assertEquals(Money.of(new BigDecimal("90.00")).minus(fee), balanceOf(sender));
+            Assertions.assertEquals(Money.of(new BigDecimal("110.00")), balanceOf(receiver));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void unexpectedWorkerErrorFailsTheQueuedTransfer() throws Exception {
+        long errors = (long) asyncTransferService.getStats().get("errors");
+        // rounds to zero units: passes the submit, fails the positive amount check inside the worker
+        Long id = asyncTransferService.submit(request("0.00001"));
+
+        TransferStatus status = awaitState(id, TransferState.FAILED);
+        Assertions.assertEquals(TransferRuntimeException.Reason.INVALID_ARGUMENT.name(), status.failureReason());
+        Assertions.assertEquals(errors + 1, (long) asyncTransferService.getStats().get("errors"));
+        Assertions.assertEquals(Money.of(new BigDecimal("100.00")), balanceOf(sender));
+
+        // a transfer that already left PROCESSING is not touched
+        transferService.failQueuedTransfer(id, TransferRuntimeException.Reason.UNKNOWN_ERROR.name(), "late");
+        Assertions.assertEquals(TransferRuntimeException.Reason.INVALID_ARGUMENT.name(),
+                transferService.getTransferStatus(id).orElseThrow().failureReason());
+    }
+
+    private TransferStatus awaitState(Long id, TransferState state) throws InterruptedException {
+        await(() -> transferService.getTransferStatus(id).orElseThrow().state() != TransferState.PROCESSING);
+        TransferStatus status = transferService.getTransferStatus(id).orElseThrow();
+        Assertions.assertEquals(state, status.state(), status.failureMessage());
+        return status;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    private Money balanceOf(Account account) {
+        return accountRepository.findUnlockedById(account.getId()).orElseThrow().getBalance();
+    }
+
+    private TransferRequestDTO request(String amount) {
+        return new TransferRequestDTO(sender.getId(), receiver.getId(), new BigDecimal(amount), "USD");
+    }
+}
@@ -0,0 +1,179 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.service.HotAccountService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferExecutionMode;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferRuntimeException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ *  ATOMIC_UPDATE mode: the conditional UPDATEs decide, a second statement that doesn't apply undoes the first one,
+ *  and hot accounts, known or just made hot by another node, end up on the slot path.
+ * */
+@SpringBootTest(properties = {
+        "transfer.execution-mode=ATOMIC_UPDATE",
+        "transfer.async.enabled=false"})
+@ActiveProfiles("test")
+class AtomicUpdateTransferTest {
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private HotAccountService hotAccountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Currency usd;
+
+    @BeforeEach
+    void setup() {
+        Assertions.assertEquals(TransferExecutionMode.ATOMIC_UPDATE, transferService.getExecutionMode());
+        usd = currencyRepository.findById("USD").orElseThrow();
+    }
+
+    @Test
+    void transferIsAppliedByTheUpdates() throws Exception {
+        Account sender = account("AtomicAlice", "100.00");
+        Account receiver = account("AtomicBob", "100.00");
+
+        Long id = transferService.transferMoney(request(sender, receiver, "10.00"));
+
+        Assertions.assertEquals(TransferState.COMPLETED, transferRepository.findById(id).orElseThrow().getState());
+        Assertions.assertEquals(money("90.00").minus(feeOf(id)), rowBalance(sender));
+        Assertions.assertEquals(money("110.00"), rowBalance(receiver));
+    }
+
+    @Test
+    void insufficientFundsLeaveBothAccountsAlone() {
+        // receiver first: its credit is applied before the debit fails and has to be undone
+        Account receiver = account("AtomicPoorReceiver", "100.00");
+        Account sender = account("AtomicPoorSender", "5.00");
+
+        TransferException e = Assertions.assertThrows(TransferException.class,
+                () -> transferService.transferMoney(request(sender, receiver, "10.00")));
+        Assertions.assertEquals(TransferException.Reason.INSUFFICIENT_FUNDS, e.getReason());
+        Assertions.assertFalse(e.getMessage().contains("precision limit"), e.getMessage());
+        Assertions.assertEquals(money("5.00"), rowBalance(sender));
+        Assertions.assertEquals(money("100.00"), rowBalance(receiver));
+        assertLastTransferFailed(sender);
+    }
+
+    @Test
+    void creditOverTheCapUndoesTheDebit() {
+        // sender first: the debit is applied before the credit fails and has to be undone
+        Account sender = account("AtomicCapSender", "100.00");
+        Account receiver = account("AtomicCapReceiver", Money.MAX.minus(money("5.00")).toBigDecimal().toPlainString());
+
+        TransferException e = Assertions.assertThrows(TransferException.class,
+                () -> transferService.transferMoney(request(sender, receiver, "10.00")));
+        Assertions.assertEquals(TransferException.Reason.INSUFFICIENT_FUNDS, e.getReason());
+        Assertions.assertTrue(e.getMessage().contains("precision limit"), e.getMessage());
+        Assertions.assertEquals(money("100.00"), rowBalance(sender));
+        Assertions.assertEquals(Money.MAX.minus(money("5.00")), rowBalance(receiver));
+        assertLastTransferFailed(sender);
+    }
+
+    @Test
+    void knownHotAccountTakesTheLockingPath() throws Exception {
+        Account sender = account("AtomicHotSender", "100.00");
+        Account hot = account("AtomicHotReceiver", "100.00");
+        hotAccountService.enableHotMode(hot.getId(), 4);
+
+        transferService.transferMoney(request(sender, hot, "10.00"));
+
+        Assertions.assertEquals(money("110.00"), slotTotal(hot));
+    }
+
+    @Test
+    void accountMadeHotElsewhereIsNotReportedAsABalanceRule() throws Exception {
+        Account sender = account("AtomicLateSender", "100.00");
+        Account receiver = account("AtomicLateReceiver", "100.00");
+        // another node moves the balance into two slots, this node's hot set doesn't have it
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE account SET balance = 0, balance_slots = 2 WHERE account_id = ?", receiver.getId());
+            for (int slot = 0; slot < 2; slot++) {
+                jdbcTemplate.update("INSERT INTO account_balance_slot (account_id, slot_no, balance, created_at, updated_at) " +
+                        "VALUES (?, ?, 50, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)", receiver.getId(), slot);
+            }
+        });
+        Assertions.assertFalse(hotAccountService.isHot(receiver.getId()));
+
+        TransferRuntimeException e = Assertions.assertThrows(TransferRuntimeException.class,
+                () -> transferService.transferMoney(request(sender, receiver, "10.00")));
+        Assertions.assertEquals(TransferRuntimeException.Reason.CONCURRENT_UPDATE, e.getReason());
+        Assertions.assertEquals(money("100.00"), rowBalance(sender));
+        Assertions.assertEquals(money("100.00"), slotTotal(receiver));
+
+        // the node knows it now, the retry credits a slot
+        Assertions.assertTrue(hotAccountService.isHot(receiver.getId()));
+        Long id = transferService.transferMoney(request(sender, receiver, "10.00"));
+        Assertions.assertEquals(money("90.00").minus(feeOf(id)), rowBalance(sender));
+        Assertions.assertEquals(money("110.00"), slotTotal(receiver));
+    }
+
+    private void assertLastTransferFailed(Account sender) {
+        Assertions.assertEquals(TransferState.FAILED.name(), jdbcTemplate.queryForObject(
+                "SELECT state FROM transfer WHERE from_account_id_raw = ? ORDER BY transfer_id DESC LIMIT 1",
+                String.class, sender.getId()));
+    }
+
+    private Account account(String name, String balance) {
+        return accountRepository.save(new Account(name, usd, new BigDecimal(balance)));
+    }
+
+    private Money rowBalance(Account account) {
+        return Money.of(jdbcTemplate.queryForObject(
+                "SELECT balance FROM account WHERE account_id = ?", BigDecimal.class, account.getId()));
+    }
+
+    private Money slotTotal(Account account) {
+        return Money.of(jdbcTemplate.queryForObject(
+                "SELECT SUM(balance) FROM account_balance_slot WHERE account_id = ?", BigDecimal.class, account.getId()));
+    }
+
+    private Money feeOf(Long transferId) {
+        return transferRepository.findById(transferId).orElseThrow().getFeeApplied();
+    }
+
+    private static Money money(String amount) {
+        return Money.of(new BigDecimal(amount));
+    }
+
+    private static TransferRequestDTO request(Account from, Account to, String amount) {
+        return new TransferRequestDTO(from.getId(), to.getId(), new BigDecimal(amount), "USD");
+    }
+}
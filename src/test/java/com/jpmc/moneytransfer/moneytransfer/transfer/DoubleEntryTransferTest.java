@@ -0,0 +1,218 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.service.HotAccountService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferBatchItemResult;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.DoubleEntryLedgerService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.LedgerCompactor;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferExecutionMode;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferRuntimeException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ *  DOUBLE_ENTRY mode: transfers append ledger entries instead of updating account rows, balances are derived from
+ *  the last snapshot plus the entries after it and the compactor moves that snapshot forward.
+ * */
+@SpringBootTest(properties = {
+        "transfer.execution-mode=DOUBLE_ENTRY",
+        // compacted by the tests only
+        "transfer.double-entry.compaction-interval-ms=3600000",
+        "transfer.async.enabled=false"})
+@ActiveProfiles("test")
+class DoubleEntryTransferTest {
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private DoubleEntryLedgerService ledgerService;
+
+    @Autowired
+    private LedgerCompactor ledgerCompactor;
+
+    @Autowired
+    private HotAccountService hotAccountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Currency usd;
+    private Account sender;
+    private Account receiver;
+
+    @BeforeEach
+    void setup() {
+        Assertions.assertEquals(TransferExecutionMode.DOUBLE_ENTRY, transferService.getExecutionMode());
+        usd = currencyRepository.findById("USD").orElseThrow();
+        sender = account("LedgerAlice", "100.00");
+        receiver = account("LedgerBob", "100.00");
+    }
+
+    @Test
+    void transferAppendsEntriesAndLeavesTheRowsAlone() throws Exception {
+        Long id = transferService.transferMoney(request(sender, receiver, "10.00"));
+
+        Money fee = feeOf(id);
+        Assertions.assertEquals(money("90.00").minus(fee), balanceOf(sender));
+        Assertions.assertEquals(money("110.00"), balanceOf(receiver));
+        Assertions.assertEquals(money("100.00"), rowBalance(sender));
+        Assertions.assertEquals(money("100.00"), rowBalance(receiver));
+        Assertions.assertEquals(List.of(money("-10.00").minus(fee), money("10.00")), jdbcTemplate.queryForList(
+                "SELECT amount FROM ledger_entry WHERE transfer_id = ? ORDER BY amount", BigDecimal.class, id)
+                .stream().map(Money::of).toList());
+    }
+
+    @Test
+    void fundsAreCheckedAgainstTheDerivedBalance() throws Exception {
+        // the row still says 100, the ledger only has 100 - 60 - fee left
+        Long first = transferService.transferMoney(request(sender, receiver, "60.00"));
+        TransferException e = Assertions.assertThrows(TransferException.class,
+                () -> transferService.transferMoney(request(sender, receiver, "60.00")));
+        Assertions.assertEquals(TransferException.Reason.INSUFFICIENT_FUNDS, e.getReason());
+        Assertions.assertEquals(money("40.00").minus(feeOf(first)), balanceOf(sender));
+
+        // the receiver's derived balance has to stay within Money.MAX
+        Account full = account("LedgerFull", Money.MAX.minus(money("5.00")).toBigDecimal().toPlainString());
+        TransferException limit = Assertions.assertThrows(TransferException.class,
+                () -> transferService.transferMoney(request(receiver, full, "10.00")));
+        Assertions.assertTrue(limit.getMessage().contains("precision limit"), limit.getMessage());
+        TransferBatchItemResult batched = transferService.transferMoneyBatch(List.of(request(receiver, full, "10.00"))).get(0);
+        Assertions.assertEquals(TransferException.Reason.INSUFFICIENT_FUNDS.name(), batched.getFailureReason());
+        Assertions.assertTrue(batched.getMessage().contains("precision limit"), batched.getMessage());
+        Assertions.assertEquals(Money.MAX.minus(money("5.00")), balanceOf(full));
+    }
+
+    @Test
+    void batchChecksEachItemAgainstThePendingBalances() {
+        Account third = account("LedgerCarol", "0.00");
+        List<TransferBatchItemResult> results = transferService.transferMoneyBatch(List.of(
+                request(sender, receiver, "50.00"),
+                request(sender, third, "30.00"),
+                // only what is left after the first two, the row still says 100
+                request(sender, third, "30.00"),
+                request(third, receiver, "20.00")));
+
+        Assertions.assertEquals(TransferState.COMPLETED, results.get(0).getState(), results.get(0).getMessage());
+        Assertions.assertEquals(TransferState.COMPLETED, results.get(1).getState(), results.get(1).getMessage());
+        Assertions.assertEquals(TransferException.Reason.INSUFFICIENT_FUNDS.name(), results.get(2).getFailureReason());
+        // funded by the credit earlier in the same chunk
+        Assertions.assertEquals(TransferState.COMPLETED, results.get(3).getState(), results.get(3).getMessage());
+
+        Money senderFees = feeOf(results.get(0).getTransferId()).plus(feeOf(results.get(1).getTransferId()));
+        Assertions.assertEquals(money("20.00").minus(senderFees), balanceOf(sender));
+        Assertions.assertEquals(money("150.00").plus(money("20.00")), balanceOf(receiver));
+        Assertions.assertEquals(money("10.00").minus(feeOf(results.get(3).getTransferId())), balanceOf(third));
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM ledger_entry WHERE transfer_id = ?", Integer.class, results.get(2).getTransferId()));
+    }
+
+    @Test
+    void compactionKeepsTheBalanceAndThePastBalances() throws Exception {
+        Thread.sleep(20);
+        LocalDateTime before = LocalDateTime.now();
+        Thread.sleep(20);
+        transferService.transferMoney(request(sender, receiver, "10.00"));
+        Thread.sleep(20);
+        LocalDateTime between = LocalDateTime.now();
+        Money senderBetween = balanceOf(sender);
+        Thread.sleep(20);
+        transferService.transferMoney(request(receiver, sender, "25.00"));
+
+        Money senderNow = balanceOf(sender);
+        Money receiverNow = balanceOf(receiver);
+        Assertions.assertEquals(senderBetween, ledgerService.findBalance(sender.getId(), between).orElseThrow());
+
+        Assertions.assertEquals(2, ledgerCompactor.compact(List.of(sender.getId(), receiver.getId())));
+        Assertions.assertEquals(senderNow, balanceOf(sender));
+        Assertions.assertEquals(receiverNow, balanceOf(receiver));
+        // the rows hold the whole balance now, nothing is left to sum
+        Assertions.assertEquals(senderNow, rowBalance(sender));
+        Assertions.assertEquals(receiverNow, rowBalance(receiver));
+        Assertions.assertEquals(0, ledgerCompactor.compact(List.of(sender.getId(), receiver.getId())));
+
+        // history is served from the snapshots: before the account existed, before and between the transfers, now
+        Assertions.assertEquals(senderBetween, ledgerService.findBalance(sender.getId(), between).orElseThrow());
+        Assertions.assertEquals(money("100.00"), ledgerService.findBalance(receiver.getId(), before).orElseThrow());
+        Assertions.assertEquals(Money.ZERO,
+                ledgerService.findBalance(sender.getId(), between.minusMinutes(10)).orElseThrow());
+        Assertions.assertEquals(senderNow, ledgerService.findBalance(sender.getId(), LocalDateTime.now()).orElseThrow());
+
+        // later entries are summed on top of the new snapshot
+        transferService.transferMoney(request(receiver, sender, "5.00"));
+        Assertions.assertEquals(senderNow.plus(money("5.00")), balanceOf(sender));
+    }
+
+    @Test
+    void hotAccountsAreRejected() {
+        Assertions.assertThrows(IllegalStateException.class, () -> hotAccountService.enableHotMode(receiver.getId(), 2));
+
+        // made hot by a node in another mode, only the row says so
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> jdbcTemplate.update(
+                "UPDATE account SET balance_slots = 2 WHERE account_id = ?", receiver.getId()));
+        TransferRuntimeException e = Assertions.assertThrows(TransferRuntimeException.class,
+                () -> transferService.transferMoney(request(sender, receiver, "10.00")));
+        Assertions.assertEquals(TransferRuntimeException.Reason.INVALID_ACCOUNT_STATE, e.getReason());
+
+        TransferBatchItemResult result = transferService.transferMoneyBatch(List.of(request(receiver, sender, "10.00"))).get(0);
+        Assertions.assertEquals(TransferRuntimeException.Reason.INVALID_ACCOUNT_STATE.name(), result.getFailureReason());
+        Assertions.assertEquals(money("100.00"), balanceOf(sender));
+    }
+
+    private Account account(String name, String balance) {
+        return accountRepository.save(new Account(name, usd, new BigDecimal(balance)));
+    }
+
+    private Money balanceOf(Account account) {
+        return ledgerService.findBalance(account.getId(), null).orElseThrow();
+    }
+
+    private Money rowBalance(Account account) {
+        return Money.of(jdbcTemplate.queryForObject(
+                "SELECT balance FROM account WHERE account_id = ?", BigDecimal.class, account.getId()));
+    }
+
+    private Money feeOf(Long transferId) {
+        return transferRepository.findById(transferId).orElseThrow().getFeeApplied();
+    }
+
+    private static Money money(String amount) {
+        return Money.of(new BigDecimal(amount));
+    }
+
+    private static TransferRequestDTO request(Account from, Account to, String amount) {
+        return new TransferRequestDTO(from.getId(), to.getId(), new BigDecimal(amount), "USD");
+    }
+}
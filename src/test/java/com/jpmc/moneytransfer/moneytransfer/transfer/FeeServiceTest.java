@@ -0,0 +1,69 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.AccountTier;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferPolicy;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferPolicyRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.FeeSchedule;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.FeeService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+
+/**
+ *  Policy changes in the table show up in the fee schedule after a reload, a schedule already handed out keeps its
+ *  rates.
+ * */
+@SpringBootTest(properties = "transfer.async.enabled=false")
+@ActiveProfiles("test")
+class FeeServiceTest {
+
+    @Autowired
+    private FeeService feeService;
+
+    @Autowired
+    private TransferPolicyRepository transferPolicyRepository;
+
+    @Test
+    void reloadPublishesChangedPoliciesOnly() {
+        Money amount = Money.of(new BigDecimal("200.00"));
+        feeService.refreshCache();
+        FeeSchedule before = feeService.getFeeSchedule();
+        Money feeBefore = feeService.calculateFee(amount, "CHF", "JPY", AccountTier.STANDARD);
+
+        TransferPolicy policy = new TransferPolicy("TRANSFER_FEE_TEST_CHF_JPY", new BigDecimal("0.05"), true);
+        policy.setCurrencyFrom("CHF");
+        policy.setCurrencyTo("JPY");
+        transferPolicyRepository.save(policy);
+        try {
+            // saved but not reloaded yet
+            Assertions.assertEquals(feeBefore, feeService.calculateFee(amount, "CHF", "JPY", AccountTier.STANDARD));
+
+            Assertions.assertTrue(feeService.refreshCache());
+            FeeSchedule after = feeService.getFeeSchedule();
+            Assertions.assertEquals(before.getVersion() + 1, after.getVersion());
+            Assertions.assertEquals(Money.of(new BigDecimal("10.00")),
+                    feeService.calculateFee(amount, "CHF", "JPY", AccountTier.STANDARD));
+            // other corridors and the old schedule are untouched
+            Assertions.assertEquals(before.rateFor("CHF", "USD", AccountTier.STANDARD, amount),
+                    after.rateFor("CHF", "USD", AccountTier.STANDARD, amount));
+            Assertions.assertNotEquals(Money.rateUnits(new BigDecimal("0.05")),
+                    before.rateFor("CHF", "JPY", AccountTier.STANDARD, amount));
+
+            Assertions.assertFalse(feeService.refreshCache());
+            Assertions.assertSame(after, feeService.getFeeSchedule());
+
+            policy.setEnabled(false);
+            transferPolicyRepository.save(policy);
+            Assertions.assertTrue(feeService.refreshCache());
+            Assertions.assertEquals(feeBefore, feeService.calculateFee(amount, "CHF", "JPY", AccountTier.STANDARD));
+        } finally {
+            transferPolicyRepository.deleteById(policy.getPolicyName());
+            feeService.refreshCache();
+        }
+    }
+}
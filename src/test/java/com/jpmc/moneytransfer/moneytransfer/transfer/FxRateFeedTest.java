@@ -0,0 +1,181 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.service.CurrencyService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.FXConversionService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.FxRateFeed;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ *  FxRateFeed: tick files and readers ingested, ticks coalesced per pair and published, bad ticks skipped one by one,
+ *  and transfers priced with a rate older than transfer.fx.max-rate-age-ms rejected.
+ * */
+@SpringBootTest(properties = {
+        "transfer.fx.feed.enabled=true",
+        "transfer.fx.feed.publish-interval-ms=20",
+        "transfer.fx.max-rate-age-ms=60000",
+        "transfer.async.enabled=false"})
+@ActiveProfiles("test")
+class FxRateFeedTest {
+
+    private static final Path FEED_DIR = tempDir();
+
+    @DynamicPropertySource
+    static void feedDir(DynamicPropertyRegistry registry) {
+        registry.add("transfer.fx.feed.dir", FEED_DIR::toString);
+    }
+
+    @Autowired
+    private FxRateFeed fxRateFeed;
+
+    @Autowired
+    private FXConversionService fxConversionService;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private CurrencyService currencyService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Test
+    void ticksOfOnePairAreCoalescedIntoTheLatest() throws Exception {
+        long now = System.currentTimeMillis();
+        long coalesced = fxRateFeed.getStats().get("ticksCoalesced");
+
+        fxRateFeed.ingest(new StringReader(String.join("\n",
+                "# comment and a blank line",
+                "",
+                "AAA,BBB,1.10," + (now - 3_000),
+                "AAA,BBB,1.30," + (now - 1_000),
+                // older than the one before, doesn't win
+                "AAA,BBB,1.20," + (now - 2_000),
+                " AAA , CCC , 2.5 ")));
+
+        await(() -> rate("AAA", "CCC") != null);
+        Assertions.assertEquals(new BigDecimal("1.300000"), rate("AAA", "BBB"));
+        Assertions.assertEquals(new BigDecimal("2.500000"), rate("AAA", "CCC"));
+        Assertions.assertEquals(coalesced + 2, fxRateFeed.getStats().get("ticksCoalesced"));
+    }
+
+    @Test
+    void tickFilesAreReadOnceAndRenamed() throws Exception {
+        Path file = FEED_DIR.resolve("rates.ticks");
+        // renamed into place like a producer does, the feed could read a half written file
+        Files.move(Files.writeString(FEED_DIR.resolve("rates.tmp"), "DDD,EEE,0.75\nDDD,FFF,4\n"), file,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        await(() -> rate("DDD", "FFF") != null);
+        Assertions.assertEquals(new BigDecimal("0.750000"), rate("DDD", "EEE"));
+        await(() -> Files.exists(FEED_DIR.resolve("rates.ticks.done")));
+        Assertions.assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void badTicksAreSkippedWithoutTheRestOfTheUpdate() throws Exception {
+        long badLines = fxRateFeed.getStats().get("badLines");
+        long future = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+
+        fxRateFeed.ingest(new StringReader(String.join("\n",
+                "GGG,HHH,0.5",
+                "GGG,HHH",
+                "GGG,HHH,abc",
+                "GGG,HHH,-1",
+                // rounds to 0 at rate scale
+                "GGG,HHH,0.0000001",
+                // doesn't fit a long at rate scale
+                "GGG,HHH,1e30",
+                // would pin the pair for an hour
+                "GGG,HHH,9," + future,
+                "GGG,HHH,0.5,notatime",
+                "GGG,III,3")));
+
+        await(() -> rate("GGG", "III") != null);
+        Assertions.assertEquals(new BigDecimal("0.500000"), rate("GGG", "HHH"));
+        Assertions.assertEquals(badLines + 7, fxRateFeed.getStats().get("badLines"));
+
+        // a later tick still replaces the quote
+        fxRateFeed.ingest(new StringReader("GGG,HHH,0.6"));
+        await(() -> new BigDecimal("0.600000").equals(rate("GGG", "HHH")));
+    }
+
+    @Test
+    void transferWithAStaleRateFails() throws Exception {
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        Currency nzd = currencyRepository.findByCode("NZD")
+                .orElseGet(() -> currencyService.createCurrency("NZD", "New Zealand Dollar"));
+        Account sender = new Account("FeedAlice", usd, new BigDecimal("100.00"));
+        Account receiver = new Account("FeedBob", nzd, new BigDecimal("100.00"));
+        accountRepository.saveAll(List.of(sender, receiver));
+        TransferRequestDTO request = new TransferRequestDTO(sender.getId(), receiver.getId(), new BigDecimal("10.00"), "USD");
+
+        long tenMinutesAgo = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(10);
+        fxRateFeed.ingest(new StringReader("USD,NZD,1.6," + tenMinutesAgo));
+        await(() -> rate("USD", "NZD") != null);
+
+        TransferException e = Assertions.assertThrows(TransferException.class, () -> transferService.transferMoney(request));
+        Assertions.assertEquals(TransferException.Reason.FX_RATE_STALE, e.getReason());
+        Assertions.assertEquals(Money.of(new BigDecimal("100.00")),
+                accountRepository.findUnlockedById(sender.getId()).orElseThrow().getBalance());
+
+        // a fresh tick makes the pair usable again
+        fxRateFeed.ingest(new StringReader("USD,NZD,1.7"));
+        await(() -> new BigDecimal("1.700000").equals(rate("USD", "NZD")));
+        Long id = transferService.transferMoney(request);
+        Assertions.assertEquals(TransferState.COMPLETED, transferRepository.findById(id).orElseThrow().getState());
+    }
+
+    private BigDecimal rate(String from, String to) {
+        return fxConversionService.getSnapshot().findRate(from, to);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    private static Path tempDir() {
+        try {
+            return Files.createTempDirectory("fx-ticks");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
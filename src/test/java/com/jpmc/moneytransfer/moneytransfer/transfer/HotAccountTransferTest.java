@@ -0,0 +1,189 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.service.HotAccountService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferBatchItemResult;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  Hot accounts: the balance spread over slot rows, debits drawing from several slots and the total kept across
+ *  concurrent credits and debits.
+ * */
+@SpringBootTest(properties = "transfer.async.enabled=false")
+@ActiveProfiles("test")
+class HotAccountTransferTest {
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private HotAccountService hotAccountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Currency usd;
+
+    @BeforeEach
+    void setup() {
+        usd = currencyRepository.findById("USD").orElseThrow();
+    }
+
+    @Test
+    void balanceIsSpreadEvenlyOverTheSlots() {
+        Account hot = account("HotSpread", "100.0003");
+        hotAccountService.enableHotMode(hot.getId(), 4);
+
+        Assertions.assertTrue(hotAccountService.isHot(hot.getId()));
+        // the remainder of the division goes to the first slot, the balance column is emptied
+        Assertions.assertEquals(List.of(money("25.0003"), money("25.0000"), money("25.0000"), money("25.0000")),
+                slotsOf(hot.getId()));
+        Assertions.assertEquals(Money.ZERO, Money.of(jdbcTemplate.queryForObject(
+                "SELECT balance FROM account WHERE account_id = ?", BigDecimal.class, hot.getId())));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> hotAccountService.enableHotMode(hot.getId(), 2));
+        Account other = account("HotInvalid", "10.00");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> hotAccountService.enableHotMode(other.getId(), 0));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> hotAccountService.enableHotMode(other.getId(), HotAccountService.MAX_SLOTS + 1));
+    }
+
+    @Test
+    void debitLargerThanAnySlotDrawsFromSeveralSlots() throws Exception {
+        Account hot = account("HotDebit", "100.00");
+        Account receiver = account("HotDebitReceiver", "0.00");
+        hotAccountService.enableHotMode(hot.getId(), 4);
+
+        Long id = transferService.transferMoney(request(hot, receiver, "60.00"));
+
+        Money fee = transferRepository.findById(id).orElseThrow().getFeeApplied();
+        Money left = money("40.00").minus(fee);
+        List<Money> slots = slotsOf(hot.getId());
+        Assertions.assertEquals(left, sum(slots));
+        // slots ran dry, what is left is spread evenly again
+        Money share = left.divideDown(4);
+        Assertions.assertEquals(share.plus(left.minus(share.times(4))), slots.get(0));
+        Assertions.assertEquals(List.of(share, share, share), slots.subList(1, 4));
+        Assertions.assertEquals(money("60.00"), balanceOf(receiver));
+
+        // more than all slots together fails and leaves them alone
+        TransferException e = Assertions.assertThrows(TransferException.class,
+                () -> transferService.transferMoney(request(hot, receiver, "50.00")));
+        Assertions.assertEquals(TransferException.Reason.INSUFFICIENT_FUNDS, e.getReason());
+        Assertions.assertEquals(slots, slotsOf(hot.getId()));
+    }
+
+    @Test
+    void concurrentTransfersAndBatchesKeepTheTotal() throws Exception {
+        Account hot = account("HotConcurrent", "1000.00");
+        List<Account> others = List.of(account("HotPeer0", "1000.00"), account("HotPeer1", "1000.00"),
+                account("HotPeer2", "1000.00"));
+        hotAccountService.enableHotMode(hot.getId(), 8);
+        Money total = money("4000.00");
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            Random random = new Random(t);
+            boolean batch = t % 2 == 0;
+            futures.add(executor.submit(() -> {
+                List<TransferRequestDTO> requests = new ArrayList<>();
+                for (int i = 0; i < 30; i++) {
+                    Account peer = others.get(random.nextInt(others.size()));
+                    String amount = (1 + random.nextInt(10)) + ".00";
+                    requests.add(random.nextBoolean() ? request(hot, peer, amount) : request(peer, hot, amount));
+                }
+                List<Long> ids = new ArrayList<>();
+                if (batch) {
+                    for (TransferBatchItemResult result : transferService.transferMoneyBatch(requests)) {
+                        Assertions.assertEquals(TransferState.COMPLETED, result.getState(), result.getMessage());
+                        ids.add(result.getTransferId());
+                    }
+                } else {
+                    for (TransferRequestDTO request : requests) {
+                        ids.add(transferService.transferMoney(request));
+                    }
+                }
+                return ids;
+            }));
+        }
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS), "transfers did not finish");
+
+        Money fees = Money.ZERO;
+        for (Future<List<Long>> future : futures) {
+            for (Long id : future.get()) {
+                fees = fees.plus(transferRepository.findById(id).orElseThrow().getFeeApplied());
+            }
+        }
+        Money balances = sum(slotsOf(hot.getId()));
+        for (Account other : others) {
+            balances = balances.plus(balanceOf(other));
+        }
+        Assertions.assertEquals(total, balances.plus(fees));
+        Assertions.assertEquals(8, slotsOf(hot.getId()).size());
+        Assertions.assertTrue(slotsOf(hot.getId()).stream().allMatch(slot -> slot.signum() >= 0));
+    }
+
+    private Account account(String name, String balance) {
+        return accountRepository.save(new Account(name, usd, new BigDecimal(balance)));
+    }
+
+    private List<Money> slotsOf(Long accountId) {
+        return jdbcTemplate.queryForList("SELECT balance FROM account_balance_slot WHERE account_id = ? ORDER BY slot_no",
+                BigDecimal.class, accountId).stream().map(Money::of).toList();
+    }
+
+    private Money balanceOf(Account account) {
+        return accountRepository.findUnlockedById(account.getId()).orElseThrow().getBalance();
+    }
+
+    private static Money sum(List<Money> amounts) {
+        Money total = Money.ZERO;
+        for (Money amount : amounts) {
+            total = total.plus(amount);
+        }
+        return total;
+    }
+
+    private static Money money(String amount) {
+        return Money.of(new BigDecimal(amount));
+    }
+
+    private static TransferRequestDTO request(Account from, Account to, String amount) {
+        return new TransferRequestDTO(from.getId(), to.getId(), new BigDecimal(amount), "USD");
+    }
+}
@@ -0,0 +1,185 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.ReconciliationReport;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferBatchItemResult;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.LedgerReconciliationService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ *  Reconciliation over a database of its own (it checks every account and transfer there is): a clean ledger,
+ *  a balance changed behind the ledger's back and a transfer that lands in an already sealed block.
+ *  Small blocks and no settle time, so a few transfers already seal blocks.
+ * */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reconciliationDB;MODE=MySQL",
+        "transfer.reconciliation.block-size=10",
+        "transfer.reconciliation.settle-seconds=0",
+        "transfer.reconciliation.account-partition-size=2",
+        "transfer.async.enabled=false"})
+@ActiveProfiles("test")
+class LedgerReconciliationTest {
+
+    @Autowired
+    private LedgerReconciliationService reconciliationService;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Account> accounts = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        Currency jpy = currencyRepository.findById("JPY").orElseThrow();
+        accounts.clear();
+        accounts.add(new Account("ReconAlice", usd, new BigDecimal("1000.00")));
+        accounts.add(new Account("ReconBob", usd, new BigDecimal("1000.00")));
+        accounts.add(new Account("ReconCarol", jpy, new BigDecimal("1000.00")));
+        accountRepository.saveAll(accounts);
+    }
+
+    @Test
+    void cleanLedgerReconcilesAndSealsItsBlocks() {
+        runTransfers(25);
+
+        ReconciliationReport first = reconciliationService.reconcile();
+        Assertions.assertTrue(first.isConserved(), first::toString);
+        Assertions.assertTrue(first.blocksSealed() > 0, first::toString);
+        Assertions.assertEquals(0, first.transferMismatches());
+        Assertions.assertTrue(first.accountsChecked() >= accounts.size());
+        Assertions.assertTrue(first.corridors().stream().anyMatch(c -> !c.currencyFrom().equals(c.currencyTo())),
+                "the USD -> JPY transfers are a corridor of their own");
+
+        // the rerun starts after the last sealed block and still covers every transfer
+        ReconciliationReport second = reconciliationService.reconcile();
+        Assertions.assertTrue(second.isConserved(), second::toString);
+        Assertions.assertEquals(0, second.blocksReopened());
+        Assertions.assertTrue(second.transfersScanned() < first.transfersScanned());
+        Assertions.assertEquals(corridorCounts(first), corridorCounts(second));
+    }
+
+    @Test
+    void balanceChangedOutsideATransferIsReported() {
+        runTransfers(5);
+        Account account = accounts.get(1);
+        update("UPDATE account SET balance = balance + 1 WHERE account_id = ?", account.getId());
+        try {
+            ReconciliationReport report = reconciliationService.reconcile();
+            Assertions.assertFalse(report.isConserved());
+            Assertions.assertEquals(1, report.accountDiscrepancies(), report::toString);
+            ReconciliationReport.AccountDiscrepancy discrepancy = report.discrepantAccounts().get(0);
+            Assertions.assertEquals(account.getId(), discrepancy.accountId());
+            Assertions.assertEquals(0, BigDecimal.ONE.compareTo(discrepancy.balance().subtract(discrepancy.expectedBalance())));
+        } finally {
+            update("UPDATE account SET balance = balance - 1 WHERE account_id = ?", account.getId());
+        }
+        Assertions.assertTrue(reconciliationService.reconcile().isConserved());
+    }
+
+    @Test
+    void blockThatGetsALateTransferIsReopenedAndSummedAgain() {
+        runTransfers(5);
+        // another node takes the next pooled range of ids and stays quiet, this node's later ids go past it
+        jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR transfer_seq", Long.class);
+        runTransfers(120);
+        long gapId = jdbcTemplate.queryForObject("SELECT MIN(t.transfer_id) + 1 FROM transfer t WHERE NOT EXISTS " +
+                "(SELECT 1 FROM transfer n WHERE n.transfer_id = t.transfer_id + 1)", Long.class);
+        long lastId = jdbcTemplate.queryForObject("SELECT MAX(transfer_id) FROM transfer", Long.class);
+        Assertions.assertTrue(gapId < lastId, "expected unused ids below the newest transfer");
+
+        ReconciliationReport sealed = reconciliationService.reconcile();
+        Assertions.assertTrue(sealed.isConserved(), sealed::toString);
+        Assertions.assertTrue(sealed.sealedUpToTransferId() > gapId, sealed::toString);
+
+        // the quiet node commits a transfer with an id of its range: its row and both balances
+        long templateId = jdbcTemplate.queryForObject("SELECT MIN(transfer_id) FROM transfer WHERE state = 'COMPLETED' " +
+                "AND currency_from = currency_to", Long.class);
+        insertLateCopy(gapId, templateId);
+
+        ReconciliationReport reopened = reconciliationService.reconcile();
+        Assertions.assertTrue(reopened.blocksReopened() > 0, reopened::toString);
+        Assertions.assertTrue(reopened.isConserved(), reopened::toString);
+        Assertions.assertEquals(corridorCounts(sealed).get("USD->USD") + 1, corridorCounts(reopened).get("USD->USD"));
+
+        ReconciliationReport after = reconciliationService.reconcile();
+        Assertions.assertEquals(0, after.blocksReopened());
+        Assertions.assertTrue(after.isConserved(), after::toString);
+    }
+
+    /**
+     *  count transfers around the three accounts, both ways and into the JPY account, plus one that fails.
+     * */
+    private void runTransfers(int count) {
+        List<TransferRequestDTO> requests = new ArrayList<>();
+        for (int i = 0; i < count - 1; i++) {
+            Account from = accounts.get(i % 2);
+            Account to = accounts.get(i % 3 == 2 ? 2 : (i + 1) % 2);
+            requests.add(new TransferRequestDTO(from.getId(), to.getId(), new BigDecimal("1.00"), "USD"));
+        }
+        requests.add(new TransferRequestDTO(accounts.get(0).getId(), accounts.get(1).getId(), new BigDecimal("99999.00"), "USD"));
+        List<TransferBatchItemResult> results = transferService.transferMoneyBatch(requests);
+        for (int i = 0; i < count - 1; i++) {
+            Assertions.assertEquals(TransferState.COMPLETED, results.get(i).getState(), results.get(i).getMessage());
+        }
+        Assertions.assertEquals(TransferState.FAILED, results.get(count - 1).getState());
+    }
+
+    private void insertLateCopy(long id, long templateId) {
+        String columns = jdbcTemplate.queryForList("SELECT column_name FROM information_schema.columns " +
+                        "WHERE table_name = 'TRANSFER' AND column_name <> 'TRANSFER_ID' ORDER BY ordinal_position", String.class)
+                .stream().collect(Collectors.joining(", "));
+        Map<String, Object> template = jdbcTemplate.queryForMap(
+                "SELECT from_account_id_raw, to_account_id_raw, debit_amount, credit_amount FROM transfer WHERE transfer_id = ?",
+                templateId);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO transfer (transfer_id, " + columns + ") SELECT ?, " + columns +
+                    " FROM transfer WHERE transfer_id = ?", id, templateId);
+            jdbcTemplate.update("UPDATE account SET balance = balance - ? WHERE account_id = ?",
+                    template.get("debit_amount"), template.get("from_account_id_raw"));
+            jdbcTemplate.update("UPDATE account SET balance = balance + ? WHERE account_id = ?",
+                    template.get("credit_amount"), template.get("to_account_id_raw"));
+        });
+    }
+
+    private void update(String sql, Object... args) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> jdbcTemplate.update(sql, args));
+    }
+
+    private static Map<String, Long> corridorCounts(ReconciliationReport report) {
+        return report.corridors().stream().collect(Collectors.toMap(
+                c -> c.currencyFrom() + "->" + c.currencyTo(), c -> c.transfers()));
+    }
+}
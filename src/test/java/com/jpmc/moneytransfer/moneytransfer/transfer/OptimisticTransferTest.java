@@ -0,0 +1,142 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.FeeService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferExecutionMode;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferRuntimeException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  OPTIMISTIC mode: a transfer whose sender is changed by another transaction between its read and its commit
+ *  fails the version check, rolls back and runs again, up to transfer.optimistic.max-attempts.
+ *  The other transaction is made from inside the fee calculation, after the accounts were read.
+ * */
+@SpringBootTest(properties = {
+        "transfer.execution-mode=OPTIMISTIC",
+        "transfer.optimistic.max-attempts=3",
+        "transfer.optimistic.base-backoff-ms=1",
+        "transfer.optimistic.max-backoff-ms=2",
+        "transfer.async.enabled=false"})
+@ActiveProfiles("test")
+class OptimisticTransferTest {
+
+    @Autowired
+    private TransferService transferService;
+
+    @MockitoSpyBean
+    private FeeService feeService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Account sender;
+    private Account receiver;
+
+    @BeforeEach
+    void setup() {
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        sender = new Account("OptimisticAlice", usd, new BigDecimal("100.00"));
+        receiver = new Account("OptimisticBob", usd, new BigDecimal("100.00"));
+        accountRepository.saveAll(List.of(sender, receiver));
+        Assertions.assertEquals(TransferExecutionMode.OPTIMISTIC, transferService.getExecutionMode());
+    }
+
+    @Test
+    void versionConflictIsRetried() throws Exception {
+        long retries = transferService.getOptimisticStats().get("retries");
+        long aborts = transferService.getOptimisticStats().get("aborts");
+        AtomicInteger attempts = interfereWithSender(1);
+
+        Long id = transferService.transferMoney(request("10.00"));
+
+        Assertions.assertEquals(2, attempts.get());
+        Assertions.assertEquals(retries + 1, transferService.getOptimisticStats().get("retries"));
+        Assertions.assertEquals(aborts, transferService.getOptimisticStats().get("aborts"));
+        // the first attempt rolled back completely, only the retry's debit and credit are there
+        Assertions.assertEquals(TransferState.COMPLETED, transferRepository.findById(id).orElseThrow().getState());
+        Money fee = transferRepository.findById(id).orElseThrow().getFeeApplied();
+        Assertions.assertEquals(Money.of(new BigDecimal("90.00")).minus(fee), balanceOf(sender));
+        Assertions.assertEquals(Money.of(new BigDecimal("110.00")), balanceOf(receiver));
+    }
+
+    @Test
+    void conflictOnEveryAttemptEndsInConcurrentUpdate() {
+        long retries = transferService.getOptimisticStats().get("retries");
+        long aborts = transferService.getOptimisticStats().get("aborts");
+        long transfers = transferRepository.count();
+        AtomicInteger attempts = interfereWithSender(Integer.MAX_VALUE);
+
+        TransferRuntimeException e = Assertions.assertThrows(TransferRuntimeException.class,
+                () -> transferService.transferMoney(request("10.00")));
+
+        Assertions.assertEquals(TransferRuntimeException.Reason.CONCURRENT_UPDATE, e.getReason());
+        Assertions.assertEquals(3, attempts.get());
+        Assertions.assertEquals(retries + 2, transferService.getOptimisticStats().get("retries"));
+        Assertions.assertEquals(aborts + 1, transferService.getOptimisticStats().get("aborts"));
+        // nothing of any attempt was committed, not even a FAILED record
+        Assertions.assertEquals(transfers, transferRepository.count());
+        Assertions.assertEquals(Money.of(new BigDecimal("100.00")), balanceOf(sender));
+        Assertions.assertEquals(Money.of(new BigDecimal("100.00")), balanceOf(receiver));
+    }
+
+    /**
+     *  The first attempts of a transfer, up to conflicts of them, see the sender's version bumped by a committed
+     *  transaction right after they read it. Returns the number of attempts made.
+     * */
+    private AtomicInteger interfereWithSender(int conflicts) {
+        TransactionTemplate other = new TransactionTemplate(transactionManager);
+        other.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        AtomicInteger attempts = new AtomicInteger();
+        Mockito.doAnswer(invocation -> {
+            if (attempts.incrementAndGet() <= conflicts) {
+                other.executeWithoutResult(status -> jdbcTemplate.update(
+                        "UPDATE account SET version = version + 1 WHERE account_id = ?", sender.getId()));
+            }
+            return invocation.callRealMethod();
+        }).when(feeService).calculateFee(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        return attempts;
+    }
+
+    private Money balanceOf(Account account) {
+        return accountRepository.findUnlockedById(account.getId()).orElseThrow().getBalance();
+    }
+
+    private TransferRequestDTO request(String amount) {
+        return new TransferRequestDTO(sender.getId(), receiver.getId(), new BigDecimal(amount), "USD");
+    }
+}
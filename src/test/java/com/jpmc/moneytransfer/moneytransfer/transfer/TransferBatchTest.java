@@ -0,0 +1,187 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.Transfer;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferBatchItemResult;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferRuntimeException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  transferMoneyBatch with a small chunk size, so that every batch here spans several chunk transactions.
+ * */
+@SpringBootTest(properties = {
+        "transfer.batch.chunk-size=4",
+        "transfer.async.enabled=false"})
+@ActiveProfiles("test")
+class TransferBatchTest {
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    private final List<Account> accounts = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        accounts.clear();
+        for (int i = 0; i < 6; i++) {
+            accounts.add(new Account("BatchAccount" + i, usd, new BigDecimal("1000.00")));
+        }
+        accountRepository.saveAll(accounts);
+    }
+
+    @Test
+    void badItemOnlyFailsItself() {
+        Long a = id(0);
+        Long b = id(1);
+        Long missing = Long.MAX_VALUE;
+        List<TransferRequestDTO> requests = List.of(
+                request(a, b, "10.00"),
+                new TransferRequestDTO(a, b, new BigDecimal("10.00"), "XXX"),
+                request(a, missing, "10.00"),
+                request(b, a, "20.00"),
+                request(a, b, "5000.00"),
+                request(a, b, "-1.00"),
+                request(a, a, "1.00"),
+                request(b, a, "30.00"));
+
+        List<TransferBatchItemResult> results = transferService.transferMoneyBatch(requests);
+
+        Assertions.assertEquals(requests.size(), results.size());
+        assertCompleted(results.get(0));
+        assertFailed(results.get(1), TransferException.Reason.INVALID_CURRENCY.name());
+        assertFailed(results.get(2), TransferException.Reason.ACCOUNT_NOT_FOUND.name());
+        assertCompleted(results.get(3));
+        assertFailed(results.get(4), TransferException.Reason.INSUFFICIENT_FUNDS.name());
+        assertFailed(results.get(5), TransferRuntimeException.Reason.INVALID_ARGUMENT.name());
+        assertFailed(results.get(6), TransferException.Reason.SELF_TRANSFER.name());
+        assertCompleted(results.get(7));
+
+        // failed items that got as far as a transfer record are stored as FAILED and moved no money
+        Transfer insufficient = transferRepository.findById(results.get(4).getTransferId()).orElseThrow();
+        Assertions.assertEquals(TransferState.FAILED, insufficient.getState());
+        Assertions.assertNull(results.get(1).getTransferId());
+        Assertions.assertNull(results.get(5).getTransferId());
+
+        Money feeA = feeOf(results.get(0));
+        Money feeB = feeOf(results.get(3)).plus(feeOf(results.get(7)));
+        Assertions.assertEquals(Money.of(new BigDecimal("1040.00")).minus(feeA), balanceOf(a));
+        Assertions.assertEquals(Money.of(new BigDecimal("960.00")).minus(feeB), balanceOf(b));
+    }
+
+    @Test
+    void resultsComeBackInRequestOrderAcrossChunks() {
+        List<TransferRequestDTO> requests = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            requests.add(request(id(i % 3), id(3 + i % 3), (i + 1) + ".00"));
+        }
+
+        List<TransferBatchItemResult> results = transferService.transferMoneyBatch(requests);
+
+        Assertions.assertEquals(requests.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            TransferBatchItemResult result = results.get(i);
+            assertCompleted(result);
+            Assertions.assertEquals(i, result.getIndex());
+            Transfer transfer = transferRepository.findById(result.getTransferId()).orElseThrow();
+            Assertions.assertEquals(requests.get(i).getSenderAccountId(), transfer.getFromAccountIdRaw());
+            Assertions.assertEquals(requests.get(i).getReceiverAccountId(), transfer.getToAccountIdRaw());
+            Assertions.assertEquals(Money.of(requests.get(i).getAmount()), transfer.getAmount());
+        }
+    }
+
+    @Test
+    void overlappingBatchesInBothDirectionsDoNotDeadlock() throws Exception {
+        Money total = totalBalance();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<TransferBatchItemResult>>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Random random = new Random(t);
+            List<TransferRequestDTO> requests = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                int from = random.nextInt(accounts.size());
+                int to = (from + 1 + random.nextInt(accounts.size() - 1)) % accounts.size();
+                requests.add(request(id(from), id(to), (1 + random.nextInt(20)) + ".00"));
+            }
+            futures.add(executor.submit(() -> transferService.transferMoneyBatch(requests)));
+        }
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS), "batches did not finish");
+
+        Money fees = Money.ZERO;
+        for (Future<List<TransferBatchItemResult>> future : futures) {
+            for (TransferBatchItemResult result : future.get()) {
+                // a lock timeout would fail the whole chunk as UNKNOWN_ERROR
+                assertCompleted(result);
+                fees = fees.plus(feeOf(result));
+            }
+        }
+        Assertions.assertEquals(total, totalBalance().plus(fees));
+    }
+
+    private static void assertCompleted(TransferBatchItemResult result) {
+        Assertions.assertEquals(TransferState.COMPLETED, result.getState(), result.getMessage());
+        Assertions.assertNotNull(result.getTransferId());
+    }
+
+    private static void assertFailed(TransferBatchItemResult result, String reason) {
+        Assertions.assertEquals(TransferState.FAILED, result.getState());
+        Assertions.assertEquals(reason, result.getFailureReason(), result.getMessage());
+    }
+
+    private Money feeOf(TransferBatchItemResult result) {
+        return transferRepository.findById(result.getTransferId()).orElseThrow().getFeeApplied();
+    }
+
+    private Money balanceOf(Long accountId) {
+        return accountRepository.findUnlockedById(accountId).orElseThrow().getBalance();
+    }
+
+    private Money totalBalance() {
+        Money total = Money.ZERO;
+        for (Account account : accounts) {
+            total = total.plus(balanceOf(account.getId()));
+        }
+        return total;
+    }
+
+    private Long id(int account) {
+        return accounts.get(account).getId();
+    }
+
+    private static TransferRequestDTO request(Long from, Long to, String amount) {
+        return new TransferRequestDTO(from, to, new BigDecimal(amount), "USD");
+    }
+}
@@ -0,0 +1,170 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.FeeService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferConcurrencyLimiter;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferRuntimeException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferThreads;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ *  TransferConcurrencyLimiter with 2 permits: no more than 2 transfers run at once, a third one waits for a permit
+ *  and gives up with OVERLOADED after transfer.limiter.max-wait-ms. The transfers are held inside the fee calculation.
+ *  Callers run on TransferThreads threads, virtual ones only on Java 21+.
+ * */
+@SpringBootTest(properties = {
+        "transfer.limiter.permits=2",
+        "transfer.limiter.max-wait-ms=300",
+        "spring.threads.virtual.enabled=true",
+        "transfer.async.enabled=false"})
+@ActiveProfiles("test")
+class TransferConcurrencyLimiterTest {
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private TransferConcurrencyLimiter limiter;
+
+    @Autowired
+    private TransferThreads transferThreads;
+
+    @MockitoSpyBean
+    private FeeService feeService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private CountDownLatch gate;
+    private ExecutorService callers;
+    // a pair per transfer, the fee is calculated under the account row locks
+    private final List<Account> senders = new ArrayList<>();
+    private final List<Account> receivers = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        senders.clear();
+        receivers.clear();
+        for (int i = 0; i < 6; i++) {
+            senders.add(accountRepository.save(new Account("LimiterSender" + i, usd, new BigDecimal("1000.00"))));
+            receivers.add(accountRepository.save(new Account("LimiterReceiver" + i, usd, new BigDecimal("1000.00"))));
+        }
+        gate = new CountDownLatch(1);
+        callers = Executors.newCachedThreadPool(transferThreads.factory("limiter-test"));
+        Mockito.doAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Assertions.assertTrue(gate.await(10, TimeUnit.SECONDS));
+                return invocation.callRealMethod();
+            } finally {
+                running.decrementAndGet();
+            }
+        }).when(feeService).calculateFee(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @AfterEach
+    void teardown() {
+        gate.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void callersBeyondThePermitsWaitForOne() throws Exception {
+        Assertions.assertEquals(Runtime.version().feature() >= 21, transferThreads.isVirtual());
+        long acquired = stat("acquired");
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            TransferRequestDTO request = request(i);
+            results.add(callers.submit(() -> transferService.transferMoney(request)));
+        }
+
+        // two hold the permits inside the transfer, the rest are parked in the limiter, not in Hikari
+        await(() -> running.get() == 2 && stat("waiting") == 4);
+        Assertions.assertEquals(0, stat("available"));
+
+        gate.countDown();
+        for (Future<Long> result : results) {
+            Assertions.assertNotNull(result.get(20, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(2, maxRunning.get());
+        Assertions.assertEquals(acquired + 6, stat("acquired"));
+        Assertions.assertEquals(2, stat("available"));
+    }
+
+    @Test
+    void callerThatGetsNoPermitInTimeIsRejected() throws Exception {
+        long rejected = stat("rejected");
+        long transfers = transferRepository.count();
+        List<Future<Long>> holders = List.of(
+                callers.submit(() -> transferService.transferMoney(request(0))),
+                callers.submit(() -> transferService.transferMoney(request(1))));
+        await(() -> running.get() == 2);
+
+        long start = System.nanoTime();
+        TransferRuntimeException e = Assertions.assertThrows(TransferRuntimeException.class,
+                () -> transferService.transferMoney(request(2)));
+        Assertions.assertEquals(TransferRuntimeException.Reason.OVERLOADED, e.getReason());
+        Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(300), "gave up before max-wait-ms");
+        Assertions.assertEquals(rejected + 1, stat("rejected"));
+
+        gate.countDown();
+        for (Future<Long> holder : holders) {
+            holder.get(20, TimeUnit.SECONDS);
+        }
+        // the rejected one never got a connection, no transfer record and no balance change
+        Assertions.assertEquals(transfers + 2, transferRepository.count());
+        Assertions.assertEquals(Money.of(new BigDecimal("1000.00")),
+                accountRepository.findUnlockedById(senders.get(2).getId()).orElseThrow().getBalance());
+    }
+
+    private long stat(String name) {
+        return ((Number) limiter.getStats().get(name)).longValue();
+    }
+
+    private TransferRequestDTO request(int pair) {
+        return new TransferRequestDTO(senders.get(pair).getId(), receivers.get(pair).getId(), BigDecimal.TEN, "USD");
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+}
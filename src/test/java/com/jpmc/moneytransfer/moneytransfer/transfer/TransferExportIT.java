@@ -0,0 +1,159 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ *  Exports a statement of millions of transfers through the HTTP endpoint in a small heap (-Xmx96m with -Pexport-it,
+ *  the CSV of 5M rows alone is about 300 MB). The table is an H2 file database with lazy query execution, so like on
+ *  MySQL the rows stay on disk until the cursor reaches them. Rows: -Dexport.rows, 5M by default.
+ * */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:file:./target/export-it/db;MODE=MySQL;LAZY_QUERY_EXECUTION=1;CACHE_SIZE=8192",
+        "spring.jpa.hibernate.ddl-auto=create",
+        "transfer.async.enabled=false"})
+@ActiveProfiles("test")
+class TransferExportIT {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferExportIT.class);
+
+    private static final long ROWS = Long.getLong("export.rows", 5_000_000L);
+    private static final long FIRST_ID = 1_000_000_000L;
+    private static final long PERIOD_FIRST_ID = 2_000_000_000L;
+    private static final int SEED_CHUNK = 20_000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    @Test
+    void exportsAllTransfersInConstantMemory() throws Exception {
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        Account account = new Account("ExportAlice", usd, new BigDecimal("1000.00"));
+        Account counterparty = new Account("ExportBob", usd, new BigDecimal("1000.00"));
+        accountRepository.saveAll(List.of(account, counterparty));
+        seedTransfers(account.getId(), counterparty.getId());
+
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response = get("/test/account/" + account.getId() + "/statement?format=csv");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertTrue(response.headers().firstValue("Content-Length").isEmpty(), "expected a chunked response");
+
+        long rows = 0;
+        long bytes = 0;
+        long previousId = Long.MAX_VALUE;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            Assertions.assertTrue(reader.readLine().startsWith("transferId,transferTime,"));
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                long id = Long.parseLong(line.substring(0, line.indexOf(',')));
+                // ids grow with transfer_time, newest first means strictly falling ids
+                Assertions.assertTrue(id < previousId, "out of order at row " + rows);
+                previousId = id;
+                rows++;
+                bytes += line.length() + 1;
+            }
+        }
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        log.info("Exported {} rows, {} MB in {} ms with a max heap of {} MB", rows, bytes >> 20,
+                (System.nanoTime() - start) / 1_000_000, maxHeap >> 20);
+        Assertions.assertEquals(ROWS, rows);
+        Assertions.assertEquals(FIRST_ID, previousId);
+    }
+
+    @Test
+    void exportsOnePeriodAsNdjson() throws Exception {
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        Account account = new Account("PeriodAlice", usd, new BigDecimal("1000.00"));
+        Account counterparty = new Account("PeriodBob", usd, new BigDecimal("1000.00"));
+        accountRepository.saveAll(List.of(account, counterparty));
+        TransactionTemplate transaction = new TransactionTemplate(txManager);
+        transaction.executeWithoutResult(status -> {
+            insertTransfer(1, account.getId(), counterparty.getId(), "2026-08-31 23:59:59");
+            insertTransfer(2, counterparty.getId(), account.getId(), "2026-09-01 00:00:00");
+            insertTransfer(3, account.getId(), account.getId(), "2026-09-15 12:00:00");
+            insertTransfer(4, account.getId(), counterparty.getId(), "2026-09-30 23:59:59");
+            insertTransfer(5, counterparty.getId(), account.getId(), "2026-10-01 00:00:00");
+        });
+
+        HttpResponse<InputStream> response = get("/test/account/" + account.getId() +
+                "/statement?format=ndjson&from=2026-09-01&to=2026-09-30");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("application/x-ndjson", response.headers().firstValue("Content-Type").orElseThrow());
+        List<String> lines = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8)).lines().toList();
+        // the transfer to itself once, newest first
+        Assertions.assertEquals(3, lines.size());
+        Assertions.assertTrue(lines.get(0).startsWith("{\"transferId\":" + (PERIOD_FIRST_ID + 4) + ","), lines.get(0));
+        Assertions.assertTrue(lines.get(1).startsWith("{\"transferId\":" + (PERIOD_FIRST_ID + 3) + ","), lines.get(1));
+        Assertions.assertTrue(lines.get(2).startsWith("{\"transferId\":" + (PERIOD_FIRST_ID + 2) + ","), lines.get(2));
+
+        Assertions.assertEquals(400, get("/test/account/" + account.getId() + "/statement?format=xml").statusCode());
+        Assertions.assertEquals(400, get("/test/account/" + account.getId() +
+                "/statement?from=2026-10-01&to=2026-09-01").statusCode());
+    }
+
+    /**
+     *  Transfers generated inside the database in committed chunks, alternately sent and received, one second apart.
+     * */
+    private void seedTransfers(Long account, Long counterparty) {
+        TransactionTemplate transaction = new TransactionTemplate(txManager);
+        long seedStart = System.nanoTime();
+        for (long chunk = 0; chunk < ROWS; chunk += SEED_CHUNK) {
+            long first = chunk;
+            long last = Math.min(chunk + SEED_CHUNK, ROWS) - 1;
+            transaction.executeWithoutResult(status -> jdbcTemplate.update(
+                    "INSERT INTO transfer (transfer_id, from_account_id_raw, to_account_id_raw, amount, currency, " +
+                            "state, transfer_time) " +
+                            "SELECT ? + X, CASE WHEN MOD(X, 2) = 0 THEN ? ELSE ? END, " +
+                            "CASE WHEN MOD(X, 2) = 0 THEN ? ELSE ? END, 1.0000, 'USD', 'COMPLETED', " +
+                            "DATEADD(SECOND, X, TIMESTAMP '2020-01-01 00:00:00') FROM SYSTEM_RANGE(?, ?)",
+                    FIRST_ID, account, counterparty, counterparty, account, first, last));
+        }
+        log.info("Seeded {} transfers in {} ms", ROWS, (System.nanoTime() - seedStart) / 1_000_000);
+    }
+
+    private void insertTransfer(long n, Long from, Long to, String time) {
+        jdbcTemplate.update("INSERT INTO transfer (transfer_id, from_account_id_raw, to_account_id_raw, amount, " +
+                        "currency, state, transfer_time) VALUES (?, ?, ?, 1.0000, 'USD', 'COMPLETED', TIMESTAMP '" + time + "')",
+                PERIOD_FIRST_ID + n, from, to);
+    }
+
+    private HttpResponse<InputStream> get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+}
@@ -0,0 +1,155 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferHistoryItem;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferHistoryPage;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferHistoryService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferRuntimeException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ *  Keyset paged transfer history: pages of sent and received transfers merged newest first, transfers with the same
+ *  transfer_time ordered by id across page boundaries, and cursors at or past the end.
+ * */
+@SpringBootTest(properties = "transfer.async.enabled=false")
+@ActiveProfiles("test")
+class TransferHistoryTest {
+
+    @Autowired
+    private TransferHistoryService historyService;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Account alice;
+    private Account bob;
+    private Account carol;
+
+    @BeforeEach
+    void setup() {
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        alice = new Account("HistoryAlice", usd, new BigDecimal("1000.00"));
+        bob = new Account("HistoryBob", usd, new BigDecimal("1000.00"));
+        carol = new Account("HistoryCarol", usd, new BigDecimal("1000.00"));
+        accountRepository.saveAll(List.of(alice, bob, carol));
+    }
+
+    @Test
+    void pagesWalkTheHistoryNewestFirstWithTiesById() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        ids.add(transferService.transferMoney(request(alice, bob)));
+        ids.add(transferService.transferMoney(request(bob, alice)));
+        ids.add(transferService.transferMoney(request(carol, alice)));
+        ids.add(transferService.transferMoney(request(alice, carol)));
+        ids.add(transferService.transferMoney(request(bob, alice)));
+        ids.add(transferService.transferMoney(request(alice, bob)));
+        // failed, in both the sent and the received list
+        Assertions.assertThrows(TransferException.class, () -> transferService.transferMoney(request(alice, alice)));
+        ids.add(jdbcTemplate.queryForObject("SELECT MAX(transfer_id) FROM transfer WHERE from_account_id_raw = ? " +
+                "AND to_account_id_raw = ?", Long.class, alice.getId(), alice.getId()));
+        // not Alice's
+        transferService.transferMoney(request(bob, carol));
+
+        // three transfers at one instant, sent and received mixed, then two more at an older one
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        setTime(now, ids.subList(0, 3));
+        setTime(now.minusSeconds(1), ids.subList(3, 5));
+        setTime(now.minusSeconds(2), ids.subList(5, 7));
+        List<Long> expected = List.of(ids.get(2), ids.get(1), ids.get(0), ids.get(4), ids.get(3), ids.get(6), ids.get(5));
+
+        for (int pageSize = 1; pageSize <= 8; pageSize++) {
+            List<Long> walked = new ArrayList<>();
+            String cursor = null;
+            int pages = 0;
+            do {
+                TransferHistoryPage page = historyService.getHistory(alice.getId(), cursor, pageSize);
+                Assertions.assertTrue(page.transfers().size() <= pageSize);
+                page.transfers().forEach(item -> walked.add(item.transferId()));
+                cursor = page.nextCursor();
+                pages++;
+            } while (cursor != null);
+            Assertions.assertEquals(expected, walked, "page size " + pageSize);
+            // a full last page has no cursor either, there is no empty page after it
+            Assertions.assertEquals((expected.size() + pageSize - 1) / pageSize, pages, "page size " + pageSize);
+        }
+
+        TransferHistoryItem selfTransfer = historyService.getHistory(alice.getId(), null, 7).transfers().get(5);
+        Assertions.assertEquals(TransferState.FAILED, selfTransfer.state());
+        Assertions.assertEquals(TransferException.Reason.SELF_TRANSFER.name(), selfTransfer.failureReason());
+    }
+
+    @Test
+    void cursorsAtOrPastTheEndGiveAnEmptyPage() throws Exception {
+        Long id = transferService.transferMoney(request(alice, bob));
+
+        Assertions.assertEquals(List.of(id), historyService.getHistory(bob.getId(), null, 5).transfers().stream()
+                .map(TransferHistoryItem::transferId).toList());
+        // a cursor at the only transfer, and one older than anything
+        LocalDateTime time = historyService.getHistory(bob.getId(), null, 5).transfers().get(0).transferTime();
+        for (String cursor : List.of(cursor(time, id), cursor(LocalDateTime.of(2000, 1, 1, 0, 0), 1))) {
+            TransferHistoryPage page = historyService.getHistory(bob.getId(), cursor, 5);
+            Assertions.assertEquals(List.of(), page.transfers());
+            Assertions.assertNull(page.nextCursor());
+        }
+        Assertions.assertEquals(List.of(), historyService.getHistory(carol.getId(), null, 5).transfers());
+
+        for (String bad : List.of("not base64!", cursor(time, id).substring(2),
+                Base64.getUrlEncoder().encodeToString("2024-01-01T00:00".getBytes(StandardCharsets.UTF_8)))) {
+            TransferRuntimeException e = Assertions.assertThrows(TransferRuntimeException.class,
+                    () -> historyService.getHistory(bob.getId(), bad, 5));
+            Assertions.assertEquals(TransferRuntimeException.Reason.INVALID_ARGUMENT, e.getReason());
+        }
+        Assertions.assertThrows(TransferRuntimeException.class, () -> historyService.getHistory(bob.getId(), null, 0));
+        Assertions.assertThrows(TransferRuntimeException.class, () -> historyService.getHistory(bob.getId(), null, 501));
+    }
+
+    private void setTime(LocalDateTime time, List<Long> ids) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (Long id : ids) {
+                jdbcTemplate.update("UPDATE transfer SET transfer_time = ? WHERE transfer_id = ?", time, id);
+            }
+        });
+    }
+
+    private static String cursor(LocalDateTime time, long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((time + "," + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static TransferRequestDTO request(Account from, Account to) {
+        return new TransferRequestDTO(from.getId(), to.getId(), BigDecimal.TEN, "USD");
+    }
+}
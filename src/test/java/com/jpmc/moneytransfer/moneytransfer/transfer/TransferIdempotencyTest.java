@@ -0,0 +1,194 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferBatchItemResult;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferIdempotencyCache;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferRuntimeException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Idempotency keys: the in-memory cache in front of transferMoney/submitTransfer and the unique index behind it.
+ * */
+@SpringBootTest(properties = "transfer.async.enabled=false")
+@ActiveProfiles("test")
+class TransferIdempotencyTest {
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private TransferIdempotencyCache idempotencyCache;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    private Account sender;
+    private Account receiver;
+
+    @BeforeEach
+    void setup() {
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        sender = new Account("IdempotentAlice", usd, new BigDecimal("100.00"));
+        receiver = new Account("IdempotentBob", usd, new BigDecimal("100.00"));
+        accountRepository.saveAll(List.of(sender, receiver));
+    }
+
+    @Test
+    void concurrentDuplicatesWaitForTheFirstAndGetItsId() throws Exception {
+        TransferRequestDTO dto = request("10.00", key());
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        long waitedBefore = (long) idempotencyCache.getStats().get("waited");
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        Future<Long> first = executor.submit(() -> idempotencyCache.execute(dto, () -> {
+            executions.incrementAndGet();
+            running.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return transferService.executeTransfer(dto);
+        }, id -> Assertions.fail("not queued")));
+        Assertions.assertTrue(running.await(10, TimeUnit.SECONDS));
+
+        List<Future<Long>> duplicates = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            duplicates.add(executor.submit(() -> transferService.transferMoney(request("10.00", dto.getIdempotencyKey()))));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((long) idempotencyCache.getStats().get("waited") < waitedBefore + 4 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        Long id = first.get(10, TimeUnit.SECONDS);
+        for (Future<Long> duplicate : duplicates) {
+            Assertions.assertEquals(id, duplicate.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        Assertions.assertEquals(1, executions.get());
+        Assertions.assertEquals(Money.of(new BigDecimal("90.00")), balanceOf(sender).plus(feeOf(id)));
+    }
+
+    @Test
+    void businessFailureIsReplayed() {
+        TransferRequestDTO dto = request("500.00", key());
+        TransferException first = Assertions.assertThrows(TransferException.class, () -> transferService.transferMoney(dto));
+        long executed = (long) idempotencyCache.getStats().get("executed");
+
+        TransferException again = Assertions.assertThrows(TransferException.class,
+                () -> transferService.transferMoney(request("500.00", dto.getIdempotencyKey())));
+        Assertions.assertEquals(first.getReason(), again.getReason());
+        Assertions.assertEquals(executed, (long) idempotencyCache.getStats().get("executed"));
+    }
+
+    @Test
+    void rolledBackOutcomeIsForgotten() throws Exception {
+        TransferRequestDTO dto = request("10.00", key());
+        Assertions.assertThrows(TransferRuntimeException.class, () -> idempotencyCache.execute(dto, () -> {
+            throw new TransferRuntimeException(TransferRuntimeException.Reason.OVERLOADED, "no connection");
+        }, id -> Assertions.fail("not queued")));
+
+        Long id = transferService.transferMoney(dto);
+        Assertions.assertEquals(TransferState.COMPLETED, transferRepository.findById(id).orElseThrow().getState());
+    }
+
+    @Test
+    void keyOfAnotherTransferIsRejected() throws Exception {
+        String key = key();
+        transferService.transferMoney(request("10.00", key));
+        // same amount written differently is the same transfer
+        transferService.transferMoney(request("10.0", key));
+
+        TransferRuntimeException e = Assertions.assertThrows(TransferRuntimeException.class,
+                () -> transferService.transferMoney(request("11.00", key)));
+        Assertions.assertEquals(TransferRuntimeException.Reason.INVALID_ARGUMENT, e.getReason());
+    }
+
+    @Test
+    void cacheMissFallsBackToTheUniqueIndex() throws Exception {
+        // the batch API doesn't go through the cache, like a key used on another node
+        String key = key();
+        TransferBatchItemResult stored = transferService.transferMoneyBatch(List.of(request("10.00", key))).get(0);
+        Assertions.assertEquals(TransferState.COMPLETED, stored.getState());
+
+        Assertions.assertEquals(stored.getTransferId(), transferService.transferMoney(request("10.00", key)));
+        Assertions.assertEquals(1, transferRepository.findAll().stream()
+                .filter(transfer -> key.equals(transfer.getIdempotencyKey())).count());
+
+        TransferRuntimeException e = Assertions.assertThrows(TransferRuntimeException.class,
+                () -> transferService.transferMoney(request("12.00", key)));
+        Assertions.assertEquals(TransferRuntimeException.Reason.INVALID_ARGUMENT, e.getReason());
+    }
+
+    @Test
+    void synchronousRequestWithTheKeyOfAQueuedTransferGetsItsState() throws Exception {
+        String key = key();
+        Long id = transferService.submitTransfer(request("10.00", key));
+        Assertions.assertEquals(id, transferService.submitTransfer(request("10.00", key)));
+
+        TransferRuntimeException processing = Assertions.assertThrows(TransferRuntimeException.class,
+                () -> transferService.transferMoney(request("10.00", key)));
+        Assertions.assertEquals(TransferRuntimeException.Reason.CONCURRENT_UPDATE, processing.getReason());
+
+        Assertions.assertTrue(transferService.executeQueuedTransfer(id));
+        Assertions.assertEquals(id, transferService.transferMoney(request("10.00", key)));
+
+        String failedKey = key();
+        Long failedId = transferService.submitTransfer(request("10.00", failedKey));
+        transferService.failQueuedTransfer(failedId, TransferException.Reason.INSUFFICIENT_FUNDS.name(), "no funds");
+        TransferException failed = Assertions.assertThrows(TransferException.class,
+                () -> transferService.transferMoney(request("10.00", failedKey)));
+        Assertions.assertEquals(TransferException.Reason.INSUFFICIENT_FUNDS, failed.getReason());
+    }
+
+    private Money balanceOf(Account account) {
+        return accountRepository.findUnlockedById(account.getId()).orElseThrow().getBalance();
+    }
+
+    private Money feeOf(Long transferId) {
+        return transferRepository.findById(transferId).orElseThrow().getFeeApplied();
+    }
+
+    private TransferRequestDTO request(String amount, String key) {
+        return new TransferRequestDTO(sender.getId(), receiver.getId(), new BigDecimal(amount), "USD", key);
+    }
+
+    private static String key() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,159 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferLaneDispatcher;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ *  Transfer lanes: a lane runs its transfers in dispatch order and a transfer whose accounts hash to two lanes holds
+ *  both, so no two transfers of an account ever overlap. TransferService.transferMoney is stubbed, the account ids
+ *  only pick the lanes (id % transfer.lanes.count).
+ * */
+@SpringBootTest(properties = {
+        "transfer.lanes.enabled=true",
+        "transfer.lanes.count=4",
+        "transfer.async.enabled=false"})
+@ActiveProfiles("test")
+class TransferLaneDispatcherTest {
+
+    @Autowired
+    private TransferLaneDispatcher dispatcher;
+
+    @MockitoSpyBean
+    private TransferService transferService;
+
+    private final AtomicLong ids = new AtomicLong();
+    private final List<TransferRequestDTO> executed = new CopyOnWriteArrayList<>();
+    private final Map<Long, AtomicInteger> running = new ConcurrentHashMap<>();
+    private final List<String> overlaps = new CopyOnWriteArrayList<>();
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setup() throws Exception {
+        callers = Executors.newFixedThreadPool(16);
+        Mockito.doAnswer(invocation -> {
+            TransferRequestDTO dto = invocation.getArgument(0);
+            enter(dto.getSenderAccountId(), dto);
+            enter(dto.getReceiverAccountId(), dto);
+            try {
+                executed.add(dto);
+                Assertions.assertTrue(gate.await(10, TimeUnit.SECONDS));
+                Thread.sleep(1);
+                return ids.incrementAndGet();
+            } finally {
+                running.get(dto.getSenderAccountId()).decrementAndGet();
+                running.get(dto.getReceiverAccountId()).decrementAndGet();
+            }
+        }).when(transferService).transferMoney(Mockito.any());
+    }
+
+    @AfterEach
+    void teardown() {
+        gate.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void transfersOfALaneRunInDispatchOrder() throws Exception {
+        // 1 -> 5 keeps lane 1 busy until the gate opens, the rest queue up behind it one by one
+        gate = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        results.add(callers.submit(() -> dispatcher.transferMoney(request(1, 5))));
+        await(() -> executed.size() == 1);
+        List<TransferRequestDTO> dispatched = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            // alternating directions, all on lane 1
+            TransferRequestDTO dto = i % 2 == 0 ? request(5, 9, i) : request(9, 1, i);
+            dispatched.add(dto);
+            int depth = i + 1;
+            results.add(callers.submit(() -> dispatcher.transferMoney(dto)));
+            await(() -> queueDepth(1) == depth);
+        }
+
+        gate.countDown();
+        for (Future<Long> result : results) {
+            result.get(10, TimeUnit.SECONDS);
+        }
+        Assertions.assertEquals(dispatched, executed.subList(1, executed.size()));
+        Assertions.assertEquals(List.of(), overlaps);
+    }
+
+    @Test
+    void crossLaneTransfersHoldBothLanesAndComplete() throws Exception {
+        // ids 1..12 spread over the 4 lanes, most pairs span two lanes in either order
+        List<Future<Long>> results = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 400; i++) {
+            long from = 1 + random.nextInt(12);
+            long to = 1 + random.nextInt(12);
+            if (from == to) {
+                to = from % 12 + 1;
+            }
+            TransferRequestDTO dto = request(from, to);
+            results.add(callers.submit(() -> dispatcher.transferMoney(dto)));
+        }
+
+        for (Future<Long> result : results) {
+            Assertions.assertNotNull(result.get(30, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(400, executed.size());
+        Assertions.assertEquals(List.of(), overlaps);
+        // the barriers were released, every lane is idle again
+        for (Map<String, Object> lane : dispatcher.getLaneStats()) {
+            Assertions.assertEquals(0, lane.get("queueDepth"), lane::toString);
+        }
+    }
+
+    private void enter(long accountId, TransferRequestDTO dto) {
+        if (running.computeIfAbsent(accountId, id -> new AtomicInteger()).incrementAndGet() > 1) {
+            overlaps.add(accountId + " in " + dto.getSenderAccountId() + " -> " + dto.getReceiverAccountId());
+        }
+    }
+
+    private int queueDepth(int lane) {
+        return (int) dispatcher.getLaneStats().get(lane).get("queueDepth");
+    }
+
+    private static TransferRequestDTO request(long from, long to) {
+        return request(from, to, 1);
+    }
+
+    private static TransferRequestDTO request(long from, long to, int amount) {
+        return new TransferRequestDTO(from, to, BigDecimal.valueOf(amount), "USD");
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferMetrics;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  TransferMetrics: the stage timers a transfer records and the outcome/reason tags of the stage and transfer timers.
+ *  Tests get the SimpleMeterRegistry (exports are off), counts are compared before and after each transfer.
+ * */
+@SpringBootTest(properties = "transfer.async.enabled=false")
+@ActiveProfiles("test")
+class TransferMetricsTest {
+
+    private static final List<String> STAGES =
+            List.of("record_creation", "lock_acquisition", "fee_calculation", "fx_lookup", "debit_credit", "commit");
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    private Account sender;
+    private Account receiver;
+    private Account yenReceiver;
+
+    @BeforeEach
+    void setup() {
+        Assertions.assertInstanceOf(SimpleMeterRegistry.class, registry);
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        Currency jpy = currencyRepository.findById("JPY").orElseThrow();
+        sender = new Account("MetricsAlice", usd, new BigDecimal("100.00"));
+        receiver = new Account("MetricsBob", usd, new BigDecimal("100.00"));
+        yenReceiver = new Account("MetricsCarol", jpy, new BigDecimal("100.00"));
+        accountRepository.saveAll(List.of(sender, receiver, yenReceiver));
+    }
+
+    @Test
+    void completedTransferRecordsEveryStageAsSuccess() throws Exception {
+        Map<String, Long> before = stageCounts("success", "none");
+        long transfers = count(TransferMetrics.TRANSFER_TIMER, "success", "none");
+
+        transferService.transferMoney(request(sender, yenReceiver, "10.00"));
+
+        Map<String, Long> after = stageCounts("success", "none");
+        for (String stage : STAGES) {
+            Assertions.assertEquals(before.get(stage) + 1, after.get(stage), stage);
+        }
+        Assertions.assertEquals(transfers + 1, count(TransferMetrics.TRANSFER_TIMER, "success", "none"));
+
+        // same currency, no FX lookup
+        transferService.transferMoney(request(sender, receiver, "10.00"));
+        Assertions.assertEquals(after.get("fx_lookup"), stageCounts("success", "none").get("fx_lookup"));
+        Assertions.assertEquals(after.get("debit_credit") + 1, stageCounts("success", "none").get("debit_credit"));
+    }
+
+    @Test
+    void failedTransferIsTaggedWithItsReason() {
+        Map<String, Long> success = stageCounts("success", "none");
+        long insufficient = count(TransferMetrics.TRANSFER_TIMER, "failure", "INSUFFICIENT_FUNDS");
+
+        // fails between the stages: the ones before it succeed, no debit/credit, the FAILED record still commits
+        Assertions.assertThrows(TransferException.class,
+                () -> transferService.transferMoney(request(sender, receiver, "500.00")));
+
+        Map<String, Long> after = stageCounts("success", "none");
+        for (String stage : List.of("record_creation", "lock_acquisition", "fee_calculation", "commit")) {
+            Assertions.assertEquals(success.get(stage) + 1, after.get(stage), stage);
+        }
+        Assertions.assertEquals(success.get("debit_credit"), after.get("debit_credit"));
+        Assertions.assertEquals(insufficient + 1, count(TransferMetrics.TRANSFER_TIMER, "failure", "INSUFFICIENT_FUNDS"));
+
+        // fails inside a stage: that stage's failure timer gets the reason
+        long notFound = stageCount("lock_acquisition", "failure", "ACCOUNT_NOT_FOUND");
+        long notFoundTransfers = count(TransferMetrics.TRANSFER_TIMER, "failure", "ACCOUNT_NOT_FOUND");
+        Assertions.assertThrows(TransferException.class, () -> transferService.transferMoney(
+                new TransferRequestDTO(sender.getId(), Long.MAX_VALUE, BigDecimal.TEN, "USD")));
+        Assertions.assertEquals(notFound + 1, stageCount("lock_acquisition", "failure", "ACCOUNT_NOT_FOUND"));
+        Assertions.assertEquals(notFoundTransfers + 1, count(TransferMetrics.TRANSFER_TIMER, "failure", "ACCOUNT_NOT_FOUND"));
+    }
+
+    private Map<String, Long> stageCounts(String outcome, String reason) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (String stage : STAGES) {
+            counts.put(stage, stageCount(stage, outcome, reason));
+        }
+        return counts;
+    }
+
+    private long stageCount(String stage, String outcome, String reason) {
+        Timer timer = registry.find(TransferMetrics.STAGE_TIMER)
+                .tags("stage", stage, "outcome", outcome, "reason", reason).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private long count(String name, String outcome, String reason) {
+        Timer timer = registry.find(name).tags("outcome", outcome, "reason", reason).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private static TransferRequestDTO request(Account from, Account to, String amount) {
+        return new TransferRequestDTO(from.getId(), to.getId(), new BigDecimal(amount), "USD");
+    }
+}
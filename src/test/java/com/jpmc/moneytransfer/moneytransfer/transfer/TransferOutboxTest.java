@@ -0,0 +1,184 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferOutboxMessage;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferOutboxRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.InMemoryTransferEventSink;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferOutboxPublisher;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ *  Transfers from several threads go through the outbox to the in-memory sink: every COMPLETED/FAILED transfer
+ *  arrives for each of its accounts, and per account in commit order, replaying an account's messages in arrival
+ *  order never takes its balance below zero and ends at its balance in the table.
+ * */
+@SpringBootTest(properties = {
+        "transfer.outbox.enabled=true",
+        "transfer.outbox.sink=in-memory",
+        "transfer.outbox.partitions=4",
+        "transfer.outbox.workers=2",
+        "transfer.outbox.batch-size=16",
+        "transfer.outbox.poll-interval-ms=20",
+        "transfer.outbox.retry-backoff-ms=50",
+        "transfer.async.enabled=false"})
+@ActiveProfiles("test")
+class TransferOutboxTest {
+
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("100.00");
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private TransferOutboxRepository outboxRepository;
+
+    @Autowired
+    private TransferOutboxPublisher outboxPublisher;
+
+    @Autowired
+    private InMemoryTransferEventSink sink;
+
+    @Test
+    void deliversEveryFinalTransferInCommitOrderPerAccount() throws Exception {
+        List<Account> accounts = createAccounts("Outbox", 6);
+        int threads = 4;
+        int transfersPerThread = 40;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<int[]>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                int[] outcome = new int[2];
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < transfersPerThread; i++) {
+                    Account from = accounts.get(random.nextInt(accounts.size()));
+                    Account to = accounts.get(random.nextInt(accounts.size()));
+                    if (from == to) {
+                        continue;
+                    }
+                    // large enough that some senders run dry
+                    BigDecimal amount = BigDecimal.valueOf(random.nextInt(1, 60));
+                    try {
+                        transferService.transferMoney(new TransferRequestDTO(from.getId(), to.getId(), amount, "USD"));
+                        outcome[0]++;
+                    } catch (TransferException e) {
+                        outcome[1]++;
+                    }
+                }
+                return outcome;
+            }));
+        }
+        int completed = 0;
+        int failed = 0;
+        for (Future<int[]> result : results) {
+            int[] outcome = result.get(60, TimeUnit.SECONDS);
+            completed += outcome[0];
+            failed += outcome[1];
+        }
+        executor.shutdown();
+        Assertions.assertTrue(completed > 0 && failed > 0, "completed=" + completed + " failed=" + failed);
+
+        // a completed transfer is delivered for both accounts, a failed one for the sender
+        List<TransferOutboxMessage> messages = awaitMessages(accounts, 2 * completed + failed);
+        Assertions.assertEquals(completed, messages.stream().filter(m -> m.state() == TransferState.COMPLETED)
+                .map(TransferOutboxMessage::transferId).distinct().count());
+        Assertions.assertEquals(failed, messages.stream().filter(m -> m.state() == TransferState.FAILED).count());
+
+        for (Account account : accounts) {
+            List<TransferOutboxMessage> ofAccount = messages.stream()
+                    .filter(m -> m.accountId() == account.getId())
+                    .toList();
+            Money balance = Money.of(OPENING_BALANCE);
+            long previousId = 0;
+            for (TransferOutboxMessage message : ofAccount) {
+                Assertions.assertTrue(message.outboxId() > previousId, "out of order for account " + account.getId());
+                previousId = message.outboxId();
+                if (message.state() != TransferState.COMPLETED) {
+                    continue;
+                }
+                balance = message.fromAccountId() == account.getId()
+                        ? balance.minus(message.debitAmount())
+                        : balance.plus(message.creditAmount());
+                Assertions.assertTrue(balance.signum() >= 0,
+                        "account " + account.getId() + " below zero after transfer " + message.transferId());
+            }
+            Assertions.assertEquals(accountRepository.findUnlockedById(account.getId()).orElseThrow().getBalance(), balance);
+        }
+    }
+
+    @Test
+    void failedDeliveryIsRetriedWithoutLosingOrder() throws Exception {
+        List<Account> accounts = createAccounts("OutboxRetry", 2);
+        long failuresBefore = (long) outboxPublisher.getStats().get("failures");
+        sink.failNextDeliveries(2);
+
+        List<Long> transferIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Account from = accounts.get(i % 2);
+            Account to = accounts.get(1 - i % 2);
+            transferIds.add(transferService.transferMoney(
+                    new TransferRequestDTO(from.getId(), to.getId(), BigDecimal.ONE, "USD")));
+        }
+
+        List<TransferOutboxMessage> messages = awaitMessages(accounts, 20);
+        Assertions.assertTrue((long) outboxPublisher.getStats().get("failures") >= failuresBefore + 2);
+        for (Account account : accounts) {
+            List<Long> delivered = messages.stream()
+                    .filter(m -> m.accountId() == account.getId())
+                    .map(TransferOutboxMessage::transferId)
+                    .toList();
+            Assertions.assertEquals(transferIds, delivered, "account " + account.getId());
+        }
+    }
+
+    private List<Account> createAccounts(String name, int count) {
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            accounts.add(new Account(name + i, usd, OPENING_BALANCE));
+        }
+        return accountRepository.saveAll(accounts);
+    }
+
+    /**
+     *  Waits until the sink has expected messages for the accounts and the outbox is empty, and returns them in
+     *  arrival order.
+     * */
+    private List<TransferOutboxMessage> awaitMessages(List<Account> accounts, int expected) throws InterruptedException {
+        Set<Long> ids = accounts.stream().map(Account::getId).collect(Collectors.toSet());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        List<TransferOutboxMessage> messages;
+        do {
+            Thread.sleep(50);
+            messages = sink.getDelivered().stream().filter(m -> ids.contains(m.accountId())).toList();
+        } while ((messages.size() < expected || outboxRepository.count() > 0) && System.nanoTime() < deadline);
+        Assertions.assertEquals(expected, messages.size(), "messages delivered for " + ids);
+        return messages;
+    }
+}
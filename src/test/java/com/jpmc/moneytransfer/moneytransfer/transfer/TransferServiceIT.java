@@ -96,8 +96,8 @@ class TransferServiceIT {
         // Verify results
         Transfer transfer = transferRepository.findById(transferId).orElseThrow();
         Assertions.assertEquals(TransferState.COMPLETED, transfer.getState());
-        Assertions.assertEquals(commonHelper.round(BigDecimal.valueOf(899.0)), transfer.getFromAccount().getBalance());
-        Assertions.assertEquals(commonHelper.round(BigDecimal.valueOf(600.0)), transfer.getToAccount().getBalance());
+        Assertions.assertEquals(commonHelper.round(BigDecimal.valueOf(899.0)), transfer.getFromAccount().getBalance().toBigDecimal());
+        Assertions.assertEquals(commonHelper.round(BigDecimal.valueOf(600.0)), transfer.getToAccount().getBalance().toBigDecimal());
     }
 
 
@@ -119,8 +119,8 @@ class TransferServiceIT {
 
         Transfer transfer = transferRepository.findById(transferId).orElseThrow();
         Assertions.assertEquals(TransferState.COMPLETED, transfer.getState());
-        Assertions.assertEquals(commonHelper.round(BigDecimal.valueOf(899.0)),transfer.getFromAccount().getBalance());
-        Assertions.assertEquals(commonHelper.round(BigDecimal.valueOf(180.0)), transfer.getToAccount().getBalance());
+        Assertions.assertEquals(commonHelper.round(BigDecimal.valueOf(899.0)),transfer.getFromAccount().getBalance().toBigDecimal());
+        Assertions.assertEquals(commonHelper.round(BigDecimal.valueOf(180.0)), transfer.getToAccount().getBalance().toBigDecimal());
         Assertions.assertEquals(0, transfer.getFxRate().compareTo(new BigDecimal("0.80")));
     }
 
@@ -160,7 +160,7 @@ class TransferServiceIT {
 
         // Get initial balances
         for (Account a : accounts) {
-            total = total.add(a.getBalance());
+            total = total.add(a.getBalance().toBigDecimal());
         }
 
         // Run concurrent transfers
@@ -173,7 +173,7 @@ class TransferServiceIT {
                 .toList();
 
         BigDecimal updatedTotal = updatedAccounts.stream()
-                .map(Account::getBalance)
+                .map(a -> a.getBalance().toBigDecimal())
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
         Assertions.assertEquals(total, updatedTotal.add(fees), "Mismatch: balances + fees should equal original total");
@@ -243,7 +243,7 @@ class TransferServiceIT {
 
                     Transfer transfer = transferRepository.findById(id).orElseThrow();
                     if(transfer.getState() == TransferState.COMPLETED) {
-                        fees.getAndUpdate(t -> t.add(transfer.getFeeApplied()));
+                        fees.getAndUpdate(t -> t.add(transfer.getFeeApplied().toBigDecimal()));
                     }
 
 
@@ -0,0 +1,105 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer;
+
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.service.CurrencyService;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ *  Counts the SQL statements a single transfer issues with a cold and a warm reference data cache.
+ * */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class TransferSqlStatementCountTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferSqlStatementCountTest.class);
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private CurrencyService currencyService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Account sender;
+    private Account receiver;
+
+    @BeforeEach
+    void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        sender = new Account("CacheAlice", usd, new BigDecimal("1000.00"));
+        receiver = new Account("CacheBob", usd, new BigDecimal("500.00"));
+        accountRepository.saveAll(List.of(sender, receiver));
+    }
+
+    @Test
+    void warmCacheTransferIssuesFewerStatements() throws Exception {
+        currencyService.evictCurrencyCache();
+
+        statistics.clear();
+        transferService.transferMoney(request());
+        long coldStatements = statistics.getPrepareStatementCount();
+        long coldCurrencyLoads = currencyLoads();
+
+        statistics.clear();
+        transferService.transferMoney(request());
+        long warmStatements = statistics.getPrepareStatementCount();
+        long warmCurrencyLoads = currencyLoads();
+
+        log.info("SQL statements per transfer: cold={} warm={}", coldStatements, warmStatements);
+        Assertions.assertTrue(coldCurrencyLoads > 0, "cold transfer should load the currency from the database");
+        Assertions.assertEquals(0, warmCurrencyLoads, "warm transfer should read the currency from the cache");
+        Assertions.assertTrue(warmStatements < coldStatements,
+                "expected fewer statements with a warm cache, cold=" + coldStatements + " warm=" + warmStatements);
+    }
+
+    @Test
+    void createdCurrencyIsVisibleThroughCachedLookup() {
+        // cache a miss first, creating the currency must invalidate it
+        Assertions.assertTrue(currencyRepository.findByCode("SEK").isEmpty());
+
+        currencyService.createCurrency("SEK", "Swedish Krona");
+
+        Assertions.assertTrue(currencyRepository.findByCode("SEK").isPresent());
+    }
+
+    private long currencyLoads() {
+        return statistics.getEntityStatistics(Currency.class.getName()).getLoadCount();
+    }
+
+    private TransferRequestDTO request() {
+        TransferRequestDTO dto = new TransferRequestDTO();
+        dto.setSenderAccountId(sender.getId());
+        dto.setReceiverAccountId(receiver.getId());
+        dto.setAmount(new BigDecimal("10.00"));
+        dto.setCurrency("USD");
+        return dto;
+    }
+}
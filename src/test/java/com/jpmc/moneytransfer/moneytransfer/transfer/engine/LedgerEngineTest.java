@@ -0,0 +1,216 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.engine;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.Transfer;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ *  IN_MEMORY engine against its own database and journal directory. A restart is a new engine instance on the same
+ *  journals and tables after the running one stopped, like a new process would see them.
+ *  Two partitions: accounts with odd and even ids live on different ones.
+ * */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ledgerEngineTest;MODE=MySQL",
+        "transfer.execution-mode=IN_MEMORY",
+        "transfer.engine.partitions=2",
+        "transfer.engine.journal-dir=" + LedgerEngineTest.JOURNAL_DIR,
+        "transfer.engine.journal-segment-bytes=2048",
+        "transfer.engine.fsync=false"})
+@ActiveProfiles("test")
+class LedgerEngineTest {
+
+    static final String JOURNAL_DIR = "./target/ledger-engine-test";
+
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("100.00");
+
+    // the engine currently running, replaced on every restart
+    private static LedgerEngine engine;
+
+    @Autowired
+    private LedgerEngine contextEngine;
+
+    @Autowired
+    private AutowireCapableBeanFactory beanFactory;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @BeforeAll
+    static void deleteJournals() throws IOException {
+        FileSystemUtils.deleteRecursively(Paths.get(JOURNAL_DIR));
+    }
+
+    @AfterAll
+    static void stopEngine() throws Exception {
+        engine.stop();
+    }
+
+    @BeforeEach
+    void setup() {
+        if (engine == null) {
+            engine = contextEngine;
+        }
+    }
+
+    @Test
+    void debitWithoutCreditIsResumedExactlyOnceAfterRestart() throws Exception {
+        Account sender = createAccount("RecoverySender", 1);
+        Account receiver = createAccount("RecoveryReceiver", 0);
+        long transferId = transferRepository.findAll().stream().mapToLong(Transfer::getId).max().orElse(0) + 10_000;
+
+        // a crash right after the sender partition made its debit durable, before the receiver partition got the credit
+        engine.stop();
+        Money amount = Money.of(new BigDecimal("10.00"));
+        TransferOrder order = new TransferOrder(transferId, sender.getId(), receiver.getId(), amount, Money.ZERO,
+                null, null, amount, amount, "USD", "USD", "USD", System.currentTimeMillis(), null, null);
+        try (LedgerJournal journal = new LedgerJournal(Paths.get(JOURNAL_DIR), 1, 2048, false)) {
+            journal.replay((event, segment, endOffset) -> { });
+            journal.append(List.of(new LedgerEvent(LedgerEvent.Type.DEBIT, order)));
+            journal.force();
+        }
+
+        restart();
+        Assertions.assertEquals(1, engine.getStats().get("resumedAtStart"));
+        Assertions.assertTrue(engine.awaitProjection(10_000));
+        Assertions.assertEquals(TransferState.COMPLETED, transferRepository.findById(transferId).orElseThrow().getState());
+        assertBalance(sender, "90.00");
+        assertBalance(receiver, "110.00");
+
+        restart();
+        Assertions.assertEquals(0, engine.getStats().get("resumedAtStart"));
+        Assertions.assertTrue(engine.awaitProjection(10_000));
+        assertBalance(sender, "90.00");
+        assertBalance(receiver, "110.00");
+    }
+
+    @Test
+    void restartReplaysOnlyAfterTheProjectionCheckpoint() throws Exception {
+        List<Account> accounts = List.of(createAccount("CheckpointA", 0), createAccount("CheckpointB", 1),
+                createAccount("CheckpointC", 0), createAccount("CheckpointD", 1));
+        for (int i = 0; i < 200; i++) {
+            Account from = accounts.get(i % 4);
+            Account to = accounts.get((i + 1 + i / 4 % 3) % 4);
+            engine.transfer(new TransferRequestDTO(from.getId(), to.getId(), new BigDecimal("0.10"), "USD"));
+        }
+        Assertions.assertTrue(engine.awaitProjection(10_000));
+        // every closed segment is projected and no transfer is open, only the segments appended to are left
+        Assertions.assertTrue(journalFiles().stream().anyMatch(file -> !file.endsWith("-00000000000000000000.log")),
+                "expected the journals to roll");
+        Assertions.assertTrue((int) engine.getStats().get("journalSegments") <= 4, "segments " + journalFiles());
+
+        List<Money> inMemory = accounts.stream().map(account -> engine.account(account.getId()).balance).toList();
+        restart();
+        Assertions.assertEquals(0L, engine.getStats().get("replayedAtStart"));
+        for (int i = 0; i < accounts.size(); i++) {
+            Money table = accountRepository.findUnlockedById(accounts.get(i).getId()).orElseThrow().getBalance();
+            Assertions.assertEquals(inMemory.get(i), table);
+            Assertions.assertEquals(table, engine.account(accounts.get(i).getId()).balance);
+        }
+    }
+
+    @Test
+    void rejectsWithTheRulesOfTheDatabasePaths() throws Exception {
+        Account sender = createAccount("RulesSender", 0);
+        Account receiver = createAccount("RulesReceiver", 1);
+
+        assertRejected(TransferException.Reason.SELF_TRANSFER,
+                new TransferRequestDTO(sender.getId(), sender.getId(), BigDecimal.ONE, "USD"));
+        assertRejected(TransferException.Reason.INVALID_CURRENCY,
+                new TransferRequestDTO(sender.getId(), receiver.getId(), BigDecimal.ONE, "JPY"));
+        assertRejected(TransferException.Reason.INVALID_CURRENCY,
+                new TransferRequestDTO(sender.getId(), receiver.getId(), BigDecimal.ONE, "XXX"));
+        assertRejected(TransferException.Reason.ACCOUNT_NOT_FOUND,
+                new TransferRequestDTO(sender.getId(), Long.MAX_VALUE, BigDecimal.ONE, "USD"));
+        assertRejected(TransferException.Reason.INSUFFICIENT_FUNDS,
+                new TransferRequestDTO(sender.getId(), receiver.getId(), new BigDecimal("100.01"), "USD"));
+
+        // a balance that can't take the credit: rejected by the receiver's partition and refunded, or on the same one
+        Account full = createAccount("RulesFull", 1, Money.MAX.toBigDecimal().subtract(new BigDecimal("5.00")));
+        Account fullSameSide = createAccount("RulesFullSameSide", 0, Money.MAX.toBigDecimal().subtract(new BigDecimal("5.00")));
+        assertRejected(TransferException.Reason.INSUFFICIENT_FUNDS,
+                new TransferRequestDTO(sender.getId(), full.getId(), BigDecimal.TEN, "USD"));
+        assertRejected(TransferException.Reason.INSUFFICIENT_FUNDS,
+                new TransferRequestDTO(sender.getId(), fullSameSide.getId(), BigDecimal.TEN, "USD"));
+
+        Assertions.assertTrue(engine.awaitProjection(10_000));
+        assertBalance(sender, "100.00");
+        Assertions.assertEquals(Money.of(OPENING_BALANCE),
+                accountRepository.findUnlockedById(receiver.getId()).orElseThrow().getBalance());
+        Assertions.assertEquals(Money.MAX.minus(Money.of(new BigDecimal("5.00"))),
+                accountRepository.findUnlockedById(full.getId()).orElseThrow().getBalance());
+    }
+
+    private void assertRejected(TransferException.Reason reason, TransferRequestDTO dto) {
+        TransferException e = Assertions.assertThrows(TransferException.class, () -> engine.transfer(dto));
+        Assertions.assertEquals(reason, e.getReason(), e.getMessage());
+    }
+
+    private void assertBalance(Account account, String expected) {
+        Money balance = Money.of(new BigDecimal(expected));
+        Assertions.assertEquals(balance, accountRepository.findUnlockedById(account.getId()).orElseThrow().getBalance());
+        Assertions.assertEquals(balance, engine.account(account.getId()).balance);
+    }
+
+    private void restart() throws Exception {
+        engine.stop();
+        engine = beanFactory.createBean(LedgerEngine.class);
+    }
+
+    private Account createAccount(String name, int parity) {
+        return createAccount(name, parity, OPENING_BALANCE);
+    }
+
+    /**
+     *  Saves accounts until one gets an id of the parity, so it lives on that partition. Loaded by the engine on
+     *  first use.
+     * */
+    private Account createAccount(String name, int parity, BigDecimal balance) {
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        while (true) {
+            Account account = accountRepository.save(new Account(name, usd, balance));
+            if (account.getId() % 2 == parity) {
+                return account;
+            }
+        }
+    }
+
+    private static List<String> journalFiles() throws IOException {
+        List<String> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(Paths.get(JOURNAL_DIR))) {
+            list.forEach(file -> files.add(file.getFileName().toString()));
+        }
+        return files;
+    }
+}
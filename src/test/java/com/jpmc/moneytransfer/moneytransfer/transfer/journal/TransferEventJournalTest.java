@@ -0,0 +1,230 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.journal;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Account;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.AccountRepository;
+import com.jpmc.moneytransfer.moneytransfer.account.repository.CurrencyRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.Transfer;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferRequestDTO;
+import com.jpmc.moneytransfer.moneytransfer.transfer.model.TransferState;
+import com.jpmc.moneytransfer.moneytransfer.transfer.repository.TransferRepository;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.TransferService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ *  Transfer event journal in a temp dir with the smallest segments: events written and read back field by field,
+ *  segments rolled with the sequence running on, and a restart after a torn record continuing in a new segment.
+ * */
+@SpringBootTest(properties = {
+        "transfer.journal.enabled=true",
+        "transfer.journal.segment-bytes=65536",
+        "transfer.journal.force-interval-ms=50",
+        "transfer.async.enabled=false"})
+@ActiveProfiles("test")
+class TransferEventJournalTest {
+
+    private static final Path JOURNAL_DIR = tempDir();
+
+    @DynamicPropertySource
+    static void journalDir(DynamicPropertyRegistry registry) {
+        registry.add("transfer.journal.dir", JOURNAL_DIR::toString);
+    }
+
+    @Autowired
+    private TransferEventJournal journal;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CurrencyRepository currencyRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Test
+    void committedTransferIsJournaledAndReadBack() throws Exception {
+        Currency usd = currencyRepository.findById("USD").orElseThrow();
+        Currency jpy = currencyRepository.findById("JPY").orElseThrow();
+        Account sender = new Account("JournalAlice", usd, new BigDecimal("100.00"));
+        Account receiver = new Account("JournalBob", jpy, new BigDecimal("100.00"));
+        accountRepository.saveAll(List.of(sender, receiver));
+
+        Long id = transferService.transferMoney(new TransferRequestDTO(sender.getId(), receiver.getId(),
+                new BigDecimal("10.00"), "USD"));
+
+        await(() -> readAll().stream().anyMatch(event -> event.transferId() == id));
+        List<TransferEvent> events = readAll().stream().filter(event -> event.transferId() == id).toList();
+        // persisted and completed in one flush, one event
+        Assertions.assertEquals(1, events.size(), events::toString);
+        TransferEvent event = events.get(0);
+        Transfer transfer = transferRepository.findById(id).orElseThrow();
+        Assertions.assertEquals(TransferState.COMPLETED, event.state());
+        Assertions.assertEquals(transfer.getAmount(), event.amount());
+        Assertions.assertEquals(transfer.getFeeApplied(), event.feeApplied());
+        Assertions.assertEquals(transfer.getDebitAmount(), event.debitAmount());
+        Assertions.assertEquals(transfer.getCreditAmount(), event.creditAmount());
+        Assertions.assertEquals(0, transfer.getFxRate().compareTo(event.fxRate()));
+        Assertions.assertEquals(transfer.getFxRateVersion(), event.fxRateVersion());
+        Assertions.assertEquals("JPY", event.currencyTo());
+
+        // the CLI finds it by transfer id
+        String replayed = cli("replay", "--dir=" + JOURNAL_DIR, "--transfer=" + id);
+        Assertions.assertTrue(replayed.contains("transfer=" + id + " " + sender.getId() + "->" + receiver.getId()
+                + " COMPLETED"), replayed);
+        Assertions.assertEquals(1, replayed.lines().count(), replayed);
+    }
+
+    @Test
+    void everyFieldSurvivesTheRoundTrip() throws Exception {
+        TransferEvent full = event(-7, TransferState.FAILED, "Ünïcode message, \"quoted\"");
+        TransferEvent sparse = new TransferEvent(0, 1_000, -8, 1, 0, TransferState.PROCESSING, Money.of(BigDecimal.ONE),
+                null, null, null, null, null, "USD", null, null, null, null);
+
+        journal.record(full);
+        journal.record(sparse);
+
+        await(() -> readAll().stream().anyMatch(event -> event.transferId() == -8));
+        List<TransferEvent> events = readAll().stream()
+                .filter(event -> event.transferId() == -7 || event.transferId() == -8).toList();
+        long sequence = events.get(0).sequence();
+        Assertions.assertEquals(List.of(withSequence(full, sequence), withSequence(sparse, sequence + 1)), events);
+    }
+
+    @Test
+    void segmentsRollAndARestartSkipsATornRecord() throws Exception {
+        int rolled = segments().size();
+        for (int i = 0; i < 1500; i++) {
+            journal.record(event(-1000 - i, TransferState.COMPLETED, null));
+        }
+        await(() -> readAll().stream().anyMatch(event -> event.transferId() == -2499));
+        List<Path> segments = segments();
+        Assertions.assertTrue(segments.size() >= rolled + 2, segments::toString);
+        assertContiguous();
+
+        // the machine went down in the middle of a record: a length and a payload that doesn't match its crc
+        journal.stop();
+        Path last = segments.get(segments.size() - 1);
+        long lastSequence = readAll().get(readAll().size() - 1).sequence();
+        int end;
+        try (TransferJournalSegments.Reader reader = new TransferJournalSegments.Reader(last)) {
+            while (reader.next() != null) {
+                // up to the end of the valid records
+            }
+            end = reader.position();
+        }
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(28).putInt(20).putInt(12345).put(new byte[20]).flip(), end);
+        }
+
+        journal.start();
+        journal.record(event(-3000, TransferState.FAILED, "after restart"));
+        await(() -> readAll().stream().anyMatch(event -> event.transferId() == -3000));
+
+        List<Path> restarted = segments();
+        Assertions.assertEquals(segments.size() + 1, restarted.size());
+        Assertions.assertEquals(lastSequence + 1, TransferJournalSegments.firstSequenceOf(restarted.get(restarted.size() - 1)));
+        assertContiguous();
+        Assertions.assertTrue(cli("segments", "--dir=" + JOURNAL_DIR).contains(
+                restarted.get(restarted.size() - 1).getFileName() + " first=" + (lastSequence + 1)));
+    }
+
+    private void assertContiguous() throws IOException {
+        long expected = 1;
+        for (Path segment : segments()) {
+            Assertions.assertEquals(expected, TransferJournalSegments.firstSequenceOf(segment), segment::toString);
+            try (TransferJournalSegments.Reader reader = new TransferJournalSegments.Reader(segment)) {
+                for (TransferEvent event = reader.next(); event != null; event = reader.next()) {
+                    Assertions.assertEquals(expected++, event.sequence());
+                }
+            }
+        }
+    }
+
+    private static List<Path> segments() throws IOException {
+        return TransferJournalSegments.list(JOURNAL_DIR);
+    }
+
+    private static List<TransferEvent> readAll() {
+        List<TransferEvent> events = new ArrayList<>();
+        try {
+            for (Path segment : segments()) {
+                try (TransferJournalSegments.Reader reader = new TransferJournalSegments.Reader(segment)) {
+                    for (TransferEvent event = reader.next(); event != null; event = reader.next()) {
+                        events.add(event);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return events;
+    }
+
+    private static String cli(String... args) throws Exception {
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        try {
+            TransferJournalCli.main(args);
+        } finally {
+            System.setOut(out);
+        }
+        return captured.toString(StandardCharsets.UTF_8);
+    }
+
+    private static TransferEvent event(long transferId, TransferState state, String message) {
+        return new TransferEvent(0, 1_700_000_000_000L, transferId, 11, 12, state,
+                Money.of(new BigDecimal("12.3456")), Money.of(new BigDecimal("0.12")), new BigDecimal("1.234567"), 42L,
+                Money.of(new BigDecimal("12.4656")), Money.of(new BigDecimal("15.2415")),
+                "USD", "USD", "EUR", message == null ? null : "INSUFFICIENT_FUNDS", message);
+    }
+
+    private static TransferEvent withSequence(TransferEvent e, long sequence) {
+        return new TransferEvent(sequence, e.eventTime(), e.transferId(), e.fromAccountId(), e.toAccountId(), e.state(),
+                e.amount(), e.feeApplied(), e.fxRate(), e.fxRateVersion(), e.debitAmount(), e.creditAmount(),
+                e.currency(), e.currencyFrom(), e.currencyTo(), e.failureReason(), e.failureMessage());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    private static Path tempDir() {
+        try {
+            return Files.createTempDirectory("transfer-journal");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
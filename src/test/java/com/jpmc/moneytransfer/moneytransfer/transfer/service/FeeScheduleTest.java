@@ -0,0 +1,95 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.AccountTier;
+import com.jpmc.moneytransfer.moneytransfer.transfer.service.FeeSchedule.FeeRule;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ *  Which fee policy the compiled schedule picks: corridor beats tier, exact currency beats any, and the amount band
+ *  starting at or below the amount.
+ * */
+class FeeScheduleTest {
+
+    private static final FeeSchedule SCHEDULE = FeeSchedule.compile(1, List.of(
+            rule("TRANSFER_FEE", null, null, null, "0", "0.01"),
+            rule("TRANSFER_FEE_PREMIUM", null, null, AccountTier.PREMIUM, "0", "0.005"),
+            rule("TRANSFER_FEE_USD", "USD", null, null, "0", "0.02"),
+            rule("TRANSFER_FEE_TO_EUR", null, "EUR", null, "0", "0.025"),
+            rule("TRANSFER_FEE_USD_EUR", "USD", "EUR", null, "0", "0.03"),
+            rule("TRANSFER_FEE_USD_EUR_PREMIUM", "USD", "EUR", AccountTier.PREMIUM, "0", "0.015"),
+            // bands of one key: below 100 nothing of this key applies
+            rule("TRANSFER_FEE_GBP_1", "GBP", "GBP", null, "100", "0.04"),
+            rule("TRANSFER_FEE_GBP_2", "GBP", "GBP", null, "1000", "0.035"),
+            rule("TRANSFER_FEE_GBP_3", "GBP", "GBP", null, "10000.5", "0.0333335")));
+
+    @Test
+    void mostSpecificPolicyWins() {
+        // exact corridor and tier, then the corridor for every tier
+        assertRate("0.015", "USD", "EUR", AccountTier.PREMIUM, "10");
+        assertRate("0.03", "USD", "EUR", AccountTier.STANDARD, "10");
+        assertRate("0.03", "USD", "EUR", AccountTier.CORPORATE, "10");
+        // a corridor policy beats a tier policy
+        assertRate("0.02", "USD", "GBP", AccountTier.PREMIUM, "10");
+        // exact from currency beats exact to currency
+        assertRate("0.02", "USD", "JPY", AccountTier.STANDARD, "10");
+        assertRate("0.025", "JPY", "EUR", AccountTier.STANDARD, "10");
+        // a tier policy beats the default, an unknown currency falls back to the any-currency policies
+        assertRate("0.005", "JPY", "CHF", AccountTier.PREMIUM, "10");
+        assertRate("0.01", "JPY", "CHF", AccountTier.STANDARD, "10");
+        assertRate("0.01", "JPY", "CHF", null, "10");
+        assertRate("0.01", null, null, AccountTier.CORPORATE, "10");
+    }
+
+    @Test
+    void bandStartsAtItsMinAmountAndEndsBelowTheNextOne() {
+        // below the first band the key doesn't apply, the next candidate (the default) does
+        assertRate("0.01", "GBP", "GBP", AccountTier.STANDARD, "99.9999");
+        assertRate("0.04", "GBP", "GBP", AccountTier.STANDARD, "100");
+        assertRate("0.04", "GBP", "GBP", AccountTier.STANDARD, "999.9999");
+        assertRate("0.035", "GBP", "GBP", AccountTier.STANDARD, "1000");
+        assertRate("0.035", "GBP", "GBP", AccountTier.STANDARD, "10000.4999");
+        assertRate("0.0333335", "GBP", "GBP", AccountTier.STANDARD, "10000.5");
+        assertRate("0.0333335", "GBP", "GBP", AccountTier.STANDARD, Money.MAX.toBigDecimal().toPlainString());
+    }
+
+    @Test
+    void ratesAreRoundedToTheRateScale() {
+        FeeSchedule schedule = FeeSchedule.compile(1, List.of(rule("TRANSFER_FEE", null, null, null, "0", "0.0123455")));
+        Assertions.assertEquals(12_346, schedule.rateFor("USD", "USD", AccountTier.STANDARD, Money.of(BigDecimal.TEN)));
+    }
+
+    @Test
+    void noPolicyMeansNoFee() {
+        Assertions.assertEquals(FeeSchedule.NO_FEE,
+                FeeSchedule.EMPTY.rateFor("USD", "EUR", AccountTier.STANDARD, Money.of(BigDecimal.TEN)));
+        FeeSchedule banded = FeeSchedule.compile(1, List.of(rule("TRANSFER_FEE", null, null, null, "50", "0.01")));
+        Assertions.assertEquals(FeeSchedule.NO_FEE,
+                banded.rateFor("USD", "EUR", AccountTier.STANDARD, Money.of(new BigDecimal("49.9999"))));
+    }
+
+    @Test
+    void invalidPoliciesAreRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FeeSchedule.compile(1, List.of(
+                rule("TRANSFER_FEE", null, null, null, "0", "-0.01"))));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FeeSchedule.compile(1, List.of(
+                rule("TRANSFER_FEE", null, null, null, "-1", "0.01"))));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FeeSchedule.compile(1, List.of(
+                rule("TRANSFER_FEE_A", "USD", null, null, "10", "0.01"),
+                rule("TRANSFER_FEE_B", "USD", null, null, "10.0", "0.02"))));
+    }
+
+    private static void assertRate(String expected, String from, String to, AccountTier tier, String amount) {
+        Assertions.assertEquals(Money.rateUnits(new BigDecimal(expected)),
+                SCHEDULE.rateFor(from, to, tier, Money.of(new BigDecimal(amount))),
+                from + " -> " + to + " " + tier + " " + amount);
+    }
+
+    private static FeeRule rule(String name, String from, String to, AccountTier tier, String minAmount, String rate) {
+        return new FeeRule(name, from, to, tier, new BigDecimal(minAmount), new BigDecimal(rate));
+    }
+}
@@ -0,0 +1,108 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import com.jpmc.moneytransfer.moneytransfer.Money;
+import com.jpmc.moneytransfer.moneytransfer.account.model.Currency;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  Rates the snapshot derives from the quoted ones: inverses, crosses through the base currency, rounding to
+ *  FX_RATE_SCALE and the quote time each one carries.
+ * */
+class FxRateSnapshotTest {
+
+    private static final Currency USD = new Currency("USD", "US Dollar");
+    private static final Currency EUR = new Currency("EUR", "Euro");
+    private static final Currency GBP = new Currency("GBP", "British Pound");
+    private static final Currency CHF = new Currency("CHF", "Swiss Franc");
+    private static final Currency JPY = new Currency("JPY", "Japanese Yen");
+
+    @Test
+    void quotedRatesAndTheirInverses() throws Exception {
+        FxRateSnapshot snapshot = build(7, tick("USD", "EUR", "0.9", 1_000), tick("USD", "GBP", "0.8", 2_000));
+
+        FxQuote quoted = snapshot.getQuote(USD, EUR);
+        Assertions.assertEquals(new BigDecimal("0.900000"), quoted.rate());
+        Assertions.assertEquals(900_000, quoted.rateUnits());
+        Assertions.assertEquals(7, quoted.version());
+        Assertions.assertEquals(1_000, quoted.asOf());
+
+        FxQuote inverse = snapshot.getQuote(EUR, USD);
+        Assertions.assertEquals(new BigDecimal("1.111111"), inverse.rate());
+        Assertions.assertEquals(1_111_111, inverse.rateUnits());
+        Assertions.assertEquals(1_000, inverse.asOf());
+        Assertions.assertEquals(new BigDecimal("1.250000"), snapshot.getRate(GBP, USD));
+
+        Assertions.assertEquals(new BigDecimal("1.000000"), snapshot.getRate(EUR, EUR));
+    }
+
+    @Test
+    void quotedRateBeatsTheInverseOfTheOtherDirection() throws Exception {
+        FxRateSnapshot snapshot = build(1, tick("USD", "EUR", "0.9", 1_000), tick("EUR", "USD", "1.2", 3_000));
+        Assertions.assertEquals(new BigDecimal("1.200000"), snapshot.getRate(EUR, USD));
+        Assertions.assertEquals(3_000, snapshot.getQuote(EUR, USD).asOf());
+        Assertions.assertEquals(new BigDecimal("0.900000"), snapshot.getRate(USD, EUR));
+    }
+
+    @Test
+    void crossRatesGoThroughTheBaseCurrencyAndTakeTheOlderLeg() throws Exception {
+        FxRateSnapshot snapshot = build(1, tick("USD", "EUR", "0.9", 1_000), tick("USD", "GBP", "0.8", 2_000));
+
+        // EUR -> USD (1.111111) -> GBP (0.8): 0.8888888 rounded to the rate scale
+        FxQuote cross = snapshot.getQuote(EUR, GBP);
+        Assertions.assertEquals(new BigDecimal("0.888889"), cross.rate());
+        Assertions.assertEquals(888_889, cross.rateUnits());
+        Assertions.assertEquals(1_000, cross.asOf());
+
+        // GBP -> USD (1.25) -> EUR (0.9)
+        Assertions.assertEquals(new BigDecimal("1.125000"), snapshot.getRate(GBP, EUR));
+    }
+
+    @Test
+    void ratesAreRoundedHalfEvenToTheRateScale() throws Exception {
+        FxRateSnapshot snapshot = build(1, tick("USD", "EUR", "0.1234565", 1_000), tick("USD", "GBP", "0.1234575", 1_000),
+                tick("USD", "JPY", "149.12345651", 1_000));
+        Assertions.assertEquals(new BigDecimal("0.123456"), snapshot.getRate(USD, EUR));
+        Assertions.assertEquals(new BigDecimal("0.123458"), snapshot.getRate(USD, GBP));
+        Assertions.assertEquals(new BigDecimal("149.123457"), snapshot.getRate(USD, JPY));
+        Assertions.assertEquals(FxRateSnapshot.FX_RATE_SCALE, snapshot.getRate(EUR, GBP).scale());
+        // the inverse is worked out from the quoted rate, 1 / 0.123456 would be 8.100052
+        Assertions.assertEquals(new BigDecimal("8.100019"), snapshot.getRate(EUR, USD));
+        Assertions.assertEquals(Money.rateUnits(snapshot.getRate(JPY, EUR)), snapshot.getQuote(JPY, EUR).rateUnits());
+    }
+
+    @Test
+    void unknownOrUnderivablePairsFail() {
+        // CHF/JPY has no link to the base currency
+        FxRateSnapshot snapshot = build(3, tick("USD", "EUR", "0.9", 1_000), tick("CHF", "JPY", "170", 1_000));
+
+        TransferException unknown = Assertions.assertThrows(TransferException.class,
+                () -> snapshot.getQuote(USD, new Currency("XXX", "Unknown")));
+        Assertions.assertEquals(TransferException.Reason.FX_RATE_MISSING, unknown.getReason());
+
+        TransferException underivable = Assertions.assertThrows(TransferException.class, () -> snapshot.getQuote(EUR, CHF));
+        Assertions.assertEquals(TransferException.Reason.FX_RATE_MISSING, underivable.getReason());
+        Assertions.assertTrue(underivable.getMessage().contains("v3"), underivable.getMessage());
+        Assertions.assertNull(snapshot.findRate("EUR", "CHF"));
+        Assertions.assertNull(snapshot.findRate("EUR", "XXX"));
+
+        Assertions.assertThrows(TransferException.class, () -> FxRateSnapshot.EMPTY.getQuote(USD, EUR));
+    }
+
+    private static FxRateSnapshot build(long version, FxTick... ticks) {
+        Map<String, Map<String, FxTick>> quoted = new HashMap<>();
+        for (FxTick tick : List.of(ticks)) {
+            quoted.computeIfAbsent(tick.from(), from -> new HashMap<>()).put(tick.to(), tick);
+        }
+        return FxRateSnapshot.build(version, quoted, "USD");
+    }
+
+    private static FxTick tick(String from, String to, String rate, long timestamp) {
+        return new FxTick(from, to, new BigDecimal(rate), timestamp);
+    }
+}
@@ -0,0 +1,103 @@
+package com.jpmc.moneytransfer.moneytransfer.transfer.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ *  Space-Saving summary: exact while keys fit, the lightest counter taken over (and its weight kept as error) once
+ *  they don't, and on a skewed stream the heavy keys kept with true weight within [weight - error, weight].
+ * */
+class SpaceSavingTest {
+
+    @Test
+    void exactWhileTheKeysFit() {
+        SpaceSaving summary = new SpaceSaving(4);
+        summary.add(7, 10);
+        summary.add(-3, 5);
+        summary.add(7, 30);
+        summary.add(0, 1);
+
+        Map<Long, SpaceSaving.Entry> entries = byKey(summary);
+        Assertions.assertEquals(new SpaceSaving.Entry(7, 40, 0, 2, 30), entries.get(7L));
+        Assertions.assertEquals(new SpaceSaving.Entry(-3, 5, 0, 1, 5), entries.get(-3L));
+        Assertions.assertEquals(new SpaceSaving.Entry(0, 1, 0, 1, 1), entries.get(0L));
+        Assertions.assertEquals(0, summary.untrackedBound());
+        Assertions.assertEquals(46, summary.total());
+        Assertions.assertEquals(4, summary.observations());
+    }
+
+    @Test
+    void newKeyTakesOverTheLightestCounter() {
+        SpaceSaving summary = new SpaceSaving(2);
+        summary.add(1, 5);
+        summary.add(2, 3);
+        Assertions.assertEquals(3, summary.untrackedBound());
+
+        summary.add(3, 1);
+        Map<Long, SpaceSaving.Entry> entries = byKey(summary);
+        Assertions.assertEquals(Set.of(1L, 3L), entries.keySet());
+        Assertions.assertEquals(new SpaceSaving.Entry(3, 4, 3, 1, 1), entries.get(3L));
+
+        // 3 (4) is lighter than 1 (5) now, 2 comes back on top of it
+        summary.add(2, 2);
+        entries = byKey(summary);
+        Assertions.assertEquals(Set.of(1L, 2L), entries.keySet());
+        Assertions.assertEquals(new SpaceSaving.Entry(2, 6, 4, 1, 2), entries.get(2L));
+        Assertions.assertEquals(5, summary.untrackedBound());
+
+        // a tracked key is added to, not evicted
+        summary.add(1, 1);
+        Assertions.assertEquals(new SpaceSaving.Entry(1, 6, 0, 2, 5), byKey(summary).get(1L));
+    }
+
+    @Test
+    void heavyKeysAreKeptWithinTheErrorBound() {
+        int capacity = 64;
+        SpaceSaving summary = new SpaceSaving(capacity);
+        Map<Long, Long> exact = new HashMap<>();
+        Random random = new Random(7);
+        // 8 heavy keys take about half the weight, the rest is spread over 20,000 keys
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextBoolean() ? random.nextInt(8) * 1_000_003L : 100 + random.nextInt(20_000);
+            long weight = 1 + random.nextInt(100);
+            summary.add(key, weight);
+            exact.merge(key, weight, Long::sum);
+        }
+
+        List<SpaceSaving.Entry> entries = summary.entries();
+        Map<Long, SpaceSaving.Entry> tracked = byKey(summary);
+        Assertions.assertEquals(capacity, entries.size());
+        Assertions.assertEquals(capacity, tracked.size(), "a key is tracked by one counter only");
+        Assertions.assertEquals(summary.total(), entries.stream().mapToLong(SpaceSaving.Entry::weight).sum());
+        Assertions.assertEquals(200_000, summary.observations());
+
+        for (SpaceSaving.Entry entry : entries) {
+            long actual = exact.get(entry.key());
+            Assertions.assertTrue(entry.weight() >= actual, () -> "underestimates " + entry);
+            Assertions.assertTrue(entry.weight() - entry.error() <= actual, () -> "error too small " + entry);
+            Assertions.assertTrue(entry.error() <= summary.untrackedBound());
+        }
+        Set<Long> untracked = new HashSet<>(exact.keySet());
+        untracked.removeAll(tracked.keySet());
+        for (Long key : untracked) {
+            Assertions.assertTrue(exact.get(key) <= summary.untrackedBound(), () -> "missed " + key);
+        }
+        for (int heavy = 0; heavy < 8; heavy++) {
+            long key = heavy * 1_000_003L;
+            Assertions.assertTrue(exact.get(key) > summary.total() / capacity);
+            Assertions.assertTrue(tracked.containsKey(key), () -> "heavy key " + key + " not tracked");
+        }
+    }
+
+    private static Map<Long, SpaceSaving.Entry> byKey(SpaceSaving summary) {
+        return summary.entries().stream().collect(Collectors.toMap(SpaceSaving.Entry::key, entry -> entry));
+    }
+}